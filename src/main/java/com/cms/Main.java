@@ -7,6 +7,7 @@ import com.cms.service.AuthenticationService;
 import com.cms.ui.KeyboardShortcutManager;
 import com.cms.ui.LoginFrame;
 import com.cms.ui.MainFrame;
+import com.cms.ui.UserActivityMonitor;
 
 import javax.swing.*;
 
@@ -22,6 +23,8 @@ public class Main {
 
                 DatabaseMigration migration = new DatabaseMigration(factory.getDatabaseConnection());
                 migration.runMigrations();
+                // Until some consumer exports, nothing else would ever trim the change log
+                factory.getChangeLogRepository().purgeConsumed();
 
                 // Initialize authentication service
                 AuthenticationService authService = factory.getAuthenticationService();
@@ -32,6 +35,9 @@ public class Main {
                     MainFrame mainFrame = new MainFrame();
                     KeyboardShortcutManager.initialize(mainFrame);
                     mainFrame.setVisible(true);
+                    UserActivityMonitor.install();
+                    factory.getBackupScheduler().start(UserActivityMonitor::getLastActivity);
+                    factory.getAttachmentMigration().start();
                     AppLogger.info("Main application started");
                 });
                 loginFrame.setVisible(true);
@@ -6,6 +6,11 @@ import java.util.regex.Pattern;
 
 public class ValidationResult {
 
+    // Compiled once: validators run per row during bulk imports
+    private static final Pattern EMAIL = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$");
+    private static final Pattern PHONE = Pattern.compile("^[0-9+\\-\\s()]{7,20}$");
+    private static final Pattern CEDULA = Pattern.compile("^[VEJGvejg]?-?\\d{5,10}$");
+
     private final List<String> errors;
 
     public ValidationResult() {
@@ -50,18 +55,18 @@ public class ValidationResult {
     public static boolean isValidEmail(String email) {
         if (email == null || email.trim().isEmpty())
             return true;
-        return Pattern.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$", email);
+        return EMAIL.matcher(email).matches();
     }
 
     public static boolean isValidPhone(String phone) {
         if (phone == null || phone.trim().isEmpty())
             return true;
-        return Pattern.matches("^[0-9+\\-\\s()]{7,20}$", phone);
+        return PHONE.matcher(phone).matches();
     }
 
     public static boolean isValidCedula(String cedula) {
         if (cedula == null)
             return false;
-        return Pattern.matches("^[VEJGvejg]?-?\\d{5,10}$", cedula.trim());
+        return CEDULA.matcher(cedula.trim()).matches();
     }
 }
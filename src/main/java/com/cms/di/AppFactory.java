@@ -9,15 +9,20 @@ import com.cms.presenter.PatientContract;
 import com.cms.presenter.PatientPresenter;
 import com.cms.repository.AppointmentRepository;
 import com.cms.repository.AttachmentRepository;
+import com.cms.repository.ChangeLogRepository;
 import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.repository.ImportJobRepository;
 import com.cms.repository.PatientRepository;
 import com.cms.repository.UserRepository;
 import com.cms.repository.sqlite.SQLiteAppointmentRepository;
 import com.cms.repository.sqlite.SQLiteAttachmentRepository;
+import com.cms.repository.sqlite.SQLiteChangeLogRepository;
 import com.cms.repository.sqlite.SQLiteClinicalHistoryRepository;
+import com.cms.repository.sqlite.SQLiteImportJobRepository;
 import com.cms.repository.sqlite.SQLitePatientRepository;
 import com.cms.repository.sqlite.SQLiteUserRepository;
 import com.cms.service.*;
+import com.cms.service.report.ReportTemplateCache;
 
 public class AppFactory {
 
@@ -32,17 +37,42 @@ public class AppFactory {
     private AttachmentRepository attachmentRepository;
     private UserRepository userRepository;
     private AppointmentRepository appointmentRepository;
+    private ImportJobRepository importJobRepository;
+    private ChangeLogRepository changeLogRepository;
+
+    public ImportJobRepository getImportJobRepository() {
+        if (importJobRepository == null) {
+            importJobRepository = new SQLiteImportJobRepository(dbConnection);
+        }
+        return importJobRepository;
+    }
+
+    public ChangeLogRepository getChangeLogRepository() {
+        if (changeLogRepository == null) {
+            changeLogRepository = new SQLiteChangeLogRepository(dbConnection);
+        }
+        return changeLogRepository;
+    }
 
     // Services
     private PatientService patientService;
     private ClinicalHistoryService clinicalHistoryService;
     private AttachmentService attachmentService;
+    private ThumbnailService thumbnailService;
+    private ImageService imageService;
     private AuthenticationService authenticationService;
     private UserService userService;
     private StatisticsService statisticsService;
+    private AnalyticsService analyticsService;
     private ReportService reportService;
+    private PdfReportService pdfReportService;
+    private ReportJobService reportJobService;
+    private HistoryPackExportService historyPackExportService;
     private BackupService backupService;
+    private BackupScheduler backupScheduler;
+    private AttachmentMigration attachmentMigration;
     private ExportImportService exportImportService;
+    private SnapshotExchangeService snapshotExchangeService;
     private AppointmentService appointmentService;
 
     private AppFactory() {
@@ -140,11 +170,25 @@ public class AppFactory {
 
     public AttachmentService getAttachmentService() {
         if (attachmentService == null) {
-            attachmentService = new AttachmentService(getAttachmentRepository());
+            attachmentService = new AttachmentService(getAttachmentRepository(), getImageService());
         }
         return attachmentService;
     }
 
+    public ThumbnailService getThumbnailService() {
+        if (thumbnailService == null) {
+            thumbnailService = new ThumbnailService(getImageService().getCache());
+        }
+        return thumbnailService;
+    }
+
+    public ImageService getImageService() {
+        if (imageService == null) {
+            imageService = new ImageService();
+        }
+        return imageService;
+    }
+
     public AuthenticationService getAuthenticationService() {
         if (authenticationService == null) {
             authenticationService = new AuthenticationService(getUserRepository());
@@ -163,11 +207,23 @@ public class AppFactory {
         if (statisticsService == null) {
             statisticsService = new StatisticsService(
                     getPatientRepository(),
-                    getClinicalHistoryRepository());
+                    getAnalyticsService());
         }
         return statisticsService;
     }
 
+    public AnalyticsService getAnalyticsService() {
+        if (analyticsService == null) {
+            analyticsService = new AnalyticsService(
+                    getPatientRepository(),
+                    getClinicalHistoryRepository(),
+                    getChangeLogRepository(),
+                    dbConnection,
+                    eventBus);
+        }
+        return analyticsService;
+    }
+
     public ReportService getReportService() {
         if (reportService == null) {
             reportService = new ReportService(
@@ -177,18 +233,78 @@ public class AppFactory {
         return reportService;
     }
 
+    public PdfReportService getPdfReportService() {
+        if (pdfReportService == null) {
+            pdfReportService = new PdfReportService(
+                    getPatientRepository(),
+                    getClinicalHistoryRepository(),
+                    new ReportTemplateCache());
+        }
+        return pdfReportService;
+    }
+
+    public ReportJobService getReportJobService() {
+        if (reportJobService == null) {
+            reportJobService = new ReportJobService(
+                    getReportService(),
+                    getPdfReportService(),
+                    getHistoryPackExportService(),
+                    getAnalyticsService(),
+                    dbConnection);
+        }
+        return reportJobService;
+    }
+
+    public HistoryPackExportService getHistoryPackExportService() {
+        if (historyPackExportService == null) {
+            historyPackExportService = new HistoryPackExportService(
+                    getPatientRepository(),
+                    getClinicalHistoryRepository(),
+                    getChangeLogRepository(),
+                    getReportService());
+        }
+        return historyPackExportService;
+    }
+
     public BackupService getBackupService() {
         if (backupService == null) {
-            backupService = new BackupService(dbConnection);
+            backupService = new BackupService(dbConnection, getPatientRepository(), getClinicalHistoryRepository());
         }
         return backupService;
     }
 
+    public BackupScheduler getBackupScheduler() {
+        if (backupScheduler == null) {
+            backupScheduler = new BackupScheduler(getBackupService());
+        }
+        return backupScheduler;
+    }
+
+    public AttachmentMigration getAttachmentMigration() {
+        if (attachmentMigration == null) {
+            attachmentMigration = new AttachmentMigration(getAttachmentRepository(), getBackupService());
+        }
+        return attachmentMigration;
+    }
+
+    public SnapshotExchangeService getSnapshotExchangeService() {
+        if (snapshotExchangeService == null) {
+            snapshotExchangeService = new SnapshotExchangeService(
+                    getPatientRepository(),
+                    getClinicalHistoryRepository(),
+                    getAppointmentRepository(),
+                    getAttachmentRepository());
+        }
+        return snapshotExchangeService;
+    }
+
     public ExportImportService getExportImportService() {
         if (exportImportService == null) {
             exportImportService = new ExportImportService(
                     getPatientRepository(),
-                    getClinicalHistoryRepository());
+                    getClinicalHistoryRepository(),
+                    getImportJobRepository(),
+                    getChangeLogRepository());
         }
         return exportImportService;
     }
@@ -0,0 +1,159 @@
+package com.cms.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a CSV import, checkpointed after every committed batch so an
+ * interrupted import can continue where it stopped. The file size and
+ * modification time identify the exact file the offsets refer to.
+ */
+public class ImportJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String ABANDONED = "ABANDONED";
+
+    private Integer id;
+    private String kind;
+    private String filePath;
+    private long fileSize;
+    private long fileModified;
+    private long byteOffset;
+    private long nextLine;
+    private int successCount;
+    private int updatedCount;
+    private int skippedCount;
+    private int errorCount;
+    private String status = RUNNING;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+
+    public ImportJob() {
+        this.startedAt = LocalDateTime.now();
+        this.updatedAt = startedAt;
+    }
+
+    public ImportJob(String kind, String filePath, long fileSize, long fileModified) {
+        this();
+        this.kind = kind;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+    }
+
+    public boolean isSameFile(long size, long modified) {
+        return fileSize == size && fileModified == modified;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getFileModified() {
+        return fileModified;
+    }
+
+    public void setFileModified(long fileModified) {
+        this.fileModified = fileModified;
+    }
+
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    public void setByteOffset(long byteOffset) {
+        this.byteOffset = byteOffset;
+    }
+
+    public long getNextLine() {
+        return nextLine;
+    }
+
+    public void setNextLine(long nextLine) {
+        this.nextLine = nextLine;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public void setSuccessCount(int successCount) {
+        this.successCount = successCount;
+    }
+
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    public void setUpdatedCount(int updatedCount) {
+        this.updatedCount = updatedCount;
+    }
+
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    public void setSkippedCount(int skippedCount) {
+        this.skippedCount = skippedCount;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(int errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,12 @@
+package com.cms.domain;
+
+/**
+ * A row reported by the change log: its current state, or null when the row
+ * has been deleted since.
+ */
+public record RowChange<T>(int id, T row) {
+
+    public boolean isDeleted() {
+        return row == null;
+    }
+}
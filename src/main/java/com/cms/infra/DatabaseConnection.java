@@ -1,19 +1,67 @@
 package com.cms.infra;
 
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class DatabaseConnection {
 
+    /**
+     * Work done inside {@link #inTransaction(SqlWork)}.
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Work done on a connection of its own by {@link #withConnection(ConnectionWork)}.
+     */
+    @FunctionalInterface
+    public interface ConnectionWork<T> {
+        T run(Connection conn) throws SQLException, IOException;
+    }
+
+    // Writers on other connections wait this long for the write lock instead of failing
+    private static final int BUSY_TIMEOUT_MS = 10_000;
+    // How long a database swap waits for transactions on their own connections to end
+    private static final long REPLACE_TIMEOUT_SECONDS = 60;
+
     private static DatabaseConnection instance;
     private Connection connection;
+    private int connectionEpoch;
+    private final ThreadLocal<Connection> transactionConnection = new ThreadLocal<>();
+    // Held shared by every connection other than the shared one, and exclusively to swap the file
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
     private static final String DATABASE_PATH = "clinic_db.sqlite";
-    private final String url = "jdbc:sqlite:" + DATABASE_PATH;
+    private final String databasePath;
+    private final String url;
 
     private DatabaseConnection() {
+        this(DATABASE_PATH);
+    }
+
+    /**
+     * A connection to a database file other than the application's, e.g. a
+     * scratch database in tests. The application uses {@link #getInstance()}.
+     */
+    public DatabaseConnection(String databasePath) {
+        this.databasePath = databasePath;
+        this.url = "jdbc:sqlite:" + databasePath;
         try {
-            connection = DriverManager.getConnection(url);
+            connection = open();
+            connectionEpoch++;
             initializeTables();
         } catch (SQLException e) {
             throw new RuntimeException("Error connecting to database", e);
@@ -27,10 +75,20 @@ public class DatabaseConnection {
         return instance;
     }
 
+    /**
+     * The shared connection, or, on a thread running
+     * {@link #inTransaction(SqlWork)}, that transaction's own connection.
+     */
     public Connection getConnection() {
+        Connection bound = transactionConnection.get();
+        return bound != null ? bound : getSharedConnection();
+    }
+
+    private synchronized Connection getSharedConnection() {
         try {
             if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(url);
+                connection = open();
+                connectionEpoch++;
             }
         } catch (SQLException e) {
             throw new RuntimeException("Error reconnecting to database", e);
@@ -38,8 +96,160 @@ public class DatabaseConnection {
         return connection;
     }
 
+    /**
+     * Swaps the database file for {@code replacement}, a complete SQLite
+     * database on the same file system. Waits for the transactions and
+     * connections opened by {@link #inTransaction(SqlWork)} and
+     * {@link #withConnection(ConnectionWork)} to end, and keeps new ones out
+     * until the swap is done. The shared connection is closed before the file
+     * is moved into place and a new one is opened afterwards, so no
+     * connection ever sees a half-replaced file. Statements still running on
+     * the shared connection fail rather than read the new data. Nothing is
+     * changed if the swap throws before the move.
+     */
+    public void replaceDatabase(Path replacement) {
+        if (transactionConnection.get() != null) {
+            throw new IllegalStateException("Cannot replace the database inside a transaction");
+        }
+        try {
+            if (!fileLock.writeLock().tryLock(REPLACE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Database still in use by another task, it was not replaced");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to replace the database", e);
+        }
+        try {
+            swapDatabase(replacement);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void swapDatabase(Path replacement) {
+        Path target = Paths.get(databasePath);
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+            // A journal left by the old file must never be replayed into the new one
+            Files.deleteIfExists(Paths.get(databasePath + "-journal"));
+            try {
+                Files.move(replacement, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(replacement, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Error replacing database file", e);
+        } finally {
+            connection = null;
+        }
+
+        try {
+            connection = open();
+            connectionEpoch++;
+            initializeTables();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reopening database", e);
+        }
+        AppLogger.info("Database replaced from " + replacement.getFileName());
+    }
+
+    /**
+     * Runs {@code work} in one transaction on a connection of its own, which
+     * {@link #getConnection()} returns on this thread until the work ends, so
+     * repositories called from the work join the transaction. Writes made
+     * meanwhile on the shared connection, e.g. from the EDT, are never part
+     * of it and are not lost if it rolls back. A nested call joins the
+     * enclosing transaction.
+     */
+    public <T> T inTransaction(SqlWork<T> work) {
+        Connection bound = transactionConnection.get();
+        if (bound != null) {
+            try {
+                return work.run(bound);
+            } catch (SQLException e) {
+                throw new RuntimeException("Error in database transaction", e);
+            }
+        }
+
+        fileLock.readLock().lock();
+        try (Connection conn = open()) {
+            conn.setAutoCommit(false);
+            transactionConnection.set(conn);
+            try {
+                T result = work.run(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                transactionConnection.remove();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error in database transaction", e);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs {@code work} on a new connection of its own, for work such as
+     * attaching another database that must not touch the shared connection.
+     * The connection is closed when the work ends, and the database file is
+     * not replaced while it is open.
+     */
+    public <T> T withConnection(ConnectionWork<T> work) throws SQLException, IOException {
+        fileLock.readLock().lock();
+        try (Connection conn = open()) {
+            return work.run(conn);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+        }
+        return conn;
+    }
+
+    /**
+     * Returns a stamp that changes whenever the database content may have
+     * changed: rows written through this process (total_changes) or commits by
+     * other connections (data_version). Equal stamps mean unchanged data.
+     */
+    public String getDataVersion() {
+        Connection conn = getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            long totalChanges;
+            long dataVersion;
+            try (ResultSet rs = stmt.executeQuery("SELECT total_changes()")) {
+                totalChanges = rs.next() ? rs.getLong(1) : 0;
+            }
+            try (ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+                dataVersion = rs.next() ? rs.getLong(1) : 0;
+            }
+            return connectionEpoch + ":" + totalChanges + ":" + dataVersion;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading database data version", e);
+        }
+    }
+
+    /**
+     * Changes whenever the shared connection is reopened, e.g. after the
+     * database file was replaced by a restore.
+     */
+    public synchronized int getConnectionEpoch() {
+        return connectionEpoch;
+    }
+
     public String getDatabasePath() {
-        return DATABASE_PATH;
+        return databasePath;
     }
 
     private void initializeTables() throws SQLException {
@@ -92,6 +302,27 @@ public class DatabaseConnection {
                     "last_login TEXT, " +
                     "failed_attempts INTEGER DEFAULT 0, " +
                     "locked_until TEXT)");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS change_log (" +
+                    "seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "table_name TEXT NOT NULL, " +
+                    "row_id INTEGER NOT NULL, " +
+                    "operation TEXT NOT NULL, " +
+                    "changed_at TEXT DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_change_log_table_seq ON change_log(table_name, seq)");
+            createChangeTriggers(stmt, "patients");
+            createChangeTriggers(stmt, "clinical_histories");
+        }
+    }
+
+    // Feeds change_log for incremental exports; the triggers live in the database file itself
+    private void createChangeTriggers(Statement stmt, String table) throws SQLException {
+        String[][] events = { { "INSERT", "NEW" }, { "UPDATE", "NEW" }, { "DELETE", "OLD" } };
+        for (String[] event : events) {
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_" + event[0].toLowerCase() +
+                    " AFTER " + event[0] + " ON " + table + " BEGIN " +
+                    "INSERT INTO change_log (table_name, row_id, operation) VALUES ('" + table + "', " +
+                    event[1] + ".id, '" + event[0] + "'); END");
         }
     }
 }
@@ -5,6 +5,7 @@ import com.cms.core.validation.ValidationResult;
 import com.cms.domain.Attachment;
 import com.cms.domain.ClinicalHistory;
 import com.cms.infra.EventBus;
+import com.cms.presenter.events.HistoryDeletedEvent;
 import com.cms.presenter.events.HistorySavedEvent;
 import com.cms.repository.AttachmentRepository;
 import com.cms.repository.ClinicalHistoryRepository;
@@ -168,6 +169,7 @@ public class ClinicalHistoryPresenter implements ClinicalHistoryContract.Present
                 try {
                     get();
                     view.showSuccess("Historia clínica eliminada exitosamente");
+                    eventBus.publish(new HistoryDeletedEvent(historyId));
                     loadAllHistories();
                 } catch (Exception e) {
                     view.showError("Error al eliminar historia: " + e.getMessage());
@@ -204,8 +206,8 @@ public class ClinicalHistoryPresenter implements ClinicalHistoryContract.Present
 
         clipboardHandler.getImageFromClipboard().ifPresentOrElse(
                 image -> {
-                    clipboardHandler.saveImageToFile(image, currentHistoryId).ifPresentOrElse(
-                            file -> saveAttachment(file, image),
+                    clipboardHandler.saveImageToFile(image).ifPresentOrElse(
+                            file -> saveAttachment(file, clipboardHandler.newClipboardImageName(), image),
                             () -> view.showError("Error al guardar imagen del portapapeles"));
                 },
                 () -> view.showError("No se pudo obtener la imagen del portapapeles"));
@@ -218,15 +220,15 @@ public class ClinicalHistoryPresenter implements ClinicalHistoryContract.Present
             return;
         }
 
-        clipboardHandler.copyFileToAttachments(filePath, currentHistoryId).ifPresentOrElse(
-                file -> saveAttachment(file, null),
+        clipboardHandler.copyFileToAttachments(filePath).ifPresentOrElse(
+                file -> saveAttachment(file, new File(filePath).getName(), null),
                 () -> view.showError("Error al copiar archivo"));
     }
 
-    private void saveAttachment(File file, BufferedImage previewImage) {
+    private void saveAttachment(File file, String name, BufferedImage previewImage) {
         Attachment attachment = new Attachment();
         attachment.setClinicalHistoryId(currentHistoryId);
-        attachment.setNombre(file.getName());
+        attachment.setNombre(name);
         attachment.setRutaArchivo(file.getAbsolutePath());
         attachment.setTipo(clipboardHandler.getMimeType(file.getAbsolutePath()));
         attachment.setTamanoBytes(clipboardHandler.getFileSize(file.getAbsolutePath()));
@@ -258,8 +260,10 @@ public class ClinicalHistoryPresenter implements ClinicalHistoryContract.Present
     @Override
     public void removeAttachment(Integer attachmentId) {
         attachmentRepository.findById(attachmentId).ifPresent(attachment -> {
-            clipboardHandler.deleteAttachmentFile(attachment.getRutaArchivo());
             attachmentRepository.delete(attachmentId);
+            if (attachmentRepository.countByRutaArchivo(attachment.getRutaArchivo()) == 0) {
+                clipboardHandler.deleteAttachmentFile(attachment.getRutaArchivo());
+            }
             view.showSuccess("Adjunto eliminado");
             loadAttachments(currentHistoryId);
         });
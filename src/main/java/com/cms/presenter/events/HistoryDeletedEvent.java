@@ -0,0 +1,13 @@
+package com.cms.presenter.events;
+
+public class HistoryDeletedEvent {
+    private final Integer historyId;
+
+    public HistoryDeletedEvent(Integer historyId) {
+        this.historyId = historyId;
+    }
+
+    public Integer getHistoryId() {
+        return historyId;
+    }
+}
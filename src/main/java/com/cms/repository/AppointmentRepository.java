@@ -42,6 +42,11 @@ public interface AppointmentRepository extends Repository<Appointment, Integer>
      */
     long countByDate(LocalDate date);
 
+    /**
+     * Insert all appointments in a single transaction.
+     */
+    void insertAll(List<Appointment> appointments);
+
     /**
      * Count all appointments.
      */
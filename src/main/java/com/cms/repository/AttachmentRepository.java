@@ -15,5 +15,31 @@ public interface AttachmentRepository extends Repository<Attachment, Integer> {
 
     long countByClinicalHistoryId(Integer clinicalHistoryId);
 
+    /**
+     * Inserts the attachment records in a single transaction.
+     */
+    void insertAll(List<Attachment> attachments);
+
     long count();
+
+    /**
+     * Number of attachments whose ruta_archivo is exactly this string. Files
+     * in the attachment store can be reached through different strings, so
+     * they are counted by hash in the sweep of unreferenced objects instead.
+     */
+    long countByRutaArchivo(String rutaArchivo);
+
+    List<String> findAllRutasArchivo();
+
+    /**
+     * Points every attachment that uses {@code oldRuta} at {@code newRuta}
+     * and, in the same transaction, records the old file as retired. Windows
+     * opened earlier may still read a retired file, so it is deleted on a
+     * later start rather than right away.
+     */
+    int updateRutaArchivo(String oldRuta, String newRuta);
+
+    List<String> findRetiredRutasArchivo();
+
+    void deleteRetiredRutaArchivo(String rutaArchivo);
 }
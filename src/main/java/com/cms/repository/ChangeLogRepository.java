@@ -0,0 +1,31 @@
+package com.cms.repository;
+
+import java.util.OptionalLong;
+
+/**
+ * Access to the change log filled by triggers on patients and
+ * clinical_histories, and to the watermarks of its consumers.
+ */
+public interface ChangeLogRepository {
+
+    /**
+     * Sequence number of the latest logged change, 0 when the log is empty.
+     */
+    long currentSequence();
+
+    /**
+     * True if every change after {@code afterSequence} up to {@code upToSequence}
+     * is still logged and was made to the given row.
+     */
+    boolean onlyChangedRow(long afterSequence, long upToSequence, String table, long rowId);
+
+    OptionalLong findWatermark(String consumer);
+
+    void saveWatermark(String consumer, long sequence);
+
+    /**
+     * Deletes the entries every known consumer has already exported, or all
+     * of them when no consumer has exported yet.
+     */
+    void purgeConsumed();
+}
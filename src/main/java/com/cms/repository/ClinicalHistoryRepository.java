@@ -2,9 +2,11 @@ package com.cms.repository;
 
 import com.cms.core.Repository;
 import com.cms.domain.ClinicalHistory;
+import com.cms.domain.RowChange;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ClinicalHistoryRepository extends Repository<ClinicalHistory, Integer> {
 
@@ -20,5 +22,33 @@ public interface ClinicalHistoryRepository extends Repository<ClinicalHistory, I
 
     long countByPatientId(Integer patientId);
 
+    Stream<ClinicalHistory> streamAllOrderByPatient();
+
+    /**
+     * Streams consultations in the range (inclusive, null bounds are open) with
+     * their patient attached, newest first.
+     */
+    Stream<ClinicalHistory> streamWithPatientByFechaConsultaBetween(LocalDateTime inicio, LocalDateTime fin);
+
+    long countByFechaConsultaBetween(LocalDateTime inicio, LocalDateTime fin);
+
+    /**
+     * Streams every consultation with only id, patient id, fecha and motivo
+     * loaded, for duplicate detection during imports.
+     */
+    Stream<ClinicalHistory> streamAllKeys();
+
+    /**
+     * Inserts the consultations in a single transaction and sets their
+     * generated ids.
+     */
+    void insertAll(List<ClinicalHistory> histories);
+
+    /**
+     * Consultations with change log entries in (afterSequence, upToSequence],
+     * each once, in id order, with their current state and patient attached.
+     */
+    Stream<RowChange<ClinicalHistory>> streamChanges(long afterSequence, long upToSequence);
+
     long count();
 }
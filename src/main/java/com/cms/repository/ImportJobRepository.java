@@ -0,0 +1,25 @@
+package com.cms.repository;
+
+import com.cms.domain.ImportJob;
+
+import java.util.Optional;
+
+/**
+ * Repository for import checkpoints.
+ */
+public interface ImportJobRepository {
+
+    ImportJob save(ImportJob job);
+
+    /**
+     * The running (unfinished) job of the given kind for a file, if any.
+     */
+    Optional<ImportJob> findRunning(String kind, String filePath);
+
+    /**
+     * Runs a batch write and stores the job's new checkpoint in the same
+     * transaction, so the saved position never gets ahead of or behind the
+     * rows actually committed.
+     */
+    void checkpoint(ImportJob job, Runnable batch);
+}
@@ -2,9 +2,13 @@ package com.cms.repository;
 
 import com.cms.core.Repository;
 import com.cms.domain.Patient;
+import com.cms.domain.RowChange;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 public interface PatientRepository extends Repository<Patient, Integer> {
 
@@ -18,5 +22,37 @@ public interface PatientRepository extends Repository<Patient, Integer> {
 
     boolean existsByCedula(String cedula);
 
+    /**
+     * Case-insensitive cedula check that ignores the patient with the given
+     * id (null to ignore none).
+     */
+    boolean existsByCedulaIgnoreCase(String cedula, Integer excludeId);
+
+    Stream<Patient> streamAll();
+
+    /**
+     * Every stored cedula mapped to its patient id, read in a single query.
+     */
+    Map<String, Integer> findAllIdsByCedula();
+
+    /**
+     * Inserts the patients in a single transaction. Rows rejected by the
+     * database are reported to the callback, by their index in the list, and
+     * skipped; the rest commit.
+     */
+    void insertAll(List<Patient> patients, BiConsumer<Integer, RuntimeException> onRejected);
+
+    /**
+     * Inserts or, when the cedula already exists, updates the patients in a
+     * single transaction. The registration date of existing rows is kept.
+     */
+    void upsertAll(List<Patient> patients);
+
+    /**
+     * Patients with change log entries in (afterSequence, upToSequence], each
+     * once, in id order, with their current state.
+     */
+    Stream<RowChange<Patient>> streamChanges(long afterSequence, long upToSequence);
+
     long count();
 }
@@ -24,6 +24,11 @@ public class SQLiteAppointmentRepository implements AppointmentRepository {
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_TIME;
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
+    private static final String INSERT_SQL = """
+            INSERT INTO appointments (patient_id, doctor_id, date, time, reason, status, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+
     public SQLiteAppointmentRepository(DatabaseConnection dbConnection) {
         this.dbConnection = dbConnection;
         initializeTable();
@@ -60,12 +65,24 @@ public class SQLiteAppointmentRepository implements AppointmentRepository {
         }
     }
 
+    @Override
+    public void insertAll(List<Appointment> appointments) {
+        dbConnection.inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                for (Appointment appointment : appointments) {
+                    setAppointmentParameters(pstmt, appointment);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            } catch (SQLException e) {
+                throw new RuntimeException("Error inserting appointments", e);
+            }
+            return null;
+        });
+    }
+
     private Appointment insert(Appointment appointment) {
-        String sql = """
-                INSERT INTO appointments (patient_id, doctor_id, date, time, reason, status, created_at)
-                VALUES (?, ?, ?, ?, ?, ?, ?)
-                """;
-        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql,
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(INSERT_SQL,
                 Statement.RETURN_GENERATED_KEYS)) {
             setAppointmentParameters(pstmt, appointment);
             pstmt.executeUpdate();
@@ -16,6 +16,11 @@ public class SQLiteAttachmentRepository implements AttachmentRepository {
     private final DatabaseConnection dbConnection;
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
+    private static final String INSERT_SQL = """
+            INSERT INTO attachments (clinical_history_id, nombre, tipo, ruta_archivo, tamano_bytes, fecha_carga, descripcion)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+
     public SQLiteAttachmentRepository(DatabaseConnection dbConnection) {
         this.dbConnection = dbConnection;
         initializeTable();
@@ -37,6 +42,9 @@ public class SQLiteAttachmentRepository implements AttachmentRepository {
                 """;
         try (Statement stmt = dbConnection.getConnection().createStatement()) {
             stmt.execute(sql);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_attachments_ruta ON attachments(ruta_archivo)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS retired_attachment_files ("
+                    + "ruta_archivo TEXT PRIMARY KEY, retired_at TEXT DEFAULT CURRENT_TIMESTAMP)");
         } catch (SQLException e) {
             throw new RuntimeException("Error initializing attachments table", e);
         }
@@ -51,12 +59,24 @@ public class SQLiteAttachmentRepository implements AttachmentRepository {
         }
     }
 
+    @Override
+    public void insertAll(List<Attachment> attachments) {
+        dbConnection.inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                for (Attachment attachment : attachments) {
+                    setAttachmentParameters(pstmt, attachment);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            } catch (SQLException e) {
+                throw new RuntimeException("Error inserting attachments", e);
+            }
+            return null;
+        });
+    }
+
     private Attachment insert(Attachment attachment) {
-        String sql = """
-                INSERT INTO attachments (clinical_history_id, nombre, tipo, ruta_archivo, tamano_bytes, fecha_carga, descripcion)
-                VALUES (?, ?, ?, ?, ?, ?, ?)
-                """;
-        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql,
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(INSERT_SQL,
                 Statement.RETURN_GENERATED_KEYS)) {
             setAttachmentParameters(pstmt, attachment);
             pstmt.executeUpdate();
@@ -216,6 +236,82 @@ public class SQLiteAttachmentRepository implements AttachmentRepository {
         return 0;
     }
 
+    @Override
+    public long countByRutaArchivo(String rutaArchivo) {
+        String sql = "SELECT COUNT(*) FROM attachments WHERE ruta_archivo = ?";
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, rutaArchivo);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error counting attachments by file", e);
+        }
+        return 0;
+    }
+
+    @Override
+    public List<String> findAllRutasArchivo() {
+        String sql = "SELECT DISTINCT ruta_archivo FROM attachments";
+        List<String> rutas = new ArrayList<>();
+        try (Statement stmt = dbConnection.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rutas.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding attachment files", e);
+        }
+        return rutas;
+    }
+
+    @Override
+    public int updateRutaArchivo(String oldRuta, String newRuta) {
+        String update = "UPDATE attachments SET ruta_archivo = ? WHERE ruta_archivo = ?";
+        String retire = "INSERT OR IGNORE INTO retired_attachment_files (ruta_archivo) VALUES (?)";
+        return dbConnection.inTransaction(conn -> {
+            try (PreparedStatement updateStmt = conn.prepareStatement(update);
+                    PreparedStatement retireStmt = conn.prepareStatement(retire)) {
+                updateStmt.setString(1, newRuta);
+                updateStmt.setString(2, oldRuta);
+                int updated = updateStmt.executeUpdate();
+                retireStmt.setString(1, oldRuta);
+                retireStmt.executeUpdate();
+                return updated;
+            } catch (SQLException e) {
+                throw new RuntimeException("Error updating attachment file", e);
+            }
+        });
+    }
+
+    @Override
+    public List<String> findRetiredRutasArchivo() {
+        String sql = "SELECT ruta_archivo FROM retired_attachment_files";
+        List<String> rutas = new ArrayList<>();
+        try (Statement stmt = dbConnection.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rutas.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding retired attachment files", e);
+        }
+        return rutas;
+    }
+
+    @Override
+    public void deleteRetiredRutaArchivo(String rutaArchivo) {
+        String sql = "DELETE FROM retired_attachment_files WHERE ruta_archivo = ?";
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, rutaArchivo);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting retired attachment file", e);
+        }
+    }
+
     private Attachment mapResultSetToAttachment(ResultSet rs) throws SQLException {
         Attachment attachment = new Attachment();
         attachment.setId(rs.getInt("id"));
@@ -0,0 +1,119 @@
+package com.cms.repository.sqlite;
+
+import com.cms.infra.DatabaseConnection;
+import com.cms.repository.ChangeLogRepository;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.OptionalLong;
+
+/**
+ * SQLite implementation of ChangeLogRepository. The change_log table and its
+ * triggers are created with the core tables in {@link DatabaseConnection} so
+ * no write can happen before they exist.
+ */
+public class SQLiteChangeLogRepository implements ChangeLogRepository {
+
+    private final DatabaseConnection dbConnection;
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    public SQLiteChangeLogRepository(DatabaseConnection dbConnection) {
+        this.dbConnection = dbConnection;
+        initializeTable();
+    }
+
+    private void initializeTable() {
+        String sql = """
+                CREATE TABLE IF NOT EXISTS export_watermarks (
+                    consumer TEXT PRIMARY KEY,
+                    seq INTEGER NOT NULL,
+                    exported_at TEXT
+                )
+                """;
+        try (Statement stmt = dbConnection.getConnection().createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error initializing export_watermarks table", e);
+        }
+    }
+
+    @Override
+    public long currentSequence() {
+        // The AUTOINCREMENT counter survives purges, unlike MAX(seq)
+        String sql = "SELECT COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'change_log'), 0)";
+        try (Statement stmt = dbConnection.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading change log sequence", e);
+        }
+    }
+
+    @Override
+    public boolean onlyChangedRow(long afterSequence, long upToSequence, String table, long rowId) {
+        String sql = """
+                SELECT COUNT(*), COALESCE(SUM(table_name = ? AND row_id = ?), 0)
+                FROM change_log WHERE seq > ? AND seq <= ?
+                """;
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            pstmt.setLong(2, rowId);
+            pstmt.setLong(3, afterSequence);
+            pstmt.setLong(4, upToSequence);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Purged entries would make the count fall short of the sequence range
+                return rs.next() && rs.getLong(1) == upToSequence - afterSequence && rs.getLong(2) == rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading change log", e);
+        }
+    }
+
+    @Override
+    public OptionalLong findWatermark(String consumer) {
+        String sql = "SELECT seq FROM export_watermarks WHERE consumer = ?";
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, consumer);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return OptionalLong.of(rs.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding export watermark", e);
+        }
+        return OptionalLong.empty();
+    }
+
+    @Override
+    public void saveWatermark(String consumer, long sequence) {
+        String sql = """
+                INSERT INTO export_watermarks (consumer, seq, exported_at) VALUES (?, ?, ?)
+                ON CONFLICT(consumer) DO UPDATE SET seq = excluded.seq, exported_at = excluded.exported_at
+                """;
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, consumer);
+            pstmt.setLong(2, sequence);
+            pstmt.setString(3, LocalDateTime.now().format(DATETIME_FORMATTER));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error saving export watermark", e);
+        }
+    }
+
+    @Override
+    public void purgeConsumed() {
+        // With no consumer registered, the first export of any consumer is a full one and needs no log
+        String sql = """
+                DELETE FROM change_log
+                WHERE NOT EXISTS (SELECT 1 FROM export_watermarks)
+                   OR seq <= (SELECT MIN(seq) FROM export_watermarks)
+                """;
+        try (Statement stmt = dbConnection.getConnection().createStatement()) {
+            stmt.executeUpdate(sql);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error purging change log", e);
+        }
+    }
+}
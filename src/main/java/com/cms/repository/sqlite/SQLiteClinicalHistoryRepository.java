@@ -1,6 +1,8 @@
 package com.cms.repository.sqlite;
 
 import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.domain.RowChange;
 import com.cms.infra.DatabaseConnection;
 import com.cms.repository.ClinicalHistoryRepository;
 
@@ -10,11 +12,17 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class SQLiteClinicalHistoryRepository implements ClinicalHistoryRepository {
 
     private final DatabaseConnection dbConnection;
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String INSERT_SQL = """
+            INSERT INTO clinical_histories (patient_id, fecha_consulta, motivo_consulta, antecedentes,
+            examen_fisico, diagnostico, conducta, observaciones, medico)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
 
     public SQLiteClinicalHistoryRepository(DatabaseConnection dbConnection) {
         this.dbConnection = dbConnection;
@@ -54,12 +62,7 @@ public class SQLiteClinicalHistoryRepository implements ClinicalHistoryRepositor
     }
 
     private ClinicalHistory insert(ClinicalHistory history) {
-        String sql = """
-                INSERT INTO clinical_histories (patient_id, fecha_consulta, motivo_consulta, antecedentes,
-                examen_fisico, diagnostico, conducta, observaciones, medico)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """;
-        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql,
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(INSERT_SQL,
                 Statement.RETURN_GENERATED_KEYS)) {
             setHistoryParameters(pstmt, history);
             pstmt.executeUpdate();
@@ -75,6 +78,31 @@ public class SQLiteClinicalHistoryRepository implements ClinicalHistoryRepositor
         }
     }
 
+    @Override
+    public void insertAll(List<ClinicalHistory> histories) {
+        dbConnection.inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL);
+                    Statement stmt = conn.createStatement()) {
+                for (ClinicalHistory history : histories) {
+                    setHistoryParameters(pstmt, history);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+
+                // The transaction holds the write lock, so the batch got consecutive ids ending at the last one
+                try (ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                    long firstId = (rs.next() ? rs.getLong(1) : 0) - histories.size() + 1;
+                    for (int i = 0; i < histories.size(); i++) {
+                        histories.get(i).setId((int) (firstId + i));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Error inserting clinical histories", e);
+            }
+            return null;
+        });
+    }
+
     private ClinicalHistory update(ClinicalHistory history) {
         String sql = """
                 UPDATE clinical_histories SET patient_id = ?, fecha_consulta = ?, motivo_consulta = ?,
@@ -222,6 +250,101 @@ public class SQLiteClinicalHistoryRepository implements ClinicalHistoryRepositor
         return histories;
     }
 
+    @Override
+    public Stream<ClinicalHistory> streamAllOrderByPatient() {
+        String sql = "SELECT * FROM clinical_histories ORDER BY patient_id, fecha_consulta DESC";
+        try {
+            Statement stmt = dbConnection.getConnection().createStatement();
+            stmt.setFetchSize(SQLiteStreams.FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery(sql);
+            return SQLiteStreams.stream(stmt, rs, this::mapResultSetToHistory);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming clinical histories", e);
+        }
+    }
+
+    @Override
+    public Stream<ClinicalHistory> streamWithPatientByFechaConsultaBetween(LocalDateTime inicio,
+            LocalDateTime fin) {
+        String sql = """
+                SELECT h.*, p.cedula AS p_cedula, p.nombre AS p_nombre, p.apellido AS p_apellido
+                FROM clinical_histories h
+                LEFT JOIN patients p ON p.id = h.patient_id
+                """ + rangeClause(inicio, fin) + " ORDER BY h.fecha_consulta DESC";
+        try {
+            PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql);
+            pstmt.setFetchSize(SQLiteStreams.FETCH_SIZE);
+            setRangeParameters(pstmt, inicio, fin);
+            ResultSet rs = pstmt.executeQuery();
+            return SQLiteStreams.stream(pstmt, rs, this::mapResultSetToHistoryWithPatient);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming clinical histories by date range", e);
+        }
+    }
+
+    @Override
+    public long countByFechaConsultaBetween(LocalDateTime inicio, LocalDateTime fin) {
+        String sql = "SELECT COUNT(*) FROM clinical_histories h " + rangeClause(inicio, fin);
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            setRangeParameters(pstmt, inicio, fin);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error counting clinical histories by date range", e);
+        }
+        return 0;
+    }
+
+    @Override
+    public Stream<ClinicalHistory> streamAllKeys() {
+        String sql = "SELECT id, patient_id, fecha_consulta, motivo_consulta FROM clinical_histories";
+        try {
+            Statement stmt = dbConnection.getConnection().createStatement();
+            stmt.setFetchSize(SQLiteStreams.FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery(sql);
+            return SQLiteStreams.stream(stmt, rs, r -> {
+                ClinicalHistory history = new ClinicalHistory();
+                history.setId(r.getInt(1));
+                history.setPatientId(r.getInt(2));
+                String fechaConsulta = r.getString(3);
+                if (fechaConsulta != null && !fechaConsulta.isEmpty()) {
+                    history.setFechaConsulta(LocalDateTime.parse(fechaConsulta, DATETIME_FORMATTER));
+                }
+                history.setMotivoConsulta(r.getString(4));
+                return history;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming clinical history keys", e);
+        }
+    }
+
+    private String rangeClause(LocalDateTime inicio, LocalDateTime fin) {
+        if (inicio != null && fin != null) {
+            return "WHERE h.fecha_consulta >= ? AND h.fecha_consulta <= ?";
+        }
+        if (inicio != null) {
+            return "WHERE h.fecha_consulta >= ?";
+        }
+        if (fin != null) {
+            return "WHERE h.fecha_consulta <= ?";
+        }
+        return "WHERE h.fecha_consulta IS NOT NULL";
+    }
+
+    private void setRangeParameters(PreparedStatement pstmt, LocalDateTime inicio, LocalDateTime fin)
+            throws SQLException {
+        int index = 1;
+        if (inicio != null) {
+            pstmt.setString(index++, inicio.format(DATETIME_FORMATTER));
+        }
+        if (fin != null) {
+            pstmt.setString(index, fin.format(DATETIME_FORMATTER));
+        }
+    }
+
     @Override
     public void delete(Integer id) {
         String sql = "DELETE FROM clinical_histories WHERE id = ?";
@@ -249,6 +372,30 @@ public class SQLiteClinicalHistoryRepository implements ClinicalHistoryRepositor
         return 0;
     }
 
+    @Override
+    public Stream<RowChange<ClinicalHistory>> streamChanges(long afterSequence, long upToSequence) {
+        String sql = """
+                SELECT c.row_id AS change_row_id, h.*, p.cedula AS p_cedula, p.nombre AS p_nombre,
+                p.apellido AS p_apellido
+                FROM (SELECT DISTINCT row_id FROM change_log
+                      WHERE table_name = 'clinical_histories' AND seq > ? AND seq <= ?) c
+                LEFT JOIN clinical_histories h ON h.id = c.row_id
+                LEFT JOIN patients p ON p.id = h.patient_id
+                ORDER BY c.row_id
+                """;
+        try {
+            PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql);
+            pstmt.setFetchSize(SQLiteStreams.FETCH_SIZE);
+            pstmt.setLong(1, afterSequence);
+            pstmt.setLong(2, upToSequence);
+            ResultSet rs = pstmt.executeQuery();
+            return SQLiteStreams.stream(pstmt, rs, row -> new RowChange<>(row.getInt("change_row_id"),
+                    row.getObject("id") != null ? mapResultSetToHistoryWithPatient(row) : null));
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming clinical history changes", e);
+        }
+    }
+
     @Override
     public long count() {
         String sql = "SELECT COUNT(*) FROM clinical_histories";
@@ -283,4 +430,15 @@ public class SQLiteClinicalHistoryRepository implements ClinicalHistoryRepositor
 
         return history;
     }
+
+    private ClinicalHistory mapResultSetToHistoryWithPatient(ResultSet rs) throws SQLException {
+        ClinicalHistory history = mapResultSetToHistory(rs);
+        String cedula = rs.getString("p_cedula");
+        if (cedula != null) {
+            Patient patient = new Patient(cedula, rs.getString("p_nombre"), rs.getString("p_apellido"));
+            patient.setId(history.getPatientId());
+            history.setPatient(patient);
+        }
+        return history;
+    }
 }
@@ -0,0 +1,168 @@
+package com.cms.repository.sqlite;
+
+import com.cms.domain.ImportJob;
+import com.cms.infra.DatabaseConnection;
+import com.cms.repository.ImportJobRepository;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+/**
+ * SQLite implementation of ImportJobRepository.
+ */
+public class SQLiteImportJobRepository implements ImportJobRepository {
+
+    private final DatabaseConnection dbConnection;
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    public SQLiteImportJobRepository(DatabaseConnection dbConnection) {
+        this.dbConnection = dbConnection;
+        initializeTable();
+    }
+
+    private void initializeTable() {
+        String sql = """
+                CREATE TABLE IF NOT EXISTS import_jobs (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    kind TEXT NOT NULL,
+                    file_path TEXT NOT NULL,
+                    file_size INTEGER NOT NULL,
+                    file_modified INTEGER NOT NULL,
+                    byte_offset INTEGER NOT NULL DEFAULT 0,
+                    next_line INTEGER NOT NULL DEFAULT 0,
+                    success_count INTEGER NOT NULL DEFAULT 0,
+                    updated_count INTEGER NOT NULL DEFAULT 0,
+                    skipped_count INTEGER NOT NULL DEFAULT 0,
+                    error_count INTEGER NOT NULL DEFAULT 0,
+                    status TEXT NOT NULL,
+                    started_at TEXT,
+                    updated_at TEXT
+                )
+                """;
+        try (Statement stmt = dbConnection.getConnection().createStatement()) {
+            stmt.execute(sql);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_import_jobs_file ON import_jobs(file_path, status)");
+        } catch (SQLException e) {
+            throw new RuntimeException("Error initializing import_jobs table", e);
+        }
+    }
+
+    @Override
+    public ImportJob save(ImportJob job) {
+        job.setUpdatedAt(LocalDateTime.now());
+        if (job.getId() == null) {
+            return insert(job);
+        }
+        update(job);
+        return job;
+    }
+
+    private ImportJob insert(ImportJob job) {
+        String sql = """
+                INSERT INTO import_jobs (kind, file_path, file_size, file_modified, byte_offset, next_line,
+                success_count, updated_count, skipped_count, error_count, status, started_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql,
+                Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, job.getKind());
+            pstmt.setString(2, job.getFilePath());
+            pstmt.setLong(3, job.getFileSize());
+            pstmt.setLong(4, job.getFileModified());
+            setProgressParameters(pstmt, 5, job);
+            pstmt.setString(12, job.getStartedAt() != null ? job.getStartedAt().format(DATETIME_FORMATTER) : null);
+            pstmt.setString(13, job.getUpdatedAt().format(DATETIME_FORMATTER));
+            pstmt.executeUpdate();
+
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    job.setId(generatedKeys.getInt(1));
+                }
+            }
+            return job;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error inserting import job", e);
+        }
+    }
+
+    private void update(ImportJob job) {
+        String sql = """
+                UPDATE import_jobs SET byte_offset = ?, next_line = ?, success_count = ?, updated_count = ?,
+                skipped_count = ?, error_count = ?, status = ?, updated_at = ?
+                WHERE id = ?
+                """;
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            setProgressParameters(pstmt, 1, job);
+            pstmt.setString(8, job.getUpdatedAt().format(DATETIME_FORMATTER));
+            pstmt.setInt(9, job.getId());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating import job", e);
+        }
+    }
+
+    @Override
+    public Optional<ImportJob> findRunning(String kind, String filePath) {
+        String sql = """
+                SELECT * FROM import_jobs WHERE kind = ? AND file_path = ? AND status = ?
+                ORDER BY id DESC LIMIT 1
+                """;
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, kind);
+            pstmt.setString(2, filePath);
+            pstmt.setString(3, ImportJob.RUNNING);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToJob(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error finding import job", e);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void checkpoint(ImportJob job, Runnable batch) {
+        dbConnection.inTransaction(conn -> {
+            batch.run();
+            save(job);
+            return null;
+        });
+    }
+
+    private void setProgressParameters(PreparedStatement pstmt, int index, ImportJob job) throws SQLException {
+        pstmt.setLong(index++, job.getByteOffset());
+        pstmt.setLong(index++, job.getNextLine());
+        pstmt.setInt(index++, job.getSuccessCount());
+        pstmt.setInt(index++, job.getUpdatedCount());
+        pstmt.setInt(index++, job.getSkippedCount());
+        pstmt.setInt(index++, job.getErrorCount());
+        pstmt.setString(index, job.getStatus());
+    }
+
+    private ImportJob mapResultSetToJob(ResultSet rs) throws SQLException {
+        ImportJob job = new ImportJob(rs.getString("kind"), rs.getString("file_path"),
+                rs.getLong("file_size"), rs.getLong("file_modified"));
+        job.setId(rs.getInt("id"));
+        job.setByteOffset(rs.getLong("byte_offset"));
+        job.setNextLine(rs.getLong("next_line"));
+        job.setSuccessCount(rs.getInt("success_count"));
+        job.setUpdatedCount(rs.getInt("updated_count"));
+        job.setSkippedCount(rs.getInt("skipped_count"));
+        job.setErrorCount(rs.getInt("error_count"));
+        job.setStatus(rs.getString("status"));
+
+        String startedAt = rs.getString("started_at");
+        if (startedAt != null) {
+            job.setStartedAt(LocalDateTime.parse(startedAt, DATETIME_FORMATTER));
+        }
+        String updatedAt = rs.getString("updated_at");
+        if (updatedAt != null) {
+            job.setUpdatedAt(LocalDateTime.parse(updatedAt, DATETIME_FORMATTER));
+        }
+        return job;
+    }
+}
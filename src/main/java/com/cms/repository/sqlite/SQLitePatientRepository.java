@@ -1,17 +1,33 @@
 package com.cms.repository.sqlite;
 
 import com.cms.domain.Patient;
+import com.cms.domain.RowChange;
 import com.cms.infra.DatabaseConnection;
 import com.cms.repository.PatientRepository;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 public class SQLitePatientRepository implements PatientRepository {
 
+    private static final String INSERT_SQL = """
+            INSERT INTO patients (cedula, nombre, apellido, fecha_nacimiento, sexo, direccion, telefono, email, fecha_registro)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String UPSERT_SQL = INSERT_SQL + """
+            ON CONFLICT(cedula) DO UPDATE SET nombre = excluded.nombre, apellido = excluded.apellido,
+            fecha_nacimiento = excluded.fecha_nacimiento, sexo = excluded.sexo, direccion = excluded.direccion,
+            telefono = excluded.telefono, email = excluded.email
+            """;
+
     private final DatabaseConnection dbConnection;
 
     public SQLitePatientRepository(DatabaseConnection dbConnection) {
@@ -51,11 +67,7 @@ public class SQLitePatientRepository implements PatientRepository {
     }
 
     private Patient insert(Patient patient) {
-        String sql = """
-                INSERT INTO patients (cedula, nombre, apellido, fecha_nacimiento, sexo, direccion, telefono, email, fecha_registro)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """;
-        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql,
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(INSERT_SQL,
                 Statement.RETURN_GENERATED_KEYS)) {
             setPatientParameters(pstmt, patient);
             pstmt.executeUpdate();
@@ -71,6 +83,50 @@ public class SQLitePatientRepository implements PatientRepository {
         }
     }
 
+    @Override
+    public void insertAll(List<Patient> patients, BiConsumer<Integer, RuntimeException> onRejected) {
+        // Joins a transaction the caller already opened, e.g. an import checkpoint
+        dbConnection.inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < patients.size(); i++) {
+                    Patient patient = patients.get(i);
+                    setPatientParameters(pstmt, patient);
+                    try {
+                        pstmt.executeUpdate();
+                    } catch (SQLException e) {
+                        // A failed statement is undone on its own; the transaction goes on
+                        onRejected.accept(i, new RuntimeException("Error inserting patient", e));
+                        continue;
+                    }
+                    try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            patient.setId(generatedKeys.getInt(1));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Error inserting patients", e);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void upsertAll(List<Patient> patients) {
+        dbConnection.inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
+                for (Patient patient : patients) {
+                    setPatientParameters(pstmt, patient);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            } catch (SQLException e) {
+                throw new RuntimeException("Error upserting patients", e);
+            }
+            return null;
+        });
+    }
+
     private Patient update(Patient patient) {
         String sql = """
                 UPDATE patients SET cedula = ?, nombre = ?, apellido = ?, fecha_nacimiento = ?,
@@ -213,6 +269,54 @@ public class SQLitePatientRepository implements PatientRepository {
         return false;
     }
 
+    @Override
+    public boolean existsByCedulaIgnoreCase(String cedula, Integer excludeId) {
+        // A cedula has at most one letter, so its upper and lower case forms cover
+        // every case variant while the lookup still uses the unique index
+        String sql = "SELECT 1 FROM patients WHERE cedula IN (?, ?) AND (? IS NULL OR id <> ?) LIMIT 1";
+        try (PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql)) {
+            pstmt.setString(1, cedula.toUpperCase());
+            pstmt.setString(2, cedula.toLowerCase());
+            pstmt.setObject(3, excludeId);
+            pstmt.setObject(4, excludeId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error checking if patient exists", e);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findAllIdsByCedula() {
+        String sql = "SELECT cedula, id FROM patients";
+        Map<String, Integer> ids = new HashMap<>();
+        try (Statement stmt = dbConnection.getConnection().createStatement()) {
+            stmt.setFetchSize(SQLiteStreams.FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    ids.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error loading patient ids by cedula", e);
+        }
+        return ids;
+    }
+
+    @Override
+    public Stream<Patient> streamAll() {
+        String sql = "SELECT * FROM patients ORDER BY apellido, nombre";
+        try {
+            Statement stmt = dbConnection.getConnection().createStatement();
+            stmt.setFetchSize(SQLiteStreams.FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery(sql);
+            return SQLiteStreams.stream(stmt, rs, this::mapResultSetToPatient);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming patients", e);
+        }
+    }
+
     @Override
     public void delete(Integer id) {
         String sql = "DELETE FROM patients WHERE id = ?";
@@ -224,6 +328,28 @@ public class SQLitePatientRepository implements PatientRepository {
         }
     }
 
+    @Override
+    public Stream<RowChange<Patient>> streamChanges(long afterSequence, long upToSequence) {
+        String sql = """
+                SELECT c.row_id AS change_row_id, p.*
+                FROM (SELECT DISTINCT row_id FROM change_log
+                      WHERE table_name = 'patients' AND seq > ? AND seq <= ?) c
+                LEFT JOIN patients p ON p.id = c.row_id
+                ORDER BY c.row_id
+                """;
+        try {
+            PreparedStatement pstmt = dbConnection.getConnection().prepareStatement(sql);
+            pstmt.setFetchSize(SQLiteStreams.FETCH_SIZE);
+            pstmt.setLong(1, afterSequence);
+            pstmt.setLong(2, upToSequence);
+            ResultSet rs = pstmt.executeQuery();
+            return SQLiteStreams.stream(pstmt, rs, row -> new RowChange<>(row.getInt("change_row_id"),
+                    row.getObject("id") != null ? mapResultSetToPatient(row) : null));
+        } catch (SQLException e) {
+            throw new RuntimeException("Error streaming patient changes", e);
+        }
+    }
+
     @Override
     public long count() {
         String sql = "SELECT COUNT(*) FROM patients";
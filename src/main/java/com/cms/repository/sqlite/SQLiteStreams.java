@@ -0,0 +1,57 @@
+package com.cms.repository.sqlite;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Adapts an open ResultSet to a lazy Stream so large result sets can be
+ * consumed row by row. The returned stream owns the statement and must be
+ * closed by the caller (try-with-resources).
+ */
+final class SQLiteStreams {
+
+    static final int FETCH_SIZE = 500;
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private SQLiteStreams() {
+    }
+
+    static <T> Stream<T> stream(Statement stmt, ResultSet rs, RowMapper<T> mapper) {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Error streaming result set", e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> close(stmt, rs));
+    }
+
+    private static void close(Statement stmt, ResultSet rs) {
+        try {
+            rs.close();
+            stmt.close();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error closing streamed result set", e);
+        }
+    }
+}
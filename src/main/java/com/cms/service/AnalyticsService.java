@@ -0,0 +1,257 @@
+package com.cms.service;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.infra.AppLogger;
+import com.cms.infra.DatabaseConnection;
+import com.cms.infra.EventBus;
+import com.cms.presenter.events.HistoryDeletedEvent;
+import com.cms.presenter.events.HistorySavedEvent;
+import com.cms.presenter.events.PatientDeletedEvent;
+import com.cms.presenter.events.PatientSavedEvent;
+import com.cms.repository.ChangeLogRepository;
+import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.repository.PatientRepository;
+import com.cms.service.analytics.ConsultationFilter;
+import com.cms.service.analytics.ConsultationSnapshot;
+import com.cms.service.analytics.Dimension;
+import com.cms.service.analytics.PivotTable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Answers aggregate questions about consultations from an in-memory
+ * {@link ConsultationSnapshot} instead of querying SQLite on every call.
+ *
+ * <p>The snapshot is loaded on first use and then kept current from the
+ * patient and history events. Every write to patients and clinical_histories
+ * advances the change log, so the snapshot records the log sequence it
+ * reflects. An event is applied only when the entries since that sequence
+ * are all its own row; writes that publish no event (imports, restores)
+ * leave other entries and force a full reload on the next query. Writes to
+ * other tables do not touch the log and keep the snapshot.
+ */
+public class AnalyticsService {
+
+    private static final String PATIENTS = "patients";
+    private static final String HISTORIES = "clinical_histories";
+
+    private final PatientRepository patientRepository;
+    private final ClinicalHistoryRepository historyRepository;
+    private final ChangeLogRepository changeLogRepository;
+    private final DatabaseConnection dbConnection;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private ConsultationSnapshot snapshot;
+    private int loadedEpoch;
+    private long loadedSequence;
+
+    public AnalyticsService(PatientRepository patientRepository,
+            ClinicalHistoryRepository historyRepository,
+            ChangeLogRepository changeLogRepository,
+            DatabaseConnection dbConnection,
+            EventBus eventBus) {
+        this.patientRepository = patientRepository;
+        this.historyRepository = historyRepository;
+        this.changeLogRepository = changeLogRepository;
+        this.dbConnection = dbConnection;
+
+        eventBus.subscribe(PatientSavedEvent.class, e -> apply(PATIENTS, e.getPatient().getId(),
+                s -> s.putPatient(e.getPatient())));
+        eventBus.subscribe(PatientDeletedEvent.class, e -> apply(PATIENTS, e.getPatientId(),
+                s -> s.removePatient(e.getPatientId())));
+        eventBus.subscribe(HistorySavedEvent.class, e -> apply(HISTORIES, e.getHistory().getId(),
+                s -> putHistory(s, e.getHistory())));
+        eventBus.subscribe(HistoryDeletedEvent.class, e -> apply(HISTORIES, e.getHistoryId(),
+                s -> s.removeHistory(e.getHistoryId())));
+    }
+
+    /**
+     * Discards the snapshot and reloads it from the database.
+     */
+    public void refresh() {
+        lock.writeLock().lock();
+        try {
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long count(ConsultationFilter filter) {
+        return query(s -> s.count(s.select(filter)));
+    }
+
+    /**
+     * Consultations per value of a labelled dimension (médico, diagnóstico,
+     * sexo or age band), most frequent first. Consultations without a value
+     * are counted under the null key.
+     */
+    public Map<String, Long> countBy(Dimension dimension, ConsultationFilter filter) {
+        if (dimension == Dimension.MONTH || dimension == Dimension.PATIENT) {
+            throw new IllegalArgumentException("Not a labelled dimension: " + dimension);
+        }
+        return query(s -> {
+            long[] counts = s.countBy(dimension, s.select(filter));
+            return sortedLabels(s, dimension, counts);
+        });
+    }
+
+    /**
+     * Consultations per calendar month; index 1 is January and index 0 counts
+     * consultations without a date.
+     */
+    public long[] countByMonth(ConsultationFilter filter) {
+        return query(s -> s.countBy(Dimension.MONTH, s.select(filter)));
+    }
+
+    /**
+     * The patients with most consultations, as patient id to count, most
+     * frequent first.
+     */
+    public Map<Integer, Long> topPatients(int limit, ConsultationFilter filter) {
+        return query(s -> {
+            long[] counts = s.countBy(Dimension.PATIENT, s.select(filter));
+            PriorityQueue<Integer> top = new PriorityQueue<>(
+                    (a, b) -> Long.compare(counts[a], counts[b]));
+            for (int row = 0; row < counts.length; row++) {
+                if (counts[row] == 0) {
+                    continue;
+                }
+                top.add(row);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            List<Integer> rows = new ArrayList<>(top);
+            rows.sort((a, b) -> Long.compare(counts[b], counts[a]));
+            Map<Integer, Long> result = new LinkedHashMap<>();
+            for (int row : rows) {
+                result.put(s.patientIdAt(row), counts[row]);
+            }
+            return result;
+        });
+    }
+
+    public PivotTable pivot(ConsultationFilter filter, Dimension... dimensions) {
+        return query(s -> s.pivot(s.select(filter), dimensions));
+    }
+
+    /**
+     * Consultations in the period by age band at the consultation date, sexo
+     * and diagnóstico. Bounds are from inclusive, to exclusive; either may be
+     * null.
+     */
+    public PivotTable cohorts(LocalDateTime from, LocalDateTime to) {
+        return pivot(ConsultationFilter.between(from, to),
+                Dimension.AGE_BAND, Dimension.SEXO, Dimension.DIAGNOSTICO);
+    }
+
+    public long countPatients() {
+        return query(ConsultationSnapshot::countPatients);
+    }
+
+    public Map<String, Long> countPatientsBySexo() {
+        return query(s -> sortedLabels(s, Dimension.SEXO, s.countPatientsBySexo()));
+    }
+
+    private Map<String, Long> sortedLabels(ConsultationSnapshot s, Dimension dimension, long[] counts) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 0; key < counts.length; key++) {
+            if (counts[key] > 0) {
+                keys.add(key);
+            }
+        }
+        keys.sort((a, b) -> Long.compare(counts[b], counts[a]));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int key : keys) {
+            result.put(s.label(dimension, key), counts[key]);
+        }
+        return result;
+    }
+
+    private <T> T query(Function<ConsultationSnapshot, T> reader) {
+        lock.readLock().lock();
+        try {
+            if (isCurrent()) {
+                return reader.apply(snapshot);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!isCurrent()) {
+                load();
+            }
+            return reader.apply(snapshot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isCurrent() {
+        return snapshot != null && dbConnection.getConnectionEpoch() == loadedEpoch
+                && changeLogRepository.currentSequence() == loadedSequence;
+    }
+
+    private void apply(String table, Integer rowId, Consumer<ConsultationSnapshot> change) {
+        lock.writeLock().lock();
+        try {
+            if (snapshot == null) {
+                // Nothing loaded yet; the first query reads the current state
+                return;
+            }
+            long sequence = changeLogRepository.currentSequence();
+            if (rowId != null && dbConnection.getConnectionEpoch() == loadedEpoch
+                    && changeLogRepository.onlyChangedRow(loadedSequence, sequence, table, rowId)) {
+                change.accept(snapshot);
+                loadedSequence = sequence;
+            } else {
+                // Other writes happened since the snapshot; the next query reloads it
+                snapshot = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putHistory(ConsultationSnapshot s, ClinicalHistory history) {
+        if (!s.hasPatient(history.getPatientId())) {
+            patientRepository.findById(history.getPatientId()).ifPresent(s::putPatient);
+        }
+        s.putHistory(history);
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        int epoch = dbConnection.getConnectionEpoch();
+        long sequence = changeLogRepository.currentSequence();
+        ConsultationSnapshot fresh = new ConsultationSnapshot();
+
+        try (Stream<Patient> patients = patientRepository.streamAll()) {
+            patients.forEach(fresh::putPatient);
+        }
+        try (Stream<ClinicalHistory> histories = historyRepository.streamAllOrderByPatient()) {
+            histories.forEach(fresh::putHistory);
+        }
+
+        snapshot = fresh;
+        loadedEpoch = epoch;
+        loadedSequence = sequence;
+        AppLogger.info("Analytics snapshot loaded with %d consultations in %d ms", fresh.size(),
+                System.currentTimeMillis() - start);
+    }
+}
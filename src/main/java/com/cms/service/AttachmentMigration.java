@@ -0,0 +1,173 @@
+package com.cms.service;
+
+import com.cms.infra.AppLogger;
+import com.cms.repository.AttachmentRepository;
+import com.cms.util.AttachmentStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Moves attachment files from the old per-consultation folders
+ * ({@code attachments/<consultation id>/<file>}) into the
+ * {@link AttachmentStore}, on a low-priority thread and one file at a time.
+ * Each file is copied into the store first and then its rows are pointed at
+ * the stored object, so an interrupted migration loses nothing and simply
+ * continues on the next start. The old file stays until that next start,
+ * since windows opened before the move may still be showing it.
+ *
+ * <p>Each run also deletes store objects no attachment uses any more, such as
+ * those of a patient deleted together with its consultations. Backups and
+ * restores never run in the middle of any of this.
+ */
+public class AttachmentMigration {
+
+    private static final Duration STALE_TEMP_AGE = Duration.ofDays(1);
+    private static final Duration UNREFERENCED_OBJECT_AGE = Duration.ofDays(1);
+
+    private final AttachmentRepository attachmentRepository;
+    private final BackupService backupService;
+    private final AttachmentStore store;
+    private Thread thread;
+
+    public AttachmentMigration(AttachmentRepository attachmentRepository, BackupService backupService) {
+        this(attachmentRepository, backupService, new AttachmentStore());
+    }
+
+    public AttachmentMigration(AttachmentRepository attachmentRepository, BackupService backupService,
+            AttachmentStore store) {
+        this.attachmentRepository = attachmentRepository;
+        this.backupService = backupService;
+        this.store = store;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "attachment-migration");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Deletes the files retired by earlier runs, migrates every attachment
+     * file still outside the store and collects unreferenced objects. Returns
+     * the number of files moved.
+     */
+    public int run() {
+        try {
+            store.deleteStaleTemporaryFiles(STALE_TEMP_AGE);
+        } catch (IOException e) {
+            AppLogger.warn("Could not remove temporary attachment files", e);
+        }
+        backupService.runExclusive(this::deleteRetiredFiles);
+        int moved = migrateLegacyFiles();
+        backupService.runExclusive(this::deleteUnreferencedObjects);
+        return moved;
+    }
+
+    private int migrateLegacyFiles() {
+        List<String> legacy = attachmentRepository.findAllRutasArchivo().stream()
+                .filter(ruta -> !AttachmentStore.isObjectPath(Paths.get(ruta)))
+                .toList();
+        if (legacy.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        Set<Path> objects = new HashSet<>();
+        int moved = 0;
+        int missing = 0;
+        for (String ruta : legacy) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            Path file = Paths.get(ruta);
+            if (!Files.isRegularFile(file)) {
+                missing++;
+                continue;
+            }
+            Path[] object = new Path[1];
+            backupService.runExclusive(() -> object[0] = migrate(ruta, file));
+            if (object[0] != null) {
+                objects.add(object[0]);
+                moved++;
+            }
+        }
+        AppLogger.info("Attachment migration: %d files moved into %d stored objects in %d ms, %d missing",
+                moved, objects.size(), System.currentTimeMillis() - start, missing);
+        return moved;
+    }
+
+    private Path migrate(String ruta, Path file) {
+        try {
+            Path object = store.put(file).toAbsolutePath();
+            attachmentRepository.updateRutaArchivo(ruta, object.toString());
+            return object;
+        } catch (IOException | RuntimeException e) {
+            AppLogger.warn("Could not move attachment into the store: " + ruta, e);
+            return null;
+        }
+    }
+
+    private void deleteRetiredFiles() {
+        int deleted = 0;
+        for (String ruta : attachmentRepository.findRetiredRutasArchivo()) {
+            try {
+                // A restore may have brought back rows that still use the old file
+                if (attachmentRepository.countByRutaArchivo(ruta) == 0) {
+                    Path file = Paths.get(ruta);
+                    if (Files.deleteIfExists(file)) {
+                        deleted++;
+                    }
+                    deleteIfEmpty(file.getParent());
+                }
+                attachmentRepository.deleteRetiredRutaArchivo(ruta);
+            } catch (IOException | RuntimeException e) {
+                AppLogger.warn("Could not delete migrated attachment file: " + ruta, e);
+            }
+        }
+        if (deleted > 0) {
+            AppLogger.info("Attachment migration: %d migrated files deleted", deleted);
+        }
+    }
+
+    private void deleteUnreferencedObjects() {
+        Set<String> referenced = new HashSet<>();
+        for (String ruta : attachmentRepository.findAllRutasArchivo()) {
+            Path path = Paths.get(ruta);
+            if (AttachmentStore.isObjectPath(path)) {
+                referenced.add(AttachmentStore.hashOf(path));
+            }
+        }
+        try {
+            int deleted = store.deleteUnreferenced(referenced, UNREFERENCED_OBJECT_AGE);
+            if (deleted > 0) {
+                AppLogger.info("Attachment store: %d unreferenced objects deleted", deleted);
+            }
+        } catch (IOException e) {
+            AppLogger.warn("Could not delete unreferenced attachment objects", e);
+        }
+    }
+
+    private static void deleteIfEmpty(Path directory) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            if (entries.findAny().isPresent()) {
+                return;
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+}
@@ -23,9 +23,11 @@ public class AttachmentService {
 
     private final AttachmentRepository attachmentRepository;
     private final ClipboardImageHandler clipboardHandler;
+    private final ImageService imageService;
 
-    public AttachmentService(AttachmentRepository attachmentRepository) {
+    public AttachmentService(AttachmentRepository attachmentRepository, ImageService imageService) {
         this.attachmentRepository = attachmentRepository;
+        this.imageService = imageService;
         this.clipboardHandler = new ClipboardImageHandler();
     }
 
@@ -33,8 +35,8 @@ public class AttachmentService {
         validateFile(file);
         validateTotalSize(historyId, file.length());
 
-        File destFile = clipboardHandler.copyFileToAttachments(
-                file.getAbsolutePath(), historyId).orElseThrow(() -> new BusinessException("Error al copiar archivo"));
+        File destFile = clipboardHandler.copyFileToAttachments(file.getAbsolutePath())
+                .orElseThrow(() -> new BusinessException("Error al copiar archivo"));
 
         Attachment attachment = new Attachment();
         attachment.setClinicalHistoryId(historyId);
@@ -55,14 +57,14 @@ public class AttachmentService {
         BufferedImage image = clipboardHandler.getImageFromClipboard()
                 .orElseThrow(() -> new BusinessException("No se pudo obtener la imagen del portapapeles"));
 
-        File savedFile = clipboardHandler.saveImageToFile(image, historyId)
+        File savedFile = clipboardHandler.saveImageToFile(image)
                 .orElseThrow(() -> new BusinessException("Error al guardar imagen"));
 
         validateTotalSize(historyId, savedFile.length());
 
         Attachment attachment = new Attachment();
         attachment.setClinicalHistoryId(historyId);
-        attachment.setNombre(savedFile.getName());
+        attachment.setNombre(clipboardHandler.newClipboardImageName());
         attachment.setRutaArchivo(savedFile.getAbsolutePath());
         attachment.setTipo("image/png");
         attachment.setTamanoBytes(savedFile.length());
@@ -75,8 +77,11 @@ public class AttachmentService {
         Attachment attachment = attachmentRepository.findById(attachmentId)
                 .orElseThrow(() -> new NotFoundException("Adjunto", attachmentId));
 
-        clipboardHandler.deleteAttachmentFile(attachment.getRutaArchivo());
         attachmentRepository.delete(attachmentId);
+        // Files still in the old per-consultation folders may be shared after a patient restore
+        if (attachmentRepository.countByRutaArchivo(attachment.getRutaArchivo()) == 0) {
+            clipboardHandler.deleteAttachmentFile(attachment.getRutaArchivo());
+        }
     }
 
     public List<Attachment> getAttachmentsByHistory(Integer historyId) {
@@ -103,6 +108,19 @@ public class AttachmentService {
         }
     }
 
+    /**
+     * The attachment decoded only as large as needed to fit the given size,
+     * which is all a viewer needs and a fraction of the memory of the full photo.
+     */
+    public BufferedImage getAttachmentImage(Integer attachmentId, int maxWidth, int maxHeight) {
+        File file = getAttachmentFile(attachmentId);
+        try {
+            return imageService.getImage(file, maxWidth, maxHeight);
+        } catch (IOException e) {
+            throw new BusinessException("Error al leer imagen: " + e.getMessage());
+        }
+    }
+
     public void validateFile(File file) {
         if (file == null || !file.exists()) {
             throw new BusinessException("El archivo no existe");
@@ -0,0 +1,136 @@
+package com.cms.service;
+
+import com.cms.infra.AppLogger;
+import com.cms.service.backup.BackupSchedule;
+import com.cms.service.backup.BackupThrottle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Takes a backup once per schedule window while nobody is using the
+ * application. The backup runs on low-priority threads under a
+ * {@link BackupThrottle}, and pauses in place as soon as the user comes back,
+ * picking up from the same file once they have been idle again for a while.
+ * A backup or restore the user starts meanwhile ends the pause, since it has
+ * to wait for this backup to finish.
+ */
+public class BackupScheduler {
+
+    private static final String SCHEDULE_FILE = "backups/schedule.properties";
+    private static final long CHECK_INTERVAL_MINUTES = 1;
+    private static final long IDLE_BEFORE_START_MS = 5 * 60 * 1000;
+    private static final long IDLE_BEFORE_RESUME_MS = 30 * 1000;
+
+    private final BackupService backupService;
+    private final Path scheduleFile;
+    private volatile BackupSchedule schedule;
+    private ScheduledExecutorService executor;
+    private LongSupplier lastActivity;
+
+    public BackupScheduler(BackupService backupService) {
+        this.backupService = backupService;
+        this.scheduleFile = Paths.get(SCHEDULE_FILE);
+        this.schedule = loadSchedule();
+    }
+
+    /**
+     * Starts checking the schedule. {@code lastActivity} gives the time, in
+     * epoch milliseconds, of the user's last interaction with the application.
+     */
+    public synchronized void start(LongSupplier lastActivity) {
+        if (executor != null) {
+            return;
+        }
+        this.lastActivity = lastActivity;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "backup-scheduler");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MINUTES, CHECK_INTERVAL_MINUTES,
+                TimeUnit.MINUTES);
+        AppLogger.info("Backup scheduler started, schedule " + describe(schedule));
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public BackupSchedule getSchedule() {
+        return schedule;
+    }
+
+    public void updateSchedule(BackupSchedule schedule) throws IOException {
+        schedule.save(scheduleFile);
+        this.schedule = schedule;
+        AppLogger.info("Backup schedule changed to " + describe(schedule));
+    }
+
+    private void check() {
+        try {
+            BackupSchedule current = schedule;
+            LocalDateTime now = LocalDateTime.now();
+            BackupSchedule.Window window = current.windowAt(now);
+            if (!current.enabled() || window == null || idleMillis() < IDLE_BEFORE_START_MS) {
+                return;
+            }
+            if (!isDue(window.startOf(now))) {
+                return;
+            }
+            runBackup(current);
+        } catch (RuntimeException e) {
+            AppLogger.error("Scheduled backup check failed", e);
+        }
+    }
+
+    private boolean isDue(LocalDateTime windowStart) {
+        List<BackupService.BackupInfo> backups = backupService.listBackups();
+        return backups.stream().noneMatch(b -> !b.createdAt().isBefore(windowStart));
+    }
+
+    private void runBackup(BackupSchedule current) {
+        long start = System.currentTimeMillis();
+        BackupThrottle throttle = new BackupThrottle(current.maxBytesPerSecond(),
+                () -> idleMillis() < IDLE_BEFORE_RESUME_MS && !backupService.isForegroundWaiting());
+        try {
+            AppLogger.info("Starting scheduled backup");
+            File backup = backupService.createBackup(throttle);
+            AppLogger.info("Scheduled backup %s finished in %d s%s", backup.getName(),
+                    (System.currentTimeMillis() - start) / 1000,
+                    throttle.wasPaused() ? " (paused for user activity)" : "");
+        } catch (IOException e) {
+            AppLogger.error("Scheduled backup failed", e);
+        }
+    }
+
+    private long idleMillis() {
+        return System.currentTimeMillis() - lastActivity.getAsLong();
+    }
+
+    private BackupSchedule loadSchedule() {
+        try {
+            return BackupSchedule.load(scheduleFile);
+        } catch (IOException e) {
+            AppLogger.warn("Could not read backup schedule, using defaults", e);
+            return BackupSchedule.DEFAULT;
+        }
+    }
+
+    private static String describe(BackupSchedule schedule) {
+        return (schedule.enabled() ? "enabled" : "disabled") + " [" + schedule.windowsText() + "] at "
+                + schedule.maxBytesPerSecond() / 1024 + " KB/s";
+    }
+}
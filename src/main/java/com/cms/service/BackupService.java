@@ -2,74 +2,179 @@ package com.cms.service;
 
 import com.cms.infra.AppLogger;
 import com.cms.infra.DatabaseConnection;
+import com.cms.infra.EventBus;
+import com.cms.presenter.events.HistorySavedEvent;
+import com.cms.presenter.events.PatientSavedEvent;
+import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.repository.PatientRepository;
+import com.cms.service.backup.AtomicFiles;
+import com.cms.service.backup.BackupManifest;
+import com.cms.service.backup.IoThrottle;
+import com.cms.service.backup.ObjectStore;
+import com.cms.service.backup.ParallelZipWriter;
+import com.cms.service.backup.PatientRestorer;
+import com.cms.util.AttachmentStore;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
 
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.*;
 
 public class BackupService {
 
     private static final String BACKUP_DIR = "backups";
     private static final String ATTACHMENTS_DIR = "attachments";
+    private static final String OBJECTS_DIR = "objects";
+    private static final String RESTORE_STAGING_DIR = "restore-staging";
     private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
     private static final int MAX_BACKUPS = 10;
+    private static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    // Online backup copies this many pages per step and then pauses so writers get the lock
+    private static final int PAGES_PER_STEP = 256;
+    private static final int STEP_PAUSE_MS = 5;
+    private static final int MAX_PAUSED_RESTARTS = 3;
+    private static final int BUSY_SLEEP_MS = 50;
+    private static final int BUSY_RETRIES = 20;
 
     private final DatabaseConnection dbConnection;
+    private final PatientRepository patientRepository;
+    private final ClinicalHistoryRepository historyRepository;
+    private final EventBus eventBus;
+    private final Path backupDir;
+    private final Path attachmentsDir;
+    private final ObjectStore objectStore;
+    private final AtomicInteger foregroundWaiting = new AtomicInteger();
+
+    /**
+     * Work started by the user that needs the backup lock.
+     */
+    @FunctionalInterface
+    private interface ForegroundWork<T> {
+        T run() throws IOException;
+    }
 
-    public BackupService(DatabaseConnection dbConnection) {
+    public BackupService(DatabaseConnection dbConnection, PatientRepository patientRepository,
+            ClinicalHistoryRepository historyRepository) {
+        this(dbConnection, patientRepository, historyRepository, Paths.get(BACKUP_DIR), Paths.get(ATTACHMENTS_DIR));
+    }
+
+    public BackupService(DatabaseConnection dbConnection, PatientRepository patientRepository,
+            ClinicalHistoryRepository historyRepository, Path backupDir, Path attachmentsDir) {
         this.dbConnection = dbConnection;
+        this.patientRepository = patientRepository;
+        this.historyRepository = historyRepository;
+        this.eventBus = EventBus.getInstance();
+        this.backupDir = backupDir;
+        this.attachmentsDir = attachmentsDir;
+        this.objectStore = new ObjectStore(backupDir.resolve(OBJECTS_DIR));
         createBackupDirectory();
+        deleteStaleTempFiles();
     }
 
     private void createBackupDirectory() {
         try {
-            Files.createDirectories(Paths.get(BACKUP_DIR));
+            Files.createDirectories(backupDir);
         } catch (IOException e) {
             AppLogger.error("Failed to create backup directory", e);
         }
     }
 
+    // Leftovers of a backup or restore cut short when the application closed
+    private void deleteStaleTempFiles() {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(backupDir,
+                "{entry-*.tmp,*.sqlite.tmp,patient-restore-*.sqlite}")) {
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
+            }
+            deleteRecursively(backupDir.resolve(RESTORE_STAGING_DIR));
+        } catch (IOException e) {
+            AppLogger.warn("Could not remove temporary backup files", e);
+        }
+    }
+
+    /**
+     * Creates a backup archive with the database and the attachment manifest.
+     * Attachment contents go to the shared object store, where only files not
+     * already stored by an earlier backup are written.
+     */
     public File createBackup() throws IOException {
+        return inForeground(() -> createBackup(IoThrottle.NONE));
+    }
+
+    /**
+     * Same as {@link #createBackup()}, with all disk reads and writes passing
+     * through the throttle and the work done on low-priority threads. Used by
+     * scheduled backups, which must not slow down the clinic. While a request
+     * from the user waits for this backup, the throttle is skipped so the
+     * backup finishes at full speed and lets it through.
+     */
+    public synchronized File createBackup(IoThrottle limit) throws IOException {
+        IoThrottle throttle = limit == IoThrottle.NONE ? IoThrottle.NONE : bytes -> {
+            if (!isForegroundWaiting()) {
+                limit.acquire(bytes);
+            }
+        };
+
         String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
         String backupName = "cms_backup_" + timestamp + ".zip";
-        File backupFile = new File(BACKUP_DIR, backupName);
+        File backupFile = backupDir.resolve(backupName).toFile();
 
         AppLogger.info("Creating backup: " + backupName);
+        BackupManifest previous = latestManifest();
 
-        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(backupFile))) {
+        boolean background = throttle != IoThrottle.NONE;
+        ExecutorService pool = newWorkerPool(background);
+        try (ParallelZipWriter zip = new ParallelZipWriter(backupFile.toPath(), pool, WORKERS)
+                .withThrottle(throttle)) {
             // Backup database
             File dbFile = new File(dbConnection.getDatabasePath());
             if (dbFile.exists()) {
-                addFileToZip(zos, dbFile, "database/");
+                File snapshot = backupDir.resolve("cms_backup_" + timestamp + ".sqlite.tmp").toFile();
+                try {
+                    snapshotDatabase(dbFile, snapshot, throttle);
+                    zip.addFile("database/" + dbFile.getName(), snapshot.toPath());
+                } finally {
+                    Files.deleteIfExists(snapshot.toPath());
+                }
             }
 
             // Backup attachments
-            Path attachmentsPath = Paths.get(ATTACHMENTS_DIR);
-            if (Files.exists(attachmentsPath)) {
-                Files.walk(attachmentsPath)
-                        .filter(Files::isRegularFile)
-                        .forEach(file -> {
-                            try {
-                                String entryName = "attachments/" + attachmentsPath.relativize(file).toString();
-                                addFileToZip(zos, file.toFile(), entryName);
-                            } catch (IOException e) {
-                                AppLogger.error("Error adding file to backup: " + file, e);
-                            }
-                        });
-            }
+            BackupManifest manifest = backupAttachments(previous, pool, throttle);
+            ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+            manifest.write(manifestBytes);
+            zip.addBytes(BackupManifest.ENTRY_NAME, manifestBytes.toByteArray());
 
             // Add metadata
-            String metadata = createMetadata();
-            ZipEntry metaEntry = new ZipEntry("metadata.txt");
-            zos.putNextEntry(metaEntry);
-            zos.write(metadata.getBytes());
-            zos.closeEntry();
+            zip.addBytes("metadata.txt", createMetadata(manifest).getBytes());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(backupFile.toPath());
+            throw e;
+        } finally {
+            pool.shutdownNow();
         }
 
         AppLogger.info("Backup created successfully: " + backupFile.getAbsolutePath());
@@ -77,64 +182,530 @@ public class BackupService {
         return backupFile;
     }
 
-    private void addFileToZip(ZipOutputStream zos, File file, String basePath) throws IOException {
-        String entryName = basePath.endsWith("/") ? basePath + file.getName() : basePath;
-        ZipEntry entry = new ZipEntry(entryName.replace("\\", "/"));
-        zos.putNextEntry(entry);
+    private BackupManifest backupAttachments(BackupManifest previous, ExecutorService pool, IoThrottle throttle)
+            throws IOException {
+        BackupManifest manifest = new BackupManifest();
+        Path attachmentsPath = attachmentsDir;
+        if (!Files.exists(attachmentsPath)) {
+            return manifest;
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(attachmentsPath)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !AttachmentStore.isTemporary(file))
+                    .collect(Collectors.toList());
+        }
+
+        // Files are hashed and stored on the workers; the manifest keeps walk order
+        Map<String, BackupManifest.Entry> known = previous.byPath();
+        AtomicInteger stored = new AtomicInteger();
+        List<Future<BackupManifest.Entry>> results = new ArrayList<>(files.size());
+        for (Path file : files) {
+            results.add(pool.submit(() -> backupAttachment(attachmentsPath, file, known, stored, throttle)));
+        }
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                manifest.add(results.get(i).get());
+            } catch (ExecutionException e) {
+                AppLogger.error("Error adding file to backup: " + files.get(i), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Backup interrupted");
+            }
+        }
+        AppLogger.info("Attachments backed up: %d files, %d new objects", manifest.getEntries().size(),
+                stored.get());
+        return manifest;
+    }
+
+    private BackupManifest.Entry backupAttachment(Path attachmentsPath, Path file,
+            Map<String, BackupManifest.Entry> known, AtomicInteger stored, IoThrottle throttle) throws IOException {
+        String path = attachmentsPath.relativize(file).toString().replace("\\", "/");
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long modified = attrs.lastModifiedTime().toMillis();
+        BackupManifest.Entry last = known.get(path);
+        String hash;
+        if (last != null && last.size() == attrs.size() && last.modified() == modified
+                && objectStore.contains(last.hash())) {
+            hash = last.hash();
+        } else if (AttachmentStore.isObjectPath(file) && objectStore.contains(AttachmentStore.hashOf(file))) {
+            // Attachment store files are named by the same SHA-256, so there is nothing to read
+            hash = AttachmentStore.hashOf(file);
+        } else {
+            hash = ObjectStore.hash(file, throttle);
+            if (!objectStore.contains(hash)) {
+                hash = objectStore.put(file, throttle);
+                stored.incrementAndGet();
+            }
+        }
+        return new BackupManifest.Entry(path, hash, attrs.size(), modified);
+    }
+
+    private static ExecutorService newWorkerPool(boolean background) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(WORKERS, r -> {
+            Thread t = new Thread(r, "backup-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            if (background) {
+                t.setPriority(Thread.MIN_PRIORITY);
+            }
+            return t;
+        });
+    }
+
+    private BackupManifest latestManifest() {
+        List<BackupInfo> backups = listBackups();
+        if (!backups.isEmpty()) {
+            try {
+                BackupManifest manifest = readManifest(new File(backups.get(0).path()));
+                if (manifest != null) {
+                    return manifest;
+                }
+            } catch (IOException e) {
+                AppLogger.warn("Unreadable backup manifest, hashing all attachments: " + backups.get(0).name(), e);
+            }
+        }
+        return new BackupManifest();
+    }
+
+    /**
+     * Returns the attachment manifest of a backup, or null for archives made
+     * before attachments were kept in the object store.
+     */
+    private BackupManifest readManifest(File backupFile) throws IOException {
+        try (ZipFile zip = new ZipFile(backupFile)) {
+            ZipEntry entry = zip.getEntry(BackupManifest.ENTRY_NAME);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return BackupManifest.read(in);
+            }
+        }
+    }
+
+    /**
+     * Writes a consistent, compacted copy of the live database to {@code target}.
+     * The copy uses SQLite's online backup API on a connection of its own, a
+     * few pages at a time, so the application connection is never held and
+     * writers only wait for a single step. The copy is vacuumed afterwards,
+     * which drops free pages without touching the live file.
+     */
+    private void snapshotDatabase(File dbFile, File target, IoThrottle throttle) throws IOException {
+        long start = System.currentTimeMillis();
+        Files.deleteIfExists(target.toPath());
+        try (Connection source = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath())) {
+            StepPacer pacer = new StepPacer(throttle, pageSize(source));
+            int rc = source.unwrap(SQLiteConnection.class).getDatabase().backup("main", target.getPath(),
+                    pacer, BUSY_SLEEP_MS, BUSY_RETRIES, PAGES_PER_STEP);
+            if (rc == 0) {
+                compact(target);
+            } else {
+                // Writers kept the source locked; take the copy in a single read pass instead
+                AppLogger.warn("Online backup gave up with code " + rc + " after " + pacer.restarts
+                        + " restarts, using VACUUM INTO");
+                Files.deleteIfExists(target.toPath());
+                try (Statement stmt = source.createStatement()) {
+                    stmt.execute("VACUUM INTO '" + target.getPath().replace("'", "''") + "'");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error copying database for backup", e);
+        }
+        AppLogger.info("Database snapshot of %d KB taken in %d ms", target.length() / 1024,
+                System.currentTimeMillis() - start);
+    }
+
+    private static int pageSize(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA page_size")) {
+            return rs.next() ? rs.getInt(1) : 4096;
+        }
+    }
+
+    private void compact(File database) throws SQLException {
+        try (Connection copy = DriverManager.getConnection("jdbc:sqlite:" + database.getPath());
+                Statement stmt = copy.createStatement()) {
+            stmt.execute("VACUUM");
+        }
+    }
+
+    /**
+     * Pauses between backup steps so writers can commit. A commit from another
+     * connection makes SQLite restart the copy, so once that has happened a few
+     * times the remaining steps run back to back instead. Each step is also
+     * charged to the throttle as the pages it copied.
+     */
+    private static final class StepPacer implements DB.ProgressObserver {
+        private final IoThrottle throttle;
+        private final int pageSize;
+        private int lastRemaining = Integer.MAX_VALUE;
+        private int restarts;
 
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] buffer = new byte[8192];
-            int len;
-            while ((len = fis.read(buffer)) > 0) {
-                zos.write(buffer, 0, len);
+        StepPacer(IoThrottle throttle, int pageSize) {
+            this.throttle = throttle;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public void progress(int remaining, int pageCount) {
+            if (remaining > lastRemaining) {
+                restarts++;
+            }
+            int copied = lastRemaining == Integer.MAX_VALUE || remaining > lastRemaining
+                    ? pageCount - remaining : lastRemaining - remaining;
+            lastRemaining = remaining;
+            throttle.acquire((long) copied * pageSize);
+            if (remaining == 0 || restarts >= MAX_PAUSED_RESTARTS) {
+                return;
+            }
+            try {
+                Thread.sleep(STEP_PAUSE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
-        zos.closeEntry();
     }
 
+    /**
+     * Restores a backup straight from the archive. Every file is first staged
+     * under a temporary name and checked against its CRC or content hash;
+     * attachments are staged on the worker pool. Nothing in place is touched
+     * unless the database passes an integrity check and every attachment was
+     * staged. The attachments are then moved into place and the database goes
+     * last, swapped in through {@link DatabaseConnection#replaceDatabase} so
+     * no connection reads it half replaced. The attachments replaced are set
+     * aside until the swap succeeds and put back if any step fails.
+     */
     public void restoreBackup(File backupFile) throws IOException {
+        inForeground(() -> {
+            restoreBackupExclusive(backupFile);
+            return null;
+        });
+    }
+
+    private void restoreBackupExclusive(File backupFile) throws IOException {
         AppLogger.info("Restoring backup from: " + backupFile.getName());
+        long start = System.currentTimeMillis();
+
+        Path dbPath = Paths.get(dbConnection.getDatabasePath()).toAbsolutePath();
+        Path stagedDb = dbPath.resolveSibling(dbPath.getFileName() + ".restore");
+        Path staging = backupDir.resolve(RESTORE_STAGING_DIR);
+        ExecutorService pool = newWorkerPool(false);
+        boolean rolledBack = true;
+        try (ZipFile zip = new ZipFile(backupFile)) {
+            ZipEntry dbEntry = zip.getEntry("database/" + dbPath.getFileName());
+            if (dbEntry != null) {
+                extractVerified(zip, dbEntry, stagedDb);
+                checkDatabase(stagedDb);
+            }
+
+            // Attachments come from the object store, or from the archive itself for older backups
+            deleteRecursively(staging);
+            List<StagedFile> staged = new ArrayList<>();
+            ZipEntry manifestEntry = zip.getEntry(BackupManifest.ENTRY_NAME);
+            int failed;
+            if (manifestEntry != null) {
+                try (InputStream in = zip.getInputStream(manifestEntry)) {
+                    failed = stageAttachments(BackupManifest.read(in), staging, staged, pool);
+                }
+            } else {
+                failed = stageArchivedAttachments(zip, staging, staged, pool);
+            }
+            if (failed > 0) {
+                throw new IOException(failed + " attachment(s) could not be restored, nothing was replaced");
+            }
+
+            List<ReplacedFile> replaced = new ArrayList<>();
+            try {
+                for (StagedFile file : staged) {
+                    Path previous = null;
+                    if (Files.exists(file.target())) {
+                        previous = staging.resolve("previous-" + replaced.size());
+                        AtomicFiles.move(file.target(), previous);
+                    }
+                    replaced.add(new ReplacedFile(file.target(), previous));
+                    Files.createDirectories(file.target().getParent());
+                    AtomicFiles.move(file.staged(), file.target());
+                }
+                if (dbEntry != null) {
+                    dbConnection.replaceDatabase(stagedDb);
+                }
+            } catch (IOException | RuntimeException e) {
+                rolledBack = putBack(replaced);
+                throw e;
+            }
+        } finally {
+            pool.shutdownNow();
+            Files.deleteIfExists(stagedDb);
+            // Attachments that could not be put back stay in the staging directory until the next start
+            if (rolledBack) {
+                deleteRecursively(staging);
+            }
+        }
+
+        AppLogger.info("Backup restored successfully in %d ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Brings back one patient, looked up by cédula, from a backup without
+     * touching anything else. Only the database entry is read from the
+     * archive; it is attached read-only and the patient's missing rows are
+     * copied over in one transaction, together with their attachment files.
+     * The restored patient and consultations are published as saved events.
+     */
+    public PatientRestoreResult restorePatient(File backupFile, String cedula) throws IOException {
+        return inForeground(() -> restorePatientExclusive(backupFile, cedula));
+    }
+
+    private PatientRestoreResult restorePatientExclusive(File backupFile, String cedula) throws IOException {
+        AppLogger.info("Restoring patient %s from backup: %s", cedula, backupFile.getName());
+        long start = System.currentTimeMillis();
+
+        Path dbPath = Paths.get(dbConnection.getDatabasePath());
+        Path staged = Files.createTempFile(backupDir, "patient-restore-", ".sqlite");
+        try (ZipFile zip = new ZipFile(backupFile)) {
+            ZipEntry dbEntry = zip.getEntry("database/" + dbPath.getFileName());
+            if (dbEntry == null) {
+                throw new IOException("Backup contains no database: " + backupFile.getName());
+            }
+            extractVerified(zip, dbEntry, staged);
+            BackupManifest manifest = readManifest(backupFile);
+
+            // A connection of its own, so the restore transaction never takes in edits made meanwhile
+            return dbConnection.withConnection(conn -> {
+                try (PreparedStatement attach = conn.prepareStatement(
+                        "ATTACH DATABASE ? AS " + PatientRestorer.SCHEMA)) {
+                    attach.setString(1, staged.toAbsolutePath().toUri() + "?mode=ro");
+                    attach.execute();
+                }
+                PatientRestoreResult result = restorePatientRows(conn, cedula, zip, manifest);
+                AppLogger.info("Patient %s restored in %d ms: %d consultations, %d appointments, %d attachments",
+                        cedula, System.currentTimeMillis() - start, result.histories(), result.appointments(),
+                        result.attachments());
+                return result;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Error restoring patient from backup", e);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    private PatientRestoreResult restorePatientRows(Connection conn, String cedula, ZipFile zip,
+            BackupManifest manifest) throws SQLException, IOException {
+        Path attachmentsPath = attachmentsDir.toAbsolutePath().normalize();
+        Map<String, BackupManifest.Entry> objects = manifest != null ? manifest.byPath() : Map.of();
+        List<Path> created = new ArrayList<>();
+        PatientRestorer.Result rows;
+        int missing = 0;
+        conn.setAutoCommit(false);
+        try {
+            rows = new PatientRestorer(conn, attachmentsPath).restore(cedula);
+
+            // Files are in place before the rows that point at them are committed
+            for (PatientRestorer.RestoredFile file : rows.files()) {
+                Path target = resolveAttachment(attachmentsPath, file.restoredPath());
+                if (target != null && Files.isRegularFile(target) && AttachmentStore.isObjectPath(target)) {
+                    // Shared with attachments still in place, and named by its content
+                    continue;
+                }
+                boolean existed = target != null && Files.exists(target);
+                if (target == null || !restoreAttachmentFile(zip, objects, file.backupPath(), target)) {
+                    AppLogger.warn("Attachment not found in backup: " + file.backupPath());
+                    missing++;
+                } else if (!existed) {
+                    created.add(target);
+                }
+            }
+            conn.commit();
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+            // No row points at the files copied so far
+            for (Path file : created) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+            }
+            throw e;
+        }
 
-        Path tempDir = Files.createTempDirectory("cms_restore_");
+        publishRestored(rows);
+        return new PatientRestoreResult(rows.patientCreated(), rows.historyIds().size(), rows.appointments(),
+                rows.files().size() - missing, missing);
+    }
 
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(backupFile))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                Path targetPath = tempDir.resolve(entry.getName());
-                if (entry.isDirectory()) {
-                    Files.createDirectories(targetPath);
+    private void publishRestored(PatientRestorer.Result rows) {
+        if (rows.patientCreated()) {
+            patientRepository.findById(rows.patientId())
+                    .ifPresent(patient -> eventBus.publish(new PatientSavedEvent(patient)));
+        }
+        for (int historyId : rows.historyIds()) {
+            historyRepository.findById(historyId)
+                    .ifPresent(history -> eventBus.publish(new HistorySavedEvent(history)));
+        }
+    }
+
+    private boolean restoreAttachmentFile(ZipFile zip, Map<String, BackupManifest.Entry> objects, String path,
+            Path target) throws IOException {
+        BackupManifest.Entry object = objects.get(path);
+        if (object != null) {
+            if (!objectStore.contains(object.hash())) {
+                return false;
+            }
+            objectStore.restoreTo(object.hash(), target);
+            return true;
+        }
+        ZipEntry archived = zip.getEntry(ATTACHMENTS_DIR + "/" + path);
+        if (archived == null) {
+            return false;
+        }
+        extractVerified(zip, archived, target);
+        return true;
+    }
+
+    private record StagedFile(Path staged, Path target) {
+    }
+
+    private record ReplacedFile(Path target, Path previous) {
+    }
+
+    /**
+     * Undoes the attachment moves of a failed restore, last first. Returns
+     * false if some file could not be put back.
+     */
+    private static boolean putBack(List<ReplacedFile> replaced) {
+        boolean complete = true;
+        for (int i = replaced.size() - 1; i >= 0; i--) {
+            ReplacedFile file = replaced.get(i);
+            try {
+                if (file.previous() != null) {
+                    AtomicFiles.move(file.previous(), file.target());
                 } else {
-                    Files.createDirectories(targetPath.getParent());
-                    Files.copy(zis, targetPath, StandardCopyOption.REPLACE_EXISTING);
+                    Files.deleteIfExists(file.target());
                 }
-                zis.closeEntry();
+            } catch (IOException e) {
+                AppLogger.error("Could not put back attachment " + file.target()
+                        + (file.previous() != null ? ", previous version kept at " + file.previous() : ""), e);
+                complete = false;
             }
         }
+        return complete;
+    }
+
+    private int stageAttachments(BackupManifest manifest, Path staging, List<StagedFile> staged,
+            ExecutorService pool) throws IOException {
+        Path attachmentsPath = attachmentsDir.toAbsolutePath().normalize();
+        List<String> names = new ArrayList<>();
+        List<Future<?>> results = new ArrayList<>();
+        for (BackupManifest.Entry entry : manifest.getEntries()) {
+            Path target = resolveAttachment(attachmentsPath, entry.path());
+            if (target != null) {
+                Path stagedFile = staging.resolve(Integer.toString(staged.size()));
+                staged.add(new StagedFile(stagedFile, target));
+                names.add(entry.path());
+                results.add(pool.submit(() -> {
+                    objectStore.restoreTo(entry.hash(), stagedFile);
+                    return null;
+                }));
+            }
+        }
+        return awaitRestores(names, results);
+    }
+
+    private int stageArchivedAttachments(ZipFile zip, Path staging, List<StagedFile> staged,
+            ExecutorService pool) throws IOException {
+        String prefix = ATTACHMENTS_DIR + "/";
+        Path attachmentsPath = attachmentsDir.toAbsolutePath().normalize();
+        List<String> names = new ArrayList<>();
+        List<Future<?>> results = new ArrayList<>();
+        for (ZipEntry entry : Collections.list(zip.entries())) {
+            if (entry.isDirectory() || !entry.getName().startsWith(prefix)) {
+                continue;
+            }
+            Path target = resolveAttachment(attachmentsPath, entry.getName().substring(prefix.length()));
+            if (target != null) {
+                Path stagedFile = staging.resolve(Integer.toString(staged.size()));
+                staged.add(new StagedFile(stagedFile, target));
+                names.add(entry.getName());
+                results.add(pool.submit(() -> {
+                    extractVerified(zip, entry, stagedFile);
+                    return null;
+                }));
+            }
+        }
+        return awaitRestores(names, results);
+    }
+
+    private static Path resolveAttachment(Path attachmentsPath, String relative) {
+        Path target = attachmentsPath.resolve(relative).normalize();
+        if (!target.startsWith(attachmentsPath) || target.equals(attachmentsPath)) {
+            AppLogger.warn("Skipping attachment outside the attachments directory: " + relative);
+            return null;
+        }
+        return target;
+    }
 
-        // Restore database
-        Path restoredDb = tempDir.resolve("database").resolve(new File(dbConnection.getDatabasePath()).getName());
-        if (Files.exists(restoredDb)) {
-            Files.copy(restoredDb, Paths.get(dbConnection.getDatabasePath()), StandardCopyOption.REPLACE_EXISTING);
+    private static int awaitRestores(List<String> names, List<Future<?>> results) throws IOException {
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (ExecutionException e) {
+                AppLogger.error("Error restoring attachment: " + names.get(i), e.getCause());
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Restore interrupted");
+            }
         }
+        return failed;
+    }
 
-        // Restore attachments
-        Path restoredAttachments = tempDir.resolve("attachments");
-        if (Files.exists(restoredAttachments)) {
-            copyDirectory(restoredAttachments, Paths.get(ATTACHMENTS_DIR));
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
         }
+    }
 
-        // Cleanup temp directory
-        deleteDirectory(tempDir);
+    private static void extractVerified(ZipFile zip, ZipEntry entry, Path target) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(zip.getInputStream(entry), crc)) {
+            AtomicFiles.replace(in, target, () -> {
+                if (entry.getCrc() != -1 && crc.getValue() != entry.getCrc()) {
+                    throw new ZipException("CRC mismatch in backup entry: " + entry.getName());
+                }
+            });
+        }
+    }
 
-        AppLogger.info("Backup restored successfully");
+    private static void checkDatabase(Path database) throws IOException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA quick_check")) {
+            String result = rs.next() ? rs.getString(1) : null;
+            if (!"ok".equals(result)) {
+                throw new IOException("Backup database failed integrity check: " + result);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Backup database could not be opened", e);
+        }
     }
 
     public List<BackupInfo> listBackups() {
         List<BackupInfo> backups = new ArrayList<>();
-        File backupDir = new File(BACKUP_DIR);
+        File directory = backupDir.toFile();
 
-        if (backupDir.exists() && backupDir.isDirectory()) {
-            File[] files = backupDir.listFiles((dir, name) -> name.endsWith(".zip"));
+        if (directory.exists() && directory.isDirectory()) {
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".zip"));
             if (files != null) {
                 for (File file : files) {
                     backups.add(new BackupInfo(
@@ -153,8 +724,40 @@ public class BackupService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Runs {@code task} while no backup or restore is in progress, for work
+     * that moves attachment files around.
+     */
+    public synchronized void runExclusive(Runnable task) {
+        task.run();
+    }
+
     public void deleteBackup(String backupName) throws IOException {
-        Path backupPath = Paths.get(BACKUP_DIR, backupName);
+        inForeground(() -> {
+            deleteBackupFile(backupName);
+            pruneObjects();
+            return null;
+        });
+    }
+
+    /**
+     * True while a backup, restore or delete asked for by the user is waiting
+     * for the one in progress. A scheduled backup must not stay paused then.
+     */
+    public boolean isForegroundWaiting() {
+        return foregroundWaiting.get() > 0;
+    }
+
+    private <T> T inForeground(ForegroundWork<T> work) throws IOException {
+        foregroundWaiting.incrementAndGet();
+        synchronized (this) {
+            foregroundWaiting.decrementAndGet();
+            return work.run();
+        }
+    }
+
+    private void deleteBackupFile(String backupName) throws IOException {
+        Path backupPath = backupDir.resolve(backupName);
         if (Files.exists(backupPath)) {
             Files.delete(backupPath);
             AppLogger.info("Backup deleted: " + backupName);
@@ -167,52 +770,63 @@ public class BackupService {
             List<BackupInfo> toDelete = backups.subList(MAX_BACKUPS, backups.size());
             for (BackupInfo backup : toDelete) {
                 try {
-                    deleteBackup(backup.name());
+                    deleteBackupFile(backup.name());
                 } catch (IOException e) {
                     AppLogger.error("Failed to delete old backup: " + backup.name(), e);
                 }
             }
         }
+        pruneObjects();
     }
 
-    private String createMetadata() {
+    /**
+     * Deletes stored objects that no remaining backup references. Reference
+     * counts are rebuilt from the manifests each time, so they cannot drift
+     * from the archives actually on disk. Nothing is deleted if any manifest
+     * cannot be read.
+     */
+    private void pruneObjects() {
+        Map<String, Integer> references = new HashMap<>();
+        for (BackupInfo backup : listBackups()) {
+            try {
+                BackupManifest manifest = readManifest(new File(backup.path()));
+                if (manifest != null) {
+                    for (BackupManifest.Entry entry : manifest.getEntries()) {
+                        references.merge(entry.hash(), 1, Integer::sum);
+                    }
+                }
+            } catch (IOException e) {
+                AppLogger.warn("Skipping object pruning, unreadable backup: " + backup.name(), e);
+                return;
+            }
+        }
+
+        try {
+            long freed = objectStore.retainOnly(references.keySet());
+            if (freed > 0) {
+                AppLogger.info("Pruned backup objects: %d KB freed, %d objects still referenced",
+                        freed / 1024, references.size());
+            }
+        } catch (IOException e) {
+            AppLogger.error("Failed to prune backup objects", e);
+        }
+    }
+
+    private String createMetadata(BackupManifest manifest) {
         return """
                 Clinical Management System Backup
                 ==================================
                 Created: %s
                 Database: %s
+                Attachments: %d files, %d bytes (contents in %s)
                 Version: 1.0
                 """.formatted(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
-                dbConnection.getDatabasePath());
-    }
-
-    private void copyDirectory(Path source, Path target) throws IOException {
-        Files.walk(source).forEach(s -> {
-            try {
-                Path t = target.resolve(source.relativize(s));
-                if (Files.isDirectory(s)) {
-                    Files.createDirectories(t);
-                } else {
-                    Files.copy(s, t, StandardCopyOption.REPLACE_EXISTING);
-                }
-            } catch (IOException e) {
-                AppLogger.error("Error copying file", e);
-            }
-        });
+                dbConnection.getDatabasePath(), manifest.getEntries().size(), manifest.totalSize(),
+                backupDir.resolve(OBJECTS_DIR));
     }
 
-    private void deleteDirectory(Path directory) throws IOException {
-        if (Files.exists(directory)) {
-            Files.walk(directory)
-                    .sorted(Comparator.reverseOrder())
-                    .forEach(path -> {
-                        try {
-                            Files.delete(path);
-                        } catch (IOException e) {
-                            AppLogger.error("Error deleting temp file", e);
-                        }
-                    });
-        }
+    public record PatientRestoreResult(boolean patientCreated, int histories, int appointments,
+            int attachments, int missingAttachments) {
     }
 
     public record BackupInfo(String name, String path, long size, LocalDateTime createdAt) {
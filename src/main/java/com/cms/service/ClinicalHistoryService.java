@@ -4,6 +4,9 @@ import com.cms.core.validation.ClinicalHistoryValidator;
 import com.cms.core.validation.ValidationResult;
 import com.cms.domain.Attachment;
 import com.cms.domain.ClinicalHistory;
+import com.cms.infra.EventBus;
+import com.cms.presenter.events.HistoryDeletedEvent;
+import com.cms.presenter.events.HistorySavedEvent;
 import com.cms.repository.AttachmentRepository;
 import com.cms.repository.ClinicalHistoryRepository;
 import com.cms.repository.PatientRepository;
@@ -25,6 +28,7 @@ public class ClinicalHistoryService {
     private final PatientRepository patientRepository;
     private final ClinicalHistoryValidator validator;
     private final ClipboardImageHandler clipboardHandler;
+    private final EventBus eventBus;
 
     public ClinicalHistoryService(ClinicalHistoryRepository historyRepository,
             AttachmentRepository attachmentRepository,
@@ -34,6 +38,7 @@ public class ClinicalHistoryService {
         this.patientRepository = patientRepository;
         this.validator = new ClinicalHistoryValidator();
         this.clipboardHandler = new ClipboardImageHandler();
+        this.eventBus = EventBus.getInstance();
     }
 
     public ClinicalHistoryDTO createHistory(ClinicalHistoryDTO dto, List<File> attachments) {
@@ -56,6 +61,7 @@ public class ClinicalHistoryService {
             }
         }
 
+        eventBus.publish(new HistorySavedEvent(saved));
         return enrichDTO(new ClinicalHistoryDTO(saved));
     }
 
@@ -73,6 +79,7 @@ public class ClinicalHistoryService {
         }
 
         ClinicalHistory saved = historyRepository.save(history);
+        eventBus.publish(new HistorySavedEvent(saved));
         return enrichDTO(new ClinicalHistoryDTO(saved));
     }
 
@@ -83,11 +90,14 @@ public class ClinicalHistoryService {
 
         List<Attachment> attachments = attachmentRepository.findByClinicalHistoryId(id);
         for (Attachment attachment : attachments) {
-            clipboardHandler.deleteAttachmentFile(attachment.getRutaArchivo());
             attachmentRepository.delete(attachment.getId());
+            if (attachmentRepository.countByRutaArchivo(attachment.getRutaArchivo()) == 0) {
+                clipboardHandler.deleteAttachmentFile(attachment.getRutaArchivo());
+            }
         }
 
         historyRepository.delete(id);
+        eventBus.publish(new HistoryDeletedEvent(id));
     }
 
     public ClinicalHistoryDTO getHistory(Integer id) {
@@ -128,8 +138,7 @@ public class ClinicalHistoryService {
     }
 
     private void addAttachmentToHistory(Integer historyId, File file) {
-        File destFile = clipboardHandler.copyFileToAttachments(
-                file.getAbsolutePath(), historyId).orElse(null);
+        File destFile = clipboardHandler.copyFileToAttachments(file.getAbsolutePath()).orElse(null);
 
         if (destFile != null) {
             Attachment attachment = new Attachment();
@@ -1,29 +1,73 @@
 package com.cms.service;
 
+import com.cms.core.validation.ClinicalHistoryValidator;
+import com.cms.core.validation.PatientValidator;
+import com.cms.core.validation.ValidationResult;
 import com.cms.domain.ClinicalHistory;
+import com.cms.domain.ImportJob;
 import com.cms.domain.Patient;
+import com.cms.domain.RowChange;
 import com.cms.infra.AppLogger;
+import com.cms.repository.ChangeLogRepository;
 import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.repository.ImportJobRepository;
 import com.cms.repository.PatientRepository;
+import com.cms.service.imports.CedulaIndex;
+import com.cms.service.imports.HistoryDuplicateIndex;
+import com.cms.service.imports.ImportMode;
+import com.cms.service.imports.ImportPipeline;
+import com.cms.service.imports.ImportResult;
+import com.cms.service.imports.ImportRow;
+import com.cms.service.imports.RowRejectedException;
+import com.cms.util.CsvReader;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class ExportImportService {
 
     private final PatientRepository patientRepository;
     private final ClinicalHistoryRepository historyRepository;
+    private final ImportJobRepository importJobRepository;
+    private final ChangeLogRepository changeLogRepository;
+    private final PatientValidator patientValidator = new PatientValidator();
+    private final ClinicalHistoryValidator historyValidator = new ClinicalHistoryValidator();
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String PATIENT_HEADER =
+            "ID,Cédula,Nombre,Apellido,Teléfono,Email,Dirección,Sexo,Fecha Nacimiento,Fecha Registro";
+    private static final String HISTORY_HEADER =
+            "ID,ID Paciente,Cédula,Fecha Consulta,Motivo,Antecedentes,Examen Físico,Diagnóstico,Conducta,Observaciones,Médico";
+
+    /**
+     * Outcome of {@link #exportChanges}: the change log range covered
+     * (fromSequence is -1 for a consumer's first, full export) and the rows
+     * written per file.
+     */
+    public record ChangeExport(long fromSequence, long toSequence, long patients, long histories) {
+    }
 
     public ExportImportService(PatientRepository patientRepository,
-            ClinicalHistoryRepository historyRepository) {
+            ClinicalHistoryRepository historyRepository,
+            ImportJobRepository importJobRepository,
+            ChangeLogRepository changeLogRepository) {
         this.patientRepository = patientRepository;
         this.historyRepository = historyRepository;
+        this.importJobRepository = importJobRepository;
+        this.changeLogRepository = changeLogRepository;
     }
 
     public void exportPatientsToCsv(File file) throws IOException {
@@ -33,20 +77,10 @@ public class ExportImportService {
                 new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
 
             writer.write('\ufeff'); // BOM for Excel UTF-8
-            writer.write("ID,Cédula,Nombre,Apellido,Teléfono,Email,Dirección,Sexo,Fecha Nacimiento,Fecha Registro\n");
+            writer.write(PATIENT_HEADER + "\n");
 
             for (Patient p : patients) {
-                writer.write(String.join(",",
-                        String.valueOf(p.getId()),
-                        escapeCsv(p.getCedula()),
-                        escapeCsv(p.getNombre()),
-                        escapeCsv(p.getApellido()),
-                        escapeCsv(p.getTelefono()),
-                        escapeCsv(p.getEmail()),
-                        escapeCsv(p.getDireccion()),
-                        escapeCsv(p.getSexo()),
-                        p.getFechaNacimiento() != null ? p.getFechaNacimiento().format(DATE_FORMAT) : "",
-                        p.getFechaRegistro() != null ? p.getFechaRegistro().format(DATE_FORMAT) : ""));
+                writer.write(patientRow(p));
                 writer.write("\n");
             }
         }
@@ -55,109 +89,349 @@ public class ExportImportService {
     }
 
     public void exportHistoriesToCsv(File file) throws IOException {
-        List<ClinicalHistory> histories = historyRepository.findAll();
+        long count = 0;
 
         try (BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+                Stream<ClinicalHistory> histories = historyRepository.streamWithPatientByFechaConsultaBetween(null,
+                        null)) {
 
             writer.write('\ufeff');
-            writer.write(
-                    "ID,ID Paciente,Fecha Consulta,Motivo,Antecedentes,Examen Físico,Diagnóstico,Conducta,Observaciones,Médico\n");
-
-            for (ClinicalHistory h : histories) {
-                writer.write(String.join(",",
-                        String.valueOf(h.getId()),
-                        String.valueOf(h.getPatientId()),
-                        h.getFechaConsulta() != null ? h.getFechaConsulta().format(DATE_FORMAT) : "",
-                        escapeCsv(h.getMotivoConsulta()),
-                        escapeCsv(h.getAntecedentes()),
-                        escapeCsv(h.getExamenFisico()),
-                        escapeCsv(h.getDiagnostico()),
-                        escapeCsv(h.getConducta()),
-                        escapeCsv(h.getObservaciones()),
-                        escapeCsv(h.getMedico())));
+            writer.write(HISTORY_HEADER + "\n");
+
+            Iterator<ClinicalHistory> it = histories.iterator();
+            while (it.hasNext()) {
+                writer.write(historyRow(it.next()));
                 writer.write("\n");
+                count++;
             }
         }
 
-        AppLogger.info("Exported %d histories to %s", histories.size(), file.getName());
+        AppLogger.info("Exported %d histories to %s", count, file.getName());
+    }
+
+    /**
+     * Writes the patients and consultations changed since the consumer's
+     * previous export: one row per changed record with its current state
+     * ("UPSERT") or "DELETE" when it no longer exists. The first export of a
+     * consumer contains every row. The watermark moves only after both files
+     * are written, so a failed run is simply repeated.
+     */
+    public ChangeExport exportChanges(String consumer, File patientsFile, File historiesFile) throws IOException {
+        long start = System.currentTimeMillis();
+        long upTo = changeLogRepository.currentSequence();
+        OptionalLong watermark = changeLogRepository.findWatermark(consumer);
+        long patients;
+        long histories;
+
+        if (watermark.isPresent()) {
+            long after = watermark.getAsLong();
+            try (Stream<RowChange<Patient>> changes = patientRepository.streamChanges(after, upTo)) {
+                patients = writeChanges(patientsFile, PATIENT_HEADER, changes.iterator(), this::patientRow);
+            }
+            try (Stream<RowChange<ClinicalHistory>> changes = historyRepository.streamChanges(after, upTo)) {
+                histories = writeChanges(historiesFile, HISTORY_HEADER, changes.iterator(), this::historyRow);
+            }
+        } else {
+            try (Stream<Patient> all = patientRepository.streamAll()) {
+                patients = writeChanges(patientsFile, PATIENT_HEADER,
+                        all.map(p -> new RowChange<>(p.getId(), p)).iterator(), this::patientRow);
+            }
+            try (Stream<ClinicalHistory> all = historyRepository.streamWithPatientByFechaConsultaBetween(null, null)) {
+                histories = writeChanges(historiesFile, HISTORY_HEADER,
+                        all.map(h -> new RowChange<>(h.getId(), h)).iterator(), this::historyRow);
+            }
+        }
+
+        changeLogRepository.saveWatermark(consumer, upTo);
+        changeLogRepository.purgeConsumed();
+
+        AppLogger.info("Exported changes for %s up to %d: %d patients, %d histories in %d ms", consumer, upTo,
+                patients, histories, System.currentTimeMillis() - start);
+        return new ChangeExport(watermark.orElse(-1), upTo, patients, histories);
+    }
+
+    private <T> long writeChanges(File file, String header, Iterator<RowChange<T>> changes,
+            Function<T, String> row) throws IOException {
+        long count = 0;
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write('\ufeff');
+            writer.write("Operación," + header + "\n");
+
+            while (changes.hasNext()) {
+                RowChange<T> change = changes.next();
+                writer.write(change.isDeleted() ? "DELETE," + change.id() : "UPSERT," + row.apply(change.row()));
+                writer.write("\n");
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String patientRow(Patient p) {
+        return String.join(",",
+                String.valueOf(p.getId()),
+                escapeCsv(p.getCedula()),
+                escapeCsv(p.getNombre()),
+                escapeCsv(p.getApellido()),
+                escapeCsv(p.getTelefono()),
+                escapeCsv(p.getEmail()),
+                escapeCsv(p.getDireccion()),
+                escapeCsv(p.getSexo()),
+                p.getFechaNacimiento() != null ? p.getFechaNacimiento().toString() : "",
+                p.getFechaRegistro() != null ? p.getFechaRegistro().toString() : "");
+    }
+
+    private String historyRow(ClinicalHistory h) {
+        return String.join(",",
+                String.valueOf(h.getId()),
+                String.valueOf(h.getPatientId()),
+                escapeCsv(h.getPatient() != null ? h.getPatient().getCedula() : null),
+                h.getFechaConsulta() != null ? h.getFechaConsulta().format(DATE_FORMAT) : "",
+                escapeCsv(h.getMotivoConsulta()),
+                escapeCsv(h.getAntecedentes()),
+                escapeCsv(h.getExamenFisico()),
+                escapeCsv(h.getDiagnostico()),
+                escapeCsv(h.getConducta()),
+                escapeCsv(h.getObservaciones()),
+                escapeCsv(h.getMedico()));
     }
 
     public ImportResult importPatientsFromCsv(File file) throws IOException {
-        ImportResult result = new ImportResult();
-
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
-
-            String header = reader.readLine();
-            if (header != null && header.startsWith("\ufeff")) {
-                header = header.substring(1);
-            }
-
-            String line;
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                lineNum++;
-                try {
-                    String[] fields = parseCsvLine(line);
-                    if (fields.length < 3) {
-                        result.addError(lineNum, "Campos insuficientes");
-                        continue;
-                    }
-
-                    Patient patient = new Patient();
-                    patient.setCedula(fields.length > 1 ? fields[1] : "");
-                    patient.setNombre(fields.length > 2 ? fields[2] : "");
-                    patient.setApellido(fields.length > 3 ? fields[3] : "");
-                    patient.setTelefono(fields.length > 4 ? fields[4] : "");
-                    patient.setEmail(fields.length > 5 ? fields[5] : "");
-                    patient.setDireccion(fields.length > 6 ? fields[6] : "");
-                    patient.setSexo(fields.length > 7 ? fields[7] : "");
-                    patient.setFechaRegistro(LocalDate.now());
-
-                    if (patient.getCedula().isEmpty() || patient.getNombre().isEmpty()) {
-                        result.addError(lineNum, "Cédula y Nombre son obligatorios");
-                        continue;
-                    }
-
-                    patientRepository.save(patient);
-                    result.incrementSuccess();
-
-                } catch (Exception e) {
-                    result.addError(lineNum, e.getMessage());
+        return importPatientsFromCsv(file, ImportMode.INSERT_ONLY);
+    }
+
+    /**
+     * Imports patients from the CSV layout written by
+     * {@link #exportPatientsToCsv(File)}. Progress is checkpointed after every
+     * batch; running the same unchanged file again after an interruption
+     * continues from the last checkpoint.
+     */
+    public ImportResult importPatientsFromCsv(File file, ImportMode mode) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportResult result;
+
+        try (ResumableImport source = ResumableImport.open(file, "PATIENTS_" + mode, importJobRepository)) {
+            if (source.header == null) {
+                return new ImportResult();
+            }
+            if (mode == ImportMode.UPSERT) {
+                CedulaIndex index;
+                try (Stream<Patient> existing = patientRepository.streamAll()) {
+                    index = CedulaIndex.load(existing, patientRepository.count());
                 }
+                result = source.run(new ImportPipeline<FingerprintedPatient>(),
+                        fields -> {
+                            Patient patient = toPatient(fields);
+                            return new FingerprintedPatient(patient, CedulaIndex.fingerprint(patient));
+                        },
+                        (rows, res) -> upsertPatients(rows, res, index));
+            } else {
+                result = source.run(new ImportPipeline<Patient>(), this::toPatient, this::insertPatients);
             }
         }
 
-        AppLogger.info("Import completed: %d success, %d errors", result.getSuccessCount(), result.getErrorCount());
+        AppLogger.info("Import (%s) completed: %s in %d ms", mode, result.getSummary(),
+                System.currentTimeMillis() - start);
         return result;
     }
 
-    private String[] parseCsvLine(String line) {
-        List<String> fields = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
+    /**
+     * Imports consultations, resolving patients by the "Cédula" column. Rows
+     * whose (patient, fecha, motivo) already exists, in the database or earlier
+     * in the file, are skipped. Checkpointed like the patient import.
+     */
+    public ImportResult importHistoriesFromCsv(File file) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportResult result;
+
+        try (ResumableImport source = ResumableImport.open(file, "HISTORIES", importJobRepository)) {
+            if (source.header == null) {
+                return new ImportResult();
+            }
+            HistoryColumns columns = HistoryColumns.of(source.header);
+            if (columns.missing() != null) {
+                result = new ImportResult();
+                result.addError(1, "Falta la columna obligatoria: " + columns.missing());
+                source.finish(result);
+                return result;
+            }
+
+            Map<String, Integer> patientIds = new HashMap<>();
+            patientRepository.findAllIdsByCedula().forEach((cedula, id) -> patientIds.put(cedulaKey(cedula), id));
+            HistoryDuplicateIndex duplicates;
+            try (Stream<ClinicalHistory> existing = historyRepository.streamAllKeys()) {
+                duplicates = HistoryDuplicateIndex.load(existing, historyRepository.count(),
+                        ImportPipeline.DEFAULT_CHUNK_SIZE);
+            }
 
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
+            result = source.run(new ImportPipeline<KeyedHistory>(),
+                    fields -> toHistory(fields, columns, patientIds),
+                    (rows, res) -> insertHistories(rows, res, duplicates));
+        }
 
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    current.append('"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                fields.add(current.toString().trim());
-                current = new StringBuilder();
+        AppLogger.info("History import completed: %s in %d ms", result.getSummary(),
+                System.currentTimeMillis() - start);
+        return result;
+    }
+
+    // Runs on several import workers at once; patientIds is only read
+    private KeyedHistory toHistory(String[] fields, HistoryColumns columns, Map<String, Integer> patientIds) {
+        String cedula = field(fields, columns.cedula());
+        Integer patientId = patientIds.get(cedulaKey(cedula));
+        if (patientId == null) {
+            throw new RowRejectedException("No existe un paciente con la cédula " + cedula);
+        }
+
+        ClinicalHistory history = new ClinicalHistory();
+        history.setPatientId(patientId);
+        history.setFechaConsulta(parseDateTime(field(fields, columns.fecha())));
+        history.setMotivoConsulta(field(fields, columns.motivo()));
+        history.setAntecedentes(field(fields, columns.antecedentes()));
+        history.setExamenFisico(field(fields, columns.examenFisico()));
+        history.setDiagnostico(field(fields, columns.diagnostico()));
+        history.setConducta(field(fields, columns.conducta()));
+        history.setObservaciones(field(fields, columns.observaciones()));
+        history.setMedico(field(fields, columns.medico()));
+
+        ValidationResult validation = historyValidator.validate(history);
+        if (!validation.isValid()) {
+            throw new RowRejectedException(String.join("; ", validation.getErrors()));
+        }
+        return new KeyedHistory(history, HistoryDuplicateIndex.key(history.getPatientId(),
+                history.getFechaConsulta(), history.getMotivoConsulta()));
+    }
+
+    private void insertHistories(List<ImportRow<KeyedHistory>> rows, ImportResult result,
+            HistoryDuplicateIndex duplicates) {
+        List<ClinicalHistory> batch = new ArrayList<>(rows.size());
+        for (ImportRow<KeyedHistory> row : rows) {
+            if (duplicates.add(row.value().key())) {
+                batch.add(row.value().history());
             } else {
-                current.append(c);
+                result.incrementSkipped();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            historyRepository.insertAll(batch);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            result.incrementSuccess();
+        }
+    }
+
+    // Runs on several import workers at once; must not touch shared state
+    private Patient toPatient(String[] fields) {
+        if (fields.length < 3) {
+            throw new RowRejectedException("Campos insuficientes");
+        }
+
+        Patient patient = new Patient();
+        patient.setCedula(field(fields, 1));
+        patient.setNombre(field(fields, 2));
+        patient.setApellido(field(fields, 3));
+        patient.setTelefono(field(fields, 4));
+        patient.setEmail(field(fields, 5));
+        patient.setDireccion(field(fields, 6));
+        patient.setSexo(field(fields, 7));
+        patient.setFechaNacimiento(parseDate(field(fields, 8)));
+        patient.setFechaRegistro(LocalDate.now());
+
+        ValidationResult validation = patientValidator.validate(patient);
+        if (!validation.isValid()) {
+            throw new RowRejectedException(String.join("; ", validation.getErrors()));
+        }
+        return patient;
+    }
+
+    private void insertPatients(List<ImportRow<Patient>> rows, ImportResult result) {
+        List<Patient> patients = new ArrayList<>(rows.size());
+        for (ImportRow<Patient> row : rows) {
+            patients.add(row.value());
+        }
+
+        // Patients are passed in row order, so a rejected index is also its row
+        patientRepository.insertAll(patients, (index, error) -> {
+            ImportRow<Patient> row = rows.get(index);
+            String message = String.valueOf(error.getCause() != null ? error.getCause().getMessage() : error.getMessage());
+            result.addError(row.line(), message.contains("UNIQUE")
+                    ? "Ya existe un paciente con la cédula " + row.value().getCedula()
+                    : message);
+        });
+
+        for (Patient patient : patients) {
+            if (patient.getId() != null) {
+                result.incrementSuccess();
             }
         }
-        fields.add(current.toString().trim());
+    }
 
-        return fields.toArray(new String[0]);
+    private void upsertPatients(List<ImportRow<FingerprintedPatient>> rows, ImportResult result,
+            CedulaIndex index) {
+        List<Patient> changed = new ArrayList<>();
+        int inserted = 0;
+        int updated = 0;
+        for (ImportRow<FingerprintedPatient> row : rows) {
+            Patient patient = row.value().patient();
+            switch (index.classify(patient, row.value().fingerprint())) {
+                case INSERT -> {
+                    changed.add(patient);
+                    inserted++;
+                }
+                case UPDATE -> {
+                    changed.add(patient);
+                    updated++;
+                }
+                case SKIP -> result.incrementSkipped();
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            patientRepository.upsertAll(changed);
+        }
+        for (int i = 0; i < inserted; i++) {
+            result.incrementSuccess();
+        }
+        for (int i = 0; i < updated; i++) {
+            result.incrementUpdated();
+        }
+    }
+
+    private String field(String[] fields, int index) {
+        return index >= 0 && fields.length > index ? fields[index].trim() : "";
+    }
+
+    private static String cedulaKey(String cedula) {
+        return cedula.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private LocalDateTime parseDateTime(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            // Exports use "yyyy-MM-dd HH:mm:ss"; ISO values with a 'T' are accepted too
+            return LocalDateTime.parse(value.replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            throw new RowRejectedException("Fecha de consulta inválida: " + value);
+        }
+    }
+
+    private LocalDate parseDate(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            // Accept a trailing time part, as written by other tools
+            return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value);
+        } catch (DateTimeParseException e) {
+            throw new RowRejectedException("Fecha de nacimiento inválida: " + value);
+        }
     }
 
     private String escapeCsv(String text) {
@@ -169,32 +443,134 @@ public class ExportImportService {
         return text;
     }
 
-    public static class ImportResult {
-        private int successCount = 0;
-        private final List<String> errors = new ArrayList<>();
+    private record FingerprintedPatient(Patient patient, long fingerprint) {
+    }
+
+    private record KeyedHistory(ClinicalHistory history, long key) {
+    }
+
+    /**
+     * The input of an import together with its checkpoint record. A running
+     * job for the same unchanged file is resumed by seeking the file channel to
+     * its last committed offset; otherwise a new job starts after the header.
+     */
+    private static final class ResumableImport implements Closeable {
+        final String[] header;
+        private final CsvReader reader;
+        private final ImportJob job;
+        private final ImportJobRepository jobs;
+
+        private ResumableImport(String[] header, CsvReader reader, ImportJob job, ImportJobRepository jobs) {
+            this.header = header;
+            this.reader = reader;
+            this.job = job;
+            this.jobs = jobs;
+        }
+
+        static ResumableImport open(File file, String kind, ImportJobRepository jobs) throws IOException {
+            FileInputStream in = new FileInputStream(file);
+            CsvReader reader = new CsvReader(in);
+            try {
+                String[] header = reader.next();
+                if (header == null) {
+                    return new ResumableImport(null, reader, null, jobs);
+                }
+
+                String path = file.getCanonicalPath();
+                ImportJob job = jobs.findRunning(kind, path).orElse(null);
+                if (job != null && job.isSameFile(file.length(), file.lastModified())) {
+                    in.getChannel().position(job.getByteOffset());
+                    reader = new CsvReader(in, job.getByteOffset(), job.getNextLine());
+                    AppLogger.info("Resuming import of %s at line %d", file.getName(), job.getNextLine());
+                    return new ResumableImport(header, reader, job, jobs);
+                }
+                if (job != null) {
+                    job.setStatus(ImportJob.ABANDONED);
+                    jobs.save(job);
+                }
+
+                job = new ImportJob(kind, path, file.length(), file.lastModified());
+                job.setByteOffset(reader.getOffset());
+                job.setNextLine(reader.getNextLineNumber());
+                jobs.save(job);
+                return new ResumableImport(header, reader, job, jobs);
+            } catch (IOException | RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+        }
+
+        <T> ImportResult run(ImportPipeline<T> pipeline, ImportPipeline.RowProcessor<T> processor,
+                ImportPipeline.BatchWriter<T> writer) throws IOException {
+            ImportResult result = new ImportResult(job.getSuccessCount(), job.getUpdatedCount(),
+                    job.getSkippedCount(), job.getErrorCount());
+            pipeline.withCheckpoints((write, offset, nextLine) -> jobs.checkpoint(job, () -> {
+                write.run();
+                job.setByteOffset(offset);
+                job.setNextLine(nextLine);
+                copyCounts(result);
+            }));
+            pipeline.run(reader, processor, writer, result);
+            finish(result);
+            return result;
+        }
 
-        public void incrementSuccess() {
-            successCount++;
+        void finish(ImportResult result) {
+            copyCounts(result);
+            job.setStatus(ImportJob.COMPLETED);
+            jobs.save(job);
         }
 
-        public void addError(int line, String message) {
-            errors.add("Línea " + line + ": " + message);
+        private void copyCounts(ImportResult result) {
+            job.setSuccessCount(result.getSuccessCount());
+            job.setUpdatedCount(result.getUpdatedCount());
+            job.setSkippedCount(result.getSkippedCount());
+            job.setErrorCount(result.getErrorCount());
         }
 
-        public int getSuccessCount() {
-            return successCount;
+        @Override
+        public void close() throws IOException {
+            reader.close();
         }
+    }
 
-        public int getErrorCount() {
-            return errors.size();
+    /**
+     * Column positions in a history CSV, located by header name so files from
+     * other systems work as long as they use the same titles.
+     */
+    private record HistoryColumns(int cedula, int fecha, int motivo, int antecedentes, int examenFisico,
+            int diagnostico, int conducta, int observaciones, int medico) {
+
+        static HistoryColumns of(String[] header) {
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                positions.putIfAbsent(normalize(header[i]), i);
+            }
+            return new HistoryColumns(
+                    positions.getOrDefault("cedula", -1),
+                    positions.getOrDefault("fecha consulta", -1),
+                    positions.getOrDefault("motivo", -1),
+                    positions.getOrDefault("antecedentes", -1),
+                    positions.getOrDefault("examen fisico", -1),
+                    positions.getOrDefault("diagnostico", -1),
+                    positions.getOrDefault("conducta", -1),
+                    positions.getOrDefault("observaciones", -1),
+                    positions.getOrDefault("medico", -1));
         }
 
-        public List<String> getErrors() {
-            return errors;
+        String missing() {
+            if (cedula < 0) {
+                return "Cédula";
+            }
+            if (fecha < 0) {
+                return "Fecha Consulta";
+            }
+            return motivo < 0 ? "Motivo" : null;
         }
 
-        public String getSummary() {
-            return String.format("Importados: %d, Errores: %d", successCount, errors.size());
+        private static String normalize(String title) {
+            String stripped = Normalizer.normalize(title.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+            return stripped.toLowerCase(Locale.ROOT);
         }
     }
 }
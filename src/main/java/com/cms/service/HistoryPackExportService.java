@@ -0,0 +1,222 @@
+package com.cms.service;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.infra.AppLogger;
+import com.cms.repository.ChangeLogRepository;
+import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.repository.PatientRepository;
+import com.cms.service.report.ProgressListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds a ZIP with one HTML history document per patient. Documents are
+ * rendered in parallel on a fork-join pool and written by the calling thread
+ * in patient-id order. Work in progress lives in a ".part" file; if a run is
+ * interrupted, the next run salvages the complete entries and only renders
+ * the missing patients. A ".part.version" file next to it holds the change
+ * log sequence the documents were rendered at; if patients or consultations
+ * changed since, the partial archive is thrown away.
+ */
+public class HistoryPackExportService {
+
+    private static final String ENTRY_PREFIX = "historias/";
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private final PatientRepository patientRepository;
+    private final ClinicalHistoryRepository historyRepository;
+    private final ChangeLogRepository changeLogRepository;
+    private final ReportService reportService;
+
+    public HistoryPackExportService(PatientRepository patientRepository,
+            ClinicalHistoryRepository historyRepository,
+            ChangeLogRepository changeLogRepository,
+            ReportService reportService) {
+        this.patientRepository = patientRepository;
+        this.historyRepository = historyRepository;
+        this.changeLogRepository = changeLogRepository;
+        this.reportService = reportService;
+    }
+
+    public void exportAll(File zipFile, ProgressListener progress) throws IOException {
+        Path target = zipFile.toPath();
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Path partNew = target.resolveSibling(target.getFileName() + ".part.new");
+        Path partVersion = target.resolveSibling(target.getFileName() + ".part.version");
+
+        // A finished salvage deletes .part, so a lone .part.new is the newest state
+        if (!Files.exists(part) && Files.exists(partNew)) {
+            Files.move(partNew, part);
+        }
+        Files.deleteIfExists(partNew);
+
+        // Read before the data, so a change made while rendering invalidates this run's documents
+        String version = Long.toString(changeLogRepository.currentSequence());
+        if (Files.exists(part) && !version.equals(readVersion(partVersion))) {
+            AppLogger.info("Data changed since the interrupted history pack, starting over");
+            Files.delete(part);
+        }
+        Files.writeString(partVersion, version);
+
+        List<Patient> patients = new ArrayList<>(patientRepository.findAll());
+        patients.sort(Comparator.comparing(Patient::getId));
+        Set<Integer> patientIds = new HashSet<>();
+        patients.forEach(p -> patientIds.add(p.getId()));
+        long total = patients.size();
+        long start = System.currentTimeMillis();
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(partNew)));
+                Stream<ClinicalHistory> histories = historyRepository.streamAllOrderByPatient()) {
+
+            Set<Integer> done = Files.exists(part) ? salvage(part, patientIds, zos) : new HashSet<>();
+            zos.flush();
+            Files.deleteIfExists(part);
+            if (!done.isEmpty()) {
+                AppLogger.info("Resuming history pack: %d of %d patients already exported", done.size(), total);
+            }
+
+            long completed = done.size();
+            progress.onProgress(completed, total);
+
+            Iterator<ClinicalHistory> historyIt = histories.iterator();
+            ClinicalHistory pending = historyIt.hasNext() ? historyIt.next() : null;
+            Deque<CompletableFuture<RenderedDocument>> window = new ArrayDeque<>();
+            int maxInFlight = parallelism * WINDOW_PER_THREAD;
+
+            for (Patient patient : patients) {
+                List<ClinicalHistory> patientHistories = new ArrayList<>();
+                while (pending != null && pending.getPatientId() <= patient.getId()) {
+                    if (pending.getPatientId().equals(patient.getId())) {
+                        patientHistories.add(pending);
+                    }
+                    pending = historyIt.hasNext() ? historyIt.next() : null;
+                }
+
+                if (done.contains(patient.getId())) {
+                    continue;
+                }
+
+                if (window.size() >= maxInFlight) {
+                    write(zos, window.poll());
+                    progress.onProgress(++completed, total);
+                }
+                window.add(CompletableFuture.supplyAsync(() -> render(patient, patientHistories), pool));
+            }
+
+            while (!window.isEmpty()) {
+                write(zos, window.poll());
+                progress.onProgress(++completed, total);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Files.move(partNew, target, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(partVersion);
+        AppLogger.info("History pack with %d patients exported to %s in %d ms", total, zipFile.getName(),
+                System.currentTimeMillis() - start);
+    }
+
+    private RenderedDocument render(Patient patient, List<ClinicalHistory> histories) {
+        String name = ENTRY_PREFIX + patient.getId() + "_" + safeName(patient.getCedula()) + ".html";
+        byte[] content = reportService.renderPatientHistoryHtml(patient, histories)
+                .getBytes(StandardCharsets.UTF_8);
+        return new RenderedDocument(name, content);
+    }
+
+    private void write(ZipOutputStream zos, CompletableFuture<RenderedDocument> future) throws IOException {
+        RenderedDocument document;
+        try {
+            document = future.join();
+        } catch (CompletionException e) {
+            throw new IOException("Error rendering history document", e.getCause());
+        }
+        zos.putNextEntry(new ZipEntry(document.name()));
+        zos.write(document.content());
+        zos.closeEntry();
+    }
+
+    private static String readVersion(Path file) throws IOException {
+        return Files.exists(file) ? Files.readString(file).trim() : null;
+    }
+
+    /**
+     * Copies every complete entry of an interrupted run into the new archive
+     * and returns the patient ids already exported. A truncated trailing
+     * entry is dropped and rendered again, and entries of patients no longer
+     * in {@code patientIds} are dropped.
+     */
+    private Set<Integer> salvage(Path part, Set<Integer> patientIds, ZipOutputStream zos) throws IOException {
+        Set<Integer> done = new HashSet<>();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(part));
+                ZipInputStream zis = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                byte[] content = zis.readAllBytes();
+                Integer patientId = parsePatientId(entry.getName());
+                if (patientId == null || !patientIds.contains(patientId)) {
+                    continue;
+                }
+                zos.putNextEntry(new ZipEntry(entry.getName()));
+                zos.write(content);
+                zos.closeEntry();
+                done.add(patientId);
+            }
+        } catch (EOFException | ZipException e) {
+            AppLogger.info("Partial history pack ends in a truncated entry, %d entries recovered", done.size());
+        }
+        return done;
+    }
+
+    private Integer parsePatientId(String entryName) {
+        if (!entryName.startsWith(ENTRY_PREFIX)) {
+            return null;
+        }
+        int underscore = entryName.indexOf('_', ENTRY_PREFIX.length());
+        if (underscore < 0) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(entryName.substring(ENTRY_PREFIX.length(), underscore));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String safeName(String value) {
+        return value == null ? "" : value.replaceAll("[^A-Za-z0-9-]", "_");
+    }
+
+    private record RenderedDocument(String name, byte[] content) {
+    }
+}
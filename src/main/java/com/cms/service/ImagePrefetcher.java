@@ -0,0 +1,113 @@
+package com.cms.service;
+
+import com.cms.infra.AppLogger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes the images around the one being viewed into the shared image cache
+ * on a low-priority thread, so stepping to the next or previous one finds it
+ * already decoded. Each call replaces the previous window: images that left it
+ * and have not started decoding are dropped.
+ */
+public class ImagePrefetcher {
+
+    public static final int DEFAULT_RADIUS = 2;
+
+    private final ImageService imageService;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final int radius;
+    private final ExecutorService executor;
+    private final Map<File, Future<?>> pending = new LinkedHashMap<>();
+
+    public ImagePrefetcher(ImageService imageService, int maxWidth, int maxHeight) {
+        this(imageService, maxWidth, maxHeight, DEFAULT_RADIUS);
+    }
+
+    public ImagePrefetcher(ImageService imageService, int maxWidth, int maxHeight, int radius) {
+        this.imageService = imageService;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.radius = radius;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "image-prefetch");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Prefetches up to {@code radius} images on each side of {@code index},
+     * nearest first and the next one before the previous one.
+     */
+    public synchronized void prefetchAround(List<File> files, int index) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        List<File> wanted = new ArrayList<>();
+        for (int i : neighbours(files.size(), index, radius)) {
+            wanted.add(files.get(i));
+        }
+
+        for (Iterator<Map.Entry<File, Future<?>>> it = pending.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<File, Future<?>> entry = it.next();
+            if (entry.getValue().isDone()) {
+                it.remove();
+            } else if (!wanted.contains(entry.getKey())) {
+                // A decode already running is left to finish; queued ones never start
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+
+        for (File file : wanted) {
+            if (!pending.containsKey(file)) {
+                pending.put(file, executor.submit(() -> prefetch(file)));
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        pending.values().forEach(f -> f.cancel(false));
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private void prefetch(File file) {
+        try {
+            if (imageService.getImageSize(file) != null) {
+                imageService.getImage(file, maxWidth, maxHeight);
+            }
+        } catch (Exception e) {
+            // The viewer reports unreadable files when they are actually opened
+            AppLogger.warn("Could not prefetch image: " + file);
+        }
+    }
+
+    /**
+     * Indices within {@code radius} of {@code index} in {@code [0, count)},
+     * excluding {@code index} itself, ordered index+1, index-1, index+2, ...
+     */
+    static List<Integer> neighbours(int count, int index, int radius) {
+        List<Integer> result = new ArrayList<>();
+        for (int distance = 1; distance <= radius; distance++) {
+            if (index + distance < count) {
+                result.add(index + distance);
+            }
+            if (index - distance >= 0) {
+                result.add(index - distance);
+            }
+        }
+        return result;
+    }
+}
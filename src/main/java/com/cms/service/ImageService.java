@@ -0,0 +1,128 @@
+package com.cms.service;
+
+import com.cms.infra.AppLogger;
+import com.cms.service.image.ImageCache;
+import com.cms.service.image.ImageDecoder;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded images for every viewer, shared through one {@link ImageCache}, so
+ * opening the same attachment again, from any dialog, does not decode it
+ * again. The memory budget defaults to an eighth of the heap and can be set
+ * in megabytes with the {@code cms.imageCache.mb} system property.
+ */
+public class ImageService {
+
+    private static final String BUDGET_PROPERTY = "cms.imageCache.mb";
+    private static final int STATS_LOG_INTERVAL = 50;
+    private static final int MAX_CACHED_SIZES = 512;
+
+    private final ImageCache cache;
+    private final Map<String, Dimension> sizes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Dimension> eldest) {
+            return size() > MAX_CACHED_SIZES;
+        }
+    };
+    private int decodes;
+
+    public ImageService() {
+        this(new ImageCache(defaultBudget()));
+    }
+
+    public ImageService(ImageCache cache) {
+        this.cache = cache;
+    }
+
+    private static long defaultBudget() {
+        Long megabytes = Long.getLong(BUDGET_PROPERTY);
+        return megabytes != null ? megabytes * 1024 * 1024 : Runtime.getRuntime().maxMemory() / 8;
+    }
+
+    public ImageCache getCache() {
+        return cache;
+    }
+
+    public ImageCache.Stats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * The image in {@code file} decoded to fit the box, from memory if it
+     * has been shown at that size before. Returns null if the format is not
+     * supported. Blocks while decoding, so call it off the EDT.
+     */
+    public BufferedImage getImage(File file, int maxWidth, int maxHeight) throws IOException {
+        String key = fitKey(file, maxWidth, maxHeight);
+        BufferedImage image = cache.get(key);
+        if (image != null) {
+            return image;
+        }
+        image = ImageDecoder.decodeToFit(file, maxWidth, maxHeight);
+        if (image != null) {
+            cache.put(key, image);
+            logStats();
+        }
+        return image;
+    }
+
+    /**
+     * The image decoded to fit the box if it is already in memory, without
+     * touching the file's contents. Safe to call on the EDT.
+     */
+    public BufferedImage getCachedImage(File file, int maxWidth, int maxHeight) {
+        return cache.get(fitKey(file, maxWidth, maxHeight));
+    }
+
+    /**
+     * Full pixel size of the image in {@code file}, read from its header the
+     * first time. Returns null if the format is not supported.
+     */
+    public Dimension getImageSize(File file) throws IOException {
+        Dimension size = getCachedImageSize(file);
+        if (size == null) {
+            size = ImageDecoder.readSize(file);
+            if (size != null) {
+                synchronized (sizes) {
+                    sizes.put(fileKey(file), size);
+                }
+            }
+        }
+        return size;
+    }
+
+    /** The size already read by {@link #getImageSize(File)}, or null. */
+    public Dimension getCachedImageSize(File file) {
+        synchronized (sizes) {
+            Dimension size = sizes.get(fileKey(file));
+            return size != null ? new Dimension(size) : null;
+        }
+    }
+
+    // Size and date in the key make an edited or restored file decode again
+    private static String fileKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    private static String fitKey(File file, int maxWidth, int maxHeight) {
+        return "fit|" + fileKey(file) + "|" + maxWidth + "x" + maxHeight;
+    }
+
+    private void logStats() {
+        synchronized (this) {
+            if (++decodes % STATS_LOG_INTERVAL != 0) {
+                return;
+            }
+        }
+        ImageCache.Stats stats = cache.getStats();
+        AppLogger.info("Image cache: %d hits, %d soft hits, %d misses, %d evictions, %d images in %d of %d MB",
+                stats.hits(), stats.softHits(), stats.misses(), stats.evictions(), stats.entries(),
+                stats.bytes() / (1024 * 1024), stats.budgetBytes() / (1024 * 1024));
+    }
+}
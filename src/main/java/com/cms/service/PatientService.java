@@ -105,9 +105,7 @@ public class PatientService {
     }
 
     public boolean existsByCedula(String cedula, Integer excludeId) {
-        return patientRepository.findAll().stream()
-                .anyMatch(p -> p.getCedula().equalsIgnoreCase(cedula) &&
-                        (excludeId == null || !p.getId().equals(excludeId)));
+        return cedula != null && patientRepository.existsByCedulaIgnoreCase(cedula, excludeId);
     }
 
     public long countPatients() {
@@ -0,0 +1,145 @@
+package com.cms.service;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.infra.AppLogger;
+import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.repository.PatientRepository;
+import com.cms.service.exception.NotFoundException;
+import com.cms.service.report.ProgressListener;
+import com.cms.service.report.ReportTemplateCache;
+import com.cms.service.report.StreamingDataSource;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class PdfReportService {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final Locale LOCALE = Locale.forLanguageTag("es-VE");
+
+    // Reports expected to exceed this many rows are filled with pages swapped to disk
+    private static final long VIRTUALIZE_THRESHOLD = 2_000;
+    private static final int VIRTUALIZER_MAX_PAGES = 50;
+    private static final int SWAP_BLOCK_SIZE = 4096;
+    private static final int SWAP_MIN_GROW = 100;
+
+    private final PatientRepository patientRepository;
+    private final ClinicalHistoryRepository historyRepository;
+    private final ReportTemplateCache templateCache;
+
+    public PdfReportService(PatientRepository patientRepository,
+            ClinicalHistoryRepository historyRepository,
+            ReportTemplateCache templateCache) {
+        this.patientRepository = patientRepository;
+        this.historyRepository = historyRepository;
+        this.templateCache = templateCache;
+    }
+
+    public void generatePatientsListPdf(File file) throws IOException {
+        generatePatientsListPdf(file, ProgressListener.NONE);
+    }
+
+    public void generatePatientsListPdf(File file, ProgressListener progress) throws IOException {
+        long total = patientRepository.count();
+        Map<String, Object> params = baseParameters("Lista de Pacientes Registrados");
+        params.put("TOTAL", total);
+
+        try (Stream<Patient> patients = patientRepository.streamAll()) {
+            JRDataSource dataSource = new StreamingDataSource<>(patients.iterator())
+                    .field("cedula", Patient::getCedula)
+                    .field("nombre", Patient::getNombreCompleto)
+                    .field("telefono", Patient::getTelefono)
+                    .field("email", Patient::getEmail)
+                    .field("fechaRegistro",
+                            p -> p.getFechaRegistro() != null ? p.getFechaRegistro().format(DAY_FORMAT) : null)
+                    .progress(progress, total);
+
+            fillAndExport("patients_list", params, dataSource, total, file);
+        }
+    }
+
+    public void generatePatientHistoryPdf(Integer patientId, File file) throws IOException {
+        generatePatientHistoryPdf(patientId, file, ProgressListener.NONE);
+    }
+
+    public void generatePatientHistoryPdf(Integer patientId, File file, ProgressListener progress)
+            throws IOException {
+        Patient patient = patientRepository.findById(patientId)
+                .orElseThrow(() -> new NotFoundException("Paciente", patientId));
+
+        List<ClinicalHistory> histories = historyRepository.findByPatientId(patientId);
+        Map<String, Object> params = baseParameters("Historia Clínica");
+        params.put("PACIENTE_NOMBRE", patient.getNombreCompleto());
+        params.put("PACIENTE_CEDULA", patient.getCedula());
+        params.put("PACIENTE_TELEFONO", patient.getTelefono());
+        params.put("PACIENTE_EMAIL", patient.getEmail());
+
+        JRDataSource dataSource = new StreamingDataSource<>(histories.iterator())
+                .field("fecha", h -> h.getFechaConsulta() != null ? h.getFechaConsulta().format(DATE_FORMAT) : null)
+                .field("motivo", ClinicalHistory::getMotivoConsulta)
+                .field("antecedentes", ClinicalHistory::getAntecedentes)
+                .field("examenFisico", ClinicalHistory::getExamenFisico)
+                .field("diagnostico", ClinicalHistory::getDiagnostico)
+                .field("conducta", ClinicalHistory::getConducta)
+                .field("observaciones", ClinicalHistory::getObservaciones)
+                .field("medico", ClinicalHistory::getMedico)
+                .progress(progress, histories.size());
+
+        fillAndExport("patient_history", params, dataSource, histories.size(), file);
+    }
+
+    private Map<String, Object> baseParameters(String title) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("TITULO", title);
+        params.put("GENERADO", LocalDateTime.now().format(DATE_FORMAT));
+        params.put(JRParameter.REPORT_LOCALE, LOCALE);
+        return params;
+    }
+
+    private void fillAndExport(String template, Map<String, Object> params, JRDataSource dataSource,
+            long expectedRows, File file) throws IOException {
+        long start = System.currentTimeMillis();
+        JRSwapFileVirtualizer virtualizer = null;
+
+        if (expectedRows > VIRTUALIZE_THRESHOLD) {
+            JRSwapFile swapFile = new JRSwapFile(System.getProperty("java.io.tmpdir"),
+                    SWAP_BLOCK_SIZE, SWAP_MIN_GROW);
+            virtualizer = new JRSwapFileVirtualizer(VIRTUALIZER_MAX_PAGES, swapFile, true);
+            params.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            JasperPrint print = JasperFillManager.fillReport(templateCache.get(template), params, dataSource);
+            JasperExportManager.exportReportToPdfStream(print, out);
+        } catch (JRException e) {
+            throw new IOException("Error generando reporte PDF: " + e.getMessage(), e);
+        } finally {
+            if (virtualizer != null) {
+                virtualizer.cleanup();
+            }
+        }
+
+        AppLogger.info("PDF report %s exported to %s in %d ms%s", template, file.getName(),
+                System.currentTimeMillis() - start, virtualizer != null ? " (virtualized)" : "");
+    }
+}
@@ -0,0 +1,332 @@
+package com.cms.service;
+
+import com.cms.infra.AppLogger;
+import com.cms.infra.DatabaseConnection;
+import com.cms.service.exception.BusinessException;
+import com.cms.service.analytics.PivotTable;
+import com.cms.service.report.ProgressListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs report exports on a small bounded worker pool so the UI never waits on
+ * them. Finished outputs are cached under a key made of the report type, its
+ * parameters and the database data version, so asking again for the same
+ * report over unchanged data is just a file copy.
+ */
+public class ReportJobService {
+
+    private static final int WORKERS = 2;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final int MAX_CACHED_RESULTS = 20;
+    private static final String CACHE_DIR = "cache/report-jobs";
+
+    public enum ReportType {
+        PATIENTS_PDF("pdf"),
+        PATIENTS_HTML("html"),
+        PATIENT_HISTORY_PDF("pdf"),
+        PATIENT_HISTORY_HTML("html"),
+        CONSULTATIONS_CSV("csv"),
+        COHORTS_CSV("csv"),
+        HISTORY_PACK_ZIP("zip", true);
+
+        private final String extension;
+        private final boolean resumable;
+
+        ReportType(String extension) {
+            this(extension, false);
+        }
+
+        ReportType(String extension, boolean resumable) {
+            this.extension = extension;
+            this.resumable = resumable;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        // Resumable reports write to a stable path so an interrupted run can be continued
+        public boolean isResumable() {
+            return resumable;
+        }
+    }
+
+    public interface JobListener {
+        void onProgress(int percent);
+
+        void onCompleted(File output, boolean fromCache);
+
+        void onFailed(Throwable error);
+
+        void onCancelled();
+    }
+
+    private final ReportService reportService;
+    private final PdfReportService pdfReportService;
+    private final HistoryPackExportService historyPackExportService;
+    private final AnalyticsService analyticsService;
+    private final DatabaseConnection dbConnection;
+    private final ThreadPoolExecutor executor;
+    private final Path cacheDir;
+    private final Map<String, Path> results;
+
+    public ReportJobService(ReportService reportService, PdfReportService pdfReportService,
+            HistoryPackExportService historyPackExportService, AnalyticsService analyticsService,
+            DatabaseConnection dbConnection) {
+        this.reportService = reportService;
+        this.pdfReportService = pdfReportService;
+        this.historyPackExportService = historyPackExportService;
+        this.analyticsService = analyticsService;
+        this.dbConnection = dbConnection;
+        this.cacheDir = Paths.get(CACHE_DIR);
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Path> eldest) {
+                if (size() > MAX_CACHED_RESULTS) {
+                    deleteQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(WORKERS, WORKERS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "report-worker-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the report. The cache is looked up on the worker too, since the
+     * data version query and copying a cached output may take a while; the
+     * listener is always called from the worker thread.
+     */
+    public ReportJob submit(ReportType type, Map<String, Object> params, File destination,
+            JobListener listener) {
+        ReportJob job = new ReportJob(listener, new CompletableFuture<>());
+        try {
+            job.future = executor.submit(() -> run(job, type, params, destination));
+            return job;
+        } catch (RejectedExecutionException e) {
+            throw new BusinessException("QUEUE_FULL",
+                    "Hay demasiados reportes en cola. Intente nuevamente en unos momentos.");
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ReportJob job, ReportType type, Map<String, Object> params, File destination) {
+        if (!job.start()) {
+            return;
+        }
+
+        JobListener listener = job.listener;
+        CompletableFuture<Void> completion = job.completion;
+        Path output = null;
+        try {
+            String key = cacheKey(type, params);
+            if (copyCached(key, type, destination)) {
+                listener.onProgress(100);
+                listener.onCompleted(destination, true);
+                completion.complete(null);
+                return;
+            }
+            checkCancelled(job);
+
+            Files.createDirectories(cacheDir);
+            String fileName = type.isResumable() ? type.name().toLowerCase() : UUID.randomUUID().toString();
+            output = cacheDir.resolve(fileName + "." + type.getExtension());
+
+            ProgressListener progress = progressFor(job);
+            generate(type, params, output.toFile(), progress);
+            checkCancelled(job);
+
+            Files.copy(output, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            store(key, output);
+            listener.onProgress(100);
+            listener.onCompleted(destination, false);
+            completion.complete(null);
+        } catch (CancellationException e) {
+            deleteQuietly(output);
+            listener.onCancelled();
+            completion.cancel(false);
+        } catch (Throwable e) {
+            deleteQuietly(output);
+            if (job.cancelRequested) {
+                listener.onCancelled();
+                completion.cancel(false);
+            } else {
+                AppLogger.error("Report job failed: " + type, e);
+                listener.onFailed(e);
+                completion.completeExceptionally(e);
+            }
+        }
+    }
+
+    private boolean copyCached(String key, ReportType type, File destination) {
+        Path cached = lookup(key);
+        if (cached == null) {
+            return false;
+        }
+        try {
+            Files.copy(cached, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            AppLogger.info("Report %s served from cache", type);
+            return true;
+        } catch (IOException e) {
+            AppLogger.warn("Cached report unreadable, regenerating: " + cached, e);
+            evict(key);
+            return false;
+        }
+    }
+
+    private void generate(ReportType type, Map<String, Object> params, File output, ProgressListener progress)
+            throws IOException {
+        switch (type) {
+            case PATIENTS_PDF -> pdfReportService.generatePatientsListPdf(output, progress);
+            case PATIENTS_HTML -> reportService.exportToFile(reportService.generatePatientsListHtml(), output);
+            case PATIENT_HISTORY_PDF -> pdfReportService.generatePatientHistoryPdf(
+                    (Integer) params.get("patientId"), output, progress);
+            case PATIENT_HISTORY_HTML -> reportService.exportToFile(
+                    reportService.generatePatientHistoryHtml((Integer) params.get("patientId")), output);
+            case CONSULTATIONS_CSV -> reportService.exportConsultationsCsv(
+                    (LocalDateTime) params.get("from"), (LocalDateTime) params.get("to"), output, progress);
+            case COHORTS_CSV -> writeCohorts((LocalDateTime) params.get("from"), (LocalDateTime) params.get("to"),
+                    output);
+            case HISTORY_PACK_ZIP -> historyPackExportService.exportAll(output, progress);
+        }
+    }
+
+    private void writeCohorts(LocalDateTime from, LocalDateTime to, File output) throws IOException {
+        PivotTable cohorts = analyticsService.cohorts(from, to);
+        try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+            cohorts.writeCsv(writer);
+        }
+    }
+
+    private ProgressListener progressFor(ReportJob job) {
+        int[] lastPercent = { -1 };
+        return (done, total) -> {
+            checkCancelled(job);
+            int percent = total > 0 ? (int) Math.min(99, done * 100 / total) : 0;
+            if (percent != lastPercent[0]) {
+                lastPercent[0] = percent;
+                job.listener.onProgress(percent);
+            }
+        };
+    }
+
+    private void checkCancelled(ReportJob job) {
+        if (job.cancelRequested || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private String cacheKey(ReportType type, Map<String, Object> params) {
+        Map<String, Object> sorted = new TreeMap<>(params);
+        return type + "|" + sorted + "|" + dbConnection.getDataVersion();
+    }
+
+    private synchronized Path lookup(String key) {
+        Path path = results.get(key);
+        if (path != null && !Files.exists(path)) {
+            results.remove(key);
+            return null;
+        }
+        return path;
+    }
+
+    private synchronized void store(String key, Path output) {
+        // Resumable outputs reuse their path; drop older keys that point at the overwritten file
+        results.entrySet().removeIf(e -> e.getValue().equals(output) && !e.getKey().equals(key));
+        Path previous = results.put(key, output);
+        if (previous != null && !previous.equals(output)) {
+            deleteQuietly(previous);
+        }
+    }
+
+    private synchronized void evict(String key) {
+        deleteQuietly(results.remove(key));
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            AppLogger.warn("Could not delete cached report: " + path, e);
+        }
+    }
+
+    public static class ReportJob {
+        private final JobListener listener;
+        private final CompletableFuture<Void> completion;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile Future<?> future;
+        private volatile boolean cancelRequested;
+
+        private ReportJob(JobListener listener, CompletableFuture<Void> completion) {
+            this.listener = listener;
+            this.completion = completion;
+        }
+
+        private boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        public void cancel() {
+            if (completion.isDone()) {
+                return;
+            }
+            cancelRequested = true;
+            if (start()) {
+                // Still queued: it will never run, so report the cancellation here
+                if (future != null) {
+                    future.cancel(false);
+                }
+                listener.onCancelled();
+                completion.cancel(false);
+            } else if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        public CompletableFuture<Void> getCompletion() {
+            return completion;
+        }
+    }
+}
@@ -5,12 +5,15 @@ import com.cms.domain.Patient;
 import com.cms.infra.AppLogger;
 import com.cms.repository.ClinicalHistoryRepository;
 import com.cms.repository.PatientRepository;
+import com.cms.service.report.ProgressListener;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class ReportService {
 
@@ -60,7 +63,10 @@ public class ReportService {
         if (patient == null)
             return "";
 
-        List<ClinicalHistory> histories = historyRepository.findByPatientId(patientId);
+        return renderPatientHistoryHtml(patient, historyRepository.findByPatientId(patientId));
+    }
+
+    public String renderPatientHistoryHtml(Patient patient, List<ClinicalHistory> histories) {
         StringBuilder html = new StringBuilder();
 
         html.append(getHtmlHeader("Historia Clínica - " + patient.getNombreCompleto()));
@@ -96,27 +102,51 @@ public class ReportService {
     }
 
     public String generateConsultationsCsv(LocalDateTime from, LocalDateTime to) {
-        StringBuilder csv = new StringBuilder();
-        csv.append("ID,Paciente,Fecha,Motivo,Diagnóstico,Médico\n");
-
-        List<ClinicalHistory> histories = historyRepository.findAll().stream()
-                .filter(h -> isInRange(h.getFechaConsulta(), from, to))
-                .toList();
+        StringWriter csv = new StringWriter();
+        try {
+            writeConsultationsCsv(from, to, csv, ProgressListener.NONE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return csv.toString();
+    }
 
-        for (ClinicalHistory h : histories) {
-            String patientName = patientRepository.findById(h.getPatientId())
-                    .map(Patient::getNombreCompleto)
-                    .orElse("Desconocido");
-
-            csv.append(h.getId()).append(",");
-            csv.append(escapeCsv(patientName)).append(",");
-            csv.append(h.getFechaConsulta() != null ? h.getFechaConsulta().format(DATE_FORMAT) : "").append(",");
-            csv.append(escapeCsv(h.getMotivoConsulta())).append(",");
-            csv.append(escapeCsv(h.getDiagnostico())).append(",");
-            csv.append(escapeCsv(h.getMedico())).append("\n");
+    public void exportConsultationsCsv(LocalDateTime from, LocalDateTime to, File file,
+            ProgressListener progress) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 64 * 1024)) {
+            writeConsultationsCsv(from, to, writer, progress);
         }
+        AppLogger.info("Report exported to: " + file.getAbsolutePath());
+    }
 
-        return csv.toString();
+    private void writeConsultationsCsv(LocalDateTime from, LocalDateTime to, Writer out,
+            ProgressListener progress) throws IOException {
+        long total = historyRepository.countByFechaConsultaBetween(from, to);
+        out.write("ID,Paciente,Fecha,Motivo,Diagnóstico,Médico\n");
+
+        try (Stream<ClinicalHistory> histories = historyRepository.streamWithPatientByFechaConsultaBetween(from, to)) {
+            Iterator<ClinicalHistory> it = histories.iterator();
+            long written = 0;
+            while (it.hasNext()) {
+                ClinicalHistory h = it.next();
+                String patientName = h.getPatient() != null ? h.getPatient().getNombreCompleto() : "Desconocido";
+
+                out.write(String.valueOf(h.getId()));
+                out.write(',');
+                out.write(escapeCsv(patientName));
+                out.write(',');
+                out.write(h.getFechaConsulta() != null ? h.getFechaConsulta().format(DATE_FORMAT) : "");
+                out.write(',');
+                out.write(escapeCsv(h.getMotivoConsulta()));
+                out.write(',');
+                out.write(escapeCsv(h.getDiagnostico()));
+                out.write(',');
+                out.write(escapeCsv(h.getMedico()));
+                out.write('\n');
+                progress.onProgress(++written, total);
+            }
+        }
     }
 
     public void exportToFile(String content, File file) throws IOException {
@@ -187,14 +217,4 @@ public class ReportService {
         }
         return text;
     }
-
-    private boolean isInRange(LocalDateTime date, LocalDateTime from, LocalDateTime to) {
-        if (date == null)
-            return false;
-        if (from != null && date.isBefore(from))
-            return false;
-        if (to != null && date.isAfter(to))
-            return false;
-        return true;
-    }
 }
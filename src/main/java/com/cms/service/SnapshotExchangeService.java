@@ -0,0 +1,252 @@
+package com.cms.service;
+
+import com.cms.domain.Appointment;
+import com.cms.domain.Attachment;
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.infra.AppLogger;
+import com.cms.repository.AppointmentRepository;
+import com.cms.repository.AttachmentRepository;
+import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.repository.PatientRepository;
+import com.cms.service.exchange.Section;
+import com.cms.service.exchange.SnapshotReader;
+import com.cms.service.exchange.SnapshotRecords;
+import com.cms.service.exchange.SnapshotWriter;
+import com.cms.service.imports.HistoryDuplicateIndex;
+import com.cms.service.imports.ImportResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Moves a clinic's data between installations as a binary snapshot
+ * (patients, consultations, appointments and attachment records). Much
+ * smaller and faster to read than the CSV exports.
+ *
+ * <p>Ids are not kept on import. Patients are matched by cédula and
+ * consultations by (patient, fecha, motivo), so importing a snapshot into a
+ * database that already has part of the data only adds what is missing.
+ */
+public class SnapshotExchangeService {
+
+    private final PatientRepository patientRepository;
+    private final ClinicalHistoryRepository historyRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final AttachmentRepository attachmentRepository;
+
+    public SnapshotExchangeService(PatientRepository patientRepository,
+            ClinicalHistoryRepository historyRepository,
+            AppointmentRepository appointmentRepository,
+            AttachmentRepository attachmentRepository) {
+        this.patientRepository = patientRepository;
+        this.historyRepository = historyRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.attachmentRepository = attachmentRepository;
+    }
+
+    public long exportSnapshot(File file) throws IOException {
+        long start = System.currentTimeMillis();
+        long count;
+
+        // Sections are written parents first so an import can map ids as it goes
+        try (SnapshotWriter writer = new SnapshotWriter(file.toPath())) {
+            try (Stream<Patient> patients = patientRepository.streamAll()) {
+                writer.write(Section.PATIENTS, patients.iterator(), SnapshotRecords::writePatient);
+            }
+            try (Stream<ClinicalHistory> histories = historyRepository.streamAllOrderByPatient()) {
+                writer.write(Section.HISTORIES, histories.iterator(), SnapshotRecords::writeHistory);
+            }
+            writer.write(Section.APPOINTMENTS, appointmentRepository.findAll().iterator(),
+                    SnapshotRecords::writeAppointment);
+            writer.write(Section.ATTACHMENTS, attachmentRepository.findAll().iterator(),
+                    SnapshotRecords::writeAttachment);
+            count = writer.getRecordCount();
+        }
+
+        AppLogger.info("Exported snapshot with %d records to %s in %d ms", count, file.getName(),
+                System.currentTimeMillis() - start);
+        return count;
+    }
+
+    public ImportResult importSnapshot(File file) throws IOException {
+        long start = System.currentTimeMillis();
+        SnapshotImport target = new SnapshotImport();
+
+        Map<Section, SnapshotReader.RecordDecoder<?>> decoders = new EnumMap<>(Section.class);
+        decoders.put(Section.PATIENTS, SnapshotRecords::readPatient);
+        decoders.put(Section.HISTORIES, SnapshotRecords::readHistory);
+        decoders.put(Section.APPOINTMENTS, SnapshotRecords::readAppointment);
+        decoders.put(Section.ATTACHMENTS, SnapshotRecords::readAttachment);
+
+        try (SnapshotReader reader = new SnapshotReader(file.toPath())) {
+            reader.read(decoders, target::apply);
+        }
+
+        AppLogger.info("Snapshot import completed: %s in %d ms", target.result.getSummary(),
+                System.currentTimeMillis() - start);
+        return target.result;
+    }
+
+    /**
+     * State of one import: the ids assigned so far, keyed by the ids in the
+     * snapshot, plus what the database already holds.
+     */
+    private final class SnapshotImport {
+        final ImportResult result = new ImportResult();
+        final Map<String, Integer> patientIdsByCedula = new HashMap<>();
+        final Map<Integer, Integer> patientIds = new HashMap<>();
+        final Map<Integer, Integer> historyIds = new HashMap<>();
+        HistoryDuplicateIndex histories;
+        Set<String> appointments;
+
+        SnapshotImport() {
+            patientRepository.findAllIdsByCedula().forEach((cedula, id) -> patientIdsByCedula.put(cedulaKey(cedula), id));
+        }
+
+        @SuppressWarnings("unchecked")
+        void apply(Section section, List<Object> records) {
+            switch (section) {
+                case PATIENTS -> applyPatients((List<Patient>) (List<?>) records);
+                case HISTORIES -> applyHistories((List<ClinicalHistory>) (List<?>) records);
+                case APPOINTMENTS -> applyAppointments((List<Appointment>) (List<?>) records);
+                case ATTACHMENTS -> applyAttachments((List<Attachment>) (List<?>) records);
+            }
+        }
+
+        private void applyPatients(List<Patient> patients) {
+            List<Patient> added = new ArrayList<>(patients.size());
+            List<Integer> sourceIds = new ArrayList<>(patients.size());
+            for (Patient patient : patients) {
+                Integer existing = patientIdsByCedula.get(cedulaKey(patient.getCedula()));
+                if (existing != null) {
+                    patientIds.put(patient.getId(), existing);
+                    result.incrementSkipped();
+                    continue;
+                }
+                sourceIds.add(patient.getId());
+                patient.setId(null);
+                added.add(patient);
+            }
+
+            patientRepository.insertAll(added, (index, error) -> result.addError(
+                    "Paciente " + added.get(index).getCedula() + ": " + error.getCause().getMessage()));
+            for (int i = 0; i < added.size(); i++) {
+                Patient patient = added.get(i);
+                if (patient.getId() != null) {
+                    patientIds.put(sourceIds.get(i), patient.getId());
+                    patientIdsByCedula.put(cedulaKey(patient.getCedula()), patient.getId());
+                    result.incrementSuccess();
+                }
+            }
+        }
+
+        private void applyHistories(List<ClinicalHistory> records) {
+            if (histories == null) {
+                try (Stream<ClinicalHistory> existing = historyRepository.streamAllKeys()) {
+                    histories = HistoryDuplicateIndex.load(existing, historyRepository.count(), records.size());
+                }
+            }
+
+            List<ClinicalHistory> added = new ArrayList<>(records.size());
+            List<Integer> sourceIds = new ArrayList<>(records.size());
+            for (ClinicalHistory history : records) {
+                Integer patientId = patientIds.get(history.getPatientId());
+                if (patientId == null) {
+                    result.addError("Consulta " + history.getId() + ": el paciente no está en el respaldo");
+                    continue;
+                }
+                history.setPatientId(patientId);
+                if (!histories.add(HistoryDuplicateIndex.key(patientId, history.getFechaConsulta(),
+                        history.getMotivoConsulta()))) {
+                    result.incrementSkipped();
+                    continue;
+                }
+                sourceIds.add(history.getId());
+                history.setId(null);
+                added.add(history);
+            }
+
+            if (!added.isEmpty()) {
+                historyRepository.insertAll(added);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                historyIds.put(sourceIds.get(i), added.get(i).getId());
+                result.incrementSuccess();
+            }
+        }
+
+        // Doctor ids point at the user accounts of the exporting site, so they are not carried over
+        private void applyAppointments(List<Appointment> records) {
+            if (appointments == null) {
+                appointments = new HashSet<>();
+                for (Appointment existing : appointmentRepository.findAll()) {
+                    appointments.add(appointmentKey(existing));
+                }
+            }
+
+            List<Appointment> added = new ArrayList<>(records.size());
+            for (Appointment appointment : records) {
+                Integer patientId = patientIds.get(appointment.getPatientId());
+                if (patientId == null) {
+                    result.addError("Cita " + appointment.getId() + ": el paciente no está en el respaldo");
+                    continue;
+                }
+                appointment.setPatientId(patientId);
+                appointment.setDoctorId(null);
+                if (!appointments.add(appointmentKey(appointment))) {
+                    result.incrementSkipped();
+                    continue;
+                }
+                appointment.setId(null);
+                added.add(appointment);
+            }
+
+            if (!added.isEmpty()) {
+                appointmentRepository.insertAll(added);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                result.incrementSuccess();
+            }
+        }
+
+        // Records of consultations that were skipped as already present are skipped too
+        private void applyAttachments(List<Attachment> records) {
+            List<Attachment> added = new ArrayList<>(records.size());
+            for (Attachment attachment : records) {
+                Integer historyId = historyIds.get(attachment.getClinicalHistoryId());
+                if (historyId == null) {
+                    result.incrementSkipped();
+                    continue;
+                }
+                attachment.setId(null);
+                attachment.setClinicalHistoryId(historyId);
+                added.add(attachment);
+            }
+
+            if (!added.isEmpty()) {
+                attachmentRepository.insertAll(added);
+            }
+            for (int i = 0; i < added.size(); i++) {
+                result.incrementSuccess();
+            }
+        }
+
+        private String appointmentKey(Appointment appointment) {
+            return appointment.getPatientId() + "|" + appointment.getDate() + "|" + appointment.getTime();
+        }
+
+        private String cedulaKey(String cedula) {
+            return cedula.trim().toUpperCase(Locale.ROOT);
+        }
+    }
+}
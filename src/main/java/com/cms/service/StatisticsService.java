@@ -1,32 +1,35 @@
 package com.cms.service;
 
-import com.cms.domain.ClinicalHistory;
 import com.cms.domain.Patient;
-import com.cms.repository.ClinicalHistoryRepository;
 import com.cms.repository.PatientRepository;
+import com.cms.service.analytics.ConsultationFilter;
+import com.cms.service.analytics.Dimension;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class StatisticsService {
 
+    private static final String[] MONTHS = { "Ene", "Feb", "Mar", "Abr", "May", "Jun",
+            "Jul", "Ago", "Sep", "Oct", "Nov", "Dic" };
+
     private final PatientRepository patientRepository;
-    private final ClinicalHistoryRepository historyRepository;
+    private final AnalyticsService analyticsService;
 
     public StatisticsService(PatientRepository patientRepository,
-            ClinicalHistoryRepository historyRepository) {
+            AnalyticsService analyticsService) {
         this.patientRepository = patientRepository;
-        this.historyRepository = historyRepository;
+        this.analyticsService = analyticsService;
     }
 
     public DashboardStats getDashboardStats() {
         DashboardStats stats = new DashboardStats();
-        stats.totalPatients = patientRepository.count();
-        stats.totalConsultations = historyRepository.count();
+        stats.totalPatients = analyticsService.countPatients();
+        stats.totalConsultations = analyticsService.count(ConsultationFilter.ALL);
         stats.consultationsToday = getConsultationsForDate(LocalDate.now());
         stats.consultationsThisMonth = getConsultationsForMonth(LocalDate.now());
         stats.avgConsultationsPerPatient = stats.totalPatients > 0
@@ -38,70 +41,49 @@ public class StatisticsService {
     public long getConsultationsForDate(LocalDate date) {
         LocalDateTime start = date.atStartOfDay();
         LocalDateTime end = date.plusDays(1).atStartOfDay();
-        return historyRepository.findAll().stream()
-                .filter(h -> h.getFechaConsulta() != null &&
-                        !h.getFechaConsulta().isBefore(start) &&
-                        h.getFechaConsulta().isBefore(end))
-                .count();
+        return analyticsService.count(ConsultationFilter.between(start, end));
     }
 
     public long getConsultationsForMonth(LocalDate date) {
         LocalDateTime start = date.withDayOfMonth(1).atStartOfDay();
         LocalDateTime end = date.plusMonths(1).withDayOfMonth(1).atStartOfDay();
-        return historyRepository.findAll().stream()
-                .filter(h -> h.getFechaConsulta() != null &&
-                        !h.getFechaConsulta().isBefore(start) &&
-                        h.getFechaConsulta().isBefore(end))
-                .count();
+        return analyticsService.count(ConsultationFilter.between(start, end));
     }
 
     public Map<String, Long> getConsultationsByDoctor() {
-        return historyRepository.findAll().stream()
-                .filter(h -> h.getMedico() != null && !h.getMedico().isEmpty())
-                .collect(Collectors.groupingBy(
-                        ClinicalHistory::getMedico,
-                        Collectors.counting()));
+        Map<String, Long> byDoctor = analyticsService.countBy(Dimension.MEDICO, ConsultationFilter.ALL);
+        byDoctor.remove(null);
+        return byDoctor;
     }
 
     public Map<String, Long> getConsultationsByMonth(int year) {
-        Map<String, Long> monthlyStats = new HashMap<>();
-        String[] months = { "Ene", "Feb", "Mar", "Abr", "May", "Jun",
-                "Jul", "Ago", "Sep", "Oct", "Nov", "Dic" };
+        LocalDateTime start = LocalDate.of(year, 1, 1).atStartOfDay();
+        long[] counts = analyticsService.countByMonth(ConsultationFilter.between(start, start.plusYears(1)));
 
+        Map<String, Long> monthlyStats = new HashMap<>();
         for (int month = 1; month <= 12; month++) {
-            final int m = month;
-            long count = historyRepository.findAll().stream()
-                    .filter(h -> h.getFechaConsulta() != null &&
-                            h.getFechaConsulta().getYear() == year &&
-                            h.getFechaConsulta().getMonthValue() == m)
-                    .count();
-            monthlyStats.put(months[month - 1], count);
+            monthlyStats.put(MONTHS[month - 1], counts[month]);
         }
         return monthlyStats;
     }
 
     public Map<String, Long> getPatientsByGender() {
-        return patientRepository.findAll().stream()
-                .collect(Collectors.groupingBy(
-                        p -> p.getSexo() != null ? p.getSexo() : "No especificado",
-                        Collectors.counting()));
+        Map<String, Long> byGender = analyticsService.countPatientsBySexo();
+        Long unspecified = byGender.remove(null);
+        if (unspecified != null) {
+            byGender.put("No especificado", unspecified);
+        }
+        return byGender;
     }
 
     public List<PatientConsultationCount> getTopPatientsByConsultations(int limit) {
-        Map<Integer, Long> consultationCounts = historyRepository.findAll().stream()
-                .collect(Collectors.groupingBy(
-                        ClinicalHistory::getPatientId,
-                        Collectors.counting()));
-
-        return consultationCounts.entrySet().stream()
-                .sorted((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()))
-                .limit(limit)
-                .map(entry -> {
-                    Patient patient = patientRepository.findById(entry.getKey()).orElse(null);
-                    String name = patient != null ? patient.getNombreCompleto() : "Desconocido";
-                    return new PatientConsultationCount(entry.getKey(), name, entry.getValue());
-                })
-                .collect(Collectors.toList());
+        List<PatientConsultationCount> top = new ArrayList<>();
+        for (Map.Entry<Integer, Long> entry : analyticsService.topPatients(limit, ConsultationFilter.ALL).entrySet()) {
+            Patient patient = patientRepository.findById(entry.getKey()).orElse(null);
+            String name = patient != null ? patient.getNombreCompleto() : "Desconocido";
+            top.add(new PatientConsultationCount(entry.getKey(), name, entry.getValue()));
+        }
+        return top;
     }
 
     public static class DashboardStats {
@@ -0,0 +1,373 @@
+package com.cms.service;
+
+import com.cms.infra.AppLogger;
+import com.cms.service.backup.ObjectStore;
+import com.cms.service.image.ImageCache;
+import com.cms.service.image.ImageDecoder;
+import com.cms.util.AttachmentStore;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thumbnails of image attachments. They are kept on disk under the SHA-256 of
+ * the image, so they survive restarts and follow the content rather than the
+ * file name, with the shared {@link ImageCache} in front. A miss decodes the photo
+ * once, subsampled, on a background pool and writes every size from it.
+ *
+ * <p>Files in the attachment store are named after that hash already. For
+ * any other file, hashing means reading all of it, so its hash is remembered
+ * in an index together with its size and modification time and only
+ * recomputed when those change. The index is appended to as files are hashed
+ * and rewritten without stale lines when the disk cache is pruned.
+ */
+public class ThumbnailService {
+
+    public enum Size {
+        SMALL(80),
+        MEDIUM(160),
+        LARGE(320);
+
+        private final int pixels;
+
+        Size(int pixels) {
+            this.pixels = pixels;
+        }
+
+        public int getPixels() {
+            return pixels;
+        }
+    }
+
+    private static final String CACHE_DIR = "cache/thumbnails";
+    private static final String INDEX_FILE = "index.txt";
+    private static final int WORKERS = 2;
+    private static final long STANDALONE_MEMORY_BUDGET = 32L * 1024 * 1024;
+    private static final long DISK_BUDGET = 256L * 1024 * 1024;
+    private static final long TOUCH_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    private record Fingerprint(long size, long modified, String hash) {
+    }
+
+    private final Path cacheDir;
+    private final ExecutorService executor;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<BufferedImage>> pending = new ConcurrentHashMap<>();
+    private final ImageCache memory;
+    private int indexLines;
+
+    public ThumbnailService(ImageCache memory) {
+        this(Paths.get(CACHE_DIR), memory);
+    }
+
+    public ThumbnailService(Path cacheDir) {
+        this(cacheDir, new ImageCache(STANDALONE_MEMORY_BUDGET));
+    }
+
+    public ThumbnailService(Path cacheDir, ImageCache memory) {
+        this.cacheDir = cacheDir;
+        this.memory = memory;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(WORKERS, r -> {
+            Thread t = new Thread(r, "thumbnail-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        loadIndex();
+        executor.execute(() -> {
+            pruneDisk();
+            compactIndex();
+        });
+    }
+
+    /**
+     * The thumbnail if it is already in memory, else null. Only looks at the
+     * file's size and date, so it is cheap enough to call while painting.
+     */
+    public BufferedImage getCached(File file, Size size) {
+        Fingerprint fingerprint = knownFingerprint(file);
+        return fingerprint != null ? memoryGet(key(fingerprint.hash(), size)) : null;
+    }
+
+    /**
+     * Loads the thumbnail from memory or disk, creating it if needed. Completes
+     * with null when the file is missing or not a readable image.
+     */
+    public CompletableFuture<BufferedImage> getThumbnail(File file, Size size) {
+        BufferedImage cached = getCached(file, size);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        String request = file.getAbsolutePath() + "|" + size;
+        CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> existing = pending.putIfAbsent(request, created);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(() -> {
+            try {
+                created.complete(load(file, size));
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                pending.remove(request, created);
+            }
+        });
+        return created;
+    }
+
+    private BufferedImage load(File file, Size size) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            Fingerprint fingerprint = fingerprint(file);
+            String key = key(fingerprint.hash(), size);
+            BufferedImage image = memoryGet(key);
+            if (image != null) {
+                return image;
+            }
+
+            Path stored = cacheDir.resolve(key + ".png");
+            if (Files.exists(stored)) {
+                image = ImageIO.read(stored.toFile());
+                if (image != null) {
+                    touch(stored);
+                    memoryPut(key, image);
+                    return image;
+                }
+            }
+
+            Map<Size, BufferedImage> generated = generate(file);
+            if (generated == null) {
+                return null;
+            }
+            for (Map.Entry<Size, BufferedImage> entry : generated.entrySet()) {
+                store(cacheDir.resolve(key(fingerprint.hash(), entry.getKey()) + ".png"), entry.getValue());
+            }
+            image = generated.get(size);
+            memoryPut(key, image);
+            return image;
+        } catch (IOException e) {
+            AppLogger.warn("Could not create thumbnail for " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the photo once at the largest size and derives the smaller
+     * sizes from that, each from the next larger one.
+     */
+    private Map<Size, BufferedImage> generate(File file) throws IOException {
+        Size[] sizes = Size.values();
+        Size largest = sizes[sizes.length - 1];
+        BufferedImage image = ImageDecoder.decodeToFit(file, largest.getPixels(), largest.getPixels());
+        if (image == null) {
+            return null;
+        }
+        Map<Size, BufferedImage> generated = new EnumMap<>(Size.class);
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            image = ImageDecoder.scaleToFit(image, sizes[i].getPixels(), sizes[i].getPixels());
+            generated.put(sizes[i], image);
+        }
+        return generated;
+    }
+
+    private void store(Path target, BufferedImage image) throws IOException {
+        if (Files.exists(target)) {
+            return;
+        }
+        Files.createDirectories(cacheDir);
+        Path temp = Files.createTempFile(cacheDir, "thumb-", ".tmp");
+        try {
+            ImageIO.write(image, "png", temp.toFile());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String key(String hash, Size size) {
+        return hash + "_" + size.getPixels();
+    }
+
+    private Fingerprint knownFingerprint(File file) {
+        Path path = file.toPath();
+        if (AttachmentStore.isObjectPath(path)) {
+            // Objects never change under their name, so neither size nor date matters
+            return new Fingerprint(0, 0, AttachmentStore.hashOf(path));
+        }
+        Fingerprint known = fingerprints.get(file.getAbsolutePath());
+        if (known != null && known.size() == file.length() && known.modified() == file.lastModified()) {
+            return known;
+        }
+        return null;
+    }
+
+    private Fingerprint fingerprint(File file) throws IOException {
+        Fingerprint known = knownFingerprint(file);
+        if (known != null) {
+            return known;
+        }
+        long size = file.length();
+        long modified = file.lastModified();
+        Fingerprint fingerprint = new Fingerprint(size, modified, ObjectStore.hash(file.toPath()));
+        fingerprints.put(file.getAbsolutePath(), fingerprint);
+        appendIndex(file.getAbsolutePath(), fingerprint);
+        return fingerprint;
+    }
+
+    private synchronized void loadIndex() {
+        Path index = cacheDir.resolve(INDEX_FILE);
+        if (!Files.exists(index)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+            indexLines = lines.size();
+            for (String line : lines) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length == 4) {
+                    fingerprints.put(fields[3], new Fingerprint(
+                            Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            AppLogger.warn("Thumbnail index unreadable, hashes will be recomputed", e);
+            fingerprints.clear();
+        }
+    }
+
+    private synchronized void appendIndex(String path, Fingerprint fingerprint) {
+        try {
+            Files.createDirectories(cacheDir);
+            try (BufferedWriter writer = Files.newBufferedWriter(cacheDir.resolve(INDEX_FILE),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(indexLine(path, fingerprint));
+            }
+            indexLines++;
+        } catch (IOException e) {
+            AppLogger.warn("Could not update thumbnail index", e);
+        }
+    }
+
+    /**
+     * Drops the fingerprints of files that are gone or have changed since,
+     * and rewrites the index with one line per remaining file if it holds
+     * more lines than that.
+     */
+    private synchronized void compactIndex() {
+        fingerprints.entrySet().removeIf(entry -> {
+            File file = new File(entry.getKey());
+            Fingerprint fingerprint = entry.getValue();
+            return !file.isFile() || file.length() != fingerprint.size()
+                    || file.lastModified() != fingerprint.modified();
+        });
+        if (indexLines <= fingerprints.size()) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheDir);
+            Path temp = Files.createTempFile(cacheDir, "index-", ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Fingerprint> entry : fingerprints.entrySet()) {
+                        writer.write(indexLine(entry.getKey(), entry.getValue()));
+                    }
+                }
+                Files.move(temp, cacheDir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            AppLogger.info("Thumbnail index compacted from %d to %d lines", indexLines, fingerprints.size());
+            indexLines = fingerprints.size();
+        } catch (IOException e) {
+            AppLogger.warn("Could not compact thumbnail index", e);
+        }
+    }
+
+    private static String indexLine(String path, Fingerprint fingerprint) {
+        return fingerprint.size() + "\t" + fingerprint.modified() + "\t" + fingerprint.hash() + "\t" + path + "\n";
+    }
+
+    private BufferedImage memoryGet(String key) {
+        return memory.get("thumb|" + key);
+    }
+
+    private void memoryPut(String key, BufferedImage image) {
+        memory.put("thumb|" + key, image);
+    }
+
+    // Modification time doubles as last use, so pruning drops thumbnails nobody has looked at
+    private static void touch(Path file) throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - Files.getLastModifiedTime(file).toMillis() > TOUCH_INTERVAL_MS) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+        }
+    }
+
+    private void pruneDisk() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*.{png,tmp}")) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    // Left over by a run that stopped mid-write; recent ones may still be in use
+                    if (System.currentTimeMillis() - lastModified(file) > TOUCH_INTERVAL_MS) {
+                        Files.deleteIfExists(file);
+                    }
+                    continue;
+                }
+                files.add(file);
+                total += Files.size(file);
+            }
+            if (total <= DISK_BUDGET) {
+                return;
+            }
+            files.sort(Comparator.comparingLong(ThumbnailService::lastModified));
+            int deleted = 0;
+            for (Path file : files) {
+                if (total <= DISK_BUDGET * 3 / 4) {
+                    break;
+                }
+                total -= Files.size(file);
+                Files.deleteIfExists(file);
+                deleted++;
+            }
+            AppLogger.info("Pruned %d unused thumbnails", deleted);
+        } catch (IOException e) {
+            AppLogger.warn("Could not prune thumbnail cache", e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        return file.toFile().lastModified();
+    }
+}
@@ -0,0 +1,57 @@
+package com.cms.service.analytics;
+
+/**
+ * Age groups used for cohort reporting. The age is the patient's age on the
+ * day of the consultation, not today.
+ */
+public enum AgeBand {
+    AGE_0_4("0-4", 0),
+    AGE_5_14("5-14", 5),
+    AGE_15_24("15-24", 15),
+    AGE_25_44("25-44", 25),
+    AGE_45_64("45-64", 45),
+    AGE_65_PLUS("65+", 65),
+    UNKNOWN("Sin dato", -1);
+
+    private static final AgeBand[] BY_AGE = new AgeBand[66];
+
+    static {
+        for (int age = 0; age < BY_AGE.length; age++) {
+            for (AgeBand band : values()) {
+                if (band != UNKNOWN && band.minAge <= age) {
+                    BY_AGE[age] = band;
+                }
+            }
+        }
+    }
+
+    private final String label;
+    private final int minAge;
+
+    AgeBand(String label, int minAge) {
+        this.label = label;
+        this.minAge = minAge;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public static AgeBand ofAge(int age) {
+        if (age < 0) {
+            return UNKNOWN;
+        }
+        return BY_AGE[Math.min(age, BY_AGE.length - 1)];
+    }
+
+    /**
+     * Band for dates packed as yyyymmdd integers, 0 meaning unknown. Whole
+     * years between two such dates are their difference divided by 10000.
+     */
+    public static AgeBand of(int birthYmd, int onYmd) {
+        if (birthYmd == 0 || onYmd == 0 || onYmd < birthYmd) {
+            return UNKNOWN;
+        }
+        return ofAge((onYmd - birthYmd) / 10_000);
+    }
+}
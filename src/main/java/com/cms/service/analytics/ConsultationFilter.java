@@ -0,0 +1,82 @@
+package com.cms.service.analytics;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conditions applied to consultations before counting. Every condition is
+ * optional; date bounds are from inclusive, to exclusive.
+ */
+public class ConsultationFilter {
+
+    public static final ConsultationFilter ALL = new ConsultationFilter();
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String medico;
+    private String diagnostico;
+    private String sexo;
+
+    public static ConsultationFilter between(LocalDateTime from, LocalDateTime to) {
+        return new ConsultationFilter().from(from).to(to);
+    }
+
+    public ConsultationFilter from(LocalDateTime from) {
+        ConsultationFilter copy = copy();
+        copy.from = from;
+        return copy;
+    }
+
+    public ConsultationFilter to(LocalDateTime to) {
+        ConsultationFilter copy = copy();
+        copy.to = to;
+        return copy;
+    }
+
+    public ConsultationFilter medico(String medico) {
+        ConsultationFilter copy = copy();
+        copy.medico = medico;
+        return copy;
+    }
+
+    public ConsultationFilter diagnostico(String diagnostico) {
+        ConsultationFilter copy = copy();
+        copy.diagnostico = diagnostico;
+        return copy;
+    }
+
+    public ConsultationFilter sexo(String sexo) {
+        ConsultationFilter copy = copy();
+        copy.sexo = sexo;
+        return copy;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public String getMedico() {
+        return medico;
+    }
+
+    public String getDiagnostico() {
+        return diagnostico;
+    }
+
+    public String getSexo() {
+        return sexo;
+    }
+
+    private ConsultationFilter copy() {
+        ConsultationFilter copy = new ConsultationFilter();
+        copy.from = from;
+        copy.to = to;
+        copy.medico = medico;
+        copy.diagnostico = diagnostico;
+        copy.sexo = sexo;
+        return copy;
+    }
+}
@@ -0,0 +1,491 @@
+package com.cms.service.analytics;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Column-oriented copy of consultations and the patient attributes used to
+ * slice them. Every attribute lives in its own primitive array indexed by row,
+ * text columns are dictionary encoded and deleted rows are cleared from a
+ * live bitmap instead of being moved.
+ *
+ * <p>Queries run in two steps: a filter kernel turns a {@link ConsultationFilter}
+ * into a selection bitmap (one bit per row) and a group kernel counts the
+ * selected rows per key, or per key combination for pivots. Both walk 64-row
+ * words and split large tables across the common fork-join pool; neither
+ * allocates per row.
+ *
+ * <p>Not thread-safe: callers serialize writes against reads.
+ */
+public class ConsultationSnapshot {
+
+    /** Rows at which kernels switch to parallel execution. */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final AgeBand[] AGE_BANDS = AgeBand.values();
+
+    private final StringDictionary medicos = new StringDictionary();
+    private final StringDictionary diagnosticos = new StringDictionary();
+    private final StringDictionary sexos = new StringDictionary();
+
+    // Patient columns
+    private int patientCount;
+    private int[] patientIds = new int[INITIAL_CAPACITY];
+    private int[] patientSexo = new int[INITIAL_CAPACITY];
+    private int[] patientBirthYmd = new int[INITIAL_CAPACITY];
+    private long[] patientLive = new long[INITIAL_CAPACITY >> 6];
+    private final Map<Integer, Integer> patientRows = new HashMap<>();
+
+    // Consultation columns
+    private int rowCount;
+    private int[] historyIds = new int[INITIAL_CAPACITY];
+    private int[] patientRow = new int[INITIAL_CAPACITY];
+    private long[] fecha = new long[INITIAL_CAPACITY];
+    private int[] fechaYmd = new int[INITIAL_CAPACITY];
+    private int[] medico = new int[INITIAL_CAPACITY];
+    private int[] diagnostico = new int[INITIAL_CAPACITY];
+    private long[] live = new long[INITIAL_CAPACITY >> 6];
+    private final Map<Integer, Integer> historyRows = new HashMap<>();
+
+    public void putPatient(Patient patient) {
+        int row = patientRowFor(patient.getId());
+        patientSexo[row] = sexos.encode(patient.getSexo());
+        patientBirthYmd[row] = ymd(patient.getFechaNacimiento());
+        setBit(patientLive, row);
+    }
+
+    public boolean hasPatient(Integer patientId) {
+        Integer row = patientRows.get(patientId);
+        return row != null && testBit(patientLive, row);
+    }
+
+    /** Removes the patient and, as the database cascade does, its consultations. */
+    public void removePatient(Integer patientId) {
+        Integer row = patientRows.get(patientId);
+        if (row == null) {
+            return;
+        }
+        clearBit(patientLive, row);
+        for (int i = 0; i < rowCount; i++) {
+            if (patientRow[i] == row) {
+                clearBit(live, i);
+            }
+        }
+    }
+
+    public void putHistory(ClinicalHistory history) {
+        Integer existing = historyRows.get(history.getId());
+        int row;
+        if (existing != null) {
+            row = existing;
+        } else {
+            ensureHistoryCapacity(rowCount + 1);
+            row = rowCount++;
+            historyIds[row] = history.getId();
+            historyRows.put(history.getId(), row);
+        }
+
+        LocalDateTime fechaConsulta = history.getFechaConsulta();
+        patientRow[row] = patientRowFor(history.getPatientId());
+        fecha[row] = fechaConsulta != null ? fechaConsulta.toEpochSecond(ZoneOffset.UTC) : NO_DATE;
+        fechaYmd[row] = fechaConsulta != null ? ymd(fechaConsulta.toLocalDate()) : 0;
+        medico[row] = medicos.encode(history.getMedico());
+        diagnostico[row] = diagnosticos.encode(history.getDiagnostico());
+        setBit(live, row);
+    }
+
+    public void removeHistory(Integer historyId) {
+        Integer row = historyRows.get(historyId);
+        if (row != null) {
+            clearBit(live, row);
+        }
+    }
+
+    /**
+     * Evaluates the filter into a bitmap with one bit per consultation row.
+     */
+    public long[] select(ConsultationFilter filter) {
+        long[] selection = new long[wordCount(rowCount)];
+        Criteria criteria = resolve(filter);
+        if (criteria == null) {
+            return selection;
+        }
+        forEachSlice(selection.length, (from, to) -> filterWords(criteria, selection, from, to));
+        return selection;
+    }
+
+    public long count(long[] selection) {
+        long total = 0;
+        for (long word : selection) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    /**
+     * Counts selected rows per key of the dimension. The result is indexed by
+     * key; see {@link #cardinality(Dimension)} and {@link #label(Dimension, int)}.
+     */
+    public long[] countBy(Dimension dimension, long[] selection) {
+        int cardinality = cardinality(dimension);
+        return aggregate(selection.length,
+                () -> new long[cardinality],
+                (counts, from, to) -> groupWords(dimension, selection, counts, from, to),
+                (counts, partial) -> {
+                    for (int k = 0; k < cardinality; k++) {
+                        counts[k] += partial[k];
+                    }
+                    return counts;
+                });
+    }
+
+    /**
+     * Counts selected rows per combination of the given dimensions in a single
+     * pass. Only combinations that occur are kept.
+     */
+    public PivotTable pivot(long[] selection, Dimension... dimensions) {
+        long[] radix = new long[dimensions.length];
+        long combinations = 1;
+        for (int i = dimensions.length - 1; i >= 0; i--) {
+            radix[i] = combinations;
+            try {
+                combinations = Math.multiplyExact(combinations, cardinality(dimensions[i]));
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Too many pivot combinations", e);
+            }
+        }
+
+        LongCountMap cells = aggregate(selection.length,
+                LongCountMap::new,
+                (map, from, to) -> pivotWords(dimensions, radix, selection, map, from, to),
+                (map, partial) -> {
+                    map.addAll(partial);
+                    return map;
+                });
+
+        List<PivotCell> decoded = new ArrayList<>(cells.size());
+        cells.forEach((composite, count) -> {
+            int[] keys = new int[dimensions.length];
+            long rest = composite;
+            for (int i = 0; i < dimensions.length; i++) {
+                keys[i] = (int) (rest / radix[i]);
+                rest %= radix[i];
+            }
+            decoded.add(new PivotCell(keys, count));
+        });
+        decoded.sort(cellOrder(dimensions));
+
+        List<PivotTable.Row> rows = new ArrayList<>(decoded.size());
+        for (PivotCell cell : decoded) {
+            List<String> labels = new ArrayList<>(dimensions.length);
+            for (int i = 0; i < dimensions.length; i++) {
+                String label = label(dimensions[i], cell.keys[i]);
+                labels.add(label != null ? label : PivotTable.NOT_SPECIFIED);
+            }
+            rows.add(new PivotTable.Row(labels, cell.count));
+        }
+        return new PivotTable(List.of(dimensions), rows);
+    }
+
+    public int cardinality(Dimension dimension) {
+        return switch (dimension) {
+            case MEDICO -> medicos.size();
+            case DIAGNOSTICO -> diagnosticos.size();
+            case SEXO -> sexos.size();
+            case MONTH -> 13;
+            case PATIENT -> patientCount;
+            case AGE_BAND -> AGE_BANDS.length;
+        };
+    }
+
+    /**
+     * Human readable value of a group key; null for the "no value" key.
+     */
+    public String label(Dimension dimension, int key) {
+        return switch (dimension) {
+            case MEDICO -> medicos.decode(key);
+            case DIAGNOSTICO -> diagnosticos.decode(key);
+            case SEXO -> sexos.decode(key);
+            case MONTH -> key == 0 ? null : String.valueOf(key);
+            case PATIENT -> String.valueOf(patientIds[key]);
+            case AGE_BAND -> AGE_BANDS[key].getLabel();
+        };
+    }
+
+    public int patientIdAt(int patientRowIndex) {
+        return patientIds[patientRowIndex];
+    }
+
+    public long countPatients() {
+        return count(patientLive);
+    }
+
+    /** Live patients per encoded sexo, indexed like {@link Dimension#SEXO}. */
+    public long[] countPatientsBySexo() {
+        long[] counts = new long[sexos.size()];
+        for (int w = 0; w < patientLive.length; w++) {
+            long word = patientLive[w];
+            while (word != 0) {
+                int row = (w << 6) + Long.numberOfTrailingZeros(word);
+                counts[patientSexo[row]]++;
+                word &= word - 1;
+            }
+        }
+        return counts;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    // --- kernels ---
+
+    private void filterWords(Criteria c, long[] selection, int fromWord, int toWord) {
+        for (int w = fromWord; w < toWord; w++) {
+            long candidates = live[w];
+            long matched = 0;
+            while (candidates != 0) {
+                int bit = Long.numberOfTrailingZeros(candidates);
+                int row = (w << 6) + bit;
+                if (matches(c, row)) {
+                    matched |= 1L << bit;
+                }
+                candidates &= candidates - 1;
+            }
+            selection[w] = matched;
+        }
+    }
+
+    private boolean matches(Criteria c, int row) {
+        if (c.dated) {
+            long value = fecha[row];
+            if (value == NO_DATE || value < c.from || value >= c.to) {
+                return false;
+            }
+        }
+        if (c.medico >= 0 && medico[row] != c.medico) {
+            return false;
+        }
+        if (c.diagnostico >= 0 && diagnostico[row] != c.diagnostico) {
+            return false;
+        }
+        return c.sexo < 0 || patientSexo[patientRow[row]] == c.sexo;
+    }
+
+    private void groupWords(Dimension dimension, long[] selection, long[] counts, int fromWord, int toWord) {
+        for (int w = fromWord; w < toWord; w++) {
+            long word = selection[w];
+            while (word != 0) {
+                int row = (w << 6) + Long.numberOfTrailingZeros(word);
+                counts[key(dimension, row)]++;
+                word &= word - 1;
+            }
+        }
+    }
+
+    private void pivotWords(Dimension[] dimensions, long[] radix, long[] selection, LongCountMap cells,
+            int fromWord, int toWord) {
+        for (int w = fromWord; w < toWord; w++) {
+            long word = selection[w];
+            while (word != 0) {
+                int row = (w << 6) + Long.numberOfTrailingZeros(word);
+                long composite = 0;
+                for (int i = 0; i < dimensions.length; i++) {
+                    composite += key(dimensions[i], row) * radix[i];
+                }
+                cells.add(composite, 1);
+                word &= word - 1;
+            }
+        }
+    }
+
+    private int key(Dimension dimension, int row) {
+        return switch (dimension) {
+            case MEDICO -> medico[row];
+            case DIAGNOSTICO -> diagnostico[row];
+            case SEXO -> patientSexo[patientRow[row]];
+            case MONTH -> (fechaYmd[row] / 100) % 100;
+            case PATIENT -> patientRow[row];
+            case AGE_BAND -> AgeBand.of(patientBirthYmd[patientRow[row]], fechaYmd[row]).ordinal();
+        };
+    }
+
+    private void forEachSlice(int words, SliceTask task) {
+        if (words < (PARALLEL_THRESHOLD >> 6)) {
+            task.run(0, words);
+            return;
+        }
+        int slices = slices(words);
+        int span = (words + slices - 1) / slices;
+        IntStream.range(0, slices).parallel()
+                .forEach(s -> task.run(s * span, Math.min(words, (s + 1) * span)));
+    }
+
+    private <A> A aggregate(int words, Supplier<A> accumulator, SliceAggregator<A> kernel,
+            BinaryOperator<A> merge) {
+        if (words < (PARALLEL_THRESHOLD >> 6)) {
+            A result = accumulator.get();
+            kernel.run(result, 0, words);
+            return result;
+        }
+        int slices = slices(words);
+        int span = (words + slices - 1) / slices;
+        return IntStream.range(0, slices).parallel()
+                .mapToObj(s -> {
+                    A partial = accumulator.get();
+                    kernel.run(partial, s * span, Math.min(words, (s + 1) * span));
+                    return partial;
+                })
+                .reduce(merge)
+                .orElseGet(accumulator);
+    }
+
+    /**
+     * Orders pivot cells by band or month number for ordinal dimensions and
+     * alphabetically for text ones, with missing values last.
+     */
+    private Comparator<PivotCell> cellOrder(Dimension[] dimensions) {
+        return (a, b) -> {
+            for (int i = 0; i < dimensions.length; i++) {
+                int cmp = compareKeys(dimensions[i], a.keys[i], b.keys[i]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private int compareKeys(Dimension dimension, int a, int b) {
+        if (a == b) {
+            return 0;
+        }
+        return switch (dimension) {
+            case AGE_BAND, MONTH -> Integer.compare(a == 0 && dimension == Dimension.MONTH ? 13 : a,
+                    b == 0 && dimension == Dimension.MONTH ? 13 : b);
+            case PATIENT -> Integer.compare(patientIds[a], patientIds[b]);
+            default -> {
+                String la = label(dimension, a);
+                String lb = label(dimension, b);
+                if (la == null || lb == null) {
+                    yield la == null ? 1 : -1;
+                }
+                yield la.compareToIgnoreCase(lb);
+            }
+        };
+    }
+
+    private int slices(int words) {
+        int byThreshold = Math.max(1, (words << 6) / PARALLEL_THRESHOLD);
+        return Math.min(Runtime.getRuntime().availableProcessors() * 2, byThreshold);
+    }
+
+    /**
+     * Resolves filter values to codes. Returns null when a value is unknown to
+     * the dictionaries, since such a filter cannot match any row.
+     */
+    private Criteria resolve(ConsultationFilter filter) {
+        int medicoCode = filter.getMedico() != null ? medicos.lookup(filter.getMedico()) : -1;
+        int diagnosticoCode = filter.getDiagnostico() != null ? diagnosticos.lookup(filter.getDiagnostico()) : -1;
+        int sexoCode = filter.getSexo() != null ? sexos.lookup(filter.getSexo()) : -1;
+        if ((filter.getMedico() != null && medicoCode < 0)
+                || (filter.getDiagnostico() != null && diagnosticoCode < 0)
+                || (filter.getSexo() != null && sexoCode < 0)) {
+            return null;
+        }
+
+        boolean dated = filter.getFrom() != null || filter.getTo() != null;
+        long from = filter.getFrom() != null ? filter.getFrom().toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE + 1;
+        long to = filter.getTo() != null ? filter.getTo().toEpochSecond(ZoneOffset.UTC) : Long.MAX_VALUE;
+        return new Criteria(dated, from, to, medicoCode, diagnosticoCode, sexoCode);
+    }
+
+    // --- storage ---
+
+    private int patientRowFor(Integer patientId) {
+        Integer row = patientRows.get(patientId);
+        if (row != null) {
+            return row;
+        }
+        ensurePatientCapacity(patientCount + 1);
+        int newRow = patientCount++;
+        patientIds[newRow] = patientId;
+        patientRows.put(patientId, newRow);
+        return newRow;
+    }
+
+    private void ensurePatientCapacity(int required) {
+        if (required <= patientIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, patientIds.length * 2);
+        patientIds = Arrays.copyOf(patientIds, capacity);
+        patientSexo = Arrays.copyOf(patientSexo, capacity);
+        patientBirthYmd = Arrays.copyOf(patientBirthYmd, capacity);
+        patientLive = Arrays.copyOf(patientLive, wordCount(capacity));
+    }
+
+    private void ensureHistoryCapacity(int required) {
+        if (required <= historyIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, historyIds.length * 2);
+        historyIds = Arrays.copyOf(historyIds, capacity);
+        patientRow = Arrays.copyOf(patientRow, capacity);
+        fecha = Arrays.copyOf(fecha, capacity);
+        fechaYmd = Arrays.copyOf(fechaYmd, capacity);
+        medico = Arrays.copyOf(medico, capacity);
+        diagnostico = Arrays.copyOf(diagnostico, capacity);
+        live = Arrays.copyOf(live, wordCount(capacity));
+    }
+
+    static int ymd(LocalDate date) {
+        return date == null ? 0 : date.getYear() * 10_000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    private static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static void setBit(long[] words, int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    private static void clearBit(long[] words, int index) {
+        words[index >>> 6] &= ~(1L << index);
+    }
+
+    private static boolean testBit(long[] words, int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    @FunctionalInterface
+    private interface SliceTask {
+        void run(int fromWord, int toWord);
+    }
+
+    @FunctionalInterface
+    private interface SliceAggregator<A> {
+        void run(A accumulator, int fromWord, int toWord);
+    }
+
+    private record PivotCell(int[] keys, long count) {
+    }
+
+    private record Criteria(boolean dated, long from, long to, int medico, int diagnostico, int sexo) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.cms.service.analytics;
+
+/**
+ * Columns consultations can be grouped by.
+ */
+public enum Dimension {
+    MEDICO("Médico"),
+    DIAGNOSTICO("Diagnóstico"),
+    SEXO("Sexo"),
+    /** Month of the consultation, 1 to 12. */
+    MONTH("Mes"),
+    PATIENT("Paciente"),
+    /** Patient's {@link AgeBand} at the date of the consultation. */
+    AGE_BAND("Grupo de edad");
+
+    private final String label;
+
+    Dimension(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,88 @@
+package com.cms.service.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from non-negative long keys to counts, used by the
+ * pivot kernel so counting a row never boxes or allocates.
+ */
+class LongCountMap {
+
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private long[] counts;
+    private int size;
+
+    LongCountMap() {
+        this(64);
+    }
+
+    LongCountMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    void add(long key, long delta) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size * 4 > keys.length * 3) {
+            grow();
+        }
+    }
+
+    void addAll(LongCountMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Entry consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                add(oldKeys[i], oldCounts[i]);
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    interface Entry {
+        void accept(long key, long count);
+    }
+}
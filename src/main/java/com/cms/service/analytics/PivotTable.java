@@ -0,0 +1,82 @@
+package com.cms.service.analytics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse result of a pivot: one row per combination of dimension values that
+ * actually occurs, with its consultation count.
+ */
+public class PivotTable {
+
+    public static final String NOT_SPECIFIED = "No especificado";
+
+    private final List<Dimension> dimensions;
+    private final List<Row> rows;
+
+    public PivotTable(List<Dimension> dimensions, List<Row> rows) {
+        this.dimensions = dimensions;
+        this.rows = rows;
+    }
+
+    public List<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (Row row : rows) {
+            total += row.count();
+        }
+        return total;
+    }
+
+    /**
+     * Totals per value of one dimension, in table order; handy as chart series.
+     */
+    public Map<String, Long> totalsBy(Dimension dimension) {
+        int index = dimensions.indexOf(dimension);
+        if (index < 0) {
+            throw new IllegalArgumentException("Dimension not in pivot: " + dimension);
+        }
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (Row row : rows) {
+            totals.merge(row.labels().get(index), row.count(), Long::sum);
+        }
+        return totals;
+    }
+
+    public void writeCsv(Writer out) throws IOException {
+        for (Dimension dimension : dimensions) {
+            out.write(escapeCsv(dimension.getLabel()));
+            out.write(",");
+        }
+        out.write("Consultas\n");
+
+        for (Row row : rows) {
+            for (String label : row.labels()) {
+                out.write(escapeCsv(label));
+                out.write(",");
+            }
+            out.write(Long.toString(row.count()));
+            out.write("\n");
+        }
+    }
+
+    private static String escapeCsv(String text) {
+        if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    public record Row(List<String> labels, long count) {
+    }
+}
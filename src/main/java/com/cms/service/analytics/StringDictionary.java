@@ -0,0 +1,64 @@
+package com.cms.service.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps strings to dense int codes so text columns can be stored as int arrays.
+ * Code 0 is reserved for null or blank values. Values are trimmed; case is kept.
+ */
+public class StringDictionary {
+
+    public static final int NONE = 0;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public StringDictionary() {
+        values.add(null);
+    }
+
+    public int encode(String value) {
+        String key = normalize(value);
+        if (key == null) {
+            return NONE;
+        }
+        Integer code = codes.get(key);
+        if (code == null) {
+            code = values.size();
+            codes.put(key, code);
+            values.add(key);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of an already known value, or -1 if the value has never
+     * been encoded (a filter on it can match nothing).
+     */
+    public int lookup(String value) {
+        String key = normalize(value);
+        if (key == null) {
+            return NONE;
+        }
+        return codes.getOrDefault(key, -1);
+    }
+
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
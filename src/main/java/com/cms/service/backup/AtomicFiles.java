@@ -0,0 +1,49 @@
+package com.cms.service.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes files so that the final name only ever holds complete, verified
+ * content: data goes to a temporary file in the same directory and is moved
+ * over the target once it has been checked.
+ */
+public final class AtomicFiles {
+
+    /**
+     * Checks the data just written, typically a CRC or hash accumulated by
+     * the input stream, and throws if it does not match.
+     */
+    @FunctionalInterface
+    public interface Verification {
+        void verify() throws IOException;
+    }
+
+    private AtomicFiles() {
+    }
+
+    public static void replace(InputStream in, Path target, Verification verification) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, ".incoming-", ".tmp");
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            verification.verify();
+            move(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
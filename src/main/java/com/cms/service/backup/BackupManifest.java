@@ -0,0 +1,121 @@
+package com.cms.service.backup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The attachment files a backup contains, as paths relative to the attachments
+ * directory with the content hash of each one. The content itself lives in the
+ * shared {@link ObjectStore}, so a backup only carries this list.
+ *
+ * <p>Stored as UTF-8 text, one tab-separated line per file after a version
+ * line. Size and modification time are kept so the next backup can reuse the
+ * hash of files that have not changed instead of reading them again.
+ */
+public class BackupManifest {
+
+    public static final String ENTRY_NAME = "attachments.manifest";
+
+    private static final String HEADER = "CMS-MANIFEST 1";
+
+    public record Entry(String path, String hash, long size, long modified) {
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public Map<String, Entry> byPath() {
+        Map<String, Entry> map = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            map.put(entry.path(), entry);
+        }
+        return map;
+    }
+
+    public long totalSize() {
+        return entries.stream().mapToLong(Entry::size).sum();
+    }
+
+    public void write(OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(HEADER);
+        writer.write('\n');
+        for (Entry entry : entries) {
+            writer.write(entry.hash() + '\t' + entry.size() + '\t' + entry.modified() + '\t'
+                    + escape(entry.path()) + '\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads a manifest written by {@link #write(OutputStream)}. The stream is
+     * not closed, so it can be an entry of an open ZIP.
+     */
+    public static BackupManifest read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if (!HEADER.equals(header)) {
+            throw new IOException("Unsupported attachment manifest: " + header);
+        }
+
+        BackupManifest manifest = new BackupManifest();
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\t", 4);
+            if (parts.length != 4) {
+                throw new IOException("Malformed attachment manifest at line " + lineNumber);
+            }
+            try {
+                manifest.add(new Entry(unescape(parts[3]), parts[0], Long.parseLong(parts[1]),
+                        Long.parseLong(parts[2])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed attachment manifest at line " + lineNumber, e);
+            }
+        }
+        return manifest;
+    }
+
+    private static String escape(String path) {
+        return path.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String path) {
+        if (path.indexOf('\\') < 0) {
+            return path;
+        }
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < path.length()) {
+                char next = path.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package com.cms.service.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * When scheduled backups may run and how much disk bandwidth they may use.
+ * Windows are daily time ranges such as {@code 22:00-06:00}; a range whose
+ * end is before its start runs past midnight. Kept as a properties file next
+ * to the backups.
+ */
+public record BackupSchedule(boolean enabled, List<Window> windows, long maxBytesPerSecond) {
+
+    public static final BackupSchedule DEFAULT = new BackupSchedule(false,
+            List.of(new Window(LocalTime.of(22, 0), LocalTime.of(6, 0))), 20L * 1024 * 1024);
+
+    public record Window(LocalTime start, LocalTime end) {
+
+        public boolean contains(LocalTime time) {
+            return start.isBefore(end)
+                    ? !time.isBefore(start) && time.isBefore(end)
+                    : !time.isBefore(start) || time.isBefore(end);
+        }
+
+        /**
+         * Start of the occurrence of this window that contains {@code now}.
+         */
+        public LocalDateTime startOf(LocalDateTime now) {
+            LocalDate day = now.toLocalDate();
+            if (!start.isBefore(end) && now.toLocalTime().isBefore(end)) {
+                day = day.minusDays(1);
+            }
+            return day.atTime(start);
+        }
+
+        @Override
+        public String toString() {
+            return start + "-" + end;
+        }
+    }
+
+    public BackupSchedule {
+        windows = List.copyOf(windows);
+    }
+
+    /**
+     * The window open at {@code now}, or null outside all windows.
+     */
+    public Window windowAt(LocalDateTime now) {
+        for (Window window : windows) {
+            if (window.contains(now.toLocalTime())) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    public String windowsText() {
+        StringBuilder sb = new StringBuilder();
+        for (Window window : windows) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(window);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses windows written as {@code HH:mm-HH:mm}, separated by commas.
+     */
+    public static List<Window> parseWindows(String text) {
+        List<Window> windows = new ArrayList<>();
+        for (String part : text.split(",")) {
+            String range = part.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            String[] bounds = range.split("-");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Ventana inválida: " + range);
+            }
+            try {
+                LocalTime start = LocalTime.parse(bounds[0].trim());
+                LocalTime end = LocalTime.parse(bounds[1].trim());
+                if (start.equals(end)) {
+                    throw new IllegalArgumentException("Ventana vacía: " + range);
+                }
+                windows.add(new Window(start, end));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Hora inválida en la ventana: " + range);
+            }
+        }
+        return windows;
+    }
+
+    public static BackupSchedule load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return DEFAULT;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        try {
+            return new BackupSchedule(
+                    Boolean.parseBoolean(props.getProperty("enabled", "false")),
+                    parseWindows(props.getProperty("windows", DEFAULT.windowsText())),
+                    Long.parseLong(props.getProperty("maxBytesPerSecond",
+                            String.valueOf(DEFAULT.maxBytesPerSecond()))));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid backup schedule in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("enabled", String.valueOf(enabled));
+        props.setProperty("windows", windowsText());
+        props.setProperty("maxBytesPerSecond", String.valueOf(maxBytesPerSecond));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            props.store(out, "Scheduled backups");
+        }
+    }
+}
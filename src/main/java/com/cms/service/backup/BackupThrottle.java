@@ -0,0 +1,61 @@
+package com.cms.service.backup;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Token bucket shared by all threads of one backup, holding them to a byte
+ * rate with up to one second of burst. While {@code paused} reports true,
+ * every caller waits before taking tokens, so the backup stops where it is
+ * and carries on from the same point once it reports false again.
+ */
+public class BackupThrottle implements IoThrottle {
+
+    private static final long PAUSE_POLL_MS = 1000;
+
+    private final long bytesPerSecond;
+    private final BooleanSupplier paused;
+    private double tokens;
+    private long lastRefill;
+    private volatile boolean wasPaused;
+
+    public BackupThrottle(long bytesPerSecond, BooleanSupplier paused) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.paused = paused;
+        this.tokens = bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * True if the backup has had to wait for a pause at least once.
+     */
+    public boolean wasPaused() {
+        return wasPaused;
+    }
+
+    @Override
+    public void acquire(long bytes) {
+        try {
+            while (paused.getAsBoolean()) {
+                wasPaused = true;
+                Thread.sleep(PAUSE_POLL_MS);
+            }
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(bytesPerSecond, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+                lastRefill = now;
+                // Going into debt lets a large request through; the next callers pay for it
+                tokens -= bytes;
+                waitNanos = tokens < 0 ? (long) (-tokens * 1e9 / bytesPerSecond) : 0;
+            }
+            if (waitNanos > 0) {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.cms.service.backup;
+
+/**
+ * Gate that backup I/O passes through before reading or writing a number of
+ * bytes. It may block to limit bandwidth or to wait while the backup is
+ * paused.
+ */
+@FunctionalInterface
+public interface IoThrottle {
+
+    IoThrottle NONE = bytes -> {
+    };
+
+    /**
+     * Blocks until {@code bytes} may be transferred. An interrupt ends the
+     * wait early and is left set on the thread.
+     */
+    void acquire(long bytes);
+}
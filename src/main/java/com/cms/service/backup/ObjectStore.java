@@ -0,0 +1,207 @@
+package com.cms.service.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Directory of file contents named by their SHA-256, shared by all backups.
+ * Objects are written once and never modified; a file that appears in many
+ * backups, or under several names, is stored a single time. Objects sit in
+ * subdirectories named after the first two hex digits to keep directories
+ * small.
+ *
+ * <p>Files in formats that are already compressed (images, PDF, Office
+ * documents, archives) are kept byte for byte. Other files are deflated and
+ * get a {@code .z} suffix; the hash is always that of the original content.
+ * Puts of different files may run concurrently.
+ */
+public class ObjectStore {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String DEFLATED_SUFFIX = ".z";
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "png", "jpg", "jpeg", "gif", "webp", "heic", "pdf", "docx", "xlsx", "pptx", "odt", "ods",
+            "zip", "gz", "7z", "rar", "mp3", "mp4", "mov", "avi");
+
+    private final Path root;
+
+    public ObjectStore(Path root) {
+        this.root = root;
+    }
+
+    public static String hash(Path file) throws IOException {
+        return hash(file, IoThrottle.NONE);
+    }
+
+    public static String hash(Path file, IoThrottle throttle) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(
+                ThrottledInputStream.wrap(Files.newInputStream(file), throttle), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * True for file types whose content is already compressed, which are
+     * stored rather than deflated again.
+     */
+    public static boolean isCompressed(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    public boolean contains(String hash) {
+        return Files.isRegularFile(rawPath(hash)) || Files.isRegularFile(deflatedPath(hash));
+    }
+
+    /**
+     * Opens the original content of an object.
+     */
+    public InputStream open(String hash) throws IOException {
+        Path raw = rawPath(hash);
+        if (Files.isRegularFile(raw)) {
+            return Files.newInputStream(raw);
+        }
+        Path deflated = deflatedPath(hash);
+        if (Files.isRegularFile(deflated)) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(Files.newInputStream(deflated), inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+        throw new NoSuchFileException(raw.toString(), null, "Backup object missing");
+    }
+
+    /**
+     * Copies the file into the store and returns the hash of what was copied.
+     * The hash is taken from the bytes written, so a file that changed since
+     * it was last hashed is still stored under its correct name.
+     */
+    public String put(Path source) throws IOException {
+        return put(source, IoThrottle.NONE);
+    }
+
+    /**
+     * Same as {@link #put(Path)}, reading the source through the throttle.
+     */
+    public String put(Path source, IoThrottle throttle) throws IOException {
+        Files.createDirectories(root);
+        boolean deflate = !isCompressed(source.getFileName().toString());
+        Path temp = Files.createTempFile(root, "incoming-", ".tmp");
+        Deflater deflater = deflate ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+        try {
+            MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(
+                    ThrottledInputStream.wrap(Files.newInputStream(source), throttle), digest);
+                    OutputStream out = deflate
+                            ? new DeflaterOutputStream(Files.newOutputStream(temp), deflater, BUFFER_SIZE)
+                            : Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            if (!contains(hash)) {
+                Path target = deflate ? deflatedPath(hash) : rawPath(hash);
+                Files.createDirectories(target.getParent());
+                AtomicFiles.move(temp, target);
+            }
+            return hash;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the content of an object to {@code target}, replacing it only
+     * if the content still matches its hash.
+     */
+    public void restoreTo(String hash, Path target) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(open(hash), digest)) {
+            AtomicFiles.replace(in, target, () -> {
+                if (!HexFormat.of().formatHex(digest.digest()).equals(hash)) {
+                    throw new IOException("Backup object corrupt: " + hash);
+                }
+            });
+        }
+    }
+
+    /**
+     * Deletes every object whose hash is not in {@code live}, along with
+     * leftovers of interrupted writes. Returns the number of bytes freed.
+     */
+    public long retainOnly(Set<String> live) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long freed = 0;
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(root)) {
+            for (Path entry : prefixes) {
+                if (!Files.isDirectory(entry)) {
+                    if (entry.getFileName().toString().startsWith("incoming-")) {
+                        freed += Files.size(entry);
+                        Files.delete(entry);
+                    }
+                    continue;
+                }
+                try (DirectoryStream<Path> objects = Files.newDirectoryStream(entry)) {
+                    for (Path object : objects) {
+                        String name = object.getFileName().toString();
+                        if (!live.contains(name.endsWith(DEFLATED_SUFFIX)
+                                ? name.substring(0, name.length() - DEFLATED_SUFFIX.length()) : name)) {
+                            freed += Files.size(object);
+                            Files.delete(object);
+                        }
+                    }
+                }
+            }
+        }
+        return freed;
+    }
+
+    private Path rawPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path deflatedPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash + DEFLATED_SUFFIX);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.cms.service.backup;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP archive whose entries are deflated on a worker pool and then
+ * laid out in one pass with {@link FileChannel#transferTo}.
+ *
+ * <p>Each entry is cut into blocks that are compressed concurrently, pigz
+ * style: every block is primed with the last 32 KB of the previous one and
+ * ends on a sync flush, so the blocks join into a single ordinary deflate
+ * stream that any ZIP reader accepts. Compressed entries wait in temporary
+ * files next to the archive until {@link #close()} assembles it.
+ *
+ * <p>Sizes and offsets that do not fit the classic 32-bit fields, and more
+ * than 65535 entries, are written as ZIP64 records, the way
+ * {@link java.util.zip.ZipOutputStream} does.
+ */
+public class ParallelZipWriter implements Closeable {
+
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int FLAG_UTF8 = 0x800;
+
+    private final Path target;
+    private final ExecutorService pool;
+    private final int level;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final List<PendingEntry> entries = new ArrayList<>();
+    private IoThrottle throttle = IoThrottle.NONE;
+
+    public ParallelZipWriter(Path target, ExecutorService pool, int workers) {
+        this(target, pool, workers, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+
+    ParallelZipWriter(Path target, ExecutorService pool, int workers, int level, int blockSize) {
+        this.target = target;
+        this.pool = pool;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = Math.max(2, workers * 2);
+    }
+
+    /**
+     * Makes every read of an added file and every write of compressed data
+     * pass through the throttle.
+     */
+    public ParallelZipWriter withThrottle(IoThrottle throttle) {
+        this.throttle = throttle;
+        return this;
+    }
+
+    /**
+     * Adds a file under the given entry name. It is compressed before this
+     * returns, so the source may change or disappear afterwards.
+     */
+    public void addFile(String name, Path file) throws IOException {
+        try (InputStream in = ThrottledInputStream.wrap(Files.newInputStream(file), throttle)) {
+            deflate(name, in);
+        }
+    }
+
+    public void addBytes(String name, byte[] data) throws IOException {
+        deflate(name, new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Writes the archive and removes the temporary files. The pool is left
+     * running; it belongs to the caller.
+     */
+    @Override
+    public void close() throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int[] dosTime = dosDateTime(LocalDateTime.now());
+            List<WrittenEntry> written = new ArrayList<>(entries.size());
+            for (PendingEntry entry : entries) {
+                byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+                WrittenEntry header = new WrittenEntry(name, entry.crc(), entry.compressedSize(), entry.size(),
+                        out.position());
+
+                writeFully(out, localHeader(header, dosTime));
+                try (FileChannel data = FileChannel.open(entry.data(), StandardOpenOption.READ)) {
+                    transferFully(data, entry.compressedSize(), out);
+                }
+                written.add(header);
+            }
+
+            long directoryStart = out.position();
+            for (WrittenEntry entry : written) {
+                writeFully(out, centralHeader(entry, dosTime));
+            }
+            long directoryEnd = out.position();
+            long directoryLength = directoryEnd - directoryStart;
+            if (written.size() >= ZIP64_MAGIC_COUNT || directoryStart >= ZIP64_MAGIC
+                    || directoryLength >= ZIP64_MAGIC) {
+                writeFully(out, zip64EndOfDirectory(written.size(), directoryStart, directoryLength));
+                writeFully(out, zip64Locator(directoryEnd));
+            }
+            writeFully(out, endOfDirectory(written.size(), directoryStart, directoryLength));
+        } finally {
+            for (PendingEntry entry : entries) {
+                Files.deleteIfExists(entry.data());
+            }
+        }
+    }
+
+    private void deflate(String name, InputStream in) throws IOException {
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "entry-", ".tmp");
+        CRC32 crc = new CRC32();
+        long size = 0;
+        long compressedSize = 0;
+        boolean done = false;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            byte[] previous = null;
+            byte[] block = in.readNBytes(blockSize);
+            while (true) {
+                byte[] next = block.length == blockSize ? in.readNBytes(blockSize) : new byte[0];
+                boolean last = next.length == 0;
+                crc.update(block);
+                size += block.length;
+                byte[] input = block;
+                byte[] dictionary = previous == null ? null
+                        : Arrays.copyOfRange(previous, Math.max(0, previous.length - DICTIONARY_SIZE),
+                                previous.length);
+                pending.add(pool.submit(() -> deflateBlock(input, dictionary, last)));
+
+                while (pending.size() >= maxPendingBlocks || (last && !pending.isEmpty())) {
+                    byte[] compressed = await(pending.poll());
+                    throttle.acquire(compressed.length);
+                    out.write(compressed);
+                    compressedSize += compressed.length;
+                }
+                if (last) {
+                    break;
+                }
+                previous = block;
+                block = next;
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        entries.add(new PendingEntry(name, temp, crc.getValue(), compressedSize, size));
+    }
+
+    private byte[] deflateBlock(byte[] input, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] buffer = new byte[Math.max(1024, input.length + input.length / 8 + 64)];
+            int length = 0;
+            while (true) {
+                int n = deflater.deflate(buffer, length, buffer.length - length,
+                        last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                length += n;
+                boolean complete = last ? deflater.finished() : length < buffer.length;
+                if (complete) {
+                    return Arrays.copyOf(buffer, length);
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void transferFully(FileChannel source, long count, FileChannel out) throws IOException {
+        long position = 0;
+        while (position < count) {
+            long chunk = throttle == IoThrottle.NONE ? count - position : Math.min(blockSize, count - position);
+            throttle.acquire(chunk);
+            long n = source.transferTo(position, chunk, out);
+            if (n <= 0) {
+                throw new IOException("Compressed entry shorter than expected");
+            }
+            position += n;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static ByteBuffer localHeader(WrittenEntry entry, int[] dosTime) {
+        // The sizes are known before the data is written, so both go in the extra field together
+        boolean zip64 = entry.size() >= ZIP64_MAGIC || entry.compressedSize() >= ZIP64_MAGIC;
+        int extraLength = zip64 ? 20 : 0;
+        ByteBuffer b = ByteBuffer.allocate(30 + entry.name().length + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0x04034b50);
+        b.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+        b.putShort((short) FLAG_UTF8);
+        b.putShort((short) METHOD_DEFLATED);
+        b.putShort((short) dosTime[0]);
+        b.putShort((short) dosTime[1]);
+        b.putInt((int) entry.crc());
+        b.putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize()));
+        b.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size()));
+        b.putShort((short) entry.name().length);
+        b.putShort((short) extraLength);
+        b.put(entry.name());
+        if (zip64) {
+            b.putShort((short) ZIP64_EXTRA_ID);
+            b.putShort((short) 16);
+            b.putLong(entry.size());
+            b.putLong(entry.compressedSize());
+        }
+        return b;
+    }
+
+    private static ByteBuffer centralHeader(WrittenEntry entry, int[] dosTime) {
+        // Only the fields that overflow go in the extra field, in this fixed order
+        List<Long> zip64 = new ArrayList<>(3);
+        long size = entry.size();
+        long compressedSize = entry.compressedSize();
+        long offset = entry.offset();
+        if (size >= ZIP64_MAGIC) {
+            zip64.add(size);
+            size = ZIP64_MAGIC;
+        }
+        if (compressedSize >= ZIP64_MAGIC) {
+            zip64.add(compressedSize);
+            compressedSize = ZIP64_MAGIC;
+        }
+        if (offset >= ZIP64_MAGIC) {
+            zip64.add(offset);
+            offset = ZIP64_MAGIC;
+        }
+        int extraLength = zip64.isEmpty() ? 0 : 4 + 8 * zip64.size();
+        int version = zip64.isEmpty() ? VERSION : VERSION_ZIP64;
+
+        ByteBuffer b = ByteBuffer.allocate(46 + entry.name().length + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0x02014b50);
+        b.putShort((short) version);
+        b.putShort((short) version);
+        b.putShort((short) FLAG_UTF8);
+        b.putShort((short) METHOD_DEFLATED);
+        b.putShort((short) dosTime[0]);
+        b.putShort((short) dosTime[1]);
+        b.putInt((int) entry.crc());
+        b.putInt((int) compressedSize);
+        b.putInt((int) size);
+        b.putShort((short) entry.name().length);
+        b.putShort((short) extraLength);
+        b.putShort((short) 0);
+        b.putShort((short) 0);
+        b.putShort((short) 0);
+        b.putInt(0);
+        b.putInt((int) offset);
+        b.put(entry.name());
+        if (!zip64.isEmpty()) {
+            b.putShort((short) ZIP64_EXTRA_ID);
+            b.putShort((short) (8 * zip64.size()));
+            zip64.forEach(b::putLong);
+        }
+        return b;
+    }
+
+    private static ByteBuffer zip64EndOfDirectory(int count, long start, long length) {
+        ByteBuffer b = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0x06064b50);
+        b.putLong(44);
+        b.putShort((short) VERSION_ZIP64);
+        b.putShort((short) VERSION_ZIP64);
+        b.putInt(0);
+        b.putInt(0);
+        b.putLong(count);
+        b.putLong(count);
+        b.putLong(length);
+        b.putLong(start);
+        return b;
+    }
+
+    private static ByteBuffer zip64Locator(long zip64EndOffset) {
+        ByteBuffer b = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0x07064b50);
+        b.putInt(0);
+        b.putLong(zip64EndOffset);
+        b.putInt(1);
+        return b;
+    }
+
+    private static ByteBuffer endOfDirectory(int count, long start, long length) {
+        ByteBuffer b = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0x06054b50);
+        b.putShort((short) 0);
+        b.putShort((short) 0);
+        b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        b.putInt((int) Math.min(length, ZIP64_MAGIC));
+        b.putInt((int) Math.min(start, ZIP64_MAGIC));
+        b.putShort((short) 0);
+        return b;
+    }
+
+    private static int[] dosDateTime(LocalDateTime t) {
+        int time = (t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() >> 1);
+        int date = ((t.getYear() - 1980) << 9) | (t.getMonthValue() << 5) | t.getDayOfMonth();
+        return new int[] { time, date };
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Archive writing interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Error preparing archive entry", e.getCause());
+        }
+    }
+
+    private record PendingEntry(String name, Path data, long crc, long compressedSize, long size) {
+    }
+
+    private record WrittenEntry(byte[] name, long crc, long compressedSize, long size, long offset) {
+    }
+}
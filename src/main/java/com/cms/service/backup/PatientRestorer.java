@@ -0,0 +1,212 @@
+package com.cms.service.backup;
+
+import com.cms.service.exception.NotFoundException;
+import com.cms.util.AttachmentStore;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies one patient's rows from a backup database attached to the live
+ * connection as {@value #SCHEMA}. Rows still present are left alone: the
+ * patient is matched by cédula, consultations by fecha and motivo, and
+ * appointments by date and time. Restored rows keep their original ids when
+ * those are free, so attachment paths, which embed the consultation id,
+ * usually stay the same. Files from the attachment store are named by their
+ * content and keep their path.
+ *
+ * <p>The caller owns the transaction and restores the attachment files listed
+ * in the result before committing.
+ */
+public class PatientRestorer {
+
+    public static final String SCHEMA = "backup";
+
+    /**
+     * An attachment row that was restored. Both paths are relative to the
+     * attachments directory: where the file was when the backup was taken
+     * and where the restored row now expects it.
+     */
+    public record RestoredFile(String backupPath, String restoredPath) {
+    }
+
+    public record Result(int patientId, boolean patientCreated, List<Integer> historyIds, int appointments,
+            List<RestoredFile> files) {
+    }
+
+    private final Connection conn;
+    private final Path attachmentsRoot;
+
+    public PatientRestorer(Connection conn, Path attachmentsRoot) {
+        this.conn = conn;
+        this.attachmentsRoot = attachmentsRoot;
+    }
+
+    public Result restore(String cedula) throws SQLException {
+        int backupPatientId = findBackupPatient(cedula);
+        Integer livePatientId = queryId("SELECT id FROM main.patients WHERE cedula = ?", cedula);
+        boolean created = livePatientId == null;
+        if (created) {
+            livePatientId = insertPatient(backupPatientId);
+        }
+
+        Map<Integer, Integer> histories = restoreHistories(backupPatientId, livePatientId);
+        List<RestoredFile> files = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> history : histories.entrySet()) {
+            restoreAttachments(history.getKey(), history.getValue(), files);
+        }
+        int appointments = restoreAppointments(backupPatientId, livePatientId);
+        return new Result(livePatientId, created, new ArrayList<>(histories.values()), appointments, files);
+    }
+
+    private int findBackupPatient(String cedula) throws SQLException {
+        Integer id = queryId("SELECT id FROM " + SCHEMA + ".patients WHERE cedula = ?", cedula);
+        if (id == null) {
+            throw new NotFoundException("El paciente con cédula " + cedula + " no existe en el respaldo");
+        }
+        return id;
+    }
+
+    private int insertPatient(int backupId) throws SQLException {
+        String sql = "INSERT INTO main.patients (id, cedula, nombre, apellido, fecha_nacimiento, sexo, " +
+                "direccion, telefono, email, fecha_registro) " +
+                "SELECT " + keepIdIfFree("main.patients") + ", b.cedula, b.nombre, b.apellido, " +
+                "b.fecha_nacimiento, b.sexo, b.direccion, b.telefono, b.email, b.fecha_registro " +
+                "FROM " + SCHEMA + ".patients b WHERE b.id = ?";
+        return insert(sql, backupId);
+    }
+
+    /**
+     * Inserts the consultations missing from the live patient and returns
+     * their ids as backup id to restored id, in date order.
+     */
+    private Map<Integer, Integer> restoreHistories(int backupPatientId, int livePatientId) throws SQLException {
+        List<Integer> missing = new ArrayList<>();
+        String select = "SELECT b.id FROM " + SCHEMA + ".clinical_histories b " +
+                "WHERE b.patient_id = ? AND NOT EXISTS (SELECT 1 FROM main.clinical_histories h " +
+                "WHERE h.patient_id = ? AND h.fecha_consulta = b.fecha_consulta " +
+                "AND h.motivo_consulta = b.motivo_consulta) ORDER BY b.fecha_consulta, b.id";
+        try (PreparedStatement stmt = conn.prepareStatement(select)) {
+            stmt.setInt(1, backupPatientId);
+            stmt.setInt(2, livePatientId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    missing.add(rs.getInt(1));
+                }
+            }
+        }
+
+        String insert = "INSERT INTO main.clinical_histories (id, patient_id, fecha_consulta, motivo_consulta, " +
+                "antecedentes, examen_fisico, diagnostico, conducta, observaciones, medico) " +
+                "SELECT " + keepIdIfFree("main.clinical_histories") + ", " + livePatientId + ", " +
+                "b.fecha_consulta, b.motivo_consulta, b.antecedentes, b.examen_fisico, b.diagnostico, " +
+                "b.conducta, b.observaciones, b.medico " +
+                "FROM " + SCHEMA + ".clinical_histories b WHERE b.id = ?";
+        Map<Integer, Integer> restored = new LinkedHashMap<>();
+        for (int backupId : missing) {
+            restored.put(backupId, insert(insert, backupId));
+        }
+        return restored;
+    }
+
+    private void restoreAttachments(int backupHistoryId, int liveHistoryId, List<RestoredFile> files)
+            throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        String select = "SELECT id, ruta_archivo FROM " + SCHEMA + ".attachments " +
+                "WHERE clinical_history_id = ? ORDER BY id";
+        try (PreparedStatement stmt = conn.prepareStatement(select)) {
+            stmt.setInt(1, backupHistoryId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                    paths.add(rs.getString(2));
+                }
+            }
+        }
+
+        String insert = "INSERT INTO main.attachments (id, clinical_history_id, nombre, ruta_archivo, tipo, " +
+                "tamano_bytes, fecha_carga, descripcion) " +
+                "SELECT " + keepIdIfFree("main.attachments") + ", ?, b.nombre, ?, b.tipo, b.tamano_bytes, " +
+                "b.fecha_carga, b.descripcion FROM " + SCHEMA + ".attachments b WHERE b.id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+            for (int i = 0; i < ids.size(); i++) {
+                String backupPath = relativePath(paths.get(i));
+                String restoredPath = AttachmentStore.isObjectPath(Paths.get(backupPath)) ? backupPath
+                        : liveHistoryId + "/" + Paths.get(backupPath).getFileName();
+                stmt.setInt(1, liveHistoryId);
+                stmt.setString(2, attachmentsRoot.resolve(restoredPath).toString());
+                stmt.setInt(3, ids.get(i));
+                stmt.executeUpdate();
+                files.add(new RestoredFile(backupPath, restoredPath));
+            }
+        }
+    }
+
+    private int restoreAppointments(int backupPatientId, int livePatientId) throws SQLException {
+        if (queryId("SELECT 1 FROM " + SCHEMA + ".sqlite_master WHERE type = 'table' AND name = ?",
+                "appointments") == null) {
+            return 0;
+        }
+        String sql = "INSERT INTO main.appointments (patient_id, doctor_id, date, time, reason, status, " +
+                "created_at) " +
+                "SELECT ?, (SELECT u.id FROM main.users u WHERE u.id = b.doctor_id), b.date, b.time, b.reason, " +
+                "b.status, b.created_at FROM " + SCHEMA + ".appointments b " +
+                "WHERE b.patient_id = ? AND NOT EXISTS (SELECT 1 FROM main.appointments a " +
+                "WHERE a.patient_id = ? AND a.date = b.date AND a.time = b.time)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, livePatientId);
+            stmt.setInt(2, backupPatientId);
+            stmt.setInt(3, livePatientId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Attachments are stored as {@code <attachments>/<consultation id>/<file>},
+     * or {@code <attachments>/store/ab/cd/<object>} in the attachment store,
+     * under whatever absolute directory the application ran from, so only
+     * the last two or four path elements are meaningful across machines.
+     */
+    static String relativePath(String rutaArchivo) {
+        Path path = Paths.get(rutaArchivo.replace('\\', '/')).normalize();
+        int count = path.getNameCount();
+        int kept = AttachmentStore.isObjectPath(path) && count >= 4 ? 4 : 2;
+        return count >= kept ? path.subpath(count - kept, count).toString().replace('\\', '/')
+                : path.getFileName().toString();
+    }
+
+    private static String keepIdIfFree(String table) {
+        return "CASE WHEN EXISTS (SELECT 1 FROM " + table + " t WHERE t.id = b.id) THEN NULL ELSE b.id END";
+    }
+
+    private int insert(String sql, int backupId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, backupId);
+            stmt.executeUpdate();
+        }
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private Integer queryId(String sql, String value) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, value);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.cms.service.backup;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Input stream that asks an {@link IoThrottle} before each read.
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+    private final IoThrottle throttle;
+
+    public ThrottledInputStream(InputStream in, IoThrottle throttle) {
+        super(in);
+        this.throttle = throttle;
+    }
+
+    public static InputStream wrap(InputStream in, IoThrottle throttle) {
+        return throttle == IoThrottle.NONE ? in : new ThrottledInputStream(in, throttle);
+    }
+
+    @Override
+    public int read() throws IOException {
+        acquire(1);
+        return super.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        acquire(len);
+        return super.read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        acquire(n);
+        return super.skip(n);
+    }
+
+    private void acquire(long bytes) throws InterruptedIOException {
+        throttle.acquire(bytes);
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Backup interrupted");
+        }
+    }
+}
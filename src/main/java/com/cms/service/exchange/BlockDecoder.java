@@ -0,0 +1,103 @@
+package com.cms.service.exchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+/**
+ * Reads a payload written by {@link BlockEncoder}. Values must be read in the
+ * order they were written.
+ */
+public class BlockDecoder {
+
+    private final byte[] data;
+    private int position;
+    private final int recordCount;
+    private final String[] dictionary;
+
+    public BlockDecoder(byte[] data) throws IOException {
+        this.data = data;
+        this.recordCount = (int) readVarLong();
+        int size = (int) readVarLong();
+        this.dictionary = new String[size + 1];
+        for (int i = 1; i <= size; i++) {
+            dictionary[i] = readUtf8((int) readVarLong());
+        }
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= data.length) {
+                throw new IOException("Truncated snapshot block");
+            }
+            byte b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in snapshot block");
+    }
+
+    public Integer readId() throws IOException {
+        long id = readVarLong();
+        return id != 0 ? (int) id : null;
+    }
+
+    public Long readLong() throws IOException {
+        long raw = readVarLong();
+        if (raw == 0) {
+            return null;
+        }
+        long zigZag = raw - 1;
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    public String readString() throws IOException {
+        long length = readVarLong();
+        return length != 0 ? readUtf8((int) (length - 1)) : null;
+    }
+
+    public String readDictionaryString() throws IOException {
+        long code = readVarLong();
+        if (code >= dictionary.length) {
+            throw new IOException("Unknown dictionary code " + code);
+        }
+        return dictionary[(int) code];
+    }
+
+    public LocalDate readDate() throws IOException {
+        Long epochDay = readLong();
+        return epochDay != null ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    public LocalDateTime readDateTime() throws IOException {
+        Long epochSecond = readLong();
+        if (epochSecond == null) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(epochSecond, (int) readVarLong(), ZoneOffset.UTC);
+    }
+
+    public LocalTime readTime() throws IOException {
+        long raw = readVarLong();
+        return raw != 0 ? LocalTime.ofSecondOfDay(raw - 1) : null;
+    }
+
+    private String readUtf8(int length) throws IOException {
+        if (length < 0 || position + length > data.length) {
+            throw new IOException("Truncated snapshot block");
+        }
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+}
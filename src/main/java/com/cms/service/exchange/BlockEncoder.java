@@ -0,0 +1,136 @@
+package com.cms.service.exchange;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the uncompressed payload of one snapshot block. Numbers are varints,
+ * free text is length-prefixed UTF-8, and low-cardinality columns go through
+ * a per-block dictionary so a repeated value costs one or two bytes. Every
+ * nullable value reserves 0 for null.
+ */
+public class BlockEncoder {
+
+    private final Bytes records = new Bytes(64 * 1024);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final Bytes dictionaryBytes = new Bytes(4 * 1024);
+    private int recordCount;
+
+    public void endRecord() {
+        recordCount++;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public int getSize() {
+        return records.length + dictionaryBytes.length;
+    }
+
+    public void writeVarLong(long value) {
+        records.writeVarLong(value);
+    }
+
+    public void writeId(Integer id) {
+        records.writeVarLong(id != null ? id : 0);
+    }
+
+    public void writeLong(Long value) {
+        records.writeVarLong(value != null ? zigZag(value) + 1 : 0);
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            records.writeVarLong(0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        records.writeVarLong(utf8.length + 1L);
+        records.write(utf8, 0, utf8.length);
+    }
+
+    /** For columns with few distinct values: stored once per block, then by code. */
+    public void writeDictionaryString(String value) {
+        if (value == null) {
+            records.writeVarLong(0);
+            return;
+        }
+        Integer code = dictionary.get(value);
+        if (code == null) {
+            code = dictionary.size() + 1;
+            dictionary.put(value, code);
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            dictionaryBytes.writeVarLong(utf8.length);
+            dictionaryBytes.write(utf8, 0, utf8.length);
+        }
+        records.writeVarLong(code);
+    }
+
+    public void writeDate(LocalDate value) {
+        writeLong(value != null ? value.toEpochDay() : null);
+    }
+
+    public void writeDateTime(LocalDateTime value) {
+        writeLong(value != null ? value.toEpochSecond(ZoneOffset.UTC) : null);
+        if (value != null) {
+            records.writeVarLong(value.getNano());
+        }
+    }
+
+    public void writeTime(LocalTime value) {
+        records.writeVarLong(value != null ? value.toSecondOfDay() + 1L : 0);
+    }
+
+    /**
+     * The block payload: record count, dictionary, then the records.
+     */
+    public byte[] toByteArray() {
+        Bytes payload = new Bytes(getSize() + 20);
+        payload.writeVarLong(recordCount);
+        payload.writeVarLong(dictionary.size());
+        payload.write(dictionaryBytes.data, 0, dictionaryBytes.length);
+        payload.write(records.data, 0, records.length);
+        return Arrays.copyOf(payload.data, payload.length);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static final class Bytes {
+        byte[] data;
+        int length;
+
+        Bytes(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void write(byte[] bytes, int offset, int count) {
+            ensure(count);
+            System.arraycopy(bytes, offset, data, length, count);
+            length += count;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.cms.service.exchange;
+
+/**
+ * Kinds of block in a snapshot file. Codes are part of the file format and
+ * must never be reused.
+ */
+public enum Section {
+    PATIENTS(1),
+    HISTORIES(2),
+    APPOINTMENTS(3),
+    ATTACHMENTS(4);
+
+    private final int code;
+
+    Section(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static Section of(int code) {
+        for (Section section : values()) {
+            if (section.code == code) {
+                return section;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,200 @@
+package com.cms.service.exchange;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a file written by {@link SnapshotWriter}. Frames are read from the
+ * channel on the calling thread; inflating, checksum verification and record
+ * decoding run on a small pool, several blocks ahead, while decoded blocks
+ * are handed to the consumer one at a time in file order.
+ */
+public class SnapshotReader implements Closeable {
+
+    @FunctionalInterface
+    public interface RecordDecoder<T> {
+        T decode(BlockDecoder in) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface BlockConsumer {
+        void accept(Section section, List<Object> records);
+    }
+
+    private final FileChannel channel;
+    private final long createdAt;
+    private final int threads;
+
+    public SnapshotReader(Path path) throws IOException {
+        this(path, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public SnapshotReader(Path path, int threads) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.threads = threads;
+        try {
+            ByteBuffer header = readFully(SnapshotWriter.HEADER_SIZE);
+            byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, SnapshotWriter.MAGIC)) {
+                throw new IOException("Not a snapshot file");
+            }
+            int version = header.getShort() & 0xFFFF;
+            if (version > SnapshotWriter.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            header.getShort();
+            this.createdAt = header.getLong();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** When the snapshot was written, in epoch milliseconds. */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Decodes every block whose section has a decoder and passes its records
+     * to the consumer. Blocks of other sections are skipped unread.
+     */
+    public void read(Map<Section, RecordDecoder<?>> decoders, BlockConsumer consumer) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "snapshot-decode-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Deque<PendingBlock> pending = new ArrayDeque<>();
+        try {
+            while (true) {
+                ByteBuffer frame = readFully(1);
+                int code = frame.get() & 0xFF;
+                if (code == 0) {
+                    break;
+                }
+                frame = readFully(SnapshotWriter.FRAME_SIZE - 1);
+                int codec = frame.get() & 0xFF;
+                int rawLength = frame.getInt();
+                int storedLength = frame.getInt();
+                int crc = frame.getInt();
+
+                Section section = Section.of(code);
+                RecordDecoder<?> decoder = section != null ? decoders.get(section) : null;
+                if (decoder == null) {
+                    channel.position(channel.position() + storedLength);
+                    continue;
+                }
+
+                byte[] stored = readFully(storedLength).array();
+                pending.add(new PendingBlock(section,
+                        executor.submit(() -> decode(stored, codec, rawLength, crc, decoder))));
+                if (pending.size() > threads * 2) {
+                    deliver(pending.poll(), consumer);
+                }
+            }
+            while (!pending.isEmpty()) {
+                deliver(pending.poll(), consumer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void deliver(PendingBlock block, BlockConsumer consumer) throws IOException {
+        try {
+            consumer.accept(block.section, block.records.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Snapshot read interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Error decoding snapshot block", e.getCause());
+        }
+    }
+
+    private static List<Object> decode(byte[] stored, int codec, int rawLength, int crc, RecordDecoder<?> decoder)
+            throws IOException {
+        byte[] raw = stored;
+        if (codec == SnapshotWriter.CODEC_DEFLATE) {
+            raw = new byte[rawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                    if (n == 0 && inflater.needsInput()) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != rawLength) {
+                    throw new IOException("Corrupt snapshot block: unexpected length");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt snapshot block", e);
+            } finally {
+                inflater.end();
+            }
+        } else if (codec != SnapshotWriter.CODEC_STORED) {
+            throw new IOException("Unknown snapshot codec " + codec);
+        }
+
+        CRC32 check = new CRC32();
+        check.update(raw);
+        if ((int) check.getValue() != crc) {
+            throw new IOException("Corrupt snapshot block: checksum mismatch");
+        }
+
+        BlockDecoder in = new BlockDecoder(raw);
+        List<Object> records = new ArrayList<>(in.getRecordCount());
+        for (int i = 0; i < in.getRecordCount(); i++) {
+            records.add(decoder.decode(in));
+        }
+        return records;
+    }
+
+    private ByteBuffer readFully(int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated snapshot file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private record PendingBlock(Section section, Future<List<Object>> records) {
+    }
+}
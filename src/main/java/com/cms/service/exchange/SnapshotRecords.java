@@ -0,0 +1,124 @@
+package com.cms.service.exchange;
+
+import com.cms.domain.Appointment;
+import com.cms.domain.AppointmentStatus;
+import com.cms.domain.Attachment;
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+
+import java.io.IOException;
+
+/**
+ * Field layouts of the entities in a snapshot, version 1. New fields may only
+ * be added together with a new format version.
+ */
+public final class SnapshotRecords {
+
+    private SnapshotRecords() {
+    }
+
+    public static void writePatient(Patient p, BlockEncoder out) {
+        out.writeId(p.getId());
+        out.writeString(p.getCedula());
+        out.writeString(p.getNombre());
+        out.writeString(p.getApellido());
+        out.writeDate(p.getFechaNacimiento());
+        out.writeDictionaryString(p.getSexo());
+        out.writeString(p.getDireccion());
+        out.writeString(p.getTelefono());
+        out.writeString(p.getEmail());
+        out.writeDate(p.getFechaRegistro());
+    }
+
+    public static Patient readPatient(BlockDecoder in) throws IOException {
+        Patient p = new Patient();
+        p.setId(in.readId());
+        p.setCedula(in.readString());
+        p.setNombre(in.readString());
+        p.setApellido(in.readString());
+        p.setFechaNacimiento(in.readDate());
+        p.setSexo(in.readDictionaryString());
+        p.setDireccion(in.readString());
+        p.setTelefono(in.readString());
+        p.setEmail(in.readString());
+        p.setFechaRegistro(in.readDate());
+        return p;
+    }
+
+    public static void writeHistory(ClinicalHistory h, BlockEncoder out) {
+        out.writeId(h.getId());
+        out.writeId(h.getPatientId());
+        out.writeDateTime(h.getFechaConsulta());
+        out.writeString(h.getMotivoConsulta());
+        out.writeString(h.getAntecedentes());
+        out.writeString(h.getExamenFisico());
+        out.writeDictionaryString(h.getDiagnostico());
+        out.writeString(h.getConducta());
+        out.writeString(h.getObservaciones());
+        out.writeDictionaryString(h.getMedico());
+    }
+
+    public static ClinicalHistory readHistory(BlockDecoder in) throws IOException {
+        ClinicalHistory h = new ClinicalHistory();
+        h.setId(in.readId());
+        h.setPatientId(in.readId());
+        h.setFechaConsulta(in.readDateTime());
+        h.setMotivoConsulta(in.readString());
+        h.setAntecedentes(in.readString());
+        h.setExamenFisico(in.readString());
+        h.setDiagnostico(in.readDictionaryString());
+        h.setConducta(in.readString());
+        h.setObservaciones(in.readString());
+        h.setMedico(in.readDictionaryString());
+        return h;
+    }
+
+    public static void writeAppointment(Appointment a, BlockEncoder out) {
+        out.writeId(a.getId());
+        out.writeId(a.getPatientId());
+        out.writeId(a.getDoctorId());
+        out.writeDate(a.getDate());
+        out.writeTime(a.getTime());
+        out.writeString(a.getReason());
+        out.writeDictionaryString(a.getStatus() != null ? a.getStatus().name() : null);
+        out.writeDateTime(a.getCreatedAt());
+    }
+
+    public static Appointment readAppointment(BlockDecoder in) throws IOException {
+        Appointment a = new Appointment();
+        a.setId(in.readId());
+        a.setPatientId(in.readId());
+        a.setDoctorId(in.readId());
+        a.setDate(in.readDate());
+        a.setTime(in.readTime());
+        a.setReason(in.readString());
+        String status = in.readDictionaryString();
+        a.setStatus(status != null ? AppointmentStatus.fromString(status) : null);
+        a.setCreatedAt(in.readDateTime());
+        return a;
+    }
+
+    public static void writeAttachment(Attachment a, BlockEncoder out) {
+        out.writeId(a.getId());
+        out.writeId(a.getClinicalHistoryId());
+        out.writeString(a.getNombre());
+        out.writeDictionaryString(a.getTipo());
+        out.writeString(a.getRutaArchivo());
+        out.writeLong(a.getTamanoBytes());
+        out.writeDateTime(a.getFechaCarga());
+        out.writeString(a.getDescripcion());
+    }
+
+    public static Attachment readAttachment(BlockDecoder in) throws IOException {
+        Attachment a = new Attachment();
+        a.setId(in.readId());
+        a.setClinicalHistoryId(in.readId());
+        a.setNombre(in.readString());
+        a.setTipo(in.readDictionaryString());
+        a.setRutaArchivo(in.readString());
+        a.setTamanoBytes(in.readLong());
+        a.setFechaCarga(in.readDateTime());
+        a.setDescripcion(in.readString());
+        return a;
+    }
+}
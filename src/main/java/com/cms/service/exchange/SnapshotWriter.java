@@ -0,0 +1,124 @@
+package com.cms.service.exchange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a snapshot file: a fixed header followed by self-contained blocks,
+ * each with its own dictionary and compressed on its own, so a reader can
+ * decode blocks independently and in parallel.
+ *
+ * <pre>
+ * header: "CMSB" | u16 version | u16 flags | i64 created (epoch ms)
+ * block:  u8 section | u8 codec | i32 raw length | i32 stored length | i32 crc32(raw) | stored bytes
+ * end:    u8 0
+ * </pre>
+ */
+public class SnapshotWriter implements Closeable {
+
+    static final byte[] MAGIC = { 'C', 'M', 'S', 'B' };
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int FRAME_SIZE = 14;
+    static final int CODEC_STORED = 0;
+    static final int CODEC_DEFLATE = 1;
+
+    public static final int BLOCK_RECORDS = 4096;
+
+    @FunctionalInterface
+    public interface RecordEncoder<T> {
+        void encode(T record, BlockEncoder out);
+    }
+
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[64 * 1024];
+    private long recordCount;
+
+    public SnapshotWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) 0).putLong(System.currentTimeMillis());
+        writeFully(header.flip());
+    }
+
+    /**
+     * Writes the records as blocks of {@link #BLOCK_RECORDS}. Returns how many
+     * were written.
+     */
+    public <T> long write(Section section, Iterator<T> records, RecordEncoder<T> encoder) throws IOException {
+        long written = 0;
+        BlockEncoder block = new BlockEncoder();
+        while (records.hasNext()) {
+            encoder.encode(records.next(), block);
+            block.endRecord();
+            if (block.getRecordCount() == BLOCK_RECORDS) {
+                written += flush(section, block);
+                block = new BlockEncoder();
+            }
+        }
+        if (block.getRecordCount() > 0) {
+            written += flush(section, block);
+        }
+        recordCount += written;
+        return written;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeFully(ByteBuffer.wrap(new byte[] { 0 }));
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    private int flush(Section section, BlockEncoder block) throws IOException {
+        byte[] raw = block.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        int storedLength = 0;
+        while (!deflater.finished()) {
+            if (storedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            storedLength += deflater.deflate(compressed, storedLength, compressed.length - storedLength);
+        }
+
+        // Keep incompressible blocks as they are
+        boolean deflated = storedLength < raw.length;
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        frame.put((byte) section.getCode())
+                .put((byte) (deflated ? CODEC_DEFLATE : CODEC_STORED))
+                .putInt(raw.length)
+                .putInt(deflated ? storedLength : raw.length)
+                .putInt((int) crc.getValue());
+        writeFully(frame.flip());
+        writeFully(deflated ? ByteBuffer.wrap(compressed, 0, storedLength) : ByteBuffer.wrap(raw));
+        return block.getRecordCount();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.cms.service.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded images kept in memory up to a budget of pixel bytes, least recently
+ * used first out. Images pushed out of the budget are not dropped at once:
+ * they stay reachable through soft references until the garbage collector
+ * actually needs the memory, and a hit on one brings it back into the budget.
+ */
+public class ImageCache {
+
+    public record Stats(long hits, long softHits, long misses, long evictions, int entries, long bytes,
+            long budgetBytes) {
+
+        public double hitRate() {
+            long requests = hits + softHits + misses;
+            return requests == 0 ? 0 : (double) (hits + softHits) / requests;
+        }
+    }
+
+    private static final class SoftEntry extends SoftReference<BufferedImage> {
+        private final String key;
+
+        SoftEntry(String key, BufferedImage image, ReferenceQueue<BufferedImage> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+
+    private final long budgetBytes;
+    private final LinkedHashMap<String, BufferedImage> strong = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, SoftEntry> soft = new HashMap<>();
+    private final ReferenceQueue<BufferedImage> collected = new ReferenceQueue<>();
+    private long bytes;
+    private long hits;
+    private long softHits;
+    private long misses;
+    private long evictions;
+
+    public ImageCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized BufferedImage get(String key) {
+        expungeCollected();
+        BufferedImage image = strong.get(key);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        SoftEntry entry = soft.remove(key);
+        image = entry != null ? entry.get() : null;
+        if (image != null) {
+            softHits++;
+            keep(key, image);
+            return image;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(String key, BufferedImage image) {
+        expungeCollected();
+        soft.remove(key);
+        keep(key, image);
+    }
+
+    public synchronized void remove(String key) {
+        BufferedImage image = strong.remove(key);
+        if (image != null) {
+            bytes -= weight(image);
+        }
+        soft.remove(key);
+    }
+
+    public synchronized Stats getStats() {
+        expungeCollected();
+        return new Stats(hits, softHits, misses, evictions, strong.size(), bytes, budgetBytes);
+    }
+
+    private void keep(String key, BufferedImage image) {
+        // A new image for the key replaces the old one wherever the new one ends up
+        BufferedImage previous = strong.remove(key);
+        if (previous != null) {
+            bytes -= weight(previous);
+        }
+        long weight = weight(image);
+        if (weight > budgetBytes) {
+            // Larger than the whole budget: only the garbage collector decides how long it lives
+            soft.put(key, new SoftEntry(key, image, collected));
+            return;
+        }
+        strong.put(key, image);
+        bytes += weight;
+
+        Iterator<Map.Entry<String, BufferedImage>> eldest = strong.entrySet().iterator();
+        while (bytes > budgetBytes && eldest.hasNext()) {
+            Map.Entry<String, BufferedImage> entry = eldest.next();
+            bytes -= weight(entry.getValue());
+            soft.put(entry.getKey(), new SoftEntry(entry.getKey(), entry.getValue(), collected));
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void expungeCollected() {
+        Reference<? extends BufferedImage> reference;
+        while ((reference = collected.poll()) != null) {
+            SoftEntry entry = (SoftEntry) reference;
+            soft.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * Memory held by the image's pixels, whatever its pixel layout.
+     */
+    public static long weight(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
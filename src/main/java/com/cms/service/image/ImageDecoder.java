@@ -0,0 +1,128 @@
+package com.cms.service.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Decodes images at the resolution they are going to be shown at. The reader
+ * skips source rows and columns while decoding, and can limit itself to a
+ * region of the source, so a 12 MP photo shown on screen never exists in
+ * memory at full size unless the user zooms all the way in.
+ */
+public final class ImageDecoder {
+
+    // Decode at least twice the target size so the final downscale can smooth out the skipped pixels
+    private static final int OVERSAMPLING = 2;
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decodes {@code file} so that it fits in {@code maxWidth x maxHeight}
+     * once scaled, keeping the aspect ratio. Returns null if the format is
+     * not supported, like {@link ImageIO#read(File)}.
+     */
+    public static BufferedImage decodeToFit(File file, int maxWidth, int maxHeight) throws IOException {
+        return read(file, (reader, param) -> {
+            int step = subsampling(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+            param.setSourceSubsampling(step, step, 0, 0);
+            return scaleToFit(reader.read(0, param), maxWidth, maxHeight);
+        });
+    }
+
+    /**
+     * Decodes only {@code region} of the source, in source pixels, keeping
+     * one of every {@code step} pixels in each direction. The region is
+     * clipped to the image. Returns null if the format is not supported.
+     */
+    public static BufferedImage decodeRegion(File file, Rectangle region, int step) throws IOException {
+        return read(file, (reader, param) -> {
+            Rectangle clipped = region.intersection(new Rectangle(reader.getWidth(0), reader.getHeight(0)));
+            if (clipped.isEmpty()) {
+                return null;
+            }
+            param.setSourceRegion(clipped);
+            param.setSourceSubsampling(Math.max(1, step), Math.max(1, step), 0, 0);
+            return reader.read(0, param);
+        });
+    }
+
+    /**
+     * Width and height of the image, read from its header. Returns null if the
+     * format is not supported.
+     */
+    public static Dimension readSize(File file) throws IOException {
+        return read(file, (reader, param) -> new Dimension(reader.getWidth(0), reader.getHeight(0)));
+    }
+
+    private interface ReadAction<T> {
+        T apply(ImageReader reader, ImageReadParam param) throws IOException;
+    }
+
+    private static <T> T read(File file, ReadAction<T> action) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                throw new IOException("Cannot open image: " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return action.apply(reader, reader.getDefaultReadParam());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Largest source step that still leaves {@link #OVERSAMPLING} times the
+     * pixels needed to fill the target box.
+     */
+    static int subsampling(int width, int height, int maxWidth, int maxHeight) {
+        double ratio = Math.max((double) width / maxWidth, (double) height / maxHeight);
+        return Math.max(1, (int) (ratio / OVERSAMPLING));
+    }
+
+    /**
+     * Scales down to fit the box, halving repeatedly with bilinear filtering
+     * so the result does not alias. Images that already fit are returned as is.
+     */
+    public static BufferedImage scaleToFit(BufferedImage image, int maxWidth, int maxHeight) {
+        double scale = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+        if (scale >= 1) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D g2d = step.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(current, 0, 0, width, height, null);
+            g2d.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+}
@@ -0,0 +1,95 @@
+package com.cms.service.imports;
+
+import com.cms.domain.Patient;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * In-memory view of the cedulas already stored, built once at the start of an
+ * upsert import. Each entry keeps the cedula as stored and a fingerprint of
+ * the importable fields, so every incoming row can be classified as insert,
+ * update or skip without touching the database.
+ */
+public class CedulaIndex {
+
+    public enum Action {
+        INSERT, UPDATE, SKIP
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, Entry> entries;
+
+    private CedulaIndex(int expectedSize) {
+        this.entries = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+    }
+
+    public static CedulaIndex load(Stream<Patient> patients, long expectedSize) {
+        CedulaIndex index = new CedulaIndex((int) Math.min(Integer.MAX_VALUE / 2, expectedSize));
+        patients.forEach(p -> index.entries.put(key(p.getCedula()), new Entry(p.getCedula(), fingerprint(p))));
+        return index;
+    }
+
+    /**
+     * Classifies the row and records it, so a later row with the same cedula
+     * in the same file is compared against this one. For updates the patient's
+     * cedula is rewritten to the stored spelling, which is what the database
+     * conflict check matches on.
+     */
+    public Action classify(Patient patient, long fingerprint) {
+        String key = key(patient.getCedula());
+        Entry existing = entries.get(key);
+        if (existing == null) {
+            entries.put(key, new Entry(patient.getCedula(), fingerprint));
+            return Action.INSERT;
+        }
+        if (existing.fingerprint() == fingerprint) {
+            return Action.SKIP;
+        }
+        patient.setCedula(existing.cedula());
+        entries.put(key, new Entry(existing.cedula(), fingerprint));
+        return Action.UPDATE;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the fields an import can change.
+     */
+    public static long fingerprint(Patient patient) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, patient.getNombre());
+        hash = mix(hash, patient.getApellido());
+        hash = mix(hash, patient.getTelefono());
+        hash = mix(hash, patient.getEmail());
+        hash = mix(hash, patient.getDireccion());
+        hash = mix(hash, patient.getSexo());
+        LocalDate fechaNacimiento = patient.getFechaNacimiento();
+        return mix(hash, fechaNacimiento != null ? fechaNacimiento.toString() : null);
+    }
+
+    private static long mix(long hash, String value) {
+        // Null and blank hash alike; imports store missing fields as ""
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Field separator, so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0x1F) * FNV_PRIME;
+    }
+
+    private static String key(String cedula) {
+        return cedula.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private record Entry(String cedula, long fingerprint) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.cms.service.imports;
+
+import com.cms.domain.ClinicalHistory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Set of (patient, fecha, motivo) keys already present, used to skip duplicate
+ * consultations during a bulk import. Keys are 64-bit hashes kept in a
+ * primitive open-addressing table, about 16 bytes per consultation, so
+ * millions of rows fit comfortably. A false duplicate needs a full 64-bit
+ * collision between two different consultations, which is negligible at
+ * these sizes.
+ */
+public class HistoryDuplicateIndex {
+
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int size;
+
+    private HistoryDuplicateIndex(long expectedSize) {
+        int capacity = Integer.highestOneBit((int) Math.min(1 << 29, Math.max(16, expectedSize * 2))) << 1;
+        table = new long[capacity];
+    }
+
+    /**
+     * Builds the index from the consultations already stored, sized for those
+     * {@code existingCount} keys plus the first {@code batchSize} incoming
+     * ones, so neither loading nor the first batch has to grow the table.
+     */
+    public static HistoryDuplicateIndex load(Stream<ClinicalHistory> existing, long existingCount, int batchSize) {
+        HistoryDuplicateIndex index = new HistoryDuplicateIndex(existingCount + batchSize);
+        existing.forEach(h -> index.add(key(h.getPatientId(), h.getFechaConsulta(), h.getMotivoConsulta())));
+        return index;
+    }
+
+    /**
+     * Adds the key and returns false if it was already present.
+     */
+    public boolean add(long key) {
+        int mask = table.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = key;
+        if (++size * 4 > table.length * 3) {
+            grow();
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Hash of a consultation's identity. The date is compared to the second and
+     * the motivo ignoring case and surrounding spaces.
+     */
+    public static long key(Integer patientId, LocalDateTime fecha, String motivo) {
+        long hash = 0xcbf29ce484222325L;
+        if (motivo != null) {
+            String normalized = motivo.trim().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < normalized.length(); i++) {
+                hash = (hash ^ normalized.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        hash = mix(hash ^ (patientId != null ? patientId : -1));
+        hash = mix(hash ^ (fecha != null ? fecha.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE));
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        size = 0;
+        for (long key : old) {
+            if (key != EMPTY) {
+                add(key);
+            }
+        }
+    }
+}
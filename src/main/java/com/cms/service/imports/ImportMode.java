@@ -0,0 +1,8 @@
+package com.cms.service.imports;
+
+public enum ImportMode {
+    /** Only new cedulas are accepted; existing ones are reported as errors. */
+    INSERT_ONLY,
+    /** New cedulas are inserted, changed ones updated and identical ones skipped. */
+    UPSERT
+}
@@ -0,0 +1,268 @@
+package com.cms.service.imports;
+
+import com.cms.util.CsvReader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Three-stage CSV import: one thread parses records into chunks, a pool of
+ * workers turns each record into a value (mapping and validation), and the
+ * calling thread hands finished chunks to a single writer in file order.
+ * Stages are joined by bounded queues, so a slow writer holds back parsing
+ * instead of letting chunks pile up in memory.
+ */
+public class ImportPipeline<T> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Builds the value for one record. Runs concurrently on several workers.
+     * Throws {@link RowRejectedException} for invalid rows; may return null to
+     * skip a row silently.
+     */
+    @FunctionalInterface
+    public interface RowProcessor<T> {
+        T process(String[] fields);
+    }
+
+    /**
+     * Persists one chunk of accepted rows and records successes or row errors
+     * in the result. Always called from the same thread, in file order.
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+        void write(List<ImportRow<T>> rows, ImportResult result);
+    }
+
+    /**
+     * Wraps the write of each chunk so it can be committed together with the
+     * input position it reaches: {@code offset} is the byte just after the
+     * chunk's last record and {@code nextLine} the line that follows it.
+     */
+    @FunctionalInterface
+    public interface Checkpointer {
+        void commit(Runnable write, long offset, long nextLine);
+    }
+
+    private final int workers;
+    private final int chunkSize;
+    private Checkpointer checkpointer;
+
+    public ImportPipeline() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 2), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ImportPipeline(int workers, int chunkSize) {
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportPipeline<T> withCheckpoints(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+        return this;
+    }
+
+    /**
+     * Imports every remaining record of the reader. The caller is expected to
+     * have consumed the header already. A malformed file stops parsing; rows
+     * before the problem are still written and the problem is reported as an
+     * error of the result.
+     */
+    public ImportResult run(CsvReader reader, RowProcessor<T> processor, BatchWriter<T> writer)
+            throws IOException {
+        return run(reader, processor, writer, new ImportResult());
+    }
+
+    /**
+     * Same as {@link #run(CsvReader, RowProcessor, BatchWriter)}, adding to the
+     * counts of an existing result, e.g. one carried over from a resumed import.
+     */
+    public ImportResult run(CsvReader reader, RowProcessor<T> processor, BatchWriter<T> writer,
+            ImportResult result) throws IOException {
+        BlockingQueue<Chunk<T>> parsed = new ArrayBlockingQueue<>(workers * 2);
+        BlockingQueue<Chunk<T>> processed = new ArrayBlockingQueue<>(workers * 2);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers + 1, r -> {
+            Thread t = new Thread(r, "import-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            executor.execute(() -> parse(reader, parsed));
+            for (int i = 0; i < workers; i++) {
+                executor.execute(() -> process(parsed, processed, processor));
+            }
+
+            Map<Long, Chunk<T>> waiting = new HashMap<>();
+            Chunk<T> failure = null;
+            long nextSeq = 0;
+            int finishedWorkers = 0;
+            while (finishedWorkers < workers) {
+                Chunk<T> chunk = processed.take();
+                if (chunk.end) {
+                    finishedWorkers++;
+                    if (chunk.failure != null) {
+                        failure = chunk;
+                    }
+                    continue;
+                }
+                waiting.put(chunk.seq, chunk);
+                for (Chunk<T> next; (next = waiting.remove(nextSeq)) != null; nextSeq++) {
+                    write(next, writer, result);
+                }
+            }
+
+            if (failure != null) {
+                result.addError(failure.failureLine, failure.failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private void write(Chunk<T> chunk, BatchWriter<T> writer, ImportResult result) {
+        Runnable write = () -> {
+            for (ImportRow<String> error : chunk.errors) {
+                result.addError(error.line(), error.value());
+            }
+            if (!chunk.rows.isEmpty()) {
+                writer.write(chunk.rows, result);
+            }
+        };
+        if (checkpointer != null) {
+            checkpointer.commit(write, chunk.endOffset, chunk.nextLine);
+        } else {
+            write.run();
+        }
+    }
+
+    private void parse(CsvReader reader, BlockingQueue<Chunk<T>> parsed) {
+        long seq = 0;
+        Chunk<T> end = Chunk.end();
+        try {
+            Chunk<T> chunk = new Chunk<>(seq++, chunkSize);
+            String[] fields;
+            while ((fields = reader.next()) != null) {
+                chunk.add(reader.getLineNumber(), fields);
+                if (chunk.size == chunkSize) {
+                    chunk.markEnd(reader.getOffset(), reader.getNextLineNumber());
+                    parsed.put(chunk);
+                    chunk = new Chunk<>(seq++, chunkSize);
+                }
+            }
+            if (chunk.size > 0) {
+                chunk.markEnd(reader.getOffset(), reader.getNextLineNumber());
+                parsed.put(chunk);
+            }
+        } catch (IOException e) {
+            end.failure = "Archivo CSV mal formado: " + e.getMessage();
+            end.failureLine = reader.getLineNumber();
+        } catch (RuntimeException e) {
+            end.failure = "Error al leer el archivo: " + e;
+            end.failureLine = reader.getLineNumber();
+        } catch (InterruptedException e) {
+            // Keeps the end markers below from blocking on a full queue
+            Thread.currentThread().interrupt();
+        } finally {
+            // Whatever stopped parsing, the workers and the writer wait for these
+            postEnd(parsed, end);
+        }
+    }
+
+    private void postEnd(BlockingQueue<Chunk<T>> parsed, Chunk<T> end) {
+        try {
+            parsed.put(end);
+            for (int i = 1; i < workers; i++) {
+                parsed.put(Chunk.end());
+            }
+        } catch (InterruptedException e) {
+            // Import aborted by the writer
+        }
+    }
+
+    private void process(BlockingQueue<Chunk<T>> parsed, BlockingQueue<Chunk<T>> processed,
+            RowProcessor<T> processor) {
+        try {
+            while (true) {
+                Chunk<T> chunk = parsed.take();
+                if (!chunk.end) {
+                    for (int i = 0; i < chunk.size; i++) {
+                        try {
+                            T value = processor.process(chunk.records[i]);
+                            if (value != null) {
+                                chunk.rows.add(new ImportRow<>(chunk.lines[i], value));
+                            }
+                        } catch (RuntimeException e) {
+                            chunk.errors.add(new ImportRow<>(chunk.lines[i], e.getMessage()));
+                        }
+                        chunk.records[i] = null;
+                    }
+                }
+                processed.put(chunk);
+                if (chunk.end) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Import aborted by the writer
+        }
+    }
+
+    private static final class Chunk<T> {
+        final long seq;
+        final boolean end;
+        final long[] lines;
+        final String[][] records;
+        int size;
+        final List<ImportRow<T>> rows = new ArrayList<>();
+        final List<ImportRow<String>> errors = new ArrayList<>();
+        long endOffset;
+        long nextLine;
+        String failure;
+        long failureLine;
+
+        Chunk(long seq, int capacity) {
+            this.seq = seq;
+            this.end = false;
+            this.lines = new long[capacity];
+            this.records = new String[capacity][];
+        }
+
+        private Chunk() {
+            this.seq = -1;
+            this.end = true;
+            this.lines = null;
+            this.records = null;
+        }
+
+        static <T> Chunk<T> end() {
+            return new Chunk<>();
+        }
+
+        void add(long line, String[] fields) {
+            lines[size] = line;
+            records[size++] = fields;
+        }
+
+        void markEnd(long offset, long line) {
+            endOffset = offset;
+            nextLine = line;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.cms.service.imports;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportResult {
+    private int successCount = 0;
+    private int updatedCount = 0;
+    private int skippedCount = 0;
+    private int earlierErrorCount = 0;
+    private final List<String> errors = new ArrayList<>();
+
+    public ImportResult() {
+    }
+
+    /**
+     * Continues the counts of an interrupted import. Messages of earlier
+     * errors are not kept, only their number.
+     */
+    public ImportResult(int successCount, int updatedCount, int skippedCount, int errorCount) {
+        this.successCount = successCount;
+        this.updatedCount = updatedCount;
+        this.skippedCount = skippedCount;
+        this.earlierErrorCount = errorCount;
+    }
+
+    public void incrementSuccess() {
+        successCount++;
+    }
+
+    public void incrementUpdated() {
+        updatedCount++;
+    }
+
+    public void incrementSkipped() {
+        skippedCount++;
+    }
+
+    public void addError(long line, String message) {
+        errors.add("Línea " + line + ": " + message);
+    }
+
+    public void addError(String message) {
+        errors.add(message);
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    public int getErrorCount() {
+        return earlierErrorCount + errors.size();
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public String getSummary() {
+        if (updatedCount > 0 || skippedCount > 0) {
+            return String.format("Importados: %d, Actualizados: %d, Omitidos: %d, Errores: %d",
+                    successCount, updatedCount, skippedCount, getErrorCount());
+        }
+        return String.format("Importados: %d, Errores: %d", successCount, getErrorCount());
+    }
+}
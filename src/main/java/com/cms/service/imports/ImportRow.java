@@ -0,0 +1,7 @@
+package com.cms.service.imports;
+
+/**
+ * A value built from one CSV record, with the line the record starts on.
+ */
+public record ImportRow<T>(long line, T value) {
+}
@@ -0,0 +1,12 @@
+package com.cms.service.imports;
+
+/**
+ * Thrown by a row processor when a record cannot be imported. The message is
+ * shown to the user next to the line number.
+ */
+public class RowRejectedException extends RuntimeException {
+
+    public RowRejectedException(String message) {
+        super(message);
+    }
+}
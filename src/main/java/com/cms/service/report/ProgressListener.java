@@ -0,0 +1,10 @@
+package com.cms.service.report;
+
+@FunctionalInterface
+public interface ProgressListener {
+
+    ProgressListener NONE = (done, total) -> {
+    };
+
+    void onProgress(long done, long total);
+}
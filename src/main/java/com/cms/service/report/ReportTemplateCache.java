@@ -0,0 +1,95 @@
+package com.cms.service.report;
+
+import com.cms.infra.AppLogger;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles JRXML templates once and keeps the result both in memory and on
+ * disk as .jasper files. The disk file name carries a hash of the JRXML source
+ * so an edited template is recompiled automatically.
+ */
+public class ReportTemplateCache {
+
+    private static final String TEMPLATES_PATH = "/reports/";
+    private static final String CACHE_DIR = "cache/reports";
+
+    private final Path cacheDir;
+    private final Map<String, JasperReport> compiled = new ConcurrentHashMap<>();
+
+    public ReportTemplateCache() {
+        this(Paths.get(CACHE_DIR));
+    }
+
+    public ReportTemplateCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public JasperReport get(String templateName) {
+        return compiled.computeIfAbsent(templateName, this::loadOrCompile);
+    }
+
+    public void clear() {
+        compiled.clear();
+    }
+
+    private JasperReport loadOrCompile(String templateName) {
+        byte[] source = readTemplate(templateName);
+        Path jasperFile = cacheDir.resolve(templateName + "-" + hash(source) + ".jasper");
+
+        try {
+            if (Files.exists(jasperFile)) {
+                return (JasperReport) JRLoader.loadObject(jasperFile.toFile());
+            }
+        } catch (JRException e) {
+            AppLogger.warn("Discarding unreadable compiled template: " + jasperFile, e);
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            JasperReport report = JasperCompileManager.compileReport(new ByteArrayInputStream(source));
+            Files.createDirectories(cacheDir);
+            JRSaver.saveObject(report, jasperFile.toFile());
+            AppLogger.info("Compiled report template %s in %d ms", templateName,
+                    System.currentTimeMillis() - start);
+            return report;
+        } catch (JRException | IOException e) {
+            throw new RuntimeException("Error compiling report template: " + templateName, e);
+        }
+    }
+
+    private byte[] readTemplate(String templateName) {
+        try (InputStream is = getClass().getResourceAsStream(TEMPLATES_PATH + templateName + ".jrxml")) {
+            if (is == null) {
+                throw new IllegalArgumentException("Report template not found: " + templateName);
+            }
+            return is.readAllBytes();
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading report template: " + templateName, e);
+        }
+    }
+
+    private String hash(byte[] source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
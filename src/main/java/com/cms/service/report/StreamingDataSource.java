@@ -0,0 +1,60 @@
+package com.cms.service.report;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * JRDataSource over an iterator of domain objects. Rows are pulled one at a
+ * time, so the data never has to be materialized as a collection. Field values
+ * come from explicit extractors instead of bean reflection.
+ */
+public class StreamingDataSource<T> implements JRDataSource {
+
+    private final Iterator<T> rows;
+    private final Map<String, Function<T, Object>> fields = new HashMap<>();
+    private ProgressListener progress = ProgressListener.NONE;
+    private long expectedRows;
+    private long rowCount;
+    private T current;
+
+    public StreamingDataSource(Iterator<T> rows) {
+        this.rows = rows;
+    }
+
+    public StreamingDataSource<T> progress(ProgressListener progress, long expectedRows) {
+        this.progress = progress;
+        this.expectedRows = expectedRows;
+        return this;
+    }
+
+    public StreamingDataSource<T> field(String name, Function<T, Object> extractor) {
+        fields.put(name, extractor);
+        return this;
+    }
+
+    @Override
+    public boolean next() {
+        if (!rows.hasNext()) {
+            current = null;
+            return false;
+        }
+        current = rows.next();
+        progress.onProgress(++rowCount, expectedRows);
+        return true;
+    }
+
+    @Override
+    public Object getFieldValue(JRField jrField) throws JRException {
+        Function<T, Object> extractor = fields.get(jrField.getName());
+        if (extractor == null) {
+            throw new JRException("Unknown report field: " + jrField.getName());
+        }
+        return extractor.apply(current);
+    }
+}
@@ -0,0 +1,30 @@
+package com.cms.ui;
+
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+
+/**
+ * Records when the user last pressed a key or used the mouse anywhere in the
+ * application, so background work can keep out of the way while they do.
+ */
+public class UserActivityMonitor {
+
+    private static final long EVENT_MASK = AWTEvent.KEY_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK
+            | AWTEvent.MOUSE_MOTION_EVENT_MASK | AWTEvent.MOUSE_WHEEL_EVENT_MASK;
+
+    private static volatile long lastActivity = System.currentTimeMillis();
+    private static boolean installed;
+
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        Toolkit.getDefaultToolkit().addAWTEventListener(
+                event -> lastActivity = System.currentTimeMillis(), EVENT_MASK);
+        installed = true;
+    }
+
+    public static long getLastActivity() {
+        return lastActivity;
+    }
+}
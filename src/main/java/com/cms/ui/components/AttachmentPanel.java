@@ -1,9 +1,10 @@
 package com.cms.ui.components;
 
+import com.cms.di.AppFactory;
 import com.cms.domain.Attachment;
+import com.cms.service.ThumbnailService;
 import com.cms.util.ClipboardImageHandler;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
@@ -180,7 +181,7 @@ public class AttachmentPanel extends JPanel {
         imageLabel.setVerticalAlignment(SwingConstants.CENTER);
 
         if (isImageFile(attachment.getTipo())) {
-            loadThumbnailImage(attachment.getRutaArchivo(), imageLabel);
+            loadThumbnailImage(new File(attachment.getRutaArchivo()), imageLabel);
         } else {
             imageLabel.setText(getFileIcon(attachment.getTipo()));
             imageLabel.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 36));
@@ -242,39 +243,26 @@ public class AttachmentPanel extends JPanel {
         return thumbnail;
     }
 
-    private void loadThumbnailImage(String path, JLabel label) {
-        SwingWorker<ImageIcon, Void> worker = new SwingWorker<>() {
-            @Override
-            protected ImageIcon doInBackground() {
-                try {
-                    BufferedImage img = ImageIO.read(new File(path));
-                    if (img != null) {
-                        Image scaled = img.getScaledInstance(80, 80, Image.SCALE_SMOOTH);
-                        return new ImageIcon(scaled);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                return null;
-            }
+    private void loadThumbnailImage(File file, JLabel label) {
+        ThumbnailService thumbnails = AppFactory.getInstance().getThumbnailService();
+        BufferedImage cached = thumbnails.getCached(file, ThumbnailService.Size.SMALL);
+        if (cached != null) {
+            label.setIcon(new ImageIcon(cached));
+            return;
+        }
 
-            @Override
-            protected void done() {
-                try {
-                    ImageIcon icon = get();
-                    if (icon != null) {
-                        label.setIcon(icon);
+        thumbnails.getThumbnail(file, ThumbnailService.Size.SMALL)
+                .whenComplete((image, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        label.setText("⚠️");
+                    } else if (image != null) {
+                        label.setIcon(new ImageIcon(image));
                         label.setText("");
                     } else {
                         label.setText("🖼️");
                         label.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 36));
                     }
-                } catch (Exception e) {
-                    label.setText("⚠️");
-                }
-            }
-        };
-        worker.execute();
+                }));
     }
 
     private boolean isImageFile(String mimeType) {
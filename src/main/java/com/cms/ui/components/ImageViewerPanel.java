@@ -1,31 +1,71 @@
 package com.cms.ui.components;
 
+import com.cms.di.AppFactory;
+import com.cms.service.ImageService;
+import com.cms.service.image.ImageDecoder;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.image.BufferedImage;
+import java.io.File;
 
 /**
  * Panel para visualizar imágenes con soporte para zoom, rotación y pan.
+ *
+ * <p>Images opened from a file are shown from a preview decoded at screen
+ * size. When the zoom asks for more pixels than the preview has, the visible
+ * part of the photo is decoded again at the needed resolution and drawn over
+ * the preview, so full detail is only ever read for what is on screen.
+ *
+ * <p>Both are painted from {@link TiledImage} pyramids built in the background.
+ * While the user drags or zooms, tiles are scaled with nearest neighbour; a
+ * bilinear pass follows once the view has been still for a moment.
  */
 public class ImageViewerPanel extends JPanel {
 
     private BufferedImage originalImage;
-    private BufferedImage displayImage;
+    private TiledImage originalTiles;
+    private int sourceWidth;
+    private int sourceHeight;
+    private File sourceFile;
+    private boolean loading;
+    private int generation;
+    private SwingWorker<BufferedImage, Void> loader;
+
+    private TiledImage detail;
+    private SwingWorker<TiledImage, Void> detailLoader;
+    private final Timer detailTimer;
+    private final Timer qualityTimer;
+    private boolean interacting;
+
     private double zoomLevel = 1.0;
     private int rotationAngle = 0; // 0, 90, 180, 270
     private Point panOffset = new Point(0, 0);
     private Point dragStart = null;
 
-    private static final double ZOOM_INCREMENT = 0.2;
+    private static final double ZOOM_FACTOR = 1.25;
     private static final double MIN_ZOOM = 0.1;
     private static final double MAX_ZOOM = 5.0;
+    private static final int DETAIL_DELAY_MS = 150;
+    private static final int QUALITY_DELAY_MS = 200;
+    // Extra area decoded around the viewport, as a fraction of its size, so short pans stay sharp
+    private static final double DETAIL_MARGIN = 0.25;
 
     public ImageViewerPanel() {
         setBackground(new Color(30, 30, 30));
         setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
 
+        detailTimer = new Timer(DETAIL_DELAY_MS, e -> loadDetail());
+        detailTimer.setRepeats(false);
+        qualityTimer = new Timer(QUALITY_DELAY_MS, e -> {
+            interacting = false;
+            repaint();
+        });
+        qualityTimer.setRepeats(false);
+
         // Mouse wheel for zoom
         addMouseWheelListener(e -> {
             if (originalImage != null) {
@@ -59,61 +99,155 @@ public class ImageViewerPanel extends JPanel {
                     panOffset.x += dx;
                     panOffset.y += dy;
                     dragStart = e.getPoint();
-                    repaint();
+                    viewChanged();
                 }
             }
         });
+
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                viewChanged();
+            }
+        });
+    }
+
+    /** The box file previews are decoded to fit: the screen size. */
+    public static Dimension getPreviewSize() {
+        return Toolkit.getDefaultToolkit().getScreenSize();
     }
 
     public void setImage(BufferedImage image) {
+        cancelLoading();
+        this.sourceFile = null;
+        this.loading = false;
+        showImage(image, image != null ? image.getWidth() : 0, image != null ? image.getHeight() : 0);
+    }
+
+    /**
+     * Shows the image stored in {@code file}, decoding it in the background at
+     * {@link #getPreviewSize() preview size}. A preview already in the image
+     * cache, e.g. prefetched by a gallery, is shown at once.
+     */
+    public void setImageFile(File file) {
+        cancelLoading();
+        this.sourceFile = file;
+
+        ImageService imageService = AppFactory.getInstance().getImageService();
+        Dimension box = getPreviewSize();
+        Dimension cachedSize = imageService.getCachedImageSize(file);
+        BufferedImage cached = cachedSize != null
+                ? imageService.getCachedImage(file, box.width, box.height)
+                : null;
+        if (cached != null) {
+            this.loading = false;
+            showImage(cached, cachedSize.width, cachedSize.height);
+            return;
+        }
+
+        this.loading = true;
+        showImage(null, 0, 0);
+
+        int requested = generation;
+        loader = new SwingWorker<>() {
+            private Dimension size;
+
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                size = imageService.getImageSize(file);
+                return size != null ? imageService.getImage(file, box.width, box.height) : null;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || requested != generation) {
+                    return;
+                }
+                loading = false;
+                try {
+                    BufferedImage preview = get();
+                    if (preview != null) {
+                        showImage(preview, size.width, size.height);
+                        return;
+                    }
+                } catch (Exception e) {
+                    // Unreadable file: fall through to the empty state
+                }
+                repaint();
+            }
+        };
+        loader.execute();
+    }
+
+    private void showImage(BufferedImage image, int width, int height) {
+        double oldZoom = zoomLevel;
+        BufferedImage oldImage = originalImage;
         this.originalImage = image;
+        this.originalTiles = null;
+        this.sourceWidth = width;
+        this.sourceHeight = height;
         this.rotationAngle = 0;
         this.zoomLevel = 1.0;
         this.panOffset = new Point(0, 0);
-        updateDisplayImage();
+        firePropertyChange("image", oldImage, image);
+        firePropertyChange("zoomLevel", oldZoom, zoomLevel);
         repaint();
-    }
-
-    private void updateDisplayImage() {
-        if (originalImage == null) {
-            displayImage = null;
-            return;
+        if (image != null) {
+            buildTiles(image);
         }
+    }
 
-        // Apply rotation
-        if (rotationAngle == 0) {
-            displayImage = originalImage;
-        } else {
-            int w = originalImage.getWidth();
-            int h = originalImage.getHeight();
-
-            int newW = (rotationAngle == 90 || rotationAngle == 270) ? h : w;
-            int newH = (rotationAngle == 90 || rotationAngle == 270) ? w : h;
+    private void buildTiles(BufferedImage image) {
+        int requested = generation;
+        Rectangle bounds = new Rectangle(sourceWidth, sourceHeight);
+        new SwingWorker<TiledImage, Void>() {
+            @Override
+            protected TiledImage doInBackground() {
+                return new TiledImage(image, bounds);
+            }
 
-            displayImage = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = displayImage.createGraphics();
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            @Override
+            protected void done() {
+                if (requested != generation) {
+                    return;
+                }
+                try {
+                    originalTiles = get();
+                    repaint();
+                } catch (Exception e) {
+                    // Keep painting the untiled image
+                }
+            }
+        }.execute();
+    }
 
-            AffineTransform transform = new AffineTransform();
-            transform.translate(newW / 2.0, newH / 2.0);
-            transform.rotate(Math.toRadians(rotationAngle));
-            transform.translate(-w / 2.0, -h / 2.0);
+    private void cancelLoading() {
+        generation++;
+        detailTimer.stop();
+        if (loader != null) {
+            loader.cancel(true);
+            loader = null;
+        }
+        clearDetail();
+    }
 
-            g2d.setTransform(transform);
-            g2d.drawImage(originalImage, 0, 0, null);
-            g2d.dispose();
+    private void clearDetail() {
+        if (detailLoader != null) {
+            detailLoader.cancel(true);
+            detailLoader = null;
         }
+        detail = null;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        if (displayImage == null) {
+        if (originalImage == null) {
             // Draw placeholder
             g.setColor(new Color(60, 60, 60));
             g.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-            String msg = "Sin imagen";
+            String msg = loading ? "Cargando imagen..." : "Sin imagen";
             FontMetrics fm = g.getFontMetrics();
             int x = (getWidth() - fm.stringWidth(msg)) / 2;
             int y = getHeight() / 2;
@@ -122,69 +256,183 @@ public class ImageViewerPanel extends JPanel {
         }
 
         Graphics2D g2d = (Graphics2D) g.create();
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interacting
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
 
-        // Calculate scaled dimensions
-        int imgW = displayImage.getWidth();
-        int imgH = displayImage.getHeight();
+        // Everything is drawn in source pixels; the transform fits, zooms, pans and rotates
+        double scale = displayScale();
+        g2d.transform(viewTransform());
+        if (originalTiles != null) {
+            originalTiles.paint(g2d, scale);
+        } else {
+            g2d.drawImage(originalImage, 0, 0, sourceWidth, sourceHeight, null);
+        }
+        if (detail != null) {
+            detail.paint(g2d, scale);
+        }
+        g2d.dispose();
+    }
 
-        // Fit to panel if zoom is 1.0
-        double fitScale = Math.min((double) getWidth() / imgW, (double) getHeight() / imgH);
-        double scale = fitScale * zoomLevel;
+    private AffineTransform viewTransform() {
+        double scale = displayScale();
+        AffineTransform transform = new AffineTransform();
+        transform.translate(getWidth() / 2.0 + panOffset.x, getHeight() / 2.0 + panOffset.y);
+        transform.scale(scale, scale);
+        transform.rotate(Math.toRadians(rotationAngle));
+        transform.translate(-sourceWidth / 2.0, -sourceHeight / 2.0);
+        return transform;
+    }
 
-        int scaledW = (int) (imgW * scale);
-        int scaledH = (int) (imgH * scale);
+    /** Screen pixels per source pixel at the current zoom. */
+    private double displayScale() {
+        return fitScale() * zoomLevel;
+    }
 
-        // Center the image
-        int x = (getWidth() - scaledW) / 2 + panOffset.x;
-        int y = (getHeight() - scaledH) / 2 + panOffset.y;
+    private double fitScale() {
+        boolean quarterTurn = rotationAngle == 90 || rotationAngle == 270;
+        int rotatedW = quarterTurn ? sourceHeight : sourceWidth;
+        int rotatedH = quarterTurn ? sourceWidth : sourceHeight;
+        return Math.min((double) getWidth() / rotatedW, (double) getHeight() / rotatedH);
+    }
 
-        g2d.drawImage(displayImage, x, y, scaledW, scaledH, null);
-        g2d.dispose();
+    private double maxZoom() {
+        // Always allow zooming in past the photo's own pixels, however large it is
+        return sourceWidth > 0 ? Math.max(MAX_ZOOM, 2 / fitScale()) : MAX_ZOOM;
     }
 
-    public void zoomIn() {
-        if (zoomLevel < MAX_ZOOM) {
-            zoomLevel = Math.min(zoomLevel + ZOOM_INCREMENT, MAX_ZOOM);
+    private void viewChanged() {
+        interacting = true;
+        qualityTimer.restart();
+        repaint();
+        if (sourceFile != null && originalImage != null) {
+            detailTimer.restart();
+        }
+    }
+
+    private void loadDetail() {
+        if (sourceFile == null || originalImage == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        double scale = displayScale();
+        double previewScale = (double) originalImage.getWidth() / sourceWidth;
+        if (scale <= previewScale) {
+            clearDetail();
             repaint();
+            return;
+        }
+
+        Rectangle visible = visibleSourceRegion(0);
+        if (visible.isEmpty()) {
+            return;
+        }
+        int step = Math.max(1, (int) (1 / scale));
+        if (detail != null && detail.getBounds().contains(visible) && detail.getResolution() >= 1.0 / step) {
+            return;
+        }
+
+        Rectangle region = visibleSourceRegion(DETAIL_MARGIN);
+        File file = sourceFile;
+        int requested = generation;
+        if (detailLoader != null) {
+            detailLoader.cancel(true);
+        }
+        Rectangle sourceBounds = new Rectangle(sourceWidth, sourceHeight);
+        detailLoader = new SwingWorker<>() {
+            @Override
+            protected TiledImage doInBackground() throws Exception {
+                BufferedImage image = ImageDecoder.decodeRegion(file, region, step);
+                return image != null ? new TiledImage(image, region.intersection(sourceBounds)) : null;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || requested != generation) {
+                    return;
+                }
+                try {
+                    TiledImage tiles = get();
+                    if (tiles != null) {
+                        detail = tiles;
+                        repaint();
+                    }
+                } catch (Exception e) {
+                    // Keep showing the preview
+                }
+            }
+        };
+        detailLoader.execute();
+    }
+
+    /**
+     * The part of the source on screen, grown by {@code margin} times its size
+     * and clipped to the image.
+     */
+    private Rectangle visibleSourceRegion(double margin) {
+        try {
+            Rectangle bounds = viewTransform().createInverse()
+                    .createTransformedShape(new Rectangle(getWidth(), getHeight())).getBounds();
+            bounds.grow((int) (bounds.width * margin / 2), (int) (bounds.height * margin / 2));
+            return bounds.intersection(new Rectangle(sourceWidth, sourceHeight));
+        } catch (NoninvertibleTransformException e) {
+            return new Rectangle();
+        }
+    }
+
+    public void zoomIn() {
+        double max = maxZoom();
+        if (zoomLevel < max) {
+            setZoomLevel(Math.min(zoomLevel * ZOOM_FACTOR, max));
         }
     }
 
     public void zoomOut() {
         if (zoomLevel > MIN_ZOOM) {
-            zoomLevel = Math.max(zoomLevel - ZOOM_INCREMENT, MIN_ZOOM);
-            if (zoomLevel <= 1.0) {
-                panOffset = new Point(0, 0);
-            }
-            repaint();
+            setZoomLevel(Math.max(zoomLevel / ZOOM_FACTOR, MIN_ZOOM));
+        }
+    }
+
+    /** Zooms to one screen pixel per photo pixel. */
+    public void actualSize() {
+        if (originalImage != null) {
+            setZoomLevel(1 / fitScale());
         }
     }
 
     public void rotateLeft() {
         rotationAngle = (rotationAngle - 90 + 360) % 360;
-        updateDisplayImage();
-        repaint();
+        viewChanged();
     }
 
     public void rotateRight() {
         rotationAngle = (rotationAngle + 90) % 360;
-        updateDisplayImage();
-        repaint();
+        viewChanged();
     }
 
     public void resetView() {
-        zoomLevel = 1.0;
         rotationAngle = 0;
-        panOffset = new Point(0, 0);
-        updateDisplayImage();
-        repaint();
+        setZoomLevel(1.0);
+    }
+
+    private void setZoomLevel(double zoom) {
+        double oldZoom = zoomLevel;
+        zoomLevel = zoom;
+        if (zoomLevel <= 1.0) {
+            panOffset = new Point(0, 0);
+        }
+        firePropertyChange("zoomLevel", oldZoom, zoomLevel);
+        viewChanged();
     }
 
     public double getZoomLevel() {
         return zoomLevel;
     }
 
+    /** Screen pixels per photo pixel, i.e. 1.0 at actual size. */
+    public double getDisplayScale() {
+        return originalImage != null ? displayScale() : 0;
+    }
+
     public int getRotationAngle() {
         return rotationAngle;
     }
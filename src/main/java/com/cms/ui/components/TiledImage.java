@@ -0,0 +1,128 @@
+package com.cms.ui.components;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An image cut into tiles at several resolutions, each half the previous one,
+ * so painting at any zoom only scales the few tiles on screen from a level
+ * that is at most twice the size needed. Tiles are compatible with the screen
+ * so Java2D can keep them in video memory. Build it off the EDT.
+ */
+final class TiledImage {
+
+    static final int TILE_SIZE = 256;
+
+    private record Level(int width, int height, BufferedImage[][] tiles) {
+    }
+
+    private final Rectangle bounds;
+    private final List<Level> levels = new ArrayList<>();
+
+    /**
+     * Tiles {@code image}, which shows the {@code bounds} area of a larger
+     * source, given in source pixels.
+     */
+    TiledImage(BufferedImage image, Rectangle bounds) {
+        this.bounds = new Rectangle(bounds);
+        boolean opaque = !image.getColorModel().hasAlpha();
+        BufferedImage level = image;
+        while (true) {
+            levels.add(new Level(level.getWidth(), level.getHeight(), cut(level, opaque)));
+            if (level.getWidth() <= TILE_SIZE && level.getHeight() <= TILE_SIZE) {
+                break;
+            }
+            level = half(level, opaque);
+        }
+    }
+
+    Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    /** Image pixels per source pixel at full resolution. */
+    double getResolution() {
+        return (double) levels.get(0).width() / bounds.width;
+    }
+
+    /**
+     * Paints the tiles that fall in the clip. {@code g} must already map
+     * source pixels to the screen, at {@code displayScale} screen pixels per
+     * source pixel.
+     */
+    void paint(Graphics2D g, double displayScale) {
+        Level level = levels.get(0);
+        for (int i = levels.size() - 1; i >= 0; i--) {
+            if ((double) levels.get(i).width() / bounds.width >= displayScale) {
+                level = levels.get(i);
+                break;
+            }
+        }
+
+        double scaleX = (double) level.width() / bounds.width;
+        double scaleY = (double) level.height() / bounds.height;
+        Rectangle clip = g.getClipBounds();
+        Rectangle visible = clip != null ? clip.intersection(bounds) : bounds;
+        if (visible.isEmpty()) {
+            return;
+        }
+        int firstCol = Math.max(0, (int) ((visible.x - bounds.x) * scaleX) / TILE_SIZE);
+        int lastCol = Math.min(level.tiles()[0].length - 1,
+                (int) Math.ceil((visible.getMaxX() - bounds.x) * scaleX) / TILE_SIZE);
+        int firstRow = Math.max(0, (int) ((visible.y - bounds.y) * scaleY) / TILE_SIZE);
+        int lastRow = Math.min(level.tiles().length - 1,
+                (int) Math.ceil((visible.getMaxY() - bounds.y) * scaleY) / TILE_SIZE);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                AffineTransform place = AffineTransform.getTranslateInstance(
+                        bounds.x + col * TILE_SIZE / scaleX, bounds.y + row * TILE_SIZE / scaleY);
+                place.scale(1 / scaleX, 1 / scaleY);
+                g.drawImage(level.tiles()[row][col], place, null);
+            }
+        }
+    }
+
+    private static BufferedImage[][] cut(BufferedImage image, boolean opaque) {
+        int cols = (image.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (image.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        BufferedImage[][] tiles = new BufferedImage[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int x = col * TILE_SIZE;
+                int y = row * TILE_SIZE;
+                BufferedImage tile = createTile(Math.min(TILE_SIZE, image.getWidth() - x),
+                        Math.min(TILE_SIZE, image.getHeight() - y), opaque);
+                Graphics2D g2d = tile.createGraphics();
+                g2d.setComposite(AlphaComposite.Src);
+                g2d.drawImage(image, -x, -y, null);
+                g2d.dispose();
+                tiles[row][col] = tile;
+            }
+        }
+        return tiles;
+    }
+
+    private static BufferedImage half(BufferedImage image, boolean opaque) {
+        BufferedImage half = createTile(Math.max(1, image.getWidth() / 2), Math.max(1, image.getHeight() / 2),
+                opaque);
+        Graphics2D g2d = half.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, half.getWidth(), half.getHeight(), null);
+        g2d.dispose();
+        return half;
+    }
+
+    private static BufferedImage createTile(int width, int height, boolean opaque) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration()
+                    .createCompatibleImage(width, height, opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+}
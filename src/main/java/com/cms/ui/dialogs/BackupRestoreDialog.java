@@ -2,8 +2,10 @@ package com.cms.ui.dialogs;
 
 import com.cms.di.AppFactory;
 import com.cms.infra.AppLogger;
+import com.cms.service.BackupScheduler;
 import com.cms.service.BackupService;
 import com.cms.service.BackupService.BackupInfo;
+import com.cms.service.backup.BackupSchedule;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -29,7 +31,7 @@ public class BackupRestoreDialog extends JDialog {
         super(parent, "Respaldo y Restauración", true);
         this.backupService = AppFactory.getInstance().getBackupService();
 
-        setSize(700, 500);
+        setSize(780, 500);
         setLocationRelativeTo(parent);
         setLayout(new BorderLayout());
 
@@ -94,8 +96,30 @@ public class BackupRestoreDialog extends JDialog {
         restoreExternalBtn.setPreferredSize(new Dimension(180, 40));
         restoreExternalBtn.addActionListener(e -> restoreFromFile());
 
+        JButton restorePatientBtn = new JButton("👤 Restaurar Paciente...");
+        restorePatientBtn.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        restorePatientBtn.setBackground(PRIMARY);
+        restorePatientBtn.setForeground(Color.WHITE);
+        restorePatientBtn.setFocusPainted(false);
+        restorePatientBtn.setBorderPainted(false);
+        restorePatientBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        restorePatientBtn.setPreferredSize(new Dimension(190, 40));
+        restorePatientBtn.addActionListener(e -> restorePatient());
+
+        JButton scheduleBtn = new JButton("⏰ Programación...");
+        scheduleBtn.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        scheduleBtn.setBackground(PRIMARY);
+        scheduleBtn.setForeground(Color.WHITE);
+        scheduleBtn.setFocusPainted(false);
+        scheduleBtn.setBorderPainted(false);
+        scheduleBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        scheduleBtn.setPreferredSize(new Dimension(170, 40));
+        scheduleBtn.addActionListener(e -> editSchedule());
+
         actionPanel.add(createBackupBtn);
         actionPanel.add(restoreExternalBtn);
+        actionPanel.add(restorePatientBtn);
+        actionPanel.add(scheduleBtn);
 
         String[] columns = { "Nombre", "Tamaño", "Fecha de Creación", "Acciones" };
         tableModel = new DefaultTableModel(columns, 0) {
@@ -313,6 +337,107 @@ public class BackupRestoreDialog extends JDialog {
         }
     }
 
+    private void restorePatient() {
+        int row = backupsTable.getSelectedRow();
+        if (row < 0) {
+            JOptionPane.showMessageDialog(this,
+                    "Seleccione en la lista el respaldo del que desea recuperar el paciente.",
+                    "Restaurar Paciente",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String backupName = (String) tableModel.getValueAt(row, 0);
+        File backupFile = new File("backups", backupName);
+
+        String cedula = JOptionPane.showInputDialog(this,
+                "Cédula del paciente a recuperar de " + backupName + ":",
+                "Restaurar Paciente",
+                JOptionPane.QUESTION_MESSAGE);
+        if (cedula == null || cedula.isBlank()) {
+            return;
+        }
+
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        SwingWorker<BackupService.PatientRestoreResult, Void> worker = new SwingWorker<>() {
+            @Override
+            protected BackupService.PatientRestoreResult doInBackground() throws Exception {
+                return backupService.restorePatient(backupFile, cedula.trim());
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    BackupService.PatientRestoreResult result = get();
+                    StringBuilder message = new StringBuilder();
+                    message.append(result.patientCreated() ? "Paciente recuperado.\n\n"
+                            : "El paciente ya existía; se completaron sus datos.\n\n");
+                    message.append("Consultas recuperadas: ").append(result.histories()).append("\n");
+                    message.append("Citas recuperadas: ").append(result.appointments()).append("\n");
+                    message.append("Adjuntos recuperados: ").append(result.attachments());
+                    if (result.missingAttachments() > 0) {
+                        message.append("\nAdjuntos no encontrados en el respaldo: ")
+                                .append(result.missingAttachments());
+                    }
+                    JOptionPane.showMessageDialog(BackupRestoreDialog.this,
+                            message.toString(),
+                            "Restauración de Paciente",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    AppLogger.error("Error restoring patient from backup", cause);
+                    JOptionPane.showMessageDialog(BackupRestoreDialog.this,
+                            "Error al restaurar paciente: " + cause.getMessage(),
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void editSchedule() {
+        BackupScheduler scheduler = AppFactory.getInstance().getBackupScheduler();
+        BackupSchedule current = scheduler.getSchedule();
+
+        JCheckBox enabledCheck = new JCheckBox("Respaldar automáticamente", current.enabled());
+        JTextField windowsField = new JTextField(current.windowsText(), 20);
+        JSpinner rateSpinner = new JSpinner(new SpinnerNumberModel(
+                (int) Math.max(1, current.maxBytesPerSecond() / (1024 * 1024)), 1, 1000, 1));
+
+        JPanel form = new JPanel(new GridLayout(0, 1, 0, 5));
+        form.add(enabledCheck);
+        form.add(new JLabel("Horarios (ej. 22:00-06:00, 13:00-14:00):"));
+        form.add(windowsField);
+        form.add(new JLabel("Velocidad máxima de disco (MB/s):"));
+        form.add(rateSpinner);
+        form.add(new JLabel("<html><i>El respaldo se pausa mientras el sistema está en uso.</i></html>"));
+
+        int option = JOptionPane.showConfirmDialog(this, form, "Programación de Respaldos",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        try {
+            List<BackupSchedule.Window> windows = BackupSchedule.parseWindows(windowsField.getText());
+            if (enabledCheck.isSelected() && windows.isEmpty()) {
+                throw new IllegalArgumentException("Indique al menos un horario");
+            }
+            long rate = ((Number) rateSpinner.getValue()).longValue() * 1024 * 1024;
+            scheduler.updateSchedule(new BackupSchedule(enabledCheck.isSelected(), windows, rate));
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Programación inválida",
+                    JOptionPane.WARNING_MESSAGE);
+        } catch (IOException ex) {
+            AppLogger.error("Error saving backup schedule", ex);
+            JOptionPane.showMessageDialog(this,
+                    "Error al guardar la programación: " + ex.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void deleteBackup(int row) {
         String backupName = (String) tableModel.getValueAt(row, 0);
 
@@ -323,20 +448,36 @@ public class BackupRestoreDialog extends JDialog {
                 JOptionPane.WARNING_MESSAGE);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                backupService.deleteBackup(backupName);
-                loadBackups();
-                JOptionPane.showMessageDialog(this,
-                        "Respaldo eliminado exitosamente",
-                        "Éxito",
-                        JOptionPane.INFORMATION_MESSAGE);
-            } catch (IOException ex) {
-                AppLogger.error("Error deleting backup", ex);
-                JOptionPane.showMessageDialog(this,
-                        "Error al eliminar respaldo: " + ex.getMessage(),
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE);
-            }
+            // Waits for a backup in progress, possibly a paused scheduled one, so never on the EDT
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            SwingWorker<Void, Void> worker = new SwingWorker<>() {
+                @Override
+                protected Void doInBackground() throws Exception {
+                    backupService.deleteBackup(backupName);
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    setCursor(Cursor.getDefaultCursor());
+                    try {
+                        get();
+                        loadBackups();
+                        JOptionPane.showMessageDialog(BackupRestoreDialog.this,
+                                "Respaldo eliminado exitosamente",
+                                "Éxito",
+                                JOptionPane.INFORMATION_MESSAGE);
+                    } catch (Exception ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        AppLogger.error("Error deleting backup", cause);
+                        JOptionPane.showMessageDialog(BackupRestoreDialog.this,
+                                "Error al eliminar respaldo: " + cause.getMessage(),
+                                "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            };
+            worker.execute();
         }
     }
 }
@@ -6,6 +6,8 @@ import com.cms.di.AppFactory;
 import com.cms.domain.Attachment;
 import com.cms.domain.ClinicalHistory;
 import com.cms.domain.Patient;
+import com.cms.infra.EventBus;
+import com.cms.presenter.events.HistorySavedEvent;
 import com.cms.repository.AttachmentRepository;
 import com.cms.repository.ClinicalHistoryRepository;
 import com.cms.repository.PatientRepository;
@@ -483,7 +485,7 @@ public class ClinicalHistoryDialog extends JDialog {
                 for (TempAttachment temp : tempAttachments) {
                     if (temp.existingId == null) {
                         File destFile = clipboardHandler.copyFileToAttachments(
-                                temp.file.getAbsolutePath(), saved.getId()).orElse(null);
+                                temp.file.getAbsolutePath()).orElse(null);
 
                         if (destFile != null) {
                             Attachment attachment = new Attachment();
@@ -506,6 +508,7 @@ public class ClinicalHistoryDialog extends JDialog {
                 try {
                     ClinicalHistory saved = get();
                     cleanupTempFiles();
+                    EventBus.getInstance().publish(new HistorySavedEvent(saved));
                     if (onSaveCallback != null) {
                         onSaveCallback.accept(saved);
                     }
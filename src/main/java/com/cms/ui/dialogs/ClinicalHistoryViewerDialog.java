@@ -6,16 +6,16 @@ import com.cms.domain.ClinicalHistory;
 import com.cms.domain.Patient;
 import com.cms.repository.AttachmentRepository;
 import com.cms.repository.PatientRepository;
+import com.cms.service.ThumbnailService;
 import com.cms.ui.components.IconFactory;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.AbstractBorder;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
+import java.io.File;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
@@ -50,7 +50,9 @@ public class ClinicalHistoryViewerDialog extends JDialog {
     private static final Font LABEL_FONT = new Font("Segoe UI", Font.BOLD, 13);
 
     private final ClinicalHistory history;
-    private final List<BufferedImage> images;
+    private final List<Attachment> images;
+    private final List<JLabel> thumbnailLabels = new ArrayList<>();
+    private boolean[] thumbnailRequested;
     private final String patientName;
     private final Integer patientAge;
 
@@ -62,25 +64,17 @@ public class ClinicalHistoryViewerDialog extends JDialog {
         AttachmentRepository attachmentRepo = factory.getAttachmentRepository();
         PatientRepository patientRepo = factory.getPatientRepository();
 
-        // Load attachments and convert to images
+        // Image attachments; thumbnails are decoded later, as their cards scroll into view
         List<Attachment> attachments = attachmentRepo.findByClinicalHistoryId(history.getId());
         this.images = new ArrayList<>();
 
         for (Attachment att : attachments) {
-            if (att.getTipo() != null && att.getTipo().startsWith("image/")) {
-                try {
-                    java.io.File imageFile = new java.io.File(att.getRutaArchivo());
-                    if (imageFile.exists()) {
-                        BufferedImage img = ImageIO.read(imageFile);
-                        if (img != null) {
-                            images.add(img);
-                        }
-                    }
-                } catch (IOException e) {
-                    // Skip invalid images
-                }
+            if (att.getTipo() != null && att.getTipo().startsWith("image/")
+                    && new File(att.getRutaArchivo()).exists()) {
+                images.add(att);
             }
         }
+        this.thumbnailRequested = new boolean[images.size()];
 
         // Get patient name and age
         Patient patient = patientRepo.findById(history.getPatientId()).orElse(null);
@@ -99,10 +93,18 @@ public class ClinicalHistoryViewerDialog extends JDialog {
         JPanel mainPanel = new GradientPanel();
         mainPanel.setLayout(new BorderLayout());
         mainPanel.add(createHeader(), BorderLayout.NORTH);
-        mainPanel.add(createContent(), BorderLayout.CENTER);
+        JScrollPane content = createContent();
+        mainPanel.add(content, BorderLayout.CENTER);
         mainPanel.add(createFooter(), BorderLayout.SOUTH);
 
         add(mainPanel);
+
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowOpened(java.awt.event.WindowEvent e) {
+                requestVisibleThumbnails(content.getViewport());
+            }
+        });
     }
 
     // Custom gradient panel
@@ -262,6 +264,7 @@ public class ClinicalHistoryViewerDialog extends JDialog {
         scrollPane.getViewport().setOpaque(false);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
         scrollPane.getVerticalScrollBar().setUnitIncrement(20);
+        scrollPane.getViewport().addChangeListener(e -> requestVisibleThumbnails(scrollPane.getViewport()));
 
         return scrollPane;
     }
@@ -425,7 +428,41 @@ public class ClinicalHistoryViewerDialog extends JDialog {
         return section;
     }
 
-    private JPanel createThumbnailCard(BufferedImage image, int number) {
+    /**
+     * Starts loading the thumbnails of the cards that are on screen or half a
+     * screen away, in the order they appear.
+     */
+    private void requestVisibleThumbnails(JViewport viewport) {
+        Rectangle visible = viewport.getViewRect();
+        visible.grow(0, visible.height / 2);
+        for (int i = 0; i < thumbnailLabels.size(); i++) {
+            JLabel label = thumbnailLabels.get(i);
+            if (thumbnailRequested[i] || label.getParent() == null) {
+                continue;
+            }
+            Rectangle bounds = SwingUtilities.convertRectangle(label.getParent(), label.getBounds(),
+                    viewport.getView());
+            if (bounds.intersects(visible)) {
+                thumbnailRequested[i] = true;
+                loadThumbnail(new File(images.get(i).getRutaArchivo()), label);
+            }
+        }
+    }
+
+    private void loadThumbnail(File file, JLabel label) {
+        AppFactory.getInstance().getThumbnailService()
+                .getThumbnail(file, ThumbnailService.Size.MEDIUM)
+                .whenComplete((thumb, error) -> SwingUtilities.invokeLater(() -> {
+                    if (thumb != null) {
+                        label.setIcon(new ImageIcon(createThumbnail(thumb, 140, 100)));
+                        label.setText("");
+                    } else {
+                        label.setText("⚠️");
+                    }
+                }));
+    }
+
+    private JPanel createThumbnailCard(Attachment image, int number) {
         JPanel card = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
@@ -450,10 +487,13 @@ public class ClinicalHistoryViewerDialog extends JDialog {
         card.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         card.setBorder(new EmptyBorder(8, 8, 8, 8));
 
-        // Thumbnail image
-        BufferedImage thumb = createThumbnail(image, 140, 100);
-        JLabel thumbLabel = new JLabel(new ImageIcon(thumb));
+        // Thumbnail image, a placeholder until it scrolls into view and loads
+        JLabel thumbLabel = new JLabel("🖼️");
+        thumbLabel.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 32));
+        thumbLabel.setForeground(TEXT_SECONDARY);
+        thumbLabel.setToolTipText(image.getNombre());
         thumbLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        thumbnailLabels.add(thumbLabel);
 
         // Number badge overlay
         JLayeredPane layeredPane = new JLayeredPane();
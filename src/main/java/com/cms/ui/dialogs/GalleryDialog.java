@@ -1,8 +1,9 @@
 package com.cms.ui.dialogs;
 
+import com.cms.di.AppFactory;
 import com.cms.domain.Attachment;
+import com.cms.service.ThumbnailService;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
@@ -20,6 +21,8 @@ public class GalleryDialog extends JDialog {
     private static final Color BACKGROUND = new Color(241, 245, 249);
     private static final Color CARD_BG = Color.WHITE;
     private static final Color PRIMARY = new Color(59, 130, 246);
+    private static final int FULL_IMAGE_WIDTH = 780;
+    private static final int FULL_IMAGE_HEIGHT = 560;
 
     private final List<Attachment> attachments;
     private JPanel galleryPanel;
@@ -93,28 +96,11 @@ public class GalleryDialog extends JDialog {
         imageLabel.setHorizontalAlignment(SwingConstants.CENTER);
         imageLabel.setPreferredSize(new Dimension(180, 160));
 
-        try {
-            File imageFile = new File(attachment.getRutaArchivo());
-            if (imageFile.exists()) {
-                BufferedImage img = ImageIO.read(imageFile);
-                if (img != null) {
-                    ImageIcon thumbnail = createThumbnail(img, 180, 160);
-                    imageLabel.setIcon(thumbnail);
-                    imageLabel.setCursor(new Cursor(Cursor.HAND_CURSOR));
-                    imageLabel.addMouseListener(new MouseAdapter() {
-                        @Override
-                        public void mouseClicked(MouseEvent e) {
-                            showFullImage(attachment.getNombre(), img);
-                        }
-                    });
-                } else {
-                    imageLabel.setText("Sin vista previa");
-                }
-            } else {
-                imageLabel.setText("Archivo no encontrado");
-            }
-        } catch (Exception e) {
-            imageLabel.setText("Error al cargar");
+        File imageFile = new File(attachment.getRutaArchivo());
+        if (imageFile.exists()) {
+            loadThumbnail(imageFile, attachment.getNombre(), imageLabel);
+        } else {
+            imageLabel.setText("Archivo no encontrado");
         }
 
         // File name
@@ -129,19 +115,51 @@ public class GalleryDialog extends JDialog {
         return card;
     }
 
-    private ImageIcon createThumbnail(BufferedImage img, int maxWidth, int maxHeight) {
-        int originalWidth = img.getWidth();
-        int originalHeight = img.getHeight();
-
-        double widthRatio = (double) maxWidth / originalWidth;
-        double heightRatio = (double) maxHeight / originalHeight;
-        double ratio = Math.min(widthRatio, heightRatio);
+    private void loadThumbnail(File imageFile, String title, JLabel imageLabel) {
+        AppFactory.getInstance().getThumbnailService()
+                .getThumbnail(imageFile, ThumbnailService.Size.MEDIUM)
+                .whenComplete((thumb, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        imageLabel.setText("Error al cargar");
+                    } else if (thumb == null) {
+                        imageLabel.setText("Sin vista previa");
+                    } else {
+                        imageLabel.setIcon(new ImageIcon(thumb));
+                        imageLabel.setCursor(new Cursor(Cursor.HAND_CURSOR));
+                        imageLabel.addMouseListener(new MouseAdapter() {
+                            @Override
+                            public void mouseClicked(MouseEvent e) {
+                                showFullImage(title, imageFile);
+                            }
+                        });
+                    }
+                }));
+    }
 
-        int newWidth = (int) (originalWidth * ratio);
-        int newHeight = (int) (originalHeight * ratio);
+    private void showFullImage(String title, File imageFile) {
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        SwingWorker<BufferedImage, Void> worker = new SwingWorker<>() {
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                return AppFactory.getInstance().getImageService()
+                        .getImage(imageFile, FULL_IMAGE_WIDTH, FULL_IMAGE_HEIGHT);
+            }
 
-        Image scaled = img.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-        return new ImageIcon(scaled);
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    BufferedImage img = get();
+                    if (img != null) {
+                        showFullImage(title, img);
+                    }
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(GalleryDialog.this,
+                            "No se pudo abrir la imagen", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
     }
 
     private void showFullImage(String title, BufferedImage img) {
@@ -150,12 +168,8 @@ public class GalleryDialog extends JDialog {
         fullImageDialog.setLocationRelativeTo(this);
         fullImageDialog.setLayout(new BorderLayout());
 
-        // Scale image to fit dialog while maintaining aspect ratio
-        int maxWidth = 780;
-        int maxHeight = 560;
-        ImageIcon scaledIcon = createThumbnail(img, maxWidth, maxHeight);
-
-        JLabel fullImageLabel = new JLabel(scaledIcon);
+        // Already decoded to fit the dialog
+        JLabel fullImageLabel = new JLabel(new ImageIcon(img));
         fullImageLabel.setHorizontalAlignment(SwingConstants.CENTER);
 
         JScrollPane scrollPane = new JScrollPane(fullImageLabel);
@@ -1,16 +1,23 @@
 package com.cms.ui.dialogs;
 
+import com.cms.di.AppFactory;
+import com.cms.domain.Attachment;
+import com.cms.service.ImagePrefetcher;
+import com.cms.service.ThumbnailService;
 import com.cms.ui.components.ImageViewerPanel;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Diálogo de pantalla completa para visualizar galería de imágenes con
- * controles de zoom y rotación.
+ * controles de zoom y rotación. Las imágenes vecinas se decodifican por
+ * adelantado para que pasar a la siguiente sea inmediato.
  */
 public class ImageGalleryDialog extends JDialog {
 
@@ -18,17 +25,25 @@ public class ImageGalleryDialog extends JDialog {
     private static final Color TOOLBAR_BG = new Color(248, 250, 252);
     private static final Color BORDER_COLOR = new Color(226, 232, 240);
 
-    private final List<BufferedImage> images;
+    private final List<Attachment> images;
+    private final List<File> imageFiles = new ArrayList<>();
+    private final ImagePrefetcher prefetcher;
     private int currentImageIndex = 0;
 
     private ImageViewerPanel imageViewer;
     private JLabel imageCounterLabel;
     private JPanel thumbnailContainer;
 
-    public ImageGalleryDialog(Frame parent, List<BufferedImage> images, int initialIndex) {
+    public ImageGalleryDialog(Frame parent, List<Attachment> images, int initialIndex) {
         super(parent, "Visor de Imágenes", true);
         this.images = images;
         this.currentImageIndex = Math.max(0, Math.min(initialIndex, images.size() - 1));
+        for (Attachment image : images) {
+            imageFiles.add(new File(image.getRutaArchivo()));
+        }
+        Dimension previewSize = ImageViewerPanel.getPreviewSize();
+        this.prefetcher = new ImagePrefetcher(AppFactory.getInstance().getImageService(),
+                previewSize.width, previewSize.height);
 
         initializeUI();
 
@@ -93,6 +108,12 @@ public class ImageGalleryDialog extends JDialog {
 
         // Image viewer
         imageViewer = new ImageViewerPanel();
+        // Prefetch once the current image is shown, so it never waits behind its neighbours
+        imageViewer.addPropertyChangeListener("image", e -> {
+            if (e.getNewValue() != null) {
+                prefetcher.prefetchAround(imageFiles, currentImageIndex);
+            }
+        });
         content.add(imageViewer, BorderLayout.CENTER);
 
         return content;
@@ -174,8 +195,9 @@ public class ImageGalleryDialog extends JDialog {
 
         for (int i = 0; i < images.size(); i++) {
             final int index = i;
-            BufferedImage thumb = createThumbnail(images.get(i), 80, 60);
-            JLabel thumbLabel = new JLabel(new ImageIcon(thumb));
+            JLabel thumbLabel = new JLabel();
+            thumbLabel.setPreferredSize(new Dimension(86, 66));
+            loadThumbnail(imageFiles.get(i), thumbLabel);
             thumbLabel.setBorder(BorderFactory.createLineBorder(
                     i == currentImageIndex ? PRIMARY : new Color(203, 213, 225), 3));
             thumbLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
@@ -217,6 +239,16 @@ public class ImageGalleryDialog extends JDialog {
         return footer;
     }
 
+    private void loadThumbnail(File file, JLabel thumbLabel) {
+        AppFactory.getInstance().getThumbnailService()
+                .getThumbnail(file, ThumbnailService.Size.SMALL)
+                .thenAccept(thumb -> SwingUtilities.invokeLater(() -> {
+                    if (thumb != null) {
+                        thumbLabel.setIcon(new ImageIcon(createThumbnail(thumb, 80, 60)));
+                    }
+                }));
+    }
+
     private BufferedImage createThumbnail(BufferedImage original, int width, int height) {
         BufferedImage thumb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         Graphics2D g2d = thumb.createGraphics();
@@ -238,12 +270,18 @@ public class ImageGalleryDialog extends JDialog {
     private void showImage(int index) {
         if (index >= 0 && index < images.size()) {
             currentImageIndex = index;
-            imageViewer.setImage(images.get(index));
+            imageViewer.setImageFile(imageFiles.get(index));
             updateImageCounter();
             updateThumbnailSelection();
         }
     }
 
+    @Override
+    public void dispose() {
+        prefetcher.shutdown();
+        super.dispose();
+    }
+
     private void showPreviousImage() {
         if (currentImageIndex > 0) {
             showImage(currentImageIndex - 1);
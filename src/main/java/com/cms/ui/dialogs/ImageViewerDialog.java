@@ -1,10 +1,11 @@
 package com.cms.ui.dialogs;
 
-import javax.imageio.ImageIO;
+import com.cms.service.image.ImageDecoder;
+import com.cms.ui.components.ImageViewerPanel;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 
 public class ImageViewerDialog extends JDialog {
@@ -18,22 +19,22 @@ public class ImageViewerDialog extends JDialog {
         setLayout(new BorderLayout());
         setBackground(Color.DARK_GRAY);
 
+        File imageFile = new File(imagePath);
         try {
-            BufferedImage image = ImageIO.read(new File(imagePath));
-            if (image != null) {
-                ImagePanel imagePanel = new ImagePanel(image);
-                JScrollPane scrollPane = new JScrollPane(imagePanel);
-                scrollPane.setBorder(null);
-                scrollPane.getViewport().setBackground(Color.DARK_GRAY);
-                add(scrollPane, BorderLayout.CENTER);
+            // Only the header is read here; the panel decodes the image in the background
+            Dimension size = ImageDecoder.readSize(imageFile);
+            if (size != null) {
+                ImageViewerPanel imagePanel = new ImageViewerPanel();
+                imagePanel.setImageFile(imageFile);
+                add(imagePanel, BorderLayout.CENTER);
 
                 // Toolbar
                 JPanel toolbar = createToolbar(imagePanel);
                 add(toolbar, BorderLayout.NORTH);
 
                 // Set size based on image
-                int width = Math.min(image.getWidth() + 50, 1200);
-                int height = Math.min(image.getHeight() + 100, 800);
+                int width = Math.min(size.width + 50, 1200);
+                int height = Math.min(size.height + 100, 800);
                 setSize(width, height);
             } else {
                 showError("No se pudo cargar la imagen");
@@ -45,7 +46,7 @@ public class ImageViewerDialog extends JDialog {
         setLocationRelativeTo(getOwner());
     }
 
-    private JPanel createToolbar(ImagePanel imagePanel) {
+    private JPanel createToolbar(ImageViewerPanel imagePanel) {
         JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 5));
         toolbar.setBackground(new Color(50, 50, 50));
         toolbar.setBorder(new EmptyBorder(5, 10, 5, 10));
@@ -57,7 +58,7 @@ public class ImageViewerDialog extends JDialog {
         zoomOutBtn.addActionListener(e -> imagePanel.zoomOut());
 
         JButton fitBtn = createToolbarButton("⬜", "Ajustar");
-        fitBtn.addActionListener(e -> imagePanel.fitToWindow());
+        fitBtn.addActionListener(e -> imagePanel.resetView());
 
         JButton actualBtn = createToolbarButton("1:1", "Tamaño real");
         actualBtn.addActionListener(e -> imagePanel.actualSize());
@@ -88,63 +89,4 @@ public class ImageViewerDialog extends JDialog {
         add(errorLabel, BorderLayout.CENTER);
         setSize(400, 200);
     }
-
-    private static class ImagePanel extends JPanel {
-        private final BufferedImage image;
-        private double scale = 1.0;
-
-        ImagePanel(BufferedImage image) {
-            this.image = image;
-            setBackground(Color.DARK_GRAY);
-            updatePreferredSize();
-        }
-
-        void zoomIn() {
-            scale = Math.min(scale * 1.25, 5.0);
-            updatePreferredSize();
-        }
-
-        void zoomOut() {
-            scale = Math.max(scale / 1.25, 0.1);
-            updatePreferredSize();
-        }
-
-        void fitToWindow() {
-            Container parent = getParent();
-            if (parent != null) {
-                double scaleX = (double) parent.getWidth() / image.getWidth();
-                double scaleY = (double) parent.getHeight() / image.getHeight();
-                scale = Math.min(scaleX, scaleY) * 0.95;
-                updatePreferredSize();
-            }
-        }
-
-        void actualSize() {
-            scale = 1.0;
-            updatePreferredSize();
-        }
-
-        private void updatePreferredSize() {
-            int width = (int) (image.getWidth() * scale);
-            int height = (int) (image.getHeight() * scale);
-            setPreferredSize(new Dimension(width, height));
-            revalidate();
-            repaint();
-        }
-
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-            int width = (int) (image.getWidth() * scale);
-            int height = (int) (image.getHeight() * scale);
-            int x = (getWidth() - width) / 2;
-            int y = (getHeight() - height) / 2;
-
-            g2d.drawImage(image, x, y, width, height, null);
-        }
-    }
 }
@@ -1,12 +1,26 @@
 package com.cms.ui.dialogs;
 
+import com.cms.di.AppFactory;
+import com.cms.domain.Patient;
 import com.cms.repository.PatientRepository;
 import com.cms.repository.ClinicalHistoryRepository;
+import com.cms.service.ReportJobService;
+import com.cms.service.ReportJobService.ReportJob;
+import com.cms.service.ReportJobService.ReportType;
+import com.cms.service.exception.BusinessException;
 import com.cms.ui.components.IconFactory;
+import com.github.lgooddatepicker.components.DatePicker;
+import com.github.lgooddatepicker.components.DatePickerSettings;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.io.File;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 
 public class ReportsDialog extends JDialog {
 
@@ -15,12 +29,19 @@ public class ReportsDialog extends JDialog {
 
         private final PatientRepository patientRepository;
         private final ClinicalHistoryRepository clinicalHistoryRepository;
+        private final ReportJobService reportJobService;
+
+        private JLabel statusLabel;
+        private JProgressBar progressBar;
+        private JButton cancelJobBtn;
+        private ReportJob currentJob;
 
         public ReportsDialog(Frame parent, PatientRepository patientRepository,
                         ClinicalHistoryRepository clinicalHistoryRepository) {
                 super(parent, "Reportes", true);
                 this.patientRepository = patientRepository;
                 this.clinicalHistoryRepository = clinicalHistoryRepository;
+                this.reportJobService = AppFactory.getInstance().getReportJobService();
 
                 setSize(600, 500);
                 setLocationRelativeTo(parent);
@@ -155,31 +176,100 @@ public class ReportsDialog extends JDialog {
         }
 
         private JPanel createFooter() {
-                JPanel footer = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+                JPanel footer = new JPanel(new BorderLayout(10, 0));
                 footer.setBorder(new EmptyBorder(10, 20, 10, 20));
                 footer.setBackground(CARD_BG);
 
+                statusLabel = new JLabel(" ");
+                statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+                statusLabel.setForeground(new Color(100, 116, 139));
+
+                progressBar = new JProgressBar(0, 100);
+                progressBar.setStringPainted(true);
+                progressBar.setPreferredSize(new Dimension(160, 20));
+                progressBar.setVisible(false);
+
+                cancelJobBtn = new JButton("Cancelar");
+                cancelJobBtn.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+                cancelJobBtn.setVisible(false);
+                cancelJobBtn.addActionListener(e -> {
+                        if (currentJob != null) {
+                                currentJob.cancel();
+                        }
+                });
+
+                JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 5));
+                statusPanel.setOpaque(false);
+                statusPanel.add(statusLabel);
+                statusPanel.add(progressBar);
+                statusPanel.add(cancelJobBtn);
+
                 JButton closeBtn = new JButton("Cerrar");
                 closeBtn.setFont(new Font("Segoe UI", Font.PLAIN, 13));
                 closeBtn.setPreferredSize(new Dimension(100, 35));
                 closeBtn.addActionListener(e -> dispose());
 
-                footer.add(closeBtn);
+                JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+                buttonPanel.setOpaque(false);
+                buttonPanel.add(closeBtn);
+
+                footer.add(statusPanel, BorderLayout.CENTER);
+                footer.add(buttonPanel, BorderLayout.EAST);
                 return footer;
         }
 
         private void exportPatientsList() {
-                JOptionPane.showMessageDialog(this,
-                                "Función en desarrollo.\n\nEsta característica permitirá exportar la lista de pacientes a PDF o Excel.",
-                                "Exportar Pacientes",
-                                JOptionPane.INFORMATION_MESSAGE);
+                String format = chooseFormat("Exportar Pacientes");
+                if (format == null) {
+                        return;
+                }
+                ReportType type = "PDF".equals(format) ? ReportType.PATIENTS_PDF : ReportType.PATIENTS_HTML;
+                chooseDestination("pacientes", type).ifPresent(file -> startJob(type, Map.of(), file));
         }
 
         private void exportClinicalHistories() {
-                JOptionPane.showMessageDialog(this,
-                                "Función en desarrollo.\n\nEsta característica permitirá exportar historias clínicas seleccionadas.",
+                String[] scopes = { "Un paciente", "Todos los pacientes (ZIP)" };
+                int scope = JOptionPane.showOptionDialog(this,
+                                "¿Qué historias desea exportar?",
+                                "Exportar Historias",
+                                JOptionPane.DEFAULT_OPTION,
+                                JOptionPane.QUESTION_MESSAGE,
+                                null, scopes, scopes[0]);
+                if (scope < 0) {
+                        return;
+                }
+                if (scope == 1) {
+                        chooseDestination("historias_pacientes", ReportType.HISTORY_PACK_ZIP)
+                                        .ifPresent(file -> startJob(ReportType.HISTORY_PACK_ZIP, Map.of(), file));
+                        return;
+                }
+
+                String cedula = JOptionPane.showInputDialog(this,
+                                "Cédula del paciente:",
                                 "Exportar Historias",
-                                JOptionPane.INFORMATION_MESSAGE);
+                                JOptionPane.QUESTION_MESSAGE);
+                if (cedula == null || cedula.trim().isEmpty()) {
+                        return;
+                }
+
+                Optional<Patient> patient = patientRepository.findByCedula(cedula.trim());
+                if (patient.isEmpty()) {
+                        JOptionPane.showMessageDialog(this,
+                                        "No se encontró un paciente con la cédula " + cedula.trim(),
+                                        "Exportar Historias",
+                                        JOptionPane.WARNING_MESSAGE);
+                        return;
+                }
+
+                String format = chooseFormat("Exportar Historias");
+                if (format == null) {
+                        return;
+                }
+                ReportType type = "PDF".equals(format) ? ReportType.PATIENT_HISTORY_PDF
+                                : ReportType.PATIENT_HISTORY_HTML;
+                Map<String, Object> params = Map.of("patientId", patient.get().getId());
+                chooseDestination("historia_" + patient.get().getCedula(), type)
+                                .ifPresent(file -> startJob(type, params, file));
         }
 
         private void showStatistics() {
@@ -208,9 +298,144 @@ public class ReportsDialog extends JDialog {
         }
 
         private void exportByPeriod() {
-                JOptionPane.showMessageDialog(this,
-                                "Función en desarrollo.\n\nEsta característica permitirá filtrar y exportar consultas por periodo.",
-                                "Exportar por Periodo",
-                                JOptionPane.INFORMATION_MESSAGE);
+                DatePickerSettings fromSettings = new DatePickerSettings();
+                fromSettings.setFormatForDatesCommonEra("dd/MM/yyyy");
+                DatePicker fromPicker = new DatePicker(fromSettings);
+                fromPicker.setDate(LocalDate.now().withDayOfMonth(1));
+
+                DatePickerSettings toSettings = new DatePickerSettings();
+                toSettings.setFormatForDatesCommonEra("dd/MM/yyyy");
+                DatePicker toPicker = new DatePicker(toSettings);
+                toPicker.setDate(LocalDate.now());
+
+                JComboBox<String> contentCombo = new JComboBox<>(new String[] {
+                                "Listado de consultas",
+                                "Cohortes (edad, sexo y diagnóstico)" });
+
+                JPanel panel = new JPanel(new GridLayout(3, 2, 10, 10));
+                panel.add(new JLabel("Contenido:"));
+                panel.add(contentCombo);
+                panel.add(new JLabel("Desde:"));
+                panel.add(fromPicker);
+                panel.add(new JLabel("Hasta:"));
+                panel.add(toPicker);
+
+                int option = JOptionPane.showConfirmDialog(this, panel,
+                                "Consultas por Periodo", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+                if (option != JOptionPane.OK_OPTION) {
+                        return;
+                }
+
+                LocalDate from = fromPicker.getDate();
+                LocalDate to = toPicker.getDate();
+                if (from == null || to == null || to.isBefore(from)) {
+                        JOptionPane.showMessageDialog(this,
+                                        "Seleccione un rango de fechas válido",
+                                        "Consultas por Periodo",
+                                        JOptionPane.WARNING_MESSAGE);
+                        return;
+                }
+
+                Map<String, Object> params = new HashMap<>();
+                params.put("from", from.atStartOfDay());
+                if (contentCombo.getSelectedIndex() == 1) {
+                        params.put("to", to.plusDays(1).atStartOfDay());
+                        chooseDestination("cohortes_" + from + "_" + to, ReportType.COHORTS_CSV)
+                                        .ifPresent(file -> startJob(ReportType.COHORTS_CSV, params, file));
+                        return;
+                }
+
+                params.put("to", to.plusDays(1).atStartOfDay().minusNanos(1));
+                chooseDestination("consultas_" + from + "_" + to, ReportType.CONSULTATIONS_CSV)
+                                .ifPresent(file -> startJob(ReportType.CONSULTATIONS_CSV, params, file));
+        }
+
+        private String chooseFormat(String title) {
+                String[] options = { "PDF", "HTML" };
+                int choice = JOptionPane.showOptionDialog(this,
+                                "Seleccione el formato del reporte",
+                                title,
+                                JOptionPane.DEFAULT_OPTION,
+                                JOptionPane.QUESTION_MESSAGE,
+                                null, options, options[0]);
+                return choice >= 0 ? options[choice] : null;
+        }
+
+        private Optional<File> chooseDestination(String baseName, ReportType type) {
+                String extension = type.getExtension();
+                JFileChooser fileChooser = new JFileChooser();
+                fileChooser.setDialogTitle("Guardar reporte");
+                fileChooser.setFileFilter(new FileNameExtensionFilter(
+                                extension.toUpperCase() + " (*." + extension + ")", extension));
+                fileChooser.setSelectedFile(new File(baseName + "." + extension));
+
+                if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                        return Optional.empty();
+                }
+
+                File file = fileChooser.getSelectedFile();
+                if (!file.getName().toLowerCase().endsWith("." + extension)) {
+                        file = new File(file.getParentFile(), file.getName() + "." + extension);
+                }
+                return Optional.of(file);
+        }
+
+        private void startJob(ReportType type, Map<String, Object> params, File destination) {
+                if (currentJob != null && !currentJob.isDone()) {
+                        JOptionPane.showMessageDialog(this,
+                                        "Ya hay un reporte en generación. Espere a que termine o cancélelo.",
+                                        "Reportes",
+                                        JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                }
+
+                statusLabel.setText("Generando " + destination.getName() + "...");
+                progressBar.setValue(0);
+                progressBar.setVisible(true);
+                cancelJobBtn.setVisible(true);
+
+                try {
+                        currentJob = reportJobService.submit(type, params, destination,
+                                        new ReportJobService.JobListener() {
+                                                @Override
+                                                public void onProgress(int percent) {
+                                                        SwingUtilities.invokeLater(() -> progressBar.setValue(percent));
+                                                }
+
+                                                @Override
+                                                public void onCompleted(File output, boolean fromCache) {
+                                                        SwingUtilities.invokeLater(() -> finishJob(
+                                                                        (fromCache ? "Reporte listo (caché): "
+                                                                                        : "Reporte generado: ")
+                                                                                        + output.getName()));
+                                                }
+
+                                                @Override
+                                                public void onFailed(Throwable error) {
+                                                        SwingUtilities.invokeLater(() -> {
+                                                                finishJob(" ");
+                                                                JOptionPane.showMessageDialog(ReportsDialog.this,
+                                                                                "Error al generar reporte: " + error.getMessage(),
+                                                                                "Error",
+                                                                                JOptionPane.ERROR_MESSAGE);
+                                                        });
+                                                }
+
+                                                @Override
+                                                public void onCancelled() {
+                                                        SwingUtilities.invokeLater(() -> finishJob("Reporte cancelado"));
+                                                }
+                                        });
+                } catch (BusinessException e) {
+                        finishJob(" ");
+                        JOptionPane.showMessageDialog(this, e.getMessage(), "Reportes",
+                                        JOptionPane.WARNING_MESSAGE);
+                }
+        }
+
+        private void finishJob(String status) {
+                statusLabel.setText(status);
+                progressBar.setVisible(false);
+                cancelJobBtn.setVisible(false);
         }
 }
@@ -0,0 +1,189 @@
+package com.cms.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Attachment files named by the SHA-256 of their content, stored as
+ * {@code attachments/store/ab/cd/<hash><extension>}. The same file attached
+ * to several consultations is kept once. The attachments rows whose
+ * ruta_archivo points at an object are its references, so an object may be
+ * deleted only when no row uses it any more. Two levels of fan-out keep
+ * directories small with hundreds of thousands of files.
+ *
+ * <p>The extension is kept so the desktop still knows how to open the file.
+ */
+public class AttachmentStore {
+
+    private static final String TEMP_PREFIX = "incoming-";
+    private static final Pattern OBJECT_NAME = Pattern.compile("[0-9a-f]{64}(\\.[0-9a-z]+)?");
+
+    /**
+     * Writes the content of a new object.
+     */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final Path root;
+
+    public AttachmentStore() {
+        this(Paths.get("attachments", "store"));
+    }
+
+    public AttachmentStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Copies the file into the store, hashing it on the way, and returns the
+     * path of the object that holds its content.
+     */
+    public Path put(Path source) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            return put(in::transferTo, extensionOf(source.getFileName().toString()));
+        }
+    }
+
+    public Path put(Content content, String extension) throws IOException {
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, TEMP_PREFIX, ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            try (OutputStream out = new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)), digest)) {
+                content.writeTo(out);
+            }
+            Path target = pathFor(HexFormat.of().formatHex(digest.digest()), extension);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                move(temp, target);
+            } else {
+                // Stored again: keeps an object nothing references yet out of the sweep until its row exists
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return target;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path pathFor(String hash, String extension) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4))
+                .resolve(hash + extension.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * True if {@code path} names an object of a store, wherever its root is.
+     */
+    public static boolean isObjectPath(Path path) {
+        int count = path.getNameCount();
+        if (count < 3) {
+            return false;
+        }
+        String name = path.getFileName().toString();
+        return OBJECT_NAME.matcher(name).matches()
+                && path.getName(count - 3).toString().equals(name.substring(0, 2))
+                && path.getName(count - 2).toString().equals(name.substring(2, 4));
+    }
+
+    /**
+     * The content hash an object is named after.
+     */
+    public static String hashOf(Path object) {
+        return object.getFileName().toString().substring(0, 64);
+    }
+
+    public static boolean isTemporary(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(TEMP_PREFIX) && name.endsWith(".tmp");
+    }
+
+    /**
+     * Deletes leftovers of writes interrupted longer than {@code age} ago.
+     */
+    public int deleteStaleTemporaryFiles(Duration age) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - age.toMillis();
+        int deleted = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root, TEMP_PREFIX + "*.tmp")) {
+            for (Path entry : entries) {
+                if (Files.getLastModifiedTime(entry).toMillis() < cutoff && Files.deleteIfExists(entry)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes the objects whose hash is not in {@code referenced} and that
+     * were not stored within the last {@code age}, so an object put just
+     * before the row that uses it is inserted survives. Returns the number of
+     * objects deleted.
+     */
+    public int deleteUnreferenced(Set<String> referenced, Duration age) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - age.toMillis();
+        List<Path> objects;
+        try (Stream<Path> walk = Files.walk(root, 3)) {
+            objects = walk.filter(path -> Files.isRegularFile(path) && isObjectPath(path)).toList();
+        }
+        int deleted = 0;
+        for (Path object : objects) {
+            if (!referenced.contains(hashOf(object))
+                    && Files.getLastModifiedTime(object).toMillis() < cutoff
+                    && Files.deleteIfExists(object)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    static String extensionOf(String fileName) {
+        int lastDot = fileName.lastIndexOf('.');
+        String extension = lastDot > 0 ? fileName.substring(lastDot).toLowerCase(Locale.ROOT) : "";
+        // Anything that would not survive in an object name is dropped; the row keeps the original name
+        return extension.matches("\\.[0-9a-z]+") ? extension : "";
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -14,13 +14,13 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
-import java.util.UUID;
 
 public class ClipboardImageHandler {
 
-    private static final String ATTACHMENTS_DIR = "attachments";
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
 
+    private final AttachmentStore store = new AttachmentStore();
+
     public Optional<BufferedImage> getImageFromClipboard() {
         try {
             Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
@@ -46,23 +46,28 @@ public class ClipboardImageHandler {
         }
     }
 
-    public Optional<File> saveImageToFile(BufferedImage image, Integer historyId) {
+    /**
+     * Stores the image as a PNG attachment. The file is named by its content,
+     * so use {@link #newClipboardImageName()} as the attachment's name.
+     */
+    public Optional<File> saveImageToFile(BufferedImage image) {
         try {
-            Path attachmentsPath = Paths.get(ATTACHMENTS_DIR, String.valueOf(historyId));
-            Files.createDirectories(attachmentsPath);
-
-            String fileName = "clipboard_" + LocalDateTime.now().format(DATE_FORMAT) + "_" +
-                    UUID.randomUUID().toString().substring(0, 8) + ".png";
-            File outputFile = attachmentsPath.resolve(fileName).toFile();
-
-            ImageIO.write(image, "PNG", outputFile);
-            return Optional.of(outputFile);
+            Path stored = store.put(out -> {
+                if (!ImageIO.write(image, "PNG", out)) {
+                    throw new IOException("No PNG writer available");
+                }
+            }, ".png");
+            return Optional.of(stored.toFile());
         } catch (IOException e) {
             e.printStackTrace();
             return Optional.empty();
         }
     }
 
+    public String newClipboardImageName() {
+        return "clipboard_" + LocalDateTime.now().format(DATE_FORMAT) + ".png";
+    }
+
     public Optional<File> saveImageToTempFile(BufferedImage image, File destFile) {
         try {
             destFile.getParentFile().mkdirs();
@@ -74,37 +79,36 @@ public class ClipboardImageHandler {
         }
     }
 
-    public Optional<File> copyFileToAttachments(String sourcePath, Integer historyId) {
+    /**
+     * Copies the file into the attachment store. A file whose content is
+     * already stored is not copied again; both attachments share the file.
+     */
+    public Optional<File> copyFileToAttachments(String sourcePath) {
         try {
             Path source = Paths.get(sourcePath);
             if (!Files.exists(source)) {
                 return Optional.empty();
             }
-
-            Path attachmentsPath = Paths.get(ATTACHMENTS_DIR, String.valueOf(historyId));
-            Files.createDirectories(attachmentsPath);
-
-            String originalName = source.getFileName().toString();
-            String extension = getExtension(originalName);
-            String baseName = originalName;
-            if (!extension.isEmpty()) {
-                baseName = originalName.substring(0, originalName.length() - extension.length());
-            }
-            String newName = baseName + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
-
-            Path destination = attachmentsPath.resolve(newName);
-            Files.copy(source, destination);
-
-            return Optional.of(destination.toFile());
+            return Optional.of(store.put(source).toFile());
         } catch (IOException e) {
             e.printStackTrace();
             return Optional.empty();
         }
     }
 
+    /**
+     * Deletes the file of a removed attachment, unless it is an object of the
+     * attachment store. Objects are shared by content, whatever path string
+     * each row uses to reach them, so only the sweep of unreferenced objects
+     * in {@code AttachmentMigration} deletes them. Callers delete other files
+     * only once no attachment row refers to them.
+     */
     public boolean deleteAttachmentFile(String filePath) {
         try {
             Path path = Paths.get(filePath);
+            if (AttachmentStore.isObjectPath(path)) {
+                return false;
+            }
             return Files.deleteIfExists(path);
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,191 @@
+package com.cms.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 reader for UTF-8 files. Quoted fields may contain commas,
+ * doubled quotes and line breaks. The input is scanned as bytes, which is safe
+ * because the delimiters are ASCII and never occur inside a multi-byte UTF-8
+ * sequence; each field is decoded once from a reused byte buffer.
+ *
+ * <p>Blank lines are skipped, a leading BOM is ignored, and {@link #getOffset()}
+ * reports the byte position just after the last record returned. Together
+ * with {@link #getNextLineNumber()} it lets a later reader pick up from there.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long bufferStart;
+
+    private byte[] field = new byte[256];
+    private int fieldLength;
+    private final List<String> record = new ArrayList<>();
+
+    private long line = 1;
+    private long recordLine;
+    private boolean started;
+
+    public CsvReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Continues reading from a position reported by an earlier reader. The
+     * stream must already be positioned at {@code offset}.
+     */
+    public CsvReader(InputStream in, long offset, long lineNumber) {
+        this.in = in;
+        this.bufferStart = offset;
+        this.line = lineNumber;
+        this.started = offset > 0;
+    }
+
+    /**
+     * Returns the next record, or null at the end of the input.
+     */
+    public String[] next() throws IOException {
+        if (!started) {
+            started = true;
+            skipBom();
+        }
+
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            endLine(c);
+            c = read();
+        }
+        if (c < 0) {
+            return null;
+        }
+
+        recordLine = line;
+        record.clear();
+        while (true) {
+            fieldLength = 0;
+            if (c == '"') {
+                c = readQuoted();
+            }
+            // Text after a closing quote is kept as is rather than rejected
+            while (c >= 0 && c != ',' && c != '\r' && c != '\n') {
+                append(c);
+                c = read();
+            }
+            record.add(new String(field, 0, fieldLength, StandardCharsets.UTF_8));
+
+            if (c != ',') {
+                break;
+            }
+            c = read();
+        }
+        if (c >= 0) {
+            endLine(c);
+        }
+        return record.toArray(new String[0]);
+    }
+
+    /** Line on which the last returned record starts, counting from 1. */
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    /** Line on which the next record would start if no blank lines follow. */
+    public long getNextLineNumber() {
+        return line;
+    }
+
+    /** Bytes consumed so far, i.e. the offset just after the last record. */
+    public long getOffset() {
+        return bufferStart + position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readQuoted() throws IOException {
+        long startLine = line;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IOException("Unterminated quoted field starting at line " + startLine);
+            }
+            if (c == '"') {
+                int next = read();
+                if (next != '"') {
+                    return next;
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            append(c);
+        }
+    }
+
+    private void endLine(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') {
+            position++;
+        }
+        line++;
+    }
+
+    private void skipBom() throws IOException {
+        if (peek() == 0xEF && fill(3) && (buffer[position + 1] & 0xFF) == 0xBB
+                && (buffer[position + 2] & 0xFF) == 0xBF) {
+            position += 3;
+        }
+    }
+
+    private void append(int c) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[fieldLength++] = (byte) c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill(1)) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill(1)) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    /** Makes at least {@code count} unread bytes available, if the input has them. */
+    private boolean fill(int count) throws IOException {
+        if (limit - position >= count) {
+            return true;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            bufferStart += position;
+            limit -= position;
+            position = 0;
+        }
+        while (limit < count) {
+            int n = in.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                return false;
+            }
+            limit += n;
+        }
+        return true;
+    }
+}
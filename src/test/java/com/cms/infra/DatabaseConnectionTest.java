@@ -0,0 +1,154 @@
+package com.cms.infra;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseConnectionTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void inTransaction_shouldKeepSharedConnectionWrites_whenTransactionRollsBack() throws Exception {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread job = new Thread(() -> {
+            try {
+                db.inTransaction(conn -> {
+                    assertSame(conn, db.getConnection());
+                    insertPatient(db.getConnection(), "111");
+                    inserted.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("job failed");
+                });
+            } catch (IllegalStateException expected) {
+                // rolled back
+            }
+        });
+        job.start();
+        assertTrue(inserted.await(10, TimeUnit.SECONDS));
+
+        Thread edit = new Thread(() -> insertPatient(db.getConnection(), "222"));
+        edit.start();
+        release.countDown();
+        job.join();
+        edit.join();
+
+        assertEquals(List.of("222"), cedulas(db.getConnection()));
+    }
+
+    @Test
+    void inTransaction_shouldJoinEnclosingTransaction_whenNested() throws SQLException {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+
+        assertThrows(IllegalStateException.class, () -> db.inTransaction(outer -> {
+            db.inTransaction(inner -> {
+                assertSame(outer, inner);
+                insertPatient(inner, "333");
+                return null;
+            });
+            throw new IllegalStateException("outer failed");
+        }));
+
+        assertTrue(cedulas(db.getConnection()).isEmpty());
+        assertTrue(db.getConnection().getAutoCommit());
+    }
+
+    @Test
+    void replaceDatabase_shouldServeReplacementData_whenSwapped() throws SQLException {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        insertPatient(db.getConnection(), "111");
+        DatabaseConnection other = new DatabaseConnection(dir.resolve("replacement.sqlite").toString());
+        insertPatient(other.getConnection(), "222");
+        other.getConnection().close();
+        int epoch = db.getConnectionEpoch();
+
+        db.replaceDatabase(dir.resolve("replacement.sqlite"));
+
+        assertEquals(List.of("222"), cedulas(db.getConnection()));
+        assertNotEquals(epoch, db.getConnectionEpoch());
+        assertFalse(Files.exists(dir.resolve("replacement.sqlite")));
+    }
+
+    @Test
+    void replaceDatabase_shouldWaitForOpenTransaction_whenSwapping() throws Exception {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        insertPatient(db.getConnection(), "111");
+        DatabaseConnection other = new DatabaseConnection(dir.resolve("replacement.sqlite").toString());
+        insertPatient(other.getConnection(), "222");
+        other.getConnection().close();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread job = new Thread(() -> db.inTransaction(conn -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            insertPatient(conn, "333");
+            return null;
+        }));
+        job.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread swap = new Thread(() -> db.replaceDatabase(dir.resolve("replacement.sqlite")));
+        swap.start();
+        swap.join(300);
+
+        assertTrue(swap.isAlive());
+        assertEquals(List.of("111"), cedulas(db.getConnection()));
+        release.countDown();
+        job.join();
+        swap.join();
+        assertEquals(List.of("222"), cedulas(db.getConnection()));
+    }
+
+    @Test
+    void replaceDatabase_shouldRefuse_whenCalledInsideTransaction() {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+
+        assertThrows(IllegalStateException.class, () -> db.inTransaction(conn -> {
+            db.replaceDatabase(dir.resolve("replacement.sqlite"));
+            return null;
+        }));
+    }
+
+    private static void insertPatient(Connection conn, String cedula) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO patients (cedula, nombre) VALUES ('" + cedula + "', 'Paciente')");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<String> cedulas(Connection conn) throws SQLException {
+        List<String> result = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT cedula FROM patients ORDER BY cedula")) {
+            while (rs.next()) {
+                result.add(rs.getString(1));
+            }
+        }
+        return result;
+    }
+}
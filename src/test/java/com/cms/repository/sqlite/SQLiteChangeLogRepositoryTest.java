@@ -0,0 +1,71 @@
+package com.cms.repository.sqlite;
+
+import com.cms.domain.Patient;
+import com.cms.infra.DatabaseConnection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SQLiteChangeLogRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private DatabaseConnection db;
+    private SQLitePatientRepository patients;
+    private SQLiteChangeLogRepository changeLog;
+
+    @BeforeEach
+    void setUp() {
+        db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        patients = new SQLitePatientRepository(db);
+        changeLog = new SQLiteChangeLogRepository(db);
+    }
+
+    @Test
+    void purgeConsumed_shouldDeleteAllEntries_whenNoConsumerIsRegistered() throws SQLException {
+        savePatient("V-1");
+        savePatient("V-2");
+
+        changeLog.purgeConsumed();
+
+        assertEquals(0, loggedEntries());
+        assertEquals(2, changeLog.currentSequence());
+    }
+
+    @Test
+    void purgeConsumed_shouldKeepEntriesNotYetExported_whenConsumersAreRegistered() throws SQLException {
+        savePatient("V-1");
+        changeLog.saveWatermark("contabilidad", changeLog.currentSequence());
+        changeLog.saveWatermark("laboratorio", 0);
+        savePatient("V-2");
+
+        changeLog.purgeConsumed();
+        assertEquals(2, loggedEntries());
+
+        changeLog.saveWatermark("laboratorio", changeLog.currentSequence());
+        changeLog.purgeConsumed();
+        assertEquals(1, loggedEntries());
+    }
+
+    private void savePatient(String cedula) {
+        Patient patient = new Patient();
+        patient.setCedula(cedula);
+        patient.setNombre("Paciente");
+        patients.save(patient);
+    }
+
+    private long loggedEntries() throws SQLException {
+        try (Statement stmt = db.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM change_log")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.cms.service;
+
+import com.cms.domain.Attachment;
+import com.cms.infra.DatabaseConnection;
+import com.cms.repository.sqlite.SQLiteAttachmentRepository;
+import com.cms.repository.sqlite.SQLiteClinicalHistoryRepository;
+import com.cms.repository.sqlite.SQLitePatientRepository;
+import com.cms.util.AttachmentStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachmentMigrationTest {
+
+    @TempDir
+    Path dir;
+
+    private SQLiteAttachmentRepository attachmentRepository;
+    private Path attachments;
+    private AttachmentMigration migration;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        attachmentRepository = new SQLiteAttachmentRepository(db);
+        attachments = Files.createDirectories(dir.resolve("attachments"));
+        BackupService backupService = new BackupService(db, new SQLitePatientRepository(db),
+                new SQLiteClinicalHistoryRepository(db), dir.resolve("backups"), attachments);
+        migration = new AttachmentMigration(attachmentRepository, backupService,
+                new AttachmentStore(attachments.resolve("store")));
+    }
+
+    @Test
+    void run_shouldKeepLegacyFileUntilNextRun_whenFileWasMoved() throws IOException {
+        Path legacy = Files.writeString(Files.createDirectories(attachments.resolve("7")).resolve("rx.txt"),
+                "radiografía");
+        Attachment attachment = save(legacy);
+
+        assertEquals(1, migration.run());
+
+        Path object = Path.of(attachmentRepository.findById(attachment.getId()).orElseThrow().getRutaArchivo());
+        assertTrue(AttachmentStore.isObjectPath(object));
+        assertEquals("radiografía", Files.readString(object));
+        assertTrue(Files.exists(legacy));
+
+        assertEquals(0, migration.run());
+
+        assertFalse(Files.exists(legacy));
+        assertFalse(Files.exists(attachments.resolve("7")));
+        assertTrue(Files.exists(object));
+    }
+
+    @Test
+    void run_shouldDeleteStoredObject_whenNoAttachmentUsesItAnyMore() throws IOException {
+        Path legacy = Files.writeString(Files.createDirectories(attachments.resolve("7")).resolve("rx.txt"),
+                "radiografía");
+        Attachment attachment = save(legacy);
+        migration.run();
+        Path object = Path.of(attachmentRepository.findById(attachment.getId()).orElseThrow().getRutaArchivo());
+
+        attachmentRepository.delete(attachment.getId());
+        Files.setLastModifiedTime(object,
+                FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(2).toMillis()));
+        migration.run();
+
+        assertFalse(Files.exists(object));
+    }
+
+    private Attachment save(Path file) {
+        Attachment attachment = new Attachment(file.getFileName().toString(), file.toAbsolutePath().toString(), "txt");
+        attachment.setClinicalHistoryId(7);
+        return attachmentRepository.save(attachment);
+    }
+}
@@ -0,0 +1,243 @@
+package com.cms.service;
+
+import com.cms.domain.Attachment;
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.infra.DatabaseConnection;
+import com.cms.infra.EventBus;
+import com.cms.presenter.events.HistorySavedEvent;
+import com.cms.presenter.events.PatientSavedEvent;
+import com.cms.repository.sqlite.SQLiteAttachmentRepository;
+import com.cms.repository.sqlite.SQLiteClinicalHistoryRepository;
+import com.cms.repository.sqlite.SQLitePatientRepository;
+import com.cms.service.backup.BackupThrottle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private DatabaseConnection db;
+    private SQLitePatientRepository patients;
+    private SQLiteClinicalHistoryRepository histories;
+    private SQLiteAttachmentRepository attachmentRepository;
+    private Path attachments;
+    private BackupService backupService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        patients = new SQLitePatientRepository(db);
+        attachments = Files.createDirectories(dir.resolve("attachments"));
+        histories = new SQLiteClinicalHistoryRepository(db);
+        attachmentRepository = new SQLiteAttachmentRepository(db);
+        backupService = new BackupService(db, patients, histories, dir.resolve("backups"), attachments);
+    }
+
+    @Test
+    void restoreBackup_shouldReplaceDatabaseAndAttachments_whenBackupIsComplete() throws IOException {
+        savePatient("V-1");
+        Path attachment = Files.writeString(Files.createDirectories(attachments.resolve("7")).resolve("rx.txt"),
+                "original");
+        File backup = backupService.createBackup();
+
+        savePatient("V-2");
+        Files.writeString(attachment, "cambiado");
+        backupService.restoreBackup(backup);
+
+        assertTrue(patients.findByCedula("V-1").isPresent());
+        assertTrue(patients.findByCedula("V-2").isEmpty());
+        assertEquals("original", Files.readString(attachment));
+    }
+
+    @Test
+    void restoreBackup_shouldChangeNothing_whenDatabaseFailsQuickCheck() throws IOException {
+        savePatient("V-1");
+        Path attachment = Files.writeString(Files.createDirectories(attachments.resolve("7")).resolve("rx.txt"),
+                "original");
+        File backup = corruptDatabaseEntry(backupService.createBackup());
+
+        savePatient("V-2");
+        Files.writeString(attachment, "cambiado");
+
+        assertThrows(IOException.class, () -> backupService.restoreBackup(backup));
+        assertTrue(patients.findByCedula("V-2").isPresent());
+        assertEquals("cambiado", Files.readString(attachment));
+    }
+
+    @Test
+    void restoreBackup_shouldChangeNothing_whenAttachmentObjectIsMissing() throws IOException {
+        savePatient("V-1");
+        Path attachment = Files.writeString(Files.createDirectories(attachments.resolve("7")).resolve("rx.txt"),
+                "original");
+        Files.writeString(attachments.resolve("7").resolve("eco.txt"), "otro");
+        File backup = backupService.createBackup();
+        deleteOneObject();
+
+        savePatient("V-2");
+        Files.writeString(attachment, "cambiado");
+
+        assertThrows(IOException.class, () -> backupService.restoreBackup(backup));
+        assertTrue(patients.findByCedula("V-2").isPresent());
+        assertEquals("cambiado", Files.readString(attachment));
+        assertFalse(Files.exists(dir.resolve("backups").resolve("restore-staging")));
+    }
+
+    @Test
+    void restoreBackup_shouldPutAttachmentsBack_whenDatabaseSwapFails() throws IOException {
+        savePatient("V-1");
+        Path folder = Files.createDirectories(attachments.resolve("7"));
+        Path attachment = Files.writeString(folder.resolve("rx.txt"), "original");
+        Path added = Files.writeString(folder.resolve("eco.txt"), "eco");
+        File backup = backupService.createBackup();
+
+        savePatient("V-2");
+        Files.writeString(attachment, "cambiado");
+        Files.delete(added);
+        // The swap refuses to run inside a transaction, after the attachments were moved
+        assertThrows(IllegalStateException.class, () -> db.inTransaction(conn -> {
+            try {
+                backupService.restoreBackup(backup);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }));
+
+        assertTrue(patients.findByCedula("V-2").isPresent());
+        assertEquals("cambiado", Files.readString(attachment));
+        assertFalse(Files.exists(added));
+        assertFalse(Files.exists(dir.resolve("backups").resolve("restore-staging")));
+    }
+
+    @Test
+    void restorePatient_shouldBringBackRowsAndFilesAndPublishThem_whenPatientWasDeleted() throws IOException {
+        Patient patient = savePatient("V-1");
+        ClinicalHistory history = new ClinicalHistory();
+        history.setPatientId(patient.getId());
+        history.setFechaConsulta(LocalDateTime.of(2026, 3, 2, 10, 0));
+        history.setMotivoConsulta("Control");
+        history = histories.save(history);
+        Path file = Files.writeString(Files.createDirectories(attachments.resolve(history.getId().toString()))
+                .resolve("rx.txt"), "radiografía");
+        Attachment attachment = new Attachment("rx.txt", file.toAbsolutePath().toString(), "txt");
+        attachment.setClinicalHistoryId(history.getId());
+        attachment = attachmentRepository.save(attachment);
+        File backup = backupService.createBackup();
+
+        attachmentRepository.delete(attachment.getId());
+        histories.delete(history.getId());
+        patients.delete(patient.getId());
+        Files.delete(file);
+
+        List<Object> events = new ArrayList<>();
+        EventBus.getInstance().subscribe(PatientSavedEvent.class, events::add);
+        EventBus.getInstance().subscribe(HistorySavedEvent.class, events::add);
+        BackupService.PatientRestoreResult result = backupService.restorePatient(backup, "V-1");
+
+        assertTrue(result.patientCreated());
+        assertEquals(1, result.histories());
+        assertEquals(1, result.attachments());
+        assertEquals(0, result.missingAttachments());
+        Patient restored = patients.findByCedula("V-1").orElseThrow();
+        List<ClinicalHistory> restoredHistories = histories.findByPatientId(restored.getId());
+        assertEquals(List.of("Control"), restoredHistories.stream().map(ClinicalHistory::getMotivoConsulta).toList());
+        List<Attachment> restoredAttachments = attachmentRepository.findByClinicalHistoryId(
+                restoredHistories.get(0).getId());
+        assertEquals(1, restoredAttachments.size());
+        assertEquals("radiografía", Files.readString(Path.of(restoredAttachments.get(0).getRutaArchivo())));
+        assertEquals(2, events.size());
+        assertEquals(restored.getId(), ((PatientSavedEvent) events.get(0)).getPatient().getId());
+        assertEquals(restoredHistories.get(0).getId(), ((HistorySavedEvent) events.get(1)).getHistory().getId());
+    }
+
+    @Test
+    void createBackup_shouldEndScheduledPause_whenUserRequestWaitsForTheLock() throws Exception {
+        savePatient("V-1");
+        Files.writeString(Files.createDirectories(attachments.resolve("7")).resolve("rx.txt"), "original");
+        // Paused for as long as the user keeps working, as the scheduler does
+        BackupThrottle throttle = new BackupThrottle(0, () -> !backupService.isForegroundWaiting());
+        CompletableFuture<File> scheduled = CompletableFuture.supplyAsync(() -> {
+            try {
+                return backupService.createBackup(throttle);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!throttle.wasPaused() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(throttle.wasPaused());
+
+        File manual = CompletableFuture.supplyAsync(() -> {
+            try {
+                return backupService.createBackup();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        assertTrue(scheduled.get(10, TimeUnit.SECONDS).isFile());
+        assertTrue(manual.isFile());
+        assertFalse(backupService.isForegroundWaiting());
+    }
+
+    private Patient savePatient(String cedula) {
+        Patient patient = new Patient();
+        patient.setCedula(cedula);
+        patient.setNombre("Paciente");
+        return patients.save(patient);
+    }
+
+    // Copies the archive, overwriting every page of the database but the first
+    private File corruptDatabaseEntry(File backup) throws IOException {
+        File corrupt = dir.resolve("corrupt.zip").toFile();
+        try (ZipFile zip = new ZipFile(backup);
+                ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(corrupt.toPath()))) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                byte[] data;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    data = in.readAllBytes();
+                }
+                if (entry.getName().startsWith("database/")) {
+                    Arrays.fill(data, Math.min(4096, data.length / 2), data.length, (byte) 0x5A);
+                }
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return corrupt;
+    }
+
+    private void deleteOneObject() throws IOException {
+        try (Stream<Path> walk = Files.walk(dir.resolve("backups").resolve("objects"))) {
+            List<Path> objects = walk.filter(Files::isRegularFile).toList();
+            assertFalse(objects.isEmpty());
+            Files.delete(objects.get(0));
+        }
+    }
+}
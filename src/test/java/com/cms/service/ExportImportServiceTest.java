@@ -0,0 +1,126 @@
+package com.cms.service;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.infra.DatabaseConnection;
+import com.cms.repository.sqlite.SQLiteChangeLogRepository;
+import com.cms.repository.sqlite.SQLiteClinicalHistoryRepository;
+import com.cms.repository.sqlite.SQLiteImportJobRepository;
+import com.cms.repository.sqlite.SQLitePatientRepository;
+import com.cms.service.imports.ImportResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportImportServiceTest {
+
+    private static final String PATIENT_HEADER =
+            "ID,Cédula,Nombre,Apellido,Teléfono,Email,Dirección,Sexo,Fecha Nacimiento,Fecha Registro";
+    private static final int ROWS = 2500;
+
+    @TempDir
+    Path dir;
+
+    private SQLitePatientRepository patients;
+    private SQLiteClinicalHistoryRepository histories;
+    private final AtomicInteger batchesBeforeFailure = new AtomicInteger(-1);
+    private ExportImportService service;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        patients = new SQLitePatientRepository(db) {
+            @Override
+            public void insertAll(List<Patient> batch, BiConsumer<Integer, RuntimeException> onRejected) {
+                if (batchesBeforeFailure.getAndDecrement() == 0) {
+                    throw new IllegalStateException("disco lleno");
+                }
+                super.insertAll(batch, onRejected);
+            }
+        };
+        histories = new SQLiteClinicalHistoryRepository(db);
+        service = new ExportImportService(patients, histories,
+                new SQLiteImportJobRepository(db), new SQLiteChangeLogRepository(db));
+    }
+
+    @Test
+    void importPatientsFromCsv_shouldContinueAfterLastCheckpoint_whenFileIsUnchanged() throws IOException {
+        File file = writePatients("V-10000");
+        batchesBeforeFailure.set(1);
+        assertThrows(IllegalStateException.class, () -> service.importPatientsFromCsv(file));
+        assertEquals(1000, patients.count());
+
+        ImportResult result = service.importPatientsFromCsv(file);
+
+        assertEquals(ROWS, result.getSuccessCount());
+        assertEquals(0, result.getErrorCount(), String.valueOf(result.getErrors()));
+        assertEquals(ROWS, patients.count());
+        assertTrue(patients.findByCedula("V-" + (10000 + ROWS - 1)).isPresent());
+    }
+
+    @Test
+    void importPatientsFromCsv_shouldStartOver_whenFileChangedSinceInterruption() throws IOException {
+        File file = writePatients("V-10000");
+        batchesBeforeFailure.set(1);
+        assertThrows(IllegalStateException.class, () -> service.importPatientsFromCsv(file));
+        writePatients("V-9999999");
+        file.setLastModified(file.lastModified() + 2000);
+
+        ImportResult result = service.importPatientsFromCsv(file);
+
+        // Only a restart reads the new first row; rows 2-1000 were stored by the interrupted run
+        assertTrue(patients.findByCedula("V-9999999").isPresent());
+        assertEquals(ROWS - 999, result.getSuccessCount());
+        assertEquals(999, result.getErrorCount());
+        assertEquals(ROWS + 1, patients.count());
+    }
+
+    @Test
+    void importHistoriesFromCsv_shouldSkipDuplicatesAndRejectUnknownPatients_whenFileMixesThem() throws IOException {
+        Patient ana = new Patient("V-12345678", "Ana", "Díaz");
+        patients.save(ana);
+        ClinicalHistory stored = new ClinicalHistory();
+        stored.setPatientId(ana.getId());
+        stored.setFechaConsulta(LocalDateTime.of(2024, 3, 1, 9, 0));
+        stored.setMotivoConsulta("Control");
+        histories.save(stored);
+        Path file = Files.writeString(dir.resolve("historias.csv"), String.join("\n",
+                "Cédula,Fecha Consulta,Motivo,Médico",
+                "V-12345678,2024-03-01 09:00:00,Control,Dra. Núñez",
+                "v-12345678,2024-03-08 09:00:00,Cefalea,Dra. Núñez",
+                "V-12345678,2024-03-08 09:00:00,Cefalea,Dr. Pérez",
+                "V-87654321,2024-03-08 10:00:00,Fiebre,Dra. Núñez",
+                ""), StandardCharsets.UTF_8);
+
+        ImportResult result = service.importHistoriesFromCsv(file.toFile());
+
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(2, result.getSkippedCount());
+        assertEquals(1, result.getErrorCount());
+        assertTrue(result.getErrors().get(0).startsWith("Línea 5:"), result.getErrors().get(0));
+        assertEquals(2, histories.count());
+    }
+
+    private File writePatients(String firstCedula) throws IOException {
+        StringBuilder csv = new StringBuilder(PATIENT_HEADER).append('\n');
+        for (int i = 0; i < ROWS; i++) {
+            String cedula = i == 0 ? firstCedula : "V-" + (10000 + i);
+            csv.append(',').append(cedula).append(",Paciente ").append(i).append(",Díaz,,,,,,\n");
+        }
+        Path file = dir.resolve("pacientes.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+}
@@ -0,0 +1,115 @@
+package com.cms.service;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import com.cms.infra.DatabaseConnection;
+import com.cms.repository.sqlite.SQLiteChangeLogRepository;
+import com.cms.repository.sqlite.SQLiteClinicalHistoryRepository;
+import com.cms.repository.sqlite.SQLitePatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryPackExportServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private SQLitePatientRepository patients;
+    private final AtomicInteger renders = new AtomicInteger();
+    private HistoryPackExportService service;
+    private File pack;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseConnection db = new DatabaseConnection(dir.resolve("clinic.sqlite").toString());
+        patients = new SQLitePatientRepository(db);
+        SQLiteClinicalHistoryRepository histories = new SQLiteClinicalHistoryRepository(db);
+        ReportService reportService = new ReportService(patients, histories) {
+            @Override
+            public String renderPatientHistoryHtml(Patient patient, List<ClinicalHistory> patientHistories) {
+                renders.incrementAndGet();
+                return super.renderPatientHistoryHtml(patient, patientHistories);
+            }
+        };
+        service = new HistoryPackExportService(patients, histories, new SQLiteChangeLogRepository(db),
+                reportService);
+        pack = dir.resolve("historias.zip").toFile();
+    }
+
+    @Test
+    void exportAll_shouldRenderOnlyMissingPatients_whenDataIsUnchangedSinceInterruption() throws IOException {
+        savePatient("V-1", "Ana");
+        savePatient("V-2", "Luis");
+        savePatient("V-3", "Rosa");
+        interruptAfterTwoDocuments();
+        renders.set(0);
+
+        service.exportAll(pack, (done, total) -> {
+        });
+
+        assertEquals(1, renders.get());
+        assertEquals(3, documents().size());
+    }
+
+    @Test
+    void exportAll_shouldRenderEverythingAgain_whenPatientsChangedSinceInterruption() throws IOException {
+        Patient ana = savePatient("V-1", "Ana");
+        savePatient("V-2", "Luis");
+        Patient rosa = savePatient("V-3", "Rosa");
+        interruptAfterTwoDocuments();
+        ana.setNombre("Ana María");
+        patients.save(ana);
+        patients.delete(rosa.getId());
+        renders.set(0);
+
+        service.exportAll(pack, (done, total) -> {
+        });
+
+        assertEquals(2, renders.get());
+        List<String> documents = documents();
+        assertEquals(2, documents.size());
+        assertTrue(documents.get(0).contains("Ana María"));
+        assertFalse(Files.exists(dir.resolve("historias.zip.part.version")));
+    }
+
+    private void interruptAfterTwoDocuments() {
+        assertThrows(IllegalStateException.class, () -> service.exportAll(pack, (done, total) -> {
+            if (done == 2) {
+                throw new IllegalStateException("interrupted");
+            }
+        }));
+        assertFalse(pack.exists());
+    }
+
+    private List<String> documents() throws IOException {
+        List<String> documents = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(pack)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                documents.add(new String(zip.getInputStream(entry).readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return documents;
+    }
+
+    private Patient savePatient(String cedula, String nombre) {
+        Patient patient = new Patient();
+        patient.setCedula(cedula);
+        patient.setNombre(nombre);
+        return patients.save(patient);
+    }
+}
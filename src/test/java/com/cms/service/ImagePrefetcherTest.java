@@ -0,0 +1,54 @@
+package com.cms.service;
+
+import com.cms.service.image.ImageCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePrefetcherTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void neighbours_shouldAlternateNextAndPrevious_whenWithinBounds() {
+        assertEquals(List.of(3, 1, 4, 0), ImagePrefetcher.neighbours(10, 2, 2));
+        assertEquals(List.of(1, 2), ImagePrefetcher.neighbours(10, 0, 2));
+        assertEquals(List.of(8, 7), ImagePrefetcher.neighbours(10, 9, 2));
+        assertEquals(List.of(), ImagePrefetcher.neighbours(1, 0, 2));
+    }
+
+    @Test
+    void prefetchAround_shouldDecodeNeighboursIntoTheSharedCache_whenRadiusIsOne() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            File file = dir.resolve("photo" + i + ".png").toFile();
+            ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "png", file);
+            files.add(file);
+        }
+        ImageService imageService = new ImageService(new ImageCache(64L * 1024 * 1024));
+        ImagePrefetcher prefetcher = new ImagePrefetcher(imageService, 200, 200, 1);
+
+        prefetcher.prefetchAround(files, 2);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (imageService.getCachedImage(files.get(1), 200, 200) == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        prefetcher.shutdown();
+
+        assertNotNull(imageService.getCachedImage(files.get(3), 200, 200));
+        assertNotNull(imageService.getCachedImage(files.get(1), 200, 200));
+        assertEquals(400, imageService.getCachedImageSize(files.get(3)).width);
+        assertNull(imageService.getCachedImage(files.get(0), 200, 200));
+        assertNull(imageService.getCachedImage(files.get(4), 200, 200));
+    }
+}
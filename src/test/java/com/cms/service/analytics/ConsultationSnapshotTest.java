@@ -0,0 +1,108 @@
+package com.cms.service.analytics;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsultationSnapshotTest {
+
+    private ConsultationSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new ConsultationSnapshot();
+        snapshot.putPatient(patient(1, "Femenino", LocalDate.of(1999, 2, 1)));
+        snapshot.putPatient(patient(2, "Masculino", null));
+        snapshot.putHistory(history(10, 1, LocalDateTime.of(2024, 1, 15, 9, 0), "Dr. Pérez", "Gripe"));
+        snapshot.putHistory(history(11, 1, LocalDateTime.of(2024, 2, 3, 10, 0), "Dr. Pérez", "Asma"));
+        snapshot.putHistory(history(12, 2, LocalDateTime.of(2024, 2, 20, 11, 0), "Dra. Gómez", "Gripe"));
+    }
+
+    @Test
+    void select_shouldKeepMatchingRows_whenFilteringByDateRangeAndDictionaryValues() {
+        ConsultationFilter february = ConsultationFilter.between(
+                LocalDateTime.of(2024, 2, 1, 0, 0), LocalDateTime.of(2024, 3, 1, 0, 0));
+
+        assertEquals(2, snapshot.count(snapshot.select(february)));
+        assertEquals(1, snapshot.count(snapshot.select(february.diagnostico("Gripe"))));
+        assertEquals(1, snapshot.count(snapshot.select(ConsultationFilter.ALL.sexo("Femenino").medico("Dr. Pérez")
+                .diagnostico("Asma"))));
+        assertEquals(0, snapshot.count(snapshot.select(ConsultationFilter.ALL.medico("Desconocido"))));
+    }
+
+    @Test
+    void countBy_shouldCountRowsPerKey_whenGivenASelection() {
+        long[] byMonth = snapshot.countBy(Dimension.MONTH, snapshot.select(ConsultationFilter.ALL));
+        assertEquals(1, byMonth[1]);
+        assertEquals(2, byMonth[2]);
+
+        long[] bySexo = snapshot.countBy(Dimension.SEXO, snapshot.select(ConsultationFilter.ALL));
+        for (int key = 1; key < bySexo.length; key++) {
+            assertEquals("Femenino".equals(snapshot.label(Dimension.SEXO, key)) ? 2 : 1, bySexo[key]);
+        }
+    }
+
+    @Test
+    void pivot_shouldBandAgeAtConsultationDate_whenPatientHadABirthdayBetweenConsultations() {
+        PivotTable pivot = snapshot.pivot(snapshot.select(ConsultationFilter.ALL),
+                Dimension.AGE_BAND, Dimension.DIAGNOSTICO);
+
+        // Patient 1 turns 25 on 2024-02-01, between the two consultations
+        assertEquals(List.of(
+                new PivotTable.Row(List.of("15-24", "Gripe"), 1),
+                new PivotTable.Row(List.of("25-44", "Asma"), 1),
+                new PivotTable.Row(List.of("Sin dato", "Gripe"), 1)), pivot.getRows());
+        assertEquals(3, pivot.getTotal());
+    }
+
+    @Test
+    void putHistory_shouldReplaceRow_whenHistoryIsAlreadyPresent() {
+        snapshot.putHistory(history(11, 1, LocalDateTime.of(2024, 2, 3, 10, 0), "Dr. Pérez", "Gripe"));
+
+        assertEquals(3, snapshot.count(snapshot.select(ConsultationFilter.ALL.diagnostico("Gripe"))));
+        assertEquals(0, snapshot.count(snapshot.select(ConsultationFilter.ALL.diagnostico("Asma"))));
+        assertEquals(3, snapshot.size());
+    }
+
+    @Test
+    void removeHistory_shouldDropRow_whenHistoryIsDeleted() {
+        snapshot.removeHistory(12);
+
+        assertEquals(2, snapshot.count(snapshot.select(ConsultationFilter.ALL)));
+        assertEquals(0, snapshot.count(snapshot.select(ConsultationFilter.ALL.medico("Dra. Gómez"))));
+    }
+
+    @Test
+    void removePatient_shouldDropTheirConsultations_whenPatientIsDeleted() {
+        snapshot.removePatient(1);
+
+        assertEquals(1, snapshot.count(snapshot.select(ConsultationFilter.ALL)));
+        assertEquals(0, snapshot.count(snapshot.select(ConsultationFilter.ALL.sexo("Femenino"))));
+        assertEquals(1, snapshot.countPatients());
+    }
+
+    private Patient patient(int id, String sexo, LocalDate fechaNacimiento) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setSexo(sexo);
+        patient.setFechaNacimiento(fechaNacimiento);
+        return patient;
+    }
+
+    private ClinicalHistory history(int id, int patientId, LocalDateTime fecha, String medico, String diagnostico) {
+        ClinicalHistory history = new ClinicalHistory();
+        history.setId(id);
+        history.setPatientId(patientId);
+        history.setFechaConsulta(fecha);
+        history.setMedico(medico);
+        history.setDiagnostico(diagnostico);
+        return history;
+    }
+}
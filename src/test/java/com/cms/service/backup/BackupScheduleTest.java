@@ -0,0 +1,52 @@
+package com.cms.service.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupScheduleTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void startOf_shouldReturnTheDayBefore_whenWindowCrossesMidnight() {
+        BackupSchedule.Window night = BackupSchedule.parseWindows("22:00-06:00").get(0);
+
+        assertTrue(night.contains(LocalTime.of(23, 30)));
+        assertTrue(night.contains(LocalTime.of(2, 0)));
+        assertFalse(night.contains(LocalTime.of(6, 0)));
+        assertFalse(night.contains(LocalTime.of(12, 0)));
+        assertEquals(LocalDateTime.of(2024, 3, 9, 22, 0), night.startOf(LocalDateTime.of(2024, 3, 10, 2, 0)));
+        assertEquals(LocalDateTime.of(2024, 3, 10, 22, 0), night.startOf(LocalDateTime.of(2024, 3, 10, 23, 0)));
+    }
+
+    @Test
+    void parseWindows_shouldRejectMalformedWindows_whenParsingSeveral() {
+        List<BackupSchedule.Window> windows = BackupSchedule.parseWindows(" 13:00-14:30, 22:00-06:00 ");
+
+        assertEquals(2, windows.size());
+        assertEquals("13:00-14:30", windows.get(0).toString());
+        assertThrows(IllegalArgumentException.class, () -> BackupSchedule.parseWindows("13:00"));
+        assertThrows(IllegalArgumentException.class, () -> BackupSchedule.parseWindows("25:00-26:00"));
+        assertThrows(IllegalArgumentException.class, () -> BackupSchedule.parseWindows("08:00-08:00"));
+    }
+
+    @Test
+    void load_shouldReturnSavedSchedule_whenFileWasSaved() throws Exception {
+        Path file = dir.resolve("schedule.properties");
+        assertEquals(BackupSchedule.DEFAULT, BackupSchedule.load(file));
+
+        BackupSchedule schedule = new BackupSchedule(true,
+                BackupSchedule.parseWindows("01:00-05:00, 13:00-14:00"), 5L * 1024 * 1024);
+        schedule.save(file);
+
+        assertEquals(schedule, BackupSchedule.load(file));
+    }
+}
@@ -0,0 +1,183 @@
+package com.cms.service.backup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void read_shouldReturnWrittenEntries_whenPathsHaveSpecialCharacters() throws IOException {
+        BackupManifest manifest = new BackupManifest();
+        manifest.add(new BackupManifest.Entry("12/radiografía tórax.png", "ab01", 1024, 1700000000000L));
+        manifest.add(new BackupManifest.Entry("13/a\tb\\c\nd.txt", "cd02", 0, 0));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.write(out);
+        BackupManifest read = BackupManifest.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(manifest.getEntries(), read.getEntries());
+        assertEquals(1024, read.totalSize());
+    }
+
+    @Test
+    void read_shouldThrow_whenFormatIsUnknown() {
+        byte[] data = "something else\n".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> BackupManifest.read(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    void put_shouldStoreContentOnce_whenFilesAreEqual() throws IOException {
+        ObjectStore store = new ObjectStore(dir.resolve("objects"));
+        Path a = Files.writeString(dir.resolve("a.txt"), "contenido");
+        Path b = Files.writeString(dir.resolve("b.txt"), "contenido");
+
+        String hashA = store.put(a);
+        String hashB = store.put(b);
+
+        assertEquals(hashA, hashB);
+        assertEquals(ObjectStore.hash(a), hashA);
+        try (var files = Files.walk(dir.resolve("objects"))) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void retainOnly_shouldDeleteObject_whenItIsNotReferenced() throws IOException {
+        ObjectStore store = new ObjectStore(dir.resolve("objects"));
+        String kept = store.put(Files.writeString(dir.resolve("a.txt"), "contenido"));
+        String dropped = store.put(Files.writeString(dir.resolve("c.txt"), "otro"));
+        assertTrue(store.contains(dropped));
+
+        long freed = store.retainOnly(Set.of(kept));
+
+        assertTrue(freed > 0);
+        assertFalse(store.contains(dropped));
+        Path restored = dir.resolve("restored.txt");
+        store.restoreTo(kept, restored);
+        assertEquals("contenido", Files.readString(restored));
+    }
+
+    @Test
+    void restoreTo_shouldKeepExistingFile_whenObjectIsCorrupt() throws IOException {
+        ObjectStore store = new ObjectStore(dir.resolve("objects"));
+        String hash = store.put(Files.writeString(dir.resolve("informe.pdf"), "contenido original"));
+        Path object = dir.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash);
+        Files.writeString(object, "contenido alterado");
+        Path target = Files.writeString(dir.resolve("actual.pdf"), "actual");
+
+        assertThrows(IOException.class, () -> store.restoreTo(hash, target));
+
+        assertEquals("actual", Files.readString(target));
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.filter(p -> p.getFileName().toString().startsWith(".incoming-")).count());
+        }
+    }
+
+    @Test
+    void put_shouldDeflateObject_whenFormatIsNotAlreadyCompressed() throws IOException {
+        ObjectStore store = new ObjectStore(dir.resolve("objects"));
+        String text = "Paciente refiere cefalea. ".repeat(2000);
+        Path notes = Files.writeString(dir.resolve("notas.txt"), text);
+        Path image = Files.writeString(dir.resolve("foto.JPG"), "no es realmente una imagen");
+
+        String notesHash = store.put(notes);
+        String imageHash = store.put(image);
+
+        Path objects = dir.resolve("objects");
+        assertTrue(Files.isRegularFile(objects.resolve(notesHash.substring(0, 2)).resolve(notesHash + ".z")));
+        assertTrue(Files.isRegularFile(objects.resolve(imageHash.substring(0, 2)).resolve(imageHash)));
+        try (var in = store.open(notesHash)) {
+            assertEquals(text, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        store.retainOnly(Set.of(notesHash));
+        assertTrue(store.contains(notesHash));
+        assertFalse(store.contains(imageHash));
+    }
+
+    @Test
+    void close_shouldLeaveArchiveReadableByStandardReaders_whenEntriesWereDeflatedInParallel() throws IOException {
+        byte[] large = new byte[300_000];
+        Random random = new Random(42);
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 1000 < 500 ? 'a' + random.nextInt(4) : random.nextInt());
+        }
+        Path source = Files.write(dir.resolve("clinic_db.sqlite"), large);
+        Path archive = dir.resolve("backup.zip");
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try (ParallelZipWriter zip = new ParallelZipWriter(archive, pool, 3, Deflater.BEST_SPEED, 64 * 1024)) {
+            zip.addFile("database/clinic_db.sqlite", source);
+            zip.addBytes("vacío.txt", new byte[0]);
+            zip.addBytes("metadata.txt", "Versión 1.0".getBytes(StandardCharsets.UTF_8));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, byte[]> streamed = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                streamed.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        assertArrayEquals(large, streamed.get("database/clinic_db.sqlite"));
+        assertEquals(0, streamed.get("vacío.txt").length);
+        assertEquals("Versión 1.0", new String(streamed.get("metadata.txt"), StandardCharsets.UTF_8));
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            ZipEntry entry = zip.getEntry("database/clinic_db.sqlite");
+            assertTrue(entry.getCompressedSize() < large.length);
+            try (var in = zip.getInputStream(entry)) {
+                assertArrayEquals(large, in.readAllBytes());
+            }
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.filter(p -> p.getFileName().toString().startsWith("entry-")).count());
+        }
+    }
+
+    @Test
+    void close_shouldWriteZip64Directory_whenArchiveHasMoreThan65535Entries() throws IOException {
+        int count = 0x10000;
+        Path archive = dir.resolve("backup.zip");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (ParallelZipWriter zip = new ParallelZipWriter(archive, pool, 4)) {
+            for (int i = 0; i < count; i++) {
+                zip.addBytes("attachments/" + i + ".txt", Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(count, zip.size());
+            try (var in = zip.getInputStream(zip.getEntry("attachments/65535.txt"))) {
+                assertEquals("65535", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
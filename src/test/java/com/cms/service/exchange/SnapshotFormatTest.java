@@ -0,0 +1,106 @@
+package com.cms.service.exchange;
+
+import com.cms.domain.ClinicalHistory;
+import com.cms.domain.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFormatTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void read_shouldReturnRecordsAsWritten_whenSectionSpansSeveralBlocks() throws IOException {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 1; i <= SnapshotWriter.BLOCK_RECORDS + 10; i++) {
+            Patient p = new Patient("V-" + i, "Nombre " + i, i % 2 == 0 ? null : "Peña");
+            p.setId(i);
+            p.setSexo(i % 3 == 0 ? "F" : "M");
+            p.setFechaNacimiento(LocalDate.of(1950, 1, 1).plusDays(i));
+            p.setFechaRegistro(null);
+            patients.add(p);
+        }
+        ClinicalHistory history = new ClinicalHistory();
+        history.setId(7);
+        history.setPatientId(3);
+        history.setFechaConsulta(LocalDateTime.of(2024, 5, 6, 7, 8, 9, 123_000_000));
+        history.setMotivoConsulta("Dolor torácico");
+        history.setMedico("Dra. Núñez");
+
+        Path file = dir.resolve("s.cmsb");
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.write(Section.PATIENTS, patients.iterator(), SnapshotRecords::writePatient);
+            writer.write(Section.HISTORIES, List.of(history).iterator(), SnapshotRecords::writeHistory);
+        }
+
+        List<Object> read = new ArrayList<>();
+        Map<Section, SnapshotReader.RecordDecoder<?>> decoders = new EnumMap<>(Section.class);
+        decoders.put(Section.PATIENTS, SnapshotRecords::readPatient);
+        decoders.put(Section.HISTORIES, SnapshotRecords::readHistory);
+        try (SnapshotReader reader = new SnapshotReader(file, 2)) {
+            reader.read(decoders, (section, records) -> read.addAll(records));
+        }
+
+        assertEquals(patients.size() + 1, read.size());
+        Patient first = (Patient) read.get(0);
+        assertEquals("V-1", first.getCedula());
+        assertEquals("Peña", first.getApellido());
+        assertEquals(LocalDate.of(1950, 1, 2), first.getFechaNacimiento());
+        assertNull(first.getFechaRegistro());
+        Patient last = (Patient) read.get(patients.size() - 1);
+        assertEquals(patients.size(), last.getId());
+        assertNull(last.getApellido());
+
+        ClinicalHistory copy = (ClinicalHistory) read.get(patients.size());
+        assertEquals(history.getFechaConsulta(), copy.getFechaConsulta());
+        assertEquals("Dra. Núñez", copy.getMedico());
+        assertNull(copy.getDiagnostico());
+    }
+
+    @Test
+    void read_shouldSkipSection_whenNoDecoderIsRegisteredForIt() throws IOException {
+        Path file = dir.resolve("s.cmsb");
+        Patient patient = new Patient("V-1", "Ana", "Díaz");
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.write(Section.PATIENTS, List.of(patient).iterator(), SnapshotRecords::writePatient);
+        }
+
+        List<Object> read = new ArrayList<>();
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            reader.read(Map.of(Section.HISTORIES, SnapshotRecords::readHistory),
+                    (section, records) -> read.addAll(records));
+        }
+        assertTrue(read.isEmpty());
+    }
+
+    @Test
+    void read_shouldFail_whenBlockIsCorrupted() throws IOException {
+        Path file = dir.resolve("s.cmsb");
+        Patient patient = new Patient("V-1", "Ana", "Díaz");
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            writer.write(Section.PATIENTS, List.of(patient).iterator(), SnapshotRecords::writePatient);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 3] ^= 0x5A;
+        Files.write(file, bytes);
+
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            assertThrows(IOException.class, () -> reader.read(
+                    Map.of(Section.PATIENTS, SnapshotRecords::readPatient), (section, records) -> {
+                    }));
+        }
+    }
+}
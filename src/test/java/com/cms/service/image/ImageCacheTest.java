@@ -0,0 +1,80 @@
+package com.cms.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageCacheTest {
+
+    @Test
+    void weight_shouldFollowThePixelLayout_whenImageTypesDiffer() {
+        assertEquals(100 * 50 * 4, ImageCache.weight(new BufferedImage(100, 50, BufferedImage.TYPE_INT_ARGB)));
+        assertEquals(100 * 50 * 3, ImageCache.weight(new BufferedImage(100, 50, BufferedImage.TYPE_3BYTE_BGR)));
+        assertEquals(100 * 50, ImageCache.weight(new BufferedImage(100, 50, BufferedImage.TYPE_BYTE_GRAY)));
+    }
+
+    @Test
+    void put_shouldMoveLeastRecentlyUsedToSoftReferences_whenOverBudget() {
+        BufferedImage a = image();
+        BufferedImage b = image();
+        BufferedImage c = image();
+        ImageCache cache = new ImageCache(2 * ImageCache.weight(a));
+
+        cache.put("a", a);
+        cache.put("b", b);
+        assertSame(a, cache.get("a"));
+        cache.put("c", c);
+
+        ImageCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.entries());
+        assertEquals(1, stats.evictions());
+        assertEquals(2 * ImageCache.weight(a), stats.bytes());
+
+        // b was least recently used; it is still reachable until memory runs short
+        assertSame(b, cache.get("b"));
+        assertNull(cache.get("missing"));
+
+        stats = cache.getStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.softHits());
+        assertEquals(1, stats.misses());
+        assertEquals(2, stats.entries());
+        assertEquals(2.0 / 3, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    void remove_shouldForgetBothLevels_whenImageWasKept() {
+        BufferedImage a = image();
+        ImageCache cache = new ImageCache(ImageCache.weight(a));
+        cache.put("a", a);
+        cache.put("b", image());
+
+        cache.remove("a");
+        cache.remove("b");
+
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.getStats().bytes());
+    }
+
+    @Test
+    void put_shouldReplaceKeptImage_whenNewImageIsOverBudget() {
+        BufferedImage small = image();
+        BufferedImage large = new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB);
+        ImageCache cache = new ImageCache(ImageCache.weight(small));
+        cache.put("a", small);
+
+        cache.put("a", large);
+
+        assertSame(large, cache.get("a"));
+        ImageCache.Stats stats = cache.getStats();
+        assertEquals(0, stats.entries());
+        assertEquals(0, stats.bytes());
+    }
+
+    private static BufferedImage image() {
+        return new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+    }
+}
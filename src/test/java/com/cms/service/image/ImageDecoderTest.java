@@ -0,0 +1,127 @@
+package com.cms.service.image;
+
+import com.cms.service.ThumbnailService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageDecoderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void subsampling_shouldKeepTwiceTheTargetSize_whenImageIsLarger() {
+        assertEquals(1, ImageDecoder.subsampling(300, 200, 320, 320));
+        assertEquals(1, ImageDecoder.subsampling(1000, 800, 320, 320));
+        assertEquals(6, ImageDecoder.subsampling(4000, 3000, 320, 320));
+        assertEquals(6, ImageDecoder.subsampling(3000, 4000, 320, 320));
+    }
+
+    @Test
+    void decodeToFit_shouldKeepAspectRatio_whenScalingDown() throws Exception {
+        File file = writeImage("photo.png", 2000, 1000);
+
+        BufferedImage image = ImageDecoder.decodeToFit(file, 320, 320);
+
+        assertEquals(320, image.getWidth());
+        assertEquals(160, image.getHeight());
+        assertNull(ImageDecoder.decodeToFit(Files.writeString(dir.resolve("notes.png"), "text").toFile(), 80, 80));
+    }
+
+    @Test
+    void decodeRegion_shouldDecodeOnlyTheClippedRegion_whenRegionCrossesTheEdge() throws Exception {
+        File file = writeImage("photo.png", 2000, 1000);
+
+        assertEquals(new Dimension(2000, 1000), ImageDecoder.readSize(file));
+        BufferedImage detail = ImageDecoder.decodeRegion(file, new Rectangle(1500, 800, 1000, 400), 2);
+
+        // Clipped to 500 x 200 source pixels, one of every two kept
+        assertEquals(250, detail.getWidth());
+        assertEquals(100, detail.getHeight());
+        assertEquals(ImageIO.read(file).getRGB(1500, 800), detail.getRGB(0, 0));
+        assertNull(ImageDecoder.decodeRegion(file, new Rectangle(3000, 0, 10, 10), 1));
+    }
+
+    @Test
+    void getThumbnail_shouldReuseDiskCache_whenServiceIsReopened() throws Exception {
+        File file = writeImage("photo.png", 1200, 900);
+        Path cache = dir.resolve("cache");
+
+        BufferedImage small = new ThumbnailService(cache).getThumbnail(file, ThumbnailService.Size.SMALL).get();
+        assertEquals(80, small.getWidth());
+        assertEquals(60, small.getHeight());
+        try (Stream<Path> files = Files.list(cache)) {
+            assertEquals(ThumbnailService.Size.values().length, files.filter(p -> p.toString().endsWith(".png")).count());
+        }
+
+        ThumbnailService reopened = new ThumbnailService(cache);
+        assertNull(reopened.getCached(file, ThumbnailService.Size.LARGE));
+        BufferedImage large = reopened.getThumbnail(file, ThumbnailService.Size.LARGE).get();
+        assertEquals(320, large.getWidth());
+        assertSame(large, reopened.getCached(file, ThumbnailService.Size.LARGE));
+    }
+
+    @Test
+    void getThumbnail_shouldNameThumbnailAfterObjectHash_whenFileIsAStoreObject() throws Exception {
+        String hash = "7ada3b67c858b4e0cbf5ac5a388f28208bb50fbe6edcfe9af056f661362932e4";
+        Path object = Files.createDirectories(dir.resolve("store/7a/da")).resolve(hash + ".png");
+        Files.move(writeImage("photo.png", 400, 300).toPath(), object);
+        Path cache = dir.resolve("cache");
+
+        assertNotNull(new ThumbnailService(cache).getThumbnail(object.toFile(), ThumbnailService.Size.SMALL).get());
+
+        assertTrue(Files.exists(cache.resolve(hash + "_80.png")));
+        assertFalse(Files.exists(cache.resolve("index.txt")));
+    }
+
+    @Test
+    void constructor_shouldCompactIndex_whenHashedFilesChangedOrWereDeleted() throws Exception {
+        File changed = writeImage("photo.png", 400, 300);
+        File deleted = writeImage("other.png", 200, 100);
+        Path cache = dir.resolve("cache");
+        ThumbnailService service = new ThumbnailService(cache);
+        service.getThumbnail(changed, ThumbnailService.Size.SMALL).get();
+        service.getThumbnail(deleted, ThumbnailService.Size.SMALL).get();
+        Files.move(writeImage("photo2.png", 300, 300).toPath(), changed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        changed.setLastModified(changed.lastModified() + 2000);
+        service.getThumbnail(changed, ThumbnailService.Size.SMALL).get();
+        Files.delete(deleted.toPath());
+        Path index = cache.resolve("index.txt");
+        assertEquals(3, Files.readAllLines(index).size());
+
+        new ThumbnailService(cache);
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (Files.readAllLines(index).size() != 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        List<String> lines = Files.readAllLines(index);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith(changed.getAbsolutePath()));
+    }
+
+    private File writeImage(String name, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        File file = dir.resolve(name).toFile();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+}
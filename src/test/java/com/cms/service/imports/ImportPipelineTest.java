@@ -0,0 +1,57 @@
+package com.cms.service.imports;
+
+import com.cms.util.CsvReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportPipelineTest {
+
+    private static InputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void run_shouldReportRowErrorAndWriteOtherRows_whenProcessorThrows() {
+        CsvReader reader = new CsvReader(csv("1\n2\n3\n4\n5\n"));
+        List<String> written = new ArrayList<>();
+
+        ImportResult result = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                new ImportPipeline<String>(2, 2).run(reader, fields -> {
+                    if (fields[0].equals("3")) {
+                        throw new IllegalStateException("valor inválido");
+                    }
+                    return fields[0];
+                }, (rows, r) -> rows.forEach(row -> written.add(row.value()))));
+
+        assertEquals(List.of("1", "2", "4", "5"), written);
+        assertEquals(List.of("Línea 3: valor inválido"), result.getErrors());
+    }
+
+    @Test
+    void run_shouldReportFailureInsteadOfHanging_whenReaderThrowsRuntimeException() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new UncheckedIOException(new IOException("disco desconectado"));
+            }
+        };
+        CsvReader reader = new CsvReader(new SequenceInputStream(csv("1\n2\n"), failing));
+
+        ImportResult result = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                new ImportPipeline<String>(2, 1).run(reader, fields -> fields[0], (rows, r) -> { }));
+
+        assertEquals(1, result.getErrorCount());
+        assertTrue(result.getErrors().get(0).contains("disco desconectado"));
+    }
+}
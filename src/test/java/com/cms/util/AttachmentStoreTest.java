@@ -0,0 +1,68 @@
+package com.cms.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachmentStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void put_shouldStoreOneObjectUnderTheHash_whenFilesAreIdentical() throws IOException {
+        AttachmentStore store = new AttachmentStore(tempDir.resolve("store"));
+        Path first = Files.writeString(tempDir.resolve("laboratorio.PDF"), "resultado", StandardCharsets.UTF_8);
+        Path second = Files.writeString(tempDir.resolve("copia.pdf"), "resultado", StandardCharsets.UTF_8);
+
+        Path stored = store.put(first);
+
+        assertEquals(stored, store.put(second));
+        String hash = "7ada3b67c858b4e0cbf5ac5a388f28208bb50fbe6edcfe9af056f661362932e4";
+        assertEquals(tempDir.resolve("store/7a/da/" + hash + ".pdf"), stored);
+        assertEquals("resultado", Files.readString(stored, StandardCharsets.UTF_8));
+        try (Stream<Path> files = Files.walk(tempDir.resolve("store"))) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void isObjectPath_shouldReturnTrue_whenPathIsAFannedOutHashName() {
+        String hash = "7ada3b67c858b4e0cbf5ac5a388f28208bb50fbe6edcfe9af056f661362932e4";
+
+        assertTrue(AttachmentStore.isObjectPath(Paths.get("/clinic/attachments/store/7a/da/" + hash + ".pdf")));
+        assertTrue(AttachmentStore.isObjectPath(Paths.get("store/7a/da/" + hash)));
+        assertFalse(AttachmentStore.isObjectPath(Paths.get("store/da/7a/" + hash + ".pdf")));
+        assertFalse(AttachmentStore.isObjectPath(Paths.get("/clinic/attachments/12/informe_1a2b3c4d.pdf")));
+        assertEquals(hash, AttachmentStore.hashOf(Paths.get("store/7a/da/" + hash + ".pdf")));
+    }
+
+    @Test
+    void deleteUnreferenced_shouldKeepReferencedAndRecentObjects_whenSweeping() throws IOException {
+        AttachmentStore store = new AttachmentStore(tempDir.resolve("store"));
+        Path kept = store.put(out -> out.write(1), ".pdf");
+        Path orphan = store.put(out -> out.write(2), ".pdf");
+        Path recent = store.put(out -> out.write(3), ".pdf");
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(2).toMillis());
+        Files.setLastModifiedTime(kept, old);
+        Files.setLastModifiedTime(orphan, old);
+
+        int deleted = store.deleteUnreferenced(Set.of(AttachmentStore.hashOf(kept)), Duration.ofDays(1));
+
+        assertEquals(1, deleted);
+        assertTrue(Files.exists(kept));
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(recent));
+    }
+}
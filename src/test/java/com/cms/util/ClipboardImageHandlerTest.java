@@ -0,0 +1,29 @@
+package com.cms.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClipboardImageHandlerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void deleteAttachmentFile_shouldKeepFile_whenItIsAStoreObject() throws IOException {
+        Path object = new AttachmentStore(tempDir.resolve("store")).put(out -> out.write(1), ".png");
+        Path legacy = Files.writeString(Files.createDirectories(tempDir.resolve("12")).resolve("rx.png"), "rx");
+        ClipboardImageHandler handler = new ClipboardImageHandler();
+
+        assertFalse(handler.deleteAttachmentFile(object.toString()));
+        assertTrue(handler.deleteAttachmentFile(legacy.toString()));
+
+        assertTrue(Files.exists(object));
+        assertFalse(Files.exists(legacy));
+    }
+}
@@ -0,0 +1,64 @@
+package com.cms.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    private CsvReader reader(String content) {
+        return new CsvReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void next_shouldReturnFieldsVerbatim_whenQuotedFieldsHoldCommasQuotesAndLineBreaks() throws IOException {
+        CsvReader reader = reader("\uFEFFa,\"b, \"\"c\"\"\",\"línea 1\r\nlínea 2\",\r\nd,e\n");
+
+        assertArrayEquals(new String[] { "a", "b, \"c\"", "línea 1\r\nlínea 2", "" }, reader.next());
+        assertEquals(1, reader.getLineNumber());
+        assertArrayEquals(new String[] { "d", "e" }, reader.next());
+        assertEquals(3, reader.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void next_shouldSkipLineAndAdvanceOffset_whenLineIsBlank() throws IOException {
+        CsvReader reader = reader("x\n\n\ny\n");
+
+        assertArrayEquals(new String[] { "x" }, reader.next());
+        assertEquals(2, reader.getOffset());
+        assertArrayEquals(new String[] { "y" }, reader.next());
+        assertEquals(4, reader.getLineNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void constructor_shouldContinueWithNextRecord_whenGivenReportedOffsetAndLine() throws IOException {
+        byte[] content = "\uFEFFh\n\"a\nb\"\nc\n".getBytes(StandardCharsets.UTF_8);
+        CsvReader first = new CsvReader(new ByteArrayInputStream(content));
+        first.next();
+        first.next();
+        long offset = first.getOffset();
+        long line = first.getNextLineNumber();
+
+        ByteArrayInputStream rest = new ByteArrayInputStream(content);
+        rest.skip(offset);
+        CsvReader resumed = new CsvReader(rest, offset, line);
+
+        assertArrayEquals(new String[] { "c" }, resumed.next());
+        assertEquals(4, resumed.getLineNumber());
+        assertEquals(content.length, resumed.getOffset());
+    }
+
+    @Test
+    void next_shouldThrow_whenQuotedFieldIsNotClosed() throws IOException {
+        CsvReader reader = reader("ok\n\"abierto,\n");
+
+        assertArrayEquals(new String[] { "ok" }, reader.next());
+        assertThrows(IOException.class, reader::next);
+    }
+}